@@ -0,0 +1,127 @@
+package benchmark.jmh;
+
+import bookLibrary.BatchMode;
+import bookLibrary.BatchResult;
+import bookLibrary.CirculationStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link bookLibrary.BookLibrary#borrowAll(List, BatchMode)} and
+ * {@link bookLibrary.BookLibrary#returnAll(List, BatchMode)} with a loop of single
+ * borrows and returns over the same titles.
+ * <p>
+ * Every invocation borrows and then returns one batch of titles, so the stock is left
+ * unchanged. Times are per batch; divide by {@code batchSize} for the time per title.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchCirculationBenchmark {
+
+    /**
+     * Per-thread batches of titles, cycled through by the benchmarks.
+     */
+    @State(Scope.Thread)
+    public static class Batches {
+        /** Number of different batches cycled through. */
+        private static final int COUNT = 64;
+
+        /** Number of titles per batch. */
+        @Param({"10", "50"})
+        public int batchSize;
+
+        /** The batches. */
+        private final List<List<String>> batches = new ArrayList<>();
+
+        /** Position of the next batch. */
+        private int next;
+
+        /**
+         * Fills the batches with titles spread over the catalog.
+         * @param catalog the filled library
+         * @param cursor  the position of this thread in the catalog
+         */
+        @Setup(Level.Trial)
+        public void fill(CatalogState catalog, TitleCursor cursor) {
+            for (int b = 0; b < COUNT; b++) {
+                List<String> titles = new ArrayList<>(batchSize);
+                for (int i = 0; i < batchSize; i++) {
+                    titles.add(cursor.next(catalog));
+                }
+                batches.add(titles);
+            }
+        }
+
+        /**
+         * Returns the next batch.
+         * @return the titles of the batch
+         */
+        List<String> next() {
+            next = (next + 1) % COUNT;
+            return batches.get(next);
+        }
+    }
+
+    /**
+     * Borrows and returns the titles of a batch one call at a time.
+     * @param catalog the filled library
+     * @param batches the batches of this thread
+     * @return the number of successful calls
+     */
+    @Benchmark
+    public int singleCalls(CatalogState catalog, Batches batches) {
+        List<String> titles = batches.next();
+        int succeeded = 0;
+        for (String title : titles) {
+            succeeded += catalog.library.borrowBook(title) == CirculationStatus.BORROWED ? 1 : 0;
+        }
+        for (String title : titles) {
+            succeeded += catalog.library.returnBook(title) == CirculationStatus.RETURNED ? 1 : 0;
+        }
+        return succeeded;
+    }
+
+    /**
+     * Borrows and returns the titles of a batch with two best-effort batch calls.
+     * @param catalog the filled library
+     * @param batches the batches of this thread
+     * @return the number of successful titles
+     */
+    @Benchmark
+    public int bestEffortBatch(CatalogState catalog, Batches batches) {
+        List<String> titles = batches.next();
+        BatchResult borrowed = catalog.library.borrowAll(titles, BatchMode.BEST_EFFORT);
+        return borrowed.getSucceeded() + catalog.library.returnAll(titles, BatchMode.BEST_EFFORT).getSucceeded();
+    }
+
+    /**
+     * Borrows and returns the titles of a batch with two all-or-nothing batch calls.
+     * @param catalog the filled library
+     * @param batches the batches of this thread
+     * @return the number of successful titles
+     */
+    @Benchmark
+    public int allOrNothingBatch(CatalogState catalog, Batches batches) {
+        List<String> titles = batches.next();
+        BatchResult borrowed = catalog.library.borrowAll(titles, BatchMode.ALL_OR_NOTHING);
+        return borrowed.getSucceeded() + catalog.library.returnAll(titles, BatchMode.ALL_OR_NOTHING).getSucceeded();
+    }
+}
@@ -0,0 +1,118 @@
+package benchmark.jmh;
+
+import book.Book;
+import book.Encyclopedia;
+import book.SpecialBook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the builders of {@link Book}, {@link SpecialBook} and {@link Encyclopedia}.
+ * <p>
+ * Every build goes through the {@link book.BookInterner}. The {@code book},
+ * {@code specialBook} and {@code encyclopedia} benchmarks build a new book every time:
+ * the title cycles through {@value #TITLES} titles and the page count grows with every
+ * build, so no two builds have the same properties and each one interns a new book. The
+ * {@code repeatedBook} benchmark builds the same book over and over, so it measures the
+ * builder when the interner already holds the book. The fields are read from state, so
+ * the JIT cannot fold the books into constants.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BuilderBenchmark {
+
+    /** Number of distinct titles the books are built with. */
+    private static final int TITLES = 4096;
+
+    /** The titles the books are built with. */
+    private final String[] titles = new String[TITLES];
+
+    /** Number of books built so far, which picks the title and page count of the next. */
+    private int built;
+
+    /** Title of the repeated book. */
+    private String title = "Oko za oko";
+
+    /** Author of the built books. */
+    private String author = "M.J. Arlidge";
+
+    /** Genre of the built books. */
+    private String genre = "napinavy";
+
+    /** Page count of the repeated book. */
+    private int pages = 560;
+
+    /** Base value of the built books. */
+    private double value = 18.91;
+
+    /** Flag used for the signed, rare and illustration properties. */
+    private boolean flag = true;
+
+    /**
+     * Creates the titles.
+     */
+    @Setup
+    public void createTitles() {
+        for (int i = 0; i < TITLES; i++) {
+            titles[i] = title + " " + i;
+        }
+    }
+
+    /**
+     * Builds a plain book no book built before is identical to.
+     * @return the book
+     */
+    @Benchmark
+    public Book book() {
+        int next = built++;
+        return new Book.Builder(titles[next % TITLES], author).genre(genre).pageNumbers(1 + next / TITLES)
+                .language("SK").value(value).build();
+    }
+
+    /**
+     * Builds a special book no book built before is identical to.
+     * @return the book
+     */
+    @Benchmark
+    public SpecialBook specialBook() {
+        int next = built++;
+        return new SpecialBook.Builder(titles[next % TITLES], author).genre(genre).pageNumbers(1 + next / TITLES)
+                .language("SK").value(value).signed(flag).rare(!flag).build();
+    }
+
+    /**
+     * Builds an encyclopedia no book built before is identical to.
+     * @return the book
+     */
+    @Benchmark
+    public Encyclopedia encyclopedia() {
+        int next = built++;
+        return new Encyclopedia.Builder(titles[next % TITLES], author).genre(genre).pageNumbers(1 + next / TITLES)
+                .language("SK").value(value).illustration(flag).build();
+    }
+
+    /**
+     * Builds the same plain book as every call before, which the interner holds.
+     * @return the book
+     */
+    @Benchmark
+    public Book repeatedBook() {
+        return new Book.Builder(title, author).genre(genre).pageNumbers(pages)
+                .language("SK").value(value).build();
+    }
+}
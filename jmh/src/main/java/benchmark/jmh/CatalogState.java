@@ -0,0 +1,72 @@
+package benchmark.jmh;
+
+import book.Book;
+import book.Encyclopedia;
+import book.SpecialBook;
+import bookLibrary.BookLibrary;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The {@link BookLibrary} filled with a synthetic catalog of the benchmarked size.
+ * <p>
+ * The library is a singleton, so every catalog size has to run in its own JVM; JMH
+ * forks one per parameter combination. The catalog mixes plain books, special books
+ * and encyclopedias, and every title has enough copies that borrowing never runs out
+ * of stock during a run.
+ * </p>
+ */
+@State(Scope.Benchmark)
+public class CatalogState {
+
+    /** Total number of copies spread over the catalog. */
+    private static final int TOTAL_COPIES = 1_000_000_000;
+
+    /** Number of titles registered before the benchmark starts. */
+    @Param({"1000", "100000", "1000000"})
+    public int catalogSize;
+
+    /** The library under test. */
+    public BookLibrary library;
+
+    /** Titles of the registered books, in registration order. */
+    public String[] titles;
+
+    /**
+     * Registers the synthetic catalog.
+     */
+    @Setup(Level.Trial)
+    public void registerCatalog() {
+        library = BookLibrary.BookLibrary();
+        titles = new String[catalogSize];
+        int copies = Math.max(1000, TOTAL_COPIES / catalogSize);
+        for (int i = 0; i < catalogSize; i++) {
+            Book book = book(i);
+            titles[i] = book.getTitle();
+            library.registerNewBook(book, copies);
+        }
+    }
+
+    /**
+     * Creates the synthetic book with the given number.
+     * @param i the number of the book
+     * @return a plain book, special book or encyclopedia
+     */
+    static Book book(int i) {
+        String title = "Benchmark title " + i;
+        String author = "Author " + i % 2000;
+        String genre = "genre " + i % 30;
+        double value = 5 + i % 97 * 0.37;
+        return switch (i % 3) {
+            case 0 -> new SpecialBook.Builder(title, author).genre(genre).language("SK")
+                    .pageNumbers(200).signed(i % 2 == 0).rare(i % 5 == 0).value(value).build();
+            case 1 -> new Encyclopedia.Builder(title, author).genre(genre).language("SK")
+                    .pageNumbers(300).illustration(i % 2 == 0).value(value).build();
+            default -> new Book.Builder(title, author).genre(genre).language("EN")
+                    .pageNumbers(150).value(value).build();
+        };
+    }
+}
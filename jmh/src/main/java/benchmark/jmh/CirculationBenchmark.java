@@ -0,0 +1,49 @@
+package benchmark.jmh;
+
+import bookLibrary.CirculationStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link bookLibrary.BookLibrary#borrowBook(String)} and
+ * {@link bookLibrary.BookLibrary#returnBook(String)}.
+ * <p>
+ * Run with several thread counts through {@link ThreadSweep} or with {@code -t}.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CirculationBenchmark {
+
+    /**
+     * Borrows one copy of a title.
+     * @param catalog the filled library
+     * @param cursor  the position of this thread in the catalog
+     * @return the outcome
+     */
+    @Benchmark
+    public CirculationStatus borrowBook(CatalogState catalog, TitleCursor cursor) {
+        return catalog.library.borrowBook(cursor.next(catalog));
+    }
+
+    /**
+     * Returns one copy of a title.
+     * @param catalog the filled library
+     * @param cursor  the position of this thread in the catalog
+     * @return the outcome
+     */
+    @Benchmark
+    public CirculationStatus returnBook(CatalogState catalog, TitleCursor cursor) {
+        return catalog.library.returnBook(cursor.next(catalog));
+    }
+}
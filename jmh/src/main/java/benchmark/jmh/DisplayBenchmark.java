@@ -0,0 +1,117 @@
+package benchmark.jmh;
+
+import bookLibrary.BookFilter;
+import bookLibrary.BookLibrary;
+import bookLibrary.CatalogWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link bookLibrary.BookLibrary#displayListOfBooks()} and paging through the
+ * catalog with {@link BookLibrary#listBooks(BookFilter, long, int, java.util.function.ObjIntConsumer)}.
+ * <p>
+ * Standard output is replaced by a stream that discards its input, so the benchmark
+ * measures building and printing the lines rather than the terminal. The paging
+ * benchmarks write the whole catalog, page by page, to a writer that discards its input.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DisplayBenchmark {
+
+    /** Number of books per page. */
+    private static final int PAGE_SIZE = 1000;
+
+    /** Selects one genre in thirty, and only books in stock. */
+    private static final BookFilter ONE_GENRE = new BookFilter.Builder().genre("genre 7").inStockOnly(true).build();
+
+    /**
+     * Standard output redirected to nowhere for the duration of a trial.
+     */
+    @State(Scope.Benchmark)
+    public static class DiscardedOutput {
+        /** The original standard output. */
+        private PrintStream original;
+
+        /**
+         * Replaces standard output.
+         */
+        @Setup(Level.Trial)
+        public void redirect() {
+            original = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+
+        /**
+         * Restores standard output.
+         */
+        @TearDown(Level.Trial)
+        public void restore() {
+            System.setOut(original);
+        }
+    }
+
+    /**
+     * Displays the whole catalog.
+     * @param catalog the filled library
+     * @param output  the redirected standard output
+     */
+    @Benchmark
+    public void displayListOfBooks(CatalogState catalog, DiscardedOutput output) {
+        catalog.library.displayListOfBooks();
+    }
+
+    /**
+     * Pages through the whole catalog.
+     * @param catalog the filled library
+     * @return the number of books listed
+     */
+    @Benchmark
+    public long listAllPages(CatalogState catalog) {
+        return listPages(catalog.library, BookFilter.ALL);
+    }
+
+    /**
+     * Pages through the books of one genre.
+     * @param catalog the filled library
+     * @return the number of books listed
+     */
+    @Benchmark
+    public long listFilteredPages(CatalogState catalog) {
+        return listPages(catalog.library, ONE_GENRE);
+    }
+
+    /**
+     * Writes every page of a listing to a discarding writer.
+     * @param library the library
+     * @param filter  selects the books
+     * @return the number of books listed
+     */
+    private static long listPages(BookLibrary library, BookFilter filter) {
+        CatalogWriter writer = new CatalogWriter(Writer.nullWriter());
+        long cursor = 0;
+        do {
+            cursor = library.listBooks(filter, cursor, PAGE_SIZE, writer);
+        } while (cursor != BookLibrary.END_OF_CATALOG);
+        writer.flush();
+        return writer.getLines();
+    }
+}
@@ -0,0 +1,102 @@
+package benchmark.jmh;
+
+import bookLibrary.CirculationStatus;
+import bookLibrary.LibraryServices;
+import metrics.InstrumentedLibrary;
+import metrics.LibraryMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of {@link InstrumentedLibrary} and {@link LibraryMetrics} on a
+ * borrow followed by a return.
+ * <p>
+ * The plain benchmark calls the library directly. The instrumented ones call it through
+ * an {@link InstrumentedLibrary} with the metrics attached as inventory listener, timing
+ * one call in 16 or every call. The overhead per operation is half the difference, since
+ * every invocation is two operations. The metrics stay attached for the whole fork, so
+ * run the plain benchmark on its own fork, as configured, to keep it free of the listener.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+
+    /**
+     * The library instrumented with attached metrics.
+     */
+    @State(Scope.Benchmark)
+    public static class Instrumented {
+        /** Times one call in 16. */
+        LibraryServices sampled;
+
+        /** Times every call. */
+        LibraryServices timed;
+
+        /**
+         * Attaches the metrics.
+         * @param catalog the filled library
+         */
+        @Setup(Level.Trial)
+        public void attach(CatalogState catalog) {
+            LibraryMetrics metrics = LibraryMetrics.attach(catalog.library);
+            sampled = new InstrumentedLibrary(catalog.library, metrics);
+            timed = new InstrumentedLibrary.Builder(catalog.library, metrics).latencySampling(1).build();
+        }
+    }
+
+    /**
+     * Borrows and returns a title without instrumentation.
+     * @param catalog the filled library
+     * @param cursor  the position of this thread in the catalog
+     * @return the outcome of the return
+     */
+    @Benchmark
+    public CirculationStatus plain(CatalogState catalog, TitleCursor cursor) {
+        String title = cursor.next(catalog);
+        catalog.library.borrowBook(title);
+        return catalog.library.returnBook(title);
+    }
+
+    /**
+     * Borrows and returns a title, timing one call in 16.
+     * @param catalog      the filled library
+     * @param cursor       the position of this thread in the catalog
+     * @param instrumented the instrumented library
+     * @return the outcome of the return
+     */
+    @Benchmark
+    public CirculationStatus sampled(CatalogState catalog, TitleCursor cursor, Instrumented instrumented) {
+        String title = cursor.next(catalog);
+        instrumented.sampled.borrowBook(title);
+        return instrumented.sampled.returnBook(title);
+    }
+
+    /**
+     * Borrows and returns a title, timing every call.
+     * @param catalog      the filled library
+     * @param cursor       the position of this thread in the catalog
+     * @param instrumented the instrumented library
+     * @return the outcome of the return
+     */
+    @Benchmark
+    public CirculationStatus timed(CatalogState catalog, TitleCursor cursor, Instrumented instrumented) {
+        String title = cursor.next(catalog);
+        instrumented.timed.borrowBook(title);
+        return instrumented.timed.returnBook(title);
+    }
+}
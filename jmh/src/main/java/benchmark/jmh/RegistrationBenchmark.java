@@ -0,0 +1,72 @@
+package benchmark.jmh;
+
+import book.Book;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmarks {@link bookLibrary.BookLibrary#registerNewBook(Book, int)}.
+ * <p>
+ * {@link #registerNewBook} adds books the library has not seen, which grows the catalog,
+ * so it runs single-shot batches to keep the growth bounded; each operation includes
+ * building the book. {@link #restockBook} adds copies to an already registered book.
+ * </p>
+ */
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+public class RegistrationBenchmark {
+
+    /** Number of registrations in one single-shot batch. */
+    private static final int BATCH = 10_000;
+
+    /**
+     * Numbers the books created during the benchmark, after the synthetic catalog.
+     */
+    @State(Scope.Benchmark)
+    public static class NewBooks {
+        /** Number of the next new book. */
+        final AtomicInteger next = new AtomicInteger(10_000_000);
+    }
+
+    /**
+     * Registers a book the library has not seen.
+     * @param catalog  the filled library
+     * @param newBooks the numbering of new books
+     * @return the registered book
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = BATCH)
+    @Measurement(iterations = 10, batchSize = BATCH)
+    public Book registerNewBook(CatalogState catalog, NewBooks newBooks) {
+        Book book = CatalogState.book(newBooks.next.getAndIncrement());
+        catalog.library.registerNewBook(book, 1);
+        return book;
+    }
+
+    /**
+     * Adds a copy of an already registered book.
+     * @param catalog the filled library
+     * @param cursor  the position of this thread in the catalog
+     * @return the restocked book
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public Book restockBook(CatalogState catalog, TitleCursor cursor) {
+        Book book = catalog.library.findByTitle(cursor.next(catalog));
+        catalog.library.registerNewBook(book, 1);
+        return book;
+    }
+}
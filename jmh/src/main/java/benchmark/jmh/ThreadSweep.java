@@ -0,0 +1,30 @@
+package benchmark.jmh;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the selected benchmarks once for every thread count.
+ * <p>
+ * JMH takes a single thread count per run, so this runner repeats the run with 1, 2, 4
+ * and 8 threads. The arguments are ordinary JMH options, e.g. a benchmark filter:
+ * <pre>
+ * java -cp jmh/target/benchmarks.jar benchmark.jmh.ThreadSweep CirculationBenchmark
+ * </pre>
+ * </p>
+ */
+public class ThreadSweep {
+
+    /** Thread counts to run with. */
+    private static final int[] THREADS = {1, 2, 4, 8};
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        for (int threads : THREADS) {
+            new Runner(new OptionsBuilder().parent(options).threads(threads).build()).run();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package benchmark.jmh;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Per-thread position in the catalog.
+ * <p>
+ * Each call of {@link #next(CatalogState)} steps by a large prime, so consecutive
+ * operations touch titles spread over the whole catalog instead of one hot entry.
+ * </p>
+ */
+@State(Scope.Thread)
+public class TitleCursor {
+
+    /** Step between consecutive titles. */
+    private static final int STEP = 7919;
+
+    /** Position of the next title. */
+    private int position = (int) Thread.currentThread().getId() * 104_729;
+
+    /**
+     * Returns the next title.
+     * @param catalog the catalog to pick from
+     * @return a registered title
+     */
+    public String next(CatalogState catalog) {
+        position = Math.floorMod(position + STEP, catalog.titles.length);
+        return catalog.titles[position];
+    }
+}
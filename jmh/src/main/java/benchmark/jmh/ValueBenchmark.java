@@ -0,0 +1,90 @@
+package benchmark.jmh;
+
+import book.Book;
+import book.PricingRules;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link book.AbstractBook#getValue()} across the class hierarchy.
+ * <p>
+ * An array of books is summed with {@code getValue()}. With {@code types = 1} every book
+ * is a plain {@link Book} and the call site stays monomorphic; with {@code types = 3}
+ * plain books, special books and encyclopedias alternate and the call site becomes
+ * megamorphic. The reported time is that of one pass over all books.
+ * </p>
+ * <p>
+ * {@code getValue()} returns the value computed by the pricing rules when the book was
+ * built, so both shapes of the call site cost a field read. {@code reprice} applies the
+ * {@link PricingRules#DEFAULT default rules} on every call instead, which is what
+ * {@code getValue()} would cost if the value were not stored.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ValueBenchmark {
+
+    /** Number of books summed. */
+    @Param({"1000", "100000", "1000000"})
+    public int catalogSize;
+
+    /** Number of book classes in the array, 1 or 3. */
+    @Param({"1", "3"})
+    public int types;
+
+    /** The books summed. */
+    private Book[] books;
+
+    /**
+     * Creates the books.
+     */
+    @Setup(Level.Trial)
+    public void createBooks() {
+        books = new Book[catalogSize];
+        for (int i = 0; i < catalogSize; i++) {
+            books[i] = CatalogState.book(types == 1 ? 2 + 3 * i : i);
+        }
+    }
+
+    /**
+     * Sums the values of all books.
+     * @return the total value
+     */
+    @Benchmark
+    public double getValue() {
+        double total = 0;
+        for (Book book : books) {
+            total += book.getValue();
+        }
+        return total;
+    }
+
+    /**
+     * Sums the values of all books, computing each with the default pricing rules.
+     * @return the total value
+     */
+    @Benchmark
+    public double reprice() {
+        double total = 0;
+        for (Book book : books) {
+            total += PricingRules.DEFAULT.price(book);
+        }
+        return total;
+    }
+}
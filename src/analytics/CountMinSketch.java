@@ -0,0 +1,79 @@
+package analytics;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A count-min sketch of int hashes: a fixed grid of counters that overestimates the
+ * count of every key by a bounded amount, in constant memory.
+ * <p>
+ * A key is counted in one counter of each row, chosen by a hash of its own. Its estimate
+ * is the smallest of those counters, which collisions can only raise: with rows of
+ * {@code width} counters, an estimate exceeds the true count by more than
+ * {@code e / width} times the total with a probability below {@code e^-depth}.
+ * </p>
+ * <p>
+ * The counters are atomic, so adding takes no lock. Thread-safe.
+ * </p>
+ */
+final class CountMinSketch {
+
+    /** Number of rows. */
+    private final int depth;
+
+    /** Mask of a column, the width minus one. */
+    private final int mask;
+
+    /** Counters, row after row. */
+    private final AtomicIntegerArray counters;
+
+    /**
+     * Creates an empty sketch.
+     * @param depth the number of rows
+     * @param width the number of counters per row, a power of two
+     */
+    CountMinSketch(int depth, int width) {
+        this.depth = depth;
+        this.mask = width - 1;
+        this.counters = new AtomicIntegerArray(depth * width);
+    }
+
+    /**
+     * Counts a key once.
+     * @param hash the hash of the key
+     * @return the estimated count of the key, including this one
+     */
+    int add(int hash) {
+        long h = hash * 0x9E3779B97F4A7C15L;
+        int h1 = (int) (h >>> 32);
+        int h2 = (int) h | 1;
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0, offset = 0; row < depth; row++, offset += mask + 1) {
+            estimate = Math.min(estimate, counters.incrementAndGet(offset + (h1 + row * h2 & mask)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Returns the estimated count of a key.
+     * @param hash the hash of the key
+     * @return the smallest of its counters
+     */
+    int estimate(int hash) {
+        long h = hash * 0x9E3779B97F4A7C15L;
+        int h1 = (int) (h >>> 32);
+        int h2 = (int) h | 1;
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0, offset = 0; row < depth; row++, offset += mask + 1) {
+            estimate = Math.min(estimate, counters.get(offset + (h1 + row * h2 & mask)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Returns the number of bytes held by the counters.
+     * @return the number of bytes
+     */
+    long bytes() {
+        return (long) Integer.BYTES * counters.length();
+    }
+}
@@ -0,0 +1,61 @@
+package analytics;
+
+/**
+ * The estimated demand for a title or a genre over the window of {@link DemandAnalytics}.
+ * <p>
+ * The counts of titles come from count-min sketches and may be overestimated slightly;
+ * the counts of genres are exact.
+ * </p>
+ */
+public final class Demand {
+
+    /** The title or genre. */
+    private final String name;
+
+    /** Number of borrow attempts. */
+    private final long requests;
+
+    /** Number of attempts that found no copy in stock or no such title. */
+    private final long unmet;
+
+    /**
+     * Creates a demand.
+     * @param name     the title or genre
+     * @param requests the number of borrow attempts
+     * @param unmet    the number of attempts that were not served
+     */
+    Demand(String name, long requests, long unmet) {
+        this.name = name;
+        this.requests = requests;
+        this.unmet = unmet;
+    }
+
+    /**
+     * Returns the title or genre.
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of borrow attempts.
+     * @return the number of attempts
+     */
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * Returns the number of borrow attempts that found no copy in stock or no such title.
+     * @return the number of unmet attempts
+     */
+    public long getUnmet() {
+        return unmet;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + unmet + " unmet of " + requests + " requests";
+    }
+}
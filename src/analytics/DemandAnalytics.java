@@ -0,0 +1,450 @@
+package analytics;
+
+import book.Book;
+import bookLibrary.CirculationStatus;
+import bookLibrary.TitleNormalizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counts the borrow attempts of every title and genre over a sliding window, including
+ * the attempts that found no copy in stock or no such title, in constant memory.
+ * <p>
+ * Time is cut into buckets, one day by default, and the window is the current bucket and
+ * the previous ones, seven days by default. Every bucket holds:
+ * <ul>
+ *     <li>a {@link CountMinSketch} of the served attempts and one of the unmet attempts
+ *     by normalized title, so titles that are not in the catalog are counted as well,</li>
+ *     <li>the titles with the most unmet attempts, kept as heavy hitters: a title joins
+ *     them when its estimate passes the smallest one among them, which then leaves,</li>
+ *     <li>the attempts and unmet attempts of every genre, exactly.</li>
+ * </ul>
+ * Recording an attempt increments a few atomic counters of one sketch of the current
+ * bucket. Once the heavy hitters are full, a title is checked against them only on every
+ * {@value #OFFER_INTERVAL}th unmet attempt of the bucket, which keeps the lookups off
+ * most attempts of the popular titles, and a lock is taken only when it joins them. A new bucket replaces the oldest one
+ * when its time comes, so memory does not grow with the number of titles or attempts.
+ * </p>
+ * <p>
+ * {@link #getTopUnmet(int)} sums the estimates of the heavy hitters of the buckets in
+ * the window, which takes microseconds. A title that is never among the heavy hitters of
+ * a single bucket is not reported, however steady its demand.
+ * </p>
+ * <p>
+ * The {@link bookLibrary.BookLibrary} records every borrow. Example Usage:
+ * <pre>
+ * DemandAnalytics demand = BookLibrary.BookLibrary().getDemand();
+ * for (Demand title : demand.getTopUnmet(10)) {
+ *     System.out.println(title);
+ * }
+ * </pre>
+ * </p>
+ */
+public class DemandAnalytics {
+
+    /** A title is offered to the heavy hitters when its unmet estimate is a multiple of this. */
+    private static final int OFFER_INTERVAL = 4;
+
+    /** Length of a bucket in milliseconds. */
+    private final long bucketMillis;
+
+    /** Number of buckets in the window. */
+    private final int windowBuckets;
+
+    /** Number of rows of the sketches. */
+    private final int sketchDepth;
+
+    /** Number of counters per row of the sketches. */
+    private final int sketchWidth;
+
+    /** Number of heavy hitters per bucket. */
+    private final int heavyHitters;
+
+    /** The current time in milliseconds. */
+    private final LongSupplier clock;
+
+    /** The buckets of the window, by their number modulo the number of buckets. */
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    /** The bucket attempts are recorded in, until its end. */
+    private volatile Bucket current;
+
+    /**
+     * Private constructor used by the {@link Builder}.
+     * @param builder the builder containing the settings
+     */
+    private DemandAnalytics(Builder builder) {
+        this.bucketMillis = builder.bucketMillis;
+        this.windowBuckets = builder.windowBuckets;
+        this.sketchDepth = builder.sketchDepth;
+        this.sketchWidth = builder.sketchWidth;
+        this.heavyHitters = builder.heavyHitters;
+        this.clock = builder.clock;
+        this.buckets = new AtomicReferenceArray<>(windowBuckets);
+        this.current = bucket(clock.getAsLong());
+    }
+
+    /**
+     * Records a borrow attempt.
+     * <p>
+     * Attempts ending {@link CirculationStatus#OUT_OF_STOCK} or
+     * {@link CirculationStatus#NOT_FOUND} are unmet; any other outcome counts as a plain
+     * request.
+     * </p>
+     *
+     * @param key    the title normalized by {@link TitleNormalizer#normalize(String)}
+     * @param title  the title reported, preferably the title of the book
+     * @param book   the book, or {@code null} if the library has no such title
+     * @param status the outcome of the attempt
+     */
+    public void recordAttempt(String key, String title, Book book, CirculationStatus status) {
+        Bucket bucket = current;
+        long now = clock.getAsLong();
+        if (now >= bucket.end || now < bucket.end - bucketMillis) {
+            bucket = bucket(now);
+            current = bucket;
+        }
+        boolean unmet = status == CirculationStatus.OUT_OF_STOCK || status == CirculationStatus.NOT_FOUND;
+        int hash = key.hashCode();
+        if (unmet) {
+            int estimate = bucket.unmet.add(hash);
+            int threshold = bucket.threshold;
+            if (threshold == 0 || estimate % OFFER_INTERVAL == 0 && estimate > threshold) {
+                bucket.offer(key, title, estimate);
+            }
+        } else {
+            bucket.served.add(hash);
+        }
+        if (book != null && book.getGenre() != null) {
+            LongAdder[] genre = bucket.genres.get(book.getGenre());
+            if (genre == null) {
+                genre = bucket.genres.computeIfAbsent(book.getGenre(), name -> new LongAdder[] {new LongAdder(), new LongAdder()});
+            }
+            genre[0].increment();
+            if (unmet) {
+                genre[1].increment();
+            }
+        }
+    }
+
+    /**
+     * Returns the titles with the most unmet borrow attempts in the window.
+     *
+     * @param k the number of titles
+     * @return the titles and their estimated demand, most unmet attempts first
+     */
+    public List<Demand> getTopUnmet(int k) {
+        List<Bucket> window = window();
+        Map<String, String> titles = new HashMap<>();
+        for (Bucket bucket : window) {
+            titles.putAll(bucket.candidates);
+        }
+        // rank by the unmet attempts alone, then estimate the requests of the top only
+        String[] keys = titles.keySet().toArray(new String[0]);
+        long[] ranked = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            int hash = keys[i].hashCode();
+            long unmet = 0;
+            for (Bucket bucket : window) {
+                unmet += bucket.unmet.estimate(hash);
+            }
+            // the unmet count in the high bits, the index of the key in the low ones
+            ranked[i] = unmet << 32 | i;
+        }
+        Arrays.sort(ranked);
+        List<Demand> top = new ArrayList<>(Math.min(k, keys.length));
+        for (int i = ranked.length - 1; i >= 0 && top.size() < k; i--) {
+            String key = keys[(int) ranked[i]];
+            top.add(estimate(window, key, titles.get(key)));
+        }
+        return top;
+    }
+
+    /**
+     * Returns the estimated demand for a title in the window.
+     *
+     * @param title the title (case- and accent-insensitive)
+     * @return the demand, reported under the given title
+     */
+    public Demand getDemand(String title) {
+        return estimate(window(), TitleNormalizer.normalize(title), title);
+    }
+
+    /**
+     * Returns the demand for every genre in the window.
+     * <p>
+     * Genres are those of the books found, as written in the books; attempts for titles
+     * that are not in the library have no genre.
+     * </p>
+     *
+     * @return the genres and their demand, most unmet attempts first
+     */
+    public List<Demand> getGenreDemand() {
+        Map<String, long[]> sums = new HashMap<>();
+        for (Bucket bucket : window()) {
+            for (Map.Entry<String, LongAdder[]> genre : bucket.genres.entrySet()) {
+                long[] sum = sums.computeIfAbsent(genre.getKey(), name -> new long[2]);
+                sum[0] += genre.getValue()[0].sum();
+                sum[1] += genre.getValue()[1].sum();
+            }
+        }
+        List<Demand> genres = new ArrayList<>(sums.size());
+        for (Map.Entry<String, long[]> sum : sums.entrySet()) {
+            genres.add(new Demand(sum.getKey(), sum.getValue()[0], sum.getValue()[1]));
+        }
+        genres.sort(Comparator.comparingLong(Demand::getUnmet).reversed()
+                .thenComparing(Comparator.comparingLong(Demand::getRequests).reversed()));
+        return genres;
+    }
+
+    /**
+     * Estimates the memory held by the buckets; the genres are not included.
+     * @return the approximate number of bytes
+     */
+    public long footprintBytes() {
+        long bytes = 0;
+        for (int i = 0; i < windowBuckets; i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null) {
+                bytes += bucket.served.bytes() + bucket.unmet.bytes() + 96L * heavyHitters;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Estimates the demand for a title by summing the sketches of the buckets.
+     * @param window the buckets of the window
+     * @param key    the normalized title
+     * @param title  the title reported
+     * @return the demand
+     */
+    private static Demand estimate(List<Bucket> window, String key, String title) {
+        int hash = key.hashCode();
+        long served = 0;
+        long unmet = 0;
+        for (Bucket bucket : window) {
+            served += bucket.served.estimate(hash);
+            unmet += bucket.unmet.estimate(hash);
+        }
+        return new Demand(title, served + unmet, unmet);
+    }
+
+    /**
+     * Returns the buckets in the window ending now.
+     * @return the buckets, in no particular order
+     */
+    private List<Bucket> window() {
+        long epoch = Math.floorDiv(clock.getAsLong(), bucketMillis);
+        List<Bucket> window = new ArrayList<>(windowBuckets);
+        for (int i = 0; i < windowBuckets; i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null && bucket.epoch <= epoch && bucket.epoch > epoch - windowBuckets) {
+                window.add(bucket);
+            }
+        }
+        return window;
+    }
+
+    /**
+     * Returns the bucket of a time, replacing the older bucket in its place.
+     * @param now the time in milliseconds
+     * @return the bucket
+     */
+    private Bucket bucket(long now) {
+        long epoch = Math.floorDiv(now, bucketMillis);
+        int index = (int) Math.floorMod(epoch, (long) windowBuckets);
+        Bucket bucket = buckets.get(index);
+        while (bucket == null || bucket.epoch < epoch) {
+            // attempts recorded in the old bucket while it is replaced are lost
+            Bucket fresh = new Bucket(epoch);
+            if (buckets.compareAndSet(index, bucket, fresh)) {
+                return fresh;
+            }
+            bucket = buckets.get(index);
+        }
+        return bucket;
+    }
+
+    /**
+     * The attempts of one bucket of time.
+     */
+    private final class Bucket {
+        /** The number of the bucket since the epoch. */
+        final long epoch;
+
+        /** The end of the bucket in milliseconds, exclusive. */
+        final long end;
+
+        /** Served attempts by hash of the normalized title. */
+        final CountMinSketch served = new CountMinSketch(sketchDepth, sketchWidth);
+
+        /** Unmet attempts by hash of the normalized title. */
+        final CountMinSketch unmet = new CountMinSketch(sketchDepth, sketchWidth);
+
+        /** The titles with the most unmet attempts, by normalized title. */
+        final Map<String, String> candidates = new ConcurrentHashMap<>();
+
+        /** The estimate a title must exceed to join the candidates; 0 until they are full. */
+        volatile int threshold;
+
+        /** Attempts and unmet attempts by genre. */
+        final Map<String, LongAdder[]> genres = new ConcurrentHashMap<>();
+
+        /**
+         * Creates an empty bucket.
+         * @param epoch the number of the bucket since the epoch
+         */
+        Bucket(long epoch) {
+            this.epoch = epoch;
+            this.end = (epoch + 1) * bucketMillis;
+        }
+
+        /**
+         * Adds a title to the candidates, dropping the one with the smallest estimate
+         * when they are full.
+         * @param key      the normalized title
+         * @param title    the title reported
+         * @param estimate its estimated unmet attempts
+         */
+        void offer(String key, String title, int estimate) {
+            if (candidates.containsKey(key)) {
+                return;
+            }
+            synchronized (this) {
+                if (estimate <= threshold || candidates.putIfAbsent(key, title) != null
+                        || candidates.size() <= heavyHitters) {
+                    return;
+                }
+                String smallest = null;
+                int smallestEstimate = Integer.MAX_VALUE;
+                int nextEstimate = Integer.MAX_VALUE;
+                for (String candidate : candidates.keySet()) {
+                    int candidateEstimate = unmet.estimate(candidate.hashCode());
+                    if (candidateEstimate < smallestEstimate) {
+                        nextEstimate = smallestEstimate;
+                        smallestEstimate = candidateEstimate;
+                        smallest = candidate;
+                    } else if (candidateEstimate < nextEstimate) {
+                        nextEstimate = candidateEstimate;
+                    }
+                }
+                candidates.remove(smallest);
+                threshold = nextEstimate;
+            }
+        }
+    }
+
+    /**
+     * Builder for creating a {@link DemandAnalytics}.
+     */
+    public static class Builder {
+        /** Length of a bucket in milliseconds (optional, default is one day). */
+        private long bucketMillis = TimeUnit.DAYS.toMillis(1);
+
+        /** Number of buckets in the window (optional, default is 7). */
+        private int windowBuckets = 7;
+
+        /** Number of rows of the sketches (optional, default is 4). */
+        private int sketchDepth = 4;
+
+        /** Number of counters per row of the sketches (optional, default is 16384). */
+        private int sketchWidth = 1 << 14;
+
+        /** Number of heavy hitters per bucket (optional, default is 128). */
+        private int heavyHitters = 128;
+
+        /** The current time in milliseconds (optional, default is the system clock). */
+        private LongSupplier clock = System::currentTimeMillis;
+
+        /**
+         * Sets the length of a bucket of time.
+         * @param length the length
+         * @param unit   the unit of the length
+         * @return this builder instance
+         * @throws IllegalArgumentException if the length is not at least one millisecond
+         */
+        public Builder bucket(long length, TimeUnit unit) {
+            if (unit.toMillis(length) <= 0) {
+                throw new IllegalArgumentException("Bucket length must be greater than 0 milliseconds.");
+            }
+            this.bucketMillis = unit.toMillis(length);
+            return this;
+        }
+
+        /**
+         * Sets the number of buckets in the window, the current one included.
+         * @param windowBuckets the number of buckets; must be greater than 0
+         * @return this builder instance
+         * @throws IllegalArgumentException if {@code windowBuckets <= 0}
+         */
+        public Builder windowBuckets(int windowBuckets) {
+            if (windowBuckets <= 0) {
+                throw new IllegalArgumentException("Number of buckets must be greater than 0.");
+            }
+            this.windowBuckets = windowBuckets;
+            return this;
+        }
+
+        /**
+         * Sets the size of the sketches; deeper sketches err less often, wider ones by less.
+         * @param depth the number of rows; must be greater than 0
+         * @param width the number of counters per row; must be a power of two
+         * @return this builder instance
+         * @throws IllegalArgumentException if the depth or the width is invalid
+         */
+        public Builder sketch(int depth, int width) {
+            if (depth <= 0) {
+                throw new IllegalArgumentException("Sketch depth must be greater than 0.");
+            }
+            if (width <= 0 || Integer.bitCount(width) != 1) {
+                throw new IllegalArgumentException("Sketch width must be a power of two.");
+            }
+            this.sketchDepth = depth;
+            this.sketchWidth = width;
+            return this;
+        }
+
+        /**
+         * Sets the number of titles with the most unmet attempts kept per bucket.
+         * @param heavyHitters the number of titles; must be greater than 0
+         * @return this builder instance
+         * @throws IllegalArgumentException if {@code heavyHitters <= 0}
+         */
+        public Builder heavyHitters(int heavyHitters) {
+            if (heavyHitters <= 0) {
+                throw new IllegalArgumentException("Number of heavy hitters must be greater than 0.");
+            }
+            this.heavyHitters = heavyHitters;
+            return this;
+        }
+
+        /**
+         * Sets the clock, for example to replay attempts of the past.
+         * @param clock returns the current time in milliseconds; must not be null
+         * @return this builder instance
+         */
+        public Builder clock(LongSupplier clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * Builds the analytics.
+         * @return the new analytics
+         */
+        public DemandAnalytics build() {
+            return new DemandAnalytics(this);
+        }
+    }
+}
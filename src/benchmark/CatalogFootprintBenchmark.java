@@ -0,0 +1,141 @@
+package benchmark;
+
+import book.Book;
+import book.Encyclopedia;
+import book.SpecialBook;
+import catalog.BookView;
+import catalog.ColumnarCatalog;
+import catalog.FootprintReport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Compares the heap footprint of the object layout of the library with a
+ * {@link ColumnarCatalog} of the same books.
+ * <p>
+ * One million books are created the way an import creates them, with a new string
+ * for every genre, language and author. The benchmark prints the estimated
+ * {@link FootprintReport}, measures the heap actually retained by each layout, and
+ * times summing the value of the stock through book objects and through views.
+ * </p>
+ * <p>
+ * Run with a large heap, e.g. {@code java -Xmx3g benchmark.CatalogFootprintBenchmark}.
+ * </p>
+ */
+public class CatalogFootprintBenchmark {
+
+    /** Number of books in the catalog. */
+    private static final int BOOKS = 1_000_000;
+
+    /** Number of timed scans of each layout. */
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        long before = usedHeap();
+        List<Book> catalog = new ArrayList<>(BOOKS);
+        Map<Book, AtomicInteger> objects = new ConcurrentHashMap<>();
+        Map<String, Book> titleIndex = new ConcurrentHashMap<>();
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = book(i);
+            catalog.add(book);
+            objects.put(book, new AtomicInteger(1 + i % 5));
+            titleIndex.put(book.getTitle().toLowerCase(), book);
+        }
+        long objectBytes = usedHeap() - before - referenceArrayBytes(BOOKS);
+
+        before = usedHeap();
+        ColumnarCatalog columnar = new ColumnarCatalog();
+        for (Book book : catalog) {
+            columnar.add(book, objects.get(book).get());
+        }
+        long columnarBytes = usedHeap() - before;
+
+        FootprintReport report = FootprintReport.compare(catalog, columnar);
+        System.out.println(report);
+        System.out.printf("measured object layout %,15d bytes (titles included)%n", objectBytes);
+        System.out.printf("measured columnar      %,15d bytes (titles shared with the objects)%n", columnarBytes);
+
+        double objectMillis = time(() -> {
+            double total = 0;
+            for (Map.Entry<Book, AtomicInteger> entry : objects.entrySet()) {
+                total += entry.getKey().getValue() * entry.getValue().get();
+            }
+            return total;
+        });
+        double viewMillis = time(() -> {
+            double[] total = new double[1];
+            columnar.forEach(view -> total[0] += view.getValue() * view.getQuantity());
+            return total[0];
+        });
+        System.out.printf("value scan: objects %,8.2f ms   views %,8.2f ms%n", objectMillis, viewMillis);
+
+        BookView view = columnar.findByTitle("FOOTPRINT TITLE 4242");
+        System.out.println("lookup: " + view + ", value " + view.getValue() + ", object "
+                + titleIndex.get("footprint title 4242").getValue());
+    }
+
+    /**
+     * Times a scan after a warm-up.
+     * @param scan the scan to run
+     * @return the average time of one scan in milliseconds
+     */
+    private static double time(DoubleSupplier scan) {
+        double sink = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            sink += scan.getAsDouble();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            sink += scan.getAsDouble();
+        }
+        double millis = (System.nanoTime() - start) / (ROUNDS * 1e6);
+        return sink < 0 ? Double.NaN : millis;
+    }
+
+    /**
+     * Returns the used heap after a few garbage collections.
+     * @return the used heap in bytes
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Returns the size of the list holding the books, which belongs to neither layout.
+     * @param length the number of books
+     * @return the approximate size of the backing array in bytes
+     */
+    private static long referenceArrayBytes(int length) {
+        return 16 + 4L * length;
+    }
+
+    /**
+     * Creates the synthetic book with the given number.
+     * @param i the number of the book
+     * @return a plain book, special book or encyclopedia
+     */
+    private static Book book(int i) {
+        String title = "Footprint title " + i;
+        String author = "Author " + i % 5000;
+        String genre = new String("genre " + i % 30);
+        String language = new String(i % 4 == 0 ? "EN" : "SK");
+        double value = 5 + i % 97 * 0.37;
+        return switch (i % 3) {
+            case 0 -> new SpecialBook.Builder(title, author).genre(genre).language(language)
+                    .pageNumbers(200).signed(i % 2 == 0).rare(i % 5 == 0).value(value).build();
+            case 1 -> new Encyclopedia.Builder(title, author).genre(genre).language(language)
+                    .pageNumbers(300).illustration(i % 2 == 0).value(value).build();
+            default -> new Book.Builder(title, author).genre(genre).language(language)
+                    .pageNumbers(150).value(value).build();
+        };
+    }
+}
@@ -0,0 +1,86 @@
+package benchmark;
+
+import bookLibrary.BookLibrary;
+import importer.CatalogImporter;
+import importer.ImportStats;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Measures the throughput of the {@link CatalogImporter} on generated feeds.
+ * <p>
+ * A CSV feed and a JSON Lines feed with the same rows are written to temporary files and
+ * imported into the library. The rows mix plain books, special books and encyclopedias,
+ * and every thousandth row is invalid, so validation and rejection are part of the
+ * measurement. Progress is printed while each import runs.
+ * </p>
+ * <p>
+ * Run with {@code java -Xmx3g benchmark.CatalogImportBenchmark [rows] [threads]}.
+ * </p>
+ */
+public class CatalogImportBenchmark {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        Path csv = Files.createTempFile("feed", ".csv");
+        Path json = Files.createTempFile("feed", ".jsonl");
+        try {
+            writeFeeds(csv, json, rows);
+            CatalogImporter importer = new CatalogImporter.Builder(BookLibrary.BookLibrary())
+                    .threads(threads)
+                    .onProgress(stats -> System.out.println("  " + stats), 1000)
+                    .build();
+
+            System.out.printf("CSV, %,d rows, %d validator threads%n", rows, threads);
+            report(importer.importCsv(csv));
+            System.out.printf("JSON Lines, %,d rows, %d validator threads%n", rows, threads);
+            report(importer.importJson(json));
+        } finally {
+            Files.deleteIfExists(csv);
+            Files.deleteIfExists(json);
+        }
+    }
+
+    /**
+     * Prints the result of an import.
+     * @param stats the result
+     */
+    private static void report(ImportStats stats) {
+        System.out.printf("  done: %s in %,.0f ms; first error: %s%n", stats,
+                stats.getElapsedNanos() / 1e6, stats.getErrors().isEmpty() ? "none" : stats.getErrors().get(0));
+    }
+
+    /**
+     * Writes the same generated rows as CSV and as JSON Lines.
+     * @param csv  the CSV file
+     * @param json the JSON Lines file
+     * @param rows the number of rows
+     * @throws IOException if writing fails
+     */
+    private static void writeFeeds(Path csv, Path json, int rows) throws IOException {
+        try (BufferedWriter csvOut = Files.newBufferedWriter(csv, StandardCharsets.UTF_8);
+             BufferedWriter jsonOut = Files.newBufferedWriter(json, StandardCharsets.UTF_8)) {
+            csvOut.write("title,author,genre,language,pages,value,quantity,signed,rare,illustration\n");
+            for (int i = 0; i < rows; i++) {
+                String pages = i % 1000 == 999 ? "-1" : String.valueOf(100 + i % 400);
+                String signed = i % 3 == 0 ? String.valueOf(i % 2 == 0) : "";
+                String rare = i % 3 == 0 ? String.valueOf(i % 5 == 0) : "";
+                String illustration = i % 3 == 1 ? String.valueOf(i % 2 == 0) : "";
+                csvOut.write("\"Imported, title " + i + "\",Author " + i % 5000 + ",genre " + i % 40
+                        + ",SK," + pages + ",12.5," + (1 + i % 3) + "," + signed + "," + rare + "," + illustration + "\n");
+
+                jsonOut.write("{\"title\": \"Imported JSON title " + i + "\", \"author\": \"Author " + i % 5000
+                        + "\", \"genre\": \"genre " + i % 40 + "\", \"language\": \"SK\", \"pages\": " + pages
+                        + ", \"value\": 12.5, \"quantity\": " + (1 + i % 3)
+                        + (signed.isEmpty() ? "" : ", \"signed\": " + signed + ", \"rare\": " + rare)
+                        + (illustration.isEmpty() ? "" : ", \"illustration\": " + illustration) + "}\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package benchmark;
+
+import book.Book;
+import bookLibrary.BookFilter;
+import bookLibrary.BookLibrary;
+import bookLibrary.CatalogSnapshot;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Measures {@link CatalogSnapshot}s: the cost of opening one at several catalog sizes,
+ * the cost of a report over one, and whether reports during checkouts are consistent.
+ * <p>
+ * The catalog grows to each size in turn. At each size the benchmark prints the time to
+ * open and close a snapshot, the time an eager copy of every quantity would take instead,
+ * and the time to value and to list the catalog through a snapshot. A thread then borrows
+ * {@value #HOT_BOOKS} books spread over the catalog one after the other and returns them
+ * in the same order, over and over. In any consistent view the borrowed books are the
+ * first or the last ones of that order, so a listing that shows them otherwise is torn;
+ * the benchmark counts the torn listings read live and read through snapshots, and prints
+ * the time per borrow or return with and without a snapshot kept open.
+ * </p>
+ * <p>
+ * Run with a large heap, e.g. {@code java -Xmx3g benchmark.CatalogSnapshotBenchmark}.
+ * </p>
+ */
+public class CatalogSnapshotBenchmark {
+
+    /** Catalog sizes to measure. */
+    private static final int[] SIZES = {10_000, 100_000, 1_000_000};
+
+    /** Copies of every book. */
+    private static final int COPIES = 5;
+
+    /** Number of snapshots opened to time the opening. */
+    private static final int OPENINGS = 200_000;
+
+    /** Number of books borrowed and returned during the listings. */
+    private static final int HOT_BOOKS = 1000;
+
+    /** Number of listings read live and through snapshots during the checkouts. */
+    private static final int LISTINGS = 20;
+
+    public static void main(String[] args) throws InterruptedException {
+        BookLibrary library = BookLibrary.BookLibrary();
+        int initial;
+        try (CatalogSnapshot snapshot = library.snapshot()) {
+            initial = snapshot.size();
+        }
+        String[] titles = new String[SIZES[SIZES.length - 1]];
+        int registered = 0;
+        for (int size : SIZES) {
+            for (; registered < size; registered++) {
+                titles[registered] = "Snapshot Shelf " + registered;
+                library.registerNewBook(new Book.Builder(titles[registered], "Author " + registered % 1000)
+                        .pageNumbers(100).value(1 + registered % 50).build(), COPIES);
+            }
+            System.out.printf("%,d books%n", initial + size);
+            measureOpening(library);
+            measureReports(library);
+            measureCheckouts(library, titles, size);
+        }
+    }
+
+    /**
+     * Prints the time to open and close a snapshot.
+     * @param library the library
+     */
+    private static void measureOpening(BookLibrary library) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < OPENINGS; i++) {
+                library.snapshot().close();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("  open and close a snapshot: %.0f ns%n", (double) best / OPENINGS);
+    }
+
+    /**
+     * Prints the time of an eager copy of the quantities and of reports over a snapshot.
+     * @param library the library
+     */
+    private static void measureReports(BookLibrary library) {
+        long copy = Long.MAX_VALUE;
+        long valuation = Long.MAX_VALUE;
+        long listing = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            try (CatalogSnapshot snapshot = library.snapshot()) {
+                long start = System.nanoTime();
+                int[] quantities = new int[snapshot.size()];
+                int[] next = new int[1];
+                library.listBooks(BookFilter.ALL, 0, quantities.length, (book, quantity) -> quantities[next[0]++] = quantity);
+                copy = Math.min(copy, System.nanoTime() - start);
+                start = System.nanoTime();
+                snapshot.getValuation();
+                valuation = Math.min(valuation, System.nanoTime() - start);
+                start = System.nanoTime();
+                long[] total = new long[1];
+                snapshot.listBooks(BookFilter.ALL, 0, Integer.MAX_VALUE, (book, quantity) -> total[0] += quantity);
+                listing = Math.min(listing, System.nanoTime() - start);
+            }
+        }
+        System.out.printf("  eager copy of the quantities instead: %.2f ms; valuation over a snapshot: %.2f ms; "
+                + "listing over a snapshot: %.2f ms%n", copy / 1e6, valuation / 1e6, listing / 1e6);
+    }
+
+    /**
+     * Reads listings during checkouts, counts the torn ones and prints the checkout time.
+     * @param library the library
+     * @param titles  the titles of the catalog
+     * @param size    the number of titles registered
+     * @throws InterruptedException if interrupted while waiting for the checkout thread
+     */
+    private static void measureCheckouts(BookLibrary library, String[] titles, int size) throws InterruptedException {
+        String[] hot = new String[HOT_BOOKS];
+        Book[] hotBooks = new Book[HOT_BOOKS];
+        for (int i = 0; i < HOT_BOOKS; i++) {
+            hot[i] = titles[(int) ((long) i * size / HOT_BOOKS)];
+            hotBooks[i] = library.findByTitle(hot[i]);
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong operations = new AtomicLong();
+        Thread checkouts = new Thread(() -> {
+            while (running.get()) {
+                for (String title : hot) {
+                    library.borrowBook(title);
+                }
+                for (String title : hot) {
+                    library.returnBook(title);
+                }
+                operations.addAndGet(2 * HOT_BOOKS);
+            }
+        });
+        checkouts.start();
+
+        int tornLive = 0;
+        int tornSnapshots = 0;
+        for (int i = 0; i < LISTINGS; i++) {
+            HotView live = new HotView(hotBooks);
+            library.listBooks(BookFilter.ALL, 0, Integer.MAX_VALUE, live);
+            tornLive += live.isTorn() ? 1 : 0;
+            try (CatalogSnapshot snapshot = library.snapshot()) {
+                HotView view = new HotView(hotBooks);
+                snapshot.listBooks(BookFilter.ALL, 0, Integer.MAX_VALUE, view);
+                tornSnapshots += view.isTorn() ? 1 : 0;
+            }
+        }
+        System.out.printf("  torn listings during checkouts: %d of %d live, %d of %d through snapshots%n",
+                tornLive, LISTINGS, tornSnapshots, LISTINGS);
+
+        double closed = timeCheckouts(operations);
+        double open;
+        long pinned;
+        try (CatalogSnapshot snapshot = library.snapshot()) {
+            open = timeCheckouts(operations);
+            pinned = snapshot.getVersion();
+        }
+        running.set(false);
+        checkouts.join();
+        System.out.printf("  borrow or return: %.0f ns without an open snapshot, %.0f ns with one open at version %d%n",
+                closed, open, pinned);
+    }
+
+    /**
+     * Times the checkout thread for a second.
+     * @param operations the number of borrows and returns done by the thread
+     * @return the time per borrow or return in nanoseconds
+     * @throws InterruptedException if interrupted while sleeping
+     */
+    private static double timeCheckouts(AtomicLong operations) throws InterruptedException {
+        long before = operations.get();
+        long start = System.nanoTime();
+        Thread.sleep(1000);
+        return (double) (System.nanoTime() - start) / (operations.get() - before);
+    }
+
+    /**
+     * Collects the quantities of the hot books from a listing.
+     */
+    private static final class HotView implements ObjIntConsumer<Book> {
+        /** The hot books in the order they are borrowed and returned. */
+        final Book[] hot;
+
+        /** The quantity of every hot book. */
+        final int[] quantities;
+
+        /** The next hot book expected in the listing. */
+        int next;
+
+        /**
+         * Creates a view.
+         * @param hot the hot books in the order they are borrowed and returned
+         */
+        HotView(Book[] hot) {
+            this.hot = hot;
+            this.quantities = new int[hot.length];
+        }
+
+        @Override
+        public void accept(Book book, int quantity) {
+            if (next < hot.length && book == hot[next]) {
+                quantities[next++] = quantity;
+            }
+        }
+
+        /**
+         * Tells whether the borrowed books are not the first or the last ones of the order.
+         * @return {@code true} if the quantities change more than once along the order
+         */
+        boolean isTorn() {
+            int changes = 0;
+            for (int i = 1; i < quantities.length; i++) {
+                if (quantities[i] != quantities[i - 1]) {
+                    changes++;
+                }
+            }
+            return changes > 1;
+        }
+    }
+}
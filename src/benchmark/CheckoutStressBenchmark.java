@@ -0,0 +1,115 @@
+package benchmark;
+
+import book.Book;
+import bookLibrary.BookLibrary;
+import bookLibrary.CirculationStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Multi-threaded stress test and throughput benchmark for concurrent checkouts.
+ * <p>
+ * For 1, 2, 4, ... up to the number of available processors (at least 4, so races are
+ * exercised on small machines too), the benchmark starts that many threads which
+ * repeatedly borrow and return books from a small set of hot titles.
+ * Each title starts with one copy per thread, so a borrow can never run out of stock and
+ * every pair must leave the quantity unchanged. After each round the quantities are
+ * checked; a lost or duplicated copy fails the run with an {@link IllegalStateException}.
+ * </p>
+ * <p>
+ * Run with {@code java benchmark.CheckoutStressBenchmark [pairsPerThread]}.
+ * </p>
+ */
+public class CheckoutStressBenchmark {
+
+    /** Number of titles shared by all threads. */
+    private static final int TITLES = 8;
+
+    /** Default number of borrow/return pairs done by each thread. */
+    private static final int DEFAULT_PAIRS = 2_000_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int pairs = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PAIRS;
+        int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+        BookLibrary library = BookLibrary.BookLibrary();
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < TITLES; i++) {
+            Book book = new Book.Builder("Stress title " + i, "Stress author")
+                    .genre("benchmark")
+                    .language("EN")
+                    .pageNumbers(100)
+                    .value(10.0)
+                    .build();
+            library.registerNewBook(book, maxThreads);
+            books.add(book);
+        }
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            long nanos = run(library, threads, pairs);
+
+            for (Book book : books) {
+                int quantity = library.getQuantity(book);
+                if (quantity != maxThreads) {
+                    throw new IllegalStateException("Stock of \"" + book.getTitle() + "\" is "
+                            + quantity + ", expected " + maxThreads);
+                }
+            }
+            double opsPerSecond = threads * (double) pairs * 2 / nanos * 1e9;
+            System.out.printf("%2d threads: %,14.0f ops/s, %,d pairs, stock intact%n",
+                    threads, opsPerSecond, (long) threads * pairs);
+        }
+    }
+
+    /**
+     * Runs one round of borrow/return pairs.
+     * @param library the library to use
+     * @param threads the number of threads
+     * @param pairs   the number of pairs per thread
+     * @return the wall-clock duration of the round in nanoseconds
+     * @throws InterruptedException if interrupted while waiting for the workers
+     * @throws IllegalStateException if a worker could not borrow a title; the first
+     *         failure of any worker is rethrown once all workers are done
+     */
+    private static long run(BookLibrary library, int threads, int pairs) throws InterruptedException {
+        String[] titles = new String[TITLES];
+        for (int i = 0; i < TITLES; i++) {
+            titles[i] = "stress title " + i;
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < pairs; i++) {
+                        String title = titles[(i + offset) % TITLES];
+                        if (library.borrowBook(title) != CirculationStatus.BORROWED) {
+                            throw new IllegalStateException("Could not borrow \"" + title + "\"");
+                        }
+                        library.returnBook(title);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            });
+            worker.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return System.nanoTime() - begin;
+    }
+}
@@ -0,0 +1,104 @@
+package benchmark;
+
+import book.Book;
+import bookLibrary.InventoryListener;
+import persistence.CirculationLog;
+import persistence.InventoryStore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares the throughput of quantity changes for each {@link CirculationLog.Durability}
+ * mode against the plain {@link InventoryStore} without a log.
+ * <p>
+ * Several threads send borrow/return deltas for a set of books to the listener under test.
+ * The time includes closing the log, so every queued event has been written and, except
+ * in {@code NONE} mode, synced when the clock stops.
+ * </p>
+ * <p>
+ * Run with {@code java benchmark.CirculationLogBenchmark [threads]}.
+ * </p>
+ */
+public class CirculationLogBenchmark {
+
+    /** Number of books changed by the benchmark. */
+    private static final int BOOKS = 1000;
+
+    /** Number of changes per thread for the modes that do not wait for the disk. */
+    private static final int CHANGES = 500_000;
+
+    /** Number of changes per thread in {@code SYNC} mode, where each change waits for a sync. */
+    private static final int SYNC_CHANGES = 20_000;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        System.out.printf("%-10s %,14.0f changes/s%n", "store", measure(null, threads, CHANGES));
+        for (CirculationLog.Durability durability : CirculationLog.Durability.values()) {
+            int changes = durability == CirculationLog.Durability.SYNC ? SYNC_CHANGES : CHANGES;
+            System.out.printf("%-10s %,14.0f changes/s%n", durability, measure(durability, threads, changes));
+        }
+    }
+
+    /**
+     * Measures one configuration on fresh files.
+     * @param durability the durability of the log, or {@code null} for the store alone
+     * @param threads    the number of threads
+     * @param changes    the number of changes per thread
+     * @return the throughput in changes per second
+     * @throws Exception if the files cannot be used or a worker is interrupted
+     */
+    private static double measure(CirculationLog.Durability durability, int threads, int changes) throws Exception {
+        Path storeFile = Files.createTempFile("inventory", ".db");
+        Path logFile = Files.createTempFile("circulation", ".log");
+        try (InventoryStore store = InventoryStore.open(storeFile)) {
+            CirculationLog log = durability == null ? null : CirculationLog.open(logFile, store, durability);
+            InventoryListener listener = log == null ? store : log;
+
+            List<Book> books = new ArrayList<>();
+            for (int i = 0; i < BOOKS; i++) {
+                Book book = new Book.Builder("Logged title " + i, "Author")
+                        .genre("benchmark").language("EN").pageNumbers(100).value(10.0)
+                        .build();
+                listener.bookRegistered(book, 10);
+                books.add(book);
+            }
+
+            long start = System.nanoTime();
+            run(listener, books, threads, changes);
+            if (log != null) {
+                log.close();
+            }
+            return threads * (double) changes / (System.nanoTime() - start) * 1e9;
+        } finally {
+            Files.deleteIfExists(storeFile);
+            Files.deleteIfExists(logFile);
+        }
+    }
+
+    /**
+     * Sends alternating -1/+1 changes from several threads.
+     * @param listener the listener under test
+     * @param books    the books to change
+     * @param threads  the number of threads
+     * @param changes  the number of changes per thread
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    private static void run(InventoryListener listener, List<Book> books, int threads, int changes)
+            throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int offset = t * 7;
+            new Thread(() -> {
+                for (int i = 0; i < changes; i++) {
+                    listener.quantityChanged(books.get((i + offset) % BOOKS), (i & 1) == 0 ? -1 : 1, 0);
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+    }
+}
@@ -0,0 +1,125 @@
+package benchmark;
+
+import analytics.Demand;
+import analytics.DemandAnalytics;
+import bookLibrary.CirculationStatus;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost and the accuracy of {@link DemandAnalytics}.
+ * <p>
+ * Twenty million borrow attempts of one million titles are replayed over ten simulated
+ * days, with a Zipf-like skew towards popular titles; a third of the attempts find no
+ * copy. The benchmark prints the time per recorded attempt, the memory of the sketches,
+ * the latency of {@link DemandAnalytics#getTopUnmet(int)}, and how many of the true ten
+ * titles with the most unmet attempts of the last seven days it reports, with the error
+ * of their estimates.
+ * </p>
+ */
+public class DemandBenchmark {
+
+    /** Number of titles. */
+    private static final int TITLES = 1_000_000;
+
+    /** Number of attempts replayed. */
+    private static final int ATTEMPTS = 20_000_000;
+
+    /** Number of simulated days. */
+    private static final int DAYS = 10;
+
+    /** Number of days in the window. */
+    private static final int WINDOW = 7;
+
+    /** Number of titles in the top. */
+    private static final int TOP = 10;
+
+    /** Number of timed queries. */
+    private static final int QUERIES = 10_000;
+
+    public static void main(String[] args) {
+        String[] keys = new String[TITLES];
+        for (int i = 0; i < TITLES; i++) {
+            keys[i] = "title " + i;
+            keys[i].hashCode();
+        }
+        Random random = new Random(42);
+        int[] titles = new int[ATTEMPTS];
+        boolean[] unmet = new boolean[ATTEMPTS];
+        for (int i = 0; i < ATTEMPTS; i++) {
+            // the inverse of a power law with exponent close to 1
+            titles[i] = (int) Math.min(TITLES - 1, Math.pow(TITLES, random.nextDouble()) - 1);
+            unmet[i] = random.nextInt(3) == 0;
+        }
+        // the unmet demand of the popular titles moves from day to day
+        int[] shift = new int[DAYS];
+        for (int day = 0; day < DAYS; day++) {
+            shift[day] = random.nextInt(1000);
+        }
+
+        long[] time = {0};
+        long dayMillis = TimeUnit.DAYS.toMillis(1);
+        DemandAnalytics demand = new DemandAnalytics.Builder().windowBuckets(WINDOW).clock(() -> time[0]).build();
+        long[] exact = new long[TITLES];
+        int perDay = ATTEMPTS / DAYS;
+        long nanos = 0;
+        for (int day = 0; day < DAYS; day++) {
+            time[0] = day * dayMillis;
+            long start = System.nanoTime();
+            for (int i = day * perDay; i < (day + 1) * perDay; i++) {
+                int title = (titles[i] + shift[day]) % TITLES;
+                demand.recordAttempt(keys[title], keys[title], null,
+                        unmet[i] ? CirculationStatus.OUT_OF_STOCK : CirculationStatus.BORROWED);
+            }
+            nanos += System.nanoTime() - start;
+            if (day >= DAYS - WINDOW) {
+                for (int i = day * perDay; i < (day + 1) * perDay; i++) {
+                    if (unmet[i]) {
+                        exact[(titles[i] + shift[day]) % TITLES]++;
+                    }
+                }
+            }
+        }
+        // the same loop without recording, to subtract the cost of fetching the titles
+        long baseline = System.nanoTime();
+        long checksum = 0;
+        for (int day = 0; day < DAYS; day++) {
+            for (int i = day * perDay; i < (day + 1) * perDay; i++) {
+                checksum += keys[(titles[i] + shift[day]) % TITLES].hashCode() + (unmet[i] ? 1 : 0);
+            }
+        }
+        baseline = System.nanoTime() - baseline;
+        System.out.printf("record: %.1f ns per attempt, %.1f ns of it fetching the title (%d), %.1f MB of sketches%n",
+                (double) nanos / ATTEMPTS, (double) baseline / ATTEMPTS, checksum & 1, demand.footprintBytes() / 1e6);
+
+        long start = System.nanoTime();
+        List<Demand> top = null;
+        for (int q = 0; q < QUERIES; q++) {
+            top = demand.getTopUnmet(TOP);
+        }
+        System.out.printf("top %d unmet: %.1f us per query%n", TOP, (System.nanoTime() - start) / 1e3 / QUERIES);
+
+        Integer[] order = new Integer[TITLES];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, (a, b) -> Long.compare(exact[b], exact[a]));
+        int found = 0;
+        double error = 0;
+        for (int rank = 0; rank < TOP; rank++) {
+            String key = keys[order[rank]];
+            for (Demand title : top) {
+                if (title.getName().equals(key)) {
+                    found++;
+                    error += (double) (title.getUnmet() - exact[order[rank]]) / exact[order[rank]];
+                }
+            }
+        }
+        System.out.printf("found %d of the true top %d, estimates %.2f%% above the exact counts%n",
+                found, TOP, found == 0 ? 0 : 100 * error / found);
+        for (int rank = 0; rank < 3; rank++) {
+            System.out.println(" " + top.get(rank) + " (exact " + exact[Integer.parseInt(top.get(rank).getName().substring(6))] + ")");
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package benchmark;
+
+import book.Book;
+import bookLibrary.BookLibrary;
+import bookLibrary.CirculationStatus;
+import circulation.CheckoutResult;
+import circulation.Hold;
+import circulation.Loan;
+import circulation.LoanDesk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures hold queues under a burst of reservations of one single-copy title.
+ * <p>
+ * Hot threads repeatedly reserve "Program Joshua", wait for the copy if they were put
+ * in the hold queue, and check it in again, which hands it to the next waiting patron.
+ * Cold threads meanwhile check out and check in copies of their own titles. The
+ * benchmark prints the cold throughput without and with the burst, the share of
+ * copies handed over directly, and the longest wait for the hot copy. Afterwards the
+ * stock of the hot title must be back at its single copy with nobody waiting, or the
+ * run fails with an {@link IllegalStateException}.
+ * </p>
+ * <p>
+ * Run with {@code java benchmark.HoldQueueBenchmark [reservationsPerThread]}.
+ * </p>
+ */
+public class HoldQueueBenchmark {
+
+    /** The single-copy title all hot threads reserve. */
+    private static final String HOT_TITLE = "Program Joshua";
+
+    /** Number of threads reserving the hot title. */
+    private static final int HOT_THREADS = 8;
+
+    /** Number of threads circulating their own titles. */
+    private static final int COLD_THREADS = 2;
+
+    /** Default number of reservations done by each hot thread. */
+    private static final int DEFAULT_RESERVATIONS = 2_000;
+
+    /** Time the cold threads run alone, in milliseconds. */
+    private static final long BASELINE_MILLIS = 2000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int reservations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_RESERVATIONS;
+        BookLibrary library = BookLibrary.BookLibrary();
+        for (int i = 0; i < COLD_THREADS; i++) {
+            library.registerNewBook(new Book.Builder("Hold cold title " + i, "Hold author")
+                    .genre("benchmark").language("EN").pageNumbers(100).value(10).build(), 1);
+        }
+        LoanDesk desk = new LoanDesk.Builder(library).build();
+
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicLong coldOps = new AtomicLong();
+        List<Thread> cold = startCold(desk, stop, coldOps);
+        Thread.sleep(BASELINE_MILLIS);
+        stop.set(true);
+        join(cold);
+        double baseline = coldOps.get() * 1000.0 / BASELINE_MILLIS;
+
+        stop.set(false);
+        coldOps.set(0);
+        AtomicLong handed = new AtomicLong();
+        AtomicLong longestWait = new AtomicLong();
+        CountDownLatch ready = new CountDownLatch(1);
+        List<Thread> hot = new ArrayList<>();
+        for (int t = 0; t < HOT_THREADS; t++) {
+            String patron = "hot-patron-" + t;
+            hot.add(start("hot-" + t, () -> {
+                await(ready);
+                for (int i = 0; i < reservations; i++) {
+                    long start = System.nanoTime();
+                    CheckoutResult result = desk.reserve(patron, HOT_TITLE);
+                    Loan loan = result.getLoan();
+                    Hold hold = result.getHold();
+                    while (loan == null) {
+                        Thread.yield();
+                        loan = hold.getLoan();
+                    }
+                    longestWait.accumulateAndGet(System.nanoTime() - start, Math::max);
+                    if (desk.checkin(loan.getCopyId()) == CirculationStatus.HANDED_TO_HOLD) {
+                        handed.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        cold = startCold(desk, stop, coldOps);
+        long start = System.nanoTime();
+        ready.countDown();
+        join(hot);
+        long nanos = System.nanoTime() - start;
+        stop.set(true);
+        join(cold);
+
+        int stock = library.getQuantity(library.findByTitle(HOT_TITLE));
+        int waiting = desk.getWaitingHolds(HOT_TITLE);
+        if (stock != 1 || waiting != 0 || desk.getActiveLoans() != 0) {
+            throw new IllegalStateException("Stock " + stock + ", " + waiting + " waiting, "
+                    + desk.getActiveLoans() + " loans left");
+        }
+        long loans = (long) HOT_THREADS * reservations;
+        System.out.printf("cold circulation alone %,12.0f ops/s%n", baseline);
+        System.out.printf("cold circulation hot   %,12.0f ops/s%n", coldOps.get() * 1e9 / nanos);
+        System.out.printf("hot title: %,d loans in %,.0f ms, %.1f%% handed to a hold, longest wait %,.2f ms%n",
+                loans, nanos / 1e6, 100.0 * handed.get() / loans, longestWait.get() / 1e6);
+    }
+
+    /**
+     * Starts the cold threads, each circulating its own title until stopped.
+     * @param desk the loan desk
+     * @param stop set to stop the threads
+     * @param ops  counts the checkouts and checkins
+     * @return the started threads
+     */
+    private static List<Thread> startCold(LoanDesk desk, AtomicBoolean stop, AtomicLong ops) {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < COLD_THREADS; t++) {
+            String title = "Hold cold title " + t;
+            String patron = "cold-patron-" + t;
+            threads.add(start("cold-" + t, () -> {
+                long count = 0;
+                while (!stop.get()) {
+                    Loan loan = desk.checkout(patron, title).getLoan();
+                    desk.checkin(loan.getCopyId());
+                    count += 2;
+                }
+                ops.addAndGet(count);
+            }));
+        }
+        return threads;
+    }
+
+    /**
+     * Starts a thread.
+     * @param name the name of the thread
+     * @param task the task to run
+     * @return the started thread
+     */
+    private static Thread start(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Waits for all threads to finish.
+     * @param threads the threads
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static void join(List<Thread> threads) throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * Waits for the start signal.
+     * @param latch the start signal
+     */
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
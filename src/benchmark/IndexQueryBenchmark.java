@@ -0,0 +1,177 @@
+package benchmark;
+
+import book.Book;
+import book.Encyclopedia;
+import book.SpecialBook;
+import bookLibrary.BookLibrary;
+import bookLibrary.TitleNormalizer;
+import catalog.BookIndexes;
+import catalog.BookQuery;
+
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Measures queries over the secondary indexes of the {@link BookLibrary} against a full
+ * scan of the books.
+ * <p>
+ * One million books are registered, spread over 30 genres, 4 languages and 20 000 authors
+ * whose names come in two spellings, with random page counts and values and a third each
+ * of plain books, special books and encyclopedias. For a few combined queries the
+ * benchmark prints the plan, the number of matches and the average latency of the
+ * indexes and of a scan that checks every book, then the estimated heap of the indexes.
+ * </p>
+ * <p>
+ * Run with a large heap, e.g. {@code java -Xmx3g benchmark.IndexQueryBenchmark}.
+ * </p>
+ */
+public class IndexQueryBenchmark {
+
+    /** Number of books in the catalog. */
+    private static final int BOOKS = 1_000_000;
+
+    /** Number of authors. */
+    private static final int AUTHORS = 20_000;
+
+    /** Languages of the books. */
+    private static final String[] LANGUAGES = {"SK", "CZ", "EN", "DE"};
+
+    /** Number of timed runs of each query. */
+    private static final int ROUNDS = 20;
+
+    /** Largest number of books a query returns. */
+    private static final int LIMIT = Integer.MAX_VALUE;
+
+    public static void main(String[] args) {
+        BookLibrary library = BookLibrary.BookLibrary();
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        for (int i = 0; i < BOOKS; i++) {
+            library.registerNewBook(book(random, i), 1 + random.nextInt(3));
+        }
+        System.out.printf("registered %,d books in %.1f s%n", BOOKS, (System.nanoTime() - start) / 1e9);
+
+        List<Case> cases = List.of(
+                new Case(new BookQuery.Builder().language("sk").genre("napinavy").signed(true).valueBetween(0, 20).build(),
+                        book -> is(book.getLanguage(), "sk") && is(book.getGenre(), "napinavy")
+                                && book instanceof SpecialBook special && special.isSigned() && book.getValue() < 20),
+                new Case(new BookQuery.Builder().author("jozef karika 17").build(),
+                        book -> is(book.getAuthor(), "jozef karika 17")),
+                new Case(new BookQuery.Builder().author("JOZEF KARIKA 17").pagesBetween(300, 400).build(),
+                        book -> is(book.getAuthor(), "jozef karika 17")
+                                && book.getPageNumbers() >= 300 && book.getPageNumbers() < 400),
+                new Case(new BookQuery.Builder().genre("zvierata").illustrated(true).language("EN").build(),
+                        book -> is(book.getGenre(), "zvierata") && is(book.getLanguage(), "en")
+                                && book instanceof Encyclopedia encyclopedia && encyclopedia.isIllustration()),
+                new Case(new BookQuery.Builder().valueBetween(90, 95).pagesBetween(100, 200).build(),
+                        book -> book.getValue() >= 90 && book.getValue() < 95
+                                && book.getPageNumbers() >= 100 && book.getPageNumbers() < 200),
+                new Case(new BookQuery.Builder().language("DE").rare(false).build(),
+                        book -> is(book.getLanguage(), "de") && !(book instanceof SpecialBook special && special.isRare())));
+        BookIndexes indexes = library.getIndexes();
+        for (Case query : cases) {
+            int matches = library.findBooks(query.query, LIMIT).size();
+            int scanned = scan(library, query.check);
+            if (matches != scanned) {
+                throw new IllegalStateException("Indexes found " + matches + " books, the scan " + scanned + ".");
+            }
+            double indexMicros = time(() -> library.findBooks(query.query, LIMIT).size());
+            double scanMicros = time(() -> scan(library, query.check));
+            System.out.printf("%-62s %,7d books   index %,10.1f us   scan %,10.1f us%n",
+                    indexes.explain(query.query), matches, indexMicros, scanMicros);
+        }
+        System.out.printf("indexes: %,.1f MB for %,d books (%.0f bytes per book)%n",
+                indexes.footprintBytes() / 1e6, indexes.size(), indexes.footprintBytes() / (double) indexes.size());
+    }
+
+    /**
+     * Times a query after as many warm-up runs.
+     * @param query runs the query and returns the number of matches
+     * @return the average time of one run in microseconds
+     */
+    private static double time(IntSupplier query) {
+        int sink = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            sink += query.getAsInt();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            sink += query.getAsInt();
+        }
+        double micros = (System.nanoTime() - start) / 1e3 / ROUNDS;
+        return sink < 0 ? Double.NaN : micros;
+    }
+
+    /**
+     * Counts the books of a query by checking every book, without the indexes.
+     * @param library the library
+     * @param check   the criteria as a check of the book attributes
+     * @return the number of matching books
+     */
+    private static int scan(BookLibrary library, Predicate<Book> check) {
+        int[] found = new int[1];
+        library.forEachBook((book, quantity) -> {
+            if (check.test(book)) {
+                found[0]++;
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * Compares an attribute with a lower case key the way a scan without indexes has to.
+     * @param value the attribute
+     * @param key   the normalized key
+     * @return {@code true} if the attribute normalizes to the key
+     */
+    private static boolean is(String value, String key) {
+        return value != null && TitleNormalizer.normalize(value).equals(key);
+    }
+
+    /**
+     * Creates a random book.
+     * @param random the random generator
+     * @param i      the number of the book
+     * @return a plain book, special book or encyclopedia
+     */
+    private static Book book(Random random, int i) {
+        String title = "Indexed title " + i;
+        int authorNumber = random.nextInt(AUTHORS);
+        String author = (random.nextBoolean() ? "Jozef Karika " : "Jozef karika ") + authorNumber;
+        String genre = i % 30 == 0 ? "napinavy" : i % 30 == 1 ? "zvierata" : "genre " + i % 30;
+        String language = LANGUAGES[random.nextInt(LANGUAGES.length)];
+        int pages = 50 + random.nextInt(900);
+        double value = Math.round((1 + random.nextDouble() * 99) * 100) / 100.0;
+        return switch (i % 3) {
+            case 0 -> new SpecialBook.Builder(title, author).genre(genre).language(language).pageNumbers(pages)
+                    .signed(random.nextInt(4) == 0).rare(random.nextInt(10) == 0).value(value / 2).build();
+            case 1 -> new Encyclopedia.Builder(title, author).genre(genre).language(language).pageNumbers(pages)
+                    .illustration(random.nextBoolean()).value(value).build();
+            default -> new Book.Builder(title, author).genre(genre).language(language).pageNumbers(pages)
+                    .value(value).build();
+        };
+    }
+
+    /**
+     * A query and the same criteria as a check of a book.
+     */
+    private static final class Case {
+        /** The query for the indexes. */
+        final BookQuery query;
+
+        /** The check for the scan. */
+        final Predicate<Book> check;
+
+        /**
+         * Creates a case.
+         * @param query the query for the indexes
+         * @param check the check for the scan
+         */
+        Case(BookQuery query, Predicate<Book> check) {
+            this.query = query;
+            this.check = check;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package benchmark;
+
+import book.Book;
+import book.Encyclopedia;
+import book.SpecialBook;
+import persistence.InventoryStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the {@link InventoryStore}: writing a catalog, reopening it after a restart
+ * and applying in-place quantity updates.
+ * <p>
+ * For each catalog size a fresh store file is filled with a mix of books, special books
+ * and encyclopedias, flushed and closed. The benchmark then reports the time to reopen
+ * the file and load every book, and the cost of one in-place quantity update.
+ * </p>
+ * <p>
+ * Run with a large heap, e.g. {@code java -Xmx3g benchmark.InventoryStoreBenchmark}.
+ * </p>
+ */
+public class InventoryStoreBenchmark {
+
+    /** Catalog sizes to measure. */
+    private static final int[] SIZES = {100_000, 1_000_000, 2_000_000};
+
+    /** Number of in-place quantity updates per measurement. */
+    private static final int UPDATES = 5_000_000;
+
+    public static void main(String[] args) throws IOException {
+        for (int size : SIZES) {
+            Path file = Files.createTempFile("inventory", ".db");
+            try {
+                measure(file, size);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Writes, reopens and updates a store of the given size.
+     * @param file the store file to use
+     * @param size the number of books
+     * @throws IOException if the store file cannot be used
+     */
+    private static void measure(Path file, int size) throws IOException {
+        long start = System.nanoTime();
+        try (InventoryStore store = InventoryStore.open(file)) {
+            for (int i = 0; i < size; i++) {
+                store.bookRegistered(book(i), 1 + i % 5);
+            }
+        }
+        double writeMillis = (System.nanoTime() - start) / 1e6;
+
+        start = System.nanoTime();
+        Map<Book, Integer> loaded = new HashMap<>(size * 2);
+        try (InventoryStore store = InventoryStore.open(file)) {
+            store.load((book, quantity, registered) -> loaded.put(book, quantity));
+            double loadMillis = (System.nanoTime() - start) / 1e6;
+
+            List<Book> books = new ArrayList<>(loaded.keySet());
+            start = System.nanoTime();
+            for (int i = 0; i < UPDATES; i++) {
+                store.quantityChanged(books.get(i % books.size()), (i & 1) == 0 ? -1 : 1, 0);
+            }
+            double updateNanos = (System.nanoTime() - start) / (double) UPDATES;
+
+            System.out.printf("%,10d books (%,d KB): write %,8.1f ms   reopen+load %,8.1f ms   update %,6.1f ns%n",
+                    size, Files.size(file) / 1024, writeMillis, loadMillis, updateNanos);
+        }
+    }
+
+    /**
+     * Creates the synthetic book with the given number.
+     * @param n the book number
+     * @return a book, special book or encyclopedia
+     */
+    private static Book book(int n) {
+        String title = "Stored title " + n;
+        String author = "Author " + n % 5000;
+        switch (n % 3) {
+            case 0:
+                return new SpecialBook.Builder(title, author).genre("genre " + n % 40).language("SK")
+                        .pageNumbers(100 + n % 500).value(9.99 + n % 20).signed(n % 2 == 0).rare(n % 7 == 0)
+                        .build();
+            case 1:
+                return new Encyclopedia.Builder(title, author).genre("genre " + n % 40).language("EN")
+                        .pageNumbers(100 + n % 500).value(19.99).illustration(n % 2 == 0)
+                        .build();
+            default:
+                return new Book.Builder(title, author).genre("genre " + n % 40).language("CZ")
+                        .pageNumbers(100 + n % 500).value(12.50)
+                        .build();
+        }
+    }
+}
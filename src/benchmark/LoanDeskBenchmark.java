@@ -0,0 +1,161 @@
+package benchmark;
+
+import book.Book;
+import bookLibrary.BookLibrary;
+import bookLibrary.CirculationStatus;
+import circulation.Loan;
+import circulation.LoanDesk;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Random;
+
+/**
+ * Measures the {@link LoanDesk} with millions of active loans.
+ * <p>
+ * 100 000 books with 30 copies each are registered, and 2 000 000 copies are lent to
+ * 200 000 patrons over about half an hour. The benchmark times checkouts, lookups by
+ * copy and by patron, the overdue check after the clock jumps past the due time of
+ * part of the loans, a full scan of the loans for comparison, and checkins. The scan also
+ * counts the loans due in the current minute, which the timer wheel reports a tick later.
+ * </p>
+ * <p>
+ * Run with a large heap, e.g. {@code java -Xmx3g benchmark.LoanDeskBenchmark}.
+ * </p>
+ */
+public class LoanDeskBenchmark {
+
+    /** Number of books registered. */
+    private static final int BOOKS = 100_000;
+
+    /** Number of copies of every book. */
+    private static final int COPIES = 30;
+
+    /** Number of loans made. */
+    private static final int LOANS = 2_000_000;
+
+    /** Number of patrons borrowing. */
+    private static final int PATRONS = 200_000;
+
+    /** Number of timed lookups. */
+    private static final int LOOKUPS = 1_000_000;
+
+    /** The loan period. */
+    private static final Duration LOAN_PERIOD = Duration.ofDays(21);
+
+    public static void main(String[] args) {
+        BookLibrary library = BookLibrary.BookLibrary();
+        for (int i = 0; i < BOOKS; i++) {
+            library.registerNewBook(new Book.Builder("Loan title " + i, "Author " + i % 5000)
+                    .genre("benchmark").language("SK").pageNumbers(200).value(10).build(), COPIES);
+        }
+        ManualClock clock = new ManualClock(Instant.parse("2024-01-01T00:00:00Z").toEpochMilli());
+        LoanDesk desk = new LoanDesk.Builder(library).loanPeriod(LOAN_PERIOD).clock(clock).build();
+        Random random = new Random(42);
+
+        long[] copyIds = new long[LOANS];
+        long start = System.nanoTime();
+        for (int i = 0; i < LOANS; i++) {
+            if (i % 1000 == 0) {
+                clock.advance(1000);
+            }
+            Loan loan = desk.checkout("patron-" + random.nextInt(PATRONS), "Loan title " + random.nextInt(BOOKS)).getLoan();
+            copyIds[i] = loan == null ? -1 : loan.getCopyId();
+        }
+        double checkoutMicros = (System.nanoTime() - start) / 1e3 / LOANS;
+        System.out.printf("%,d active loans, checkout %,.2f us%n", desk.getActiveLoans(), checkoutMicros);
+
+        long sink = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            Loan loan = desk.getLoan(copyIds[random.nextInt(LOANS)]);
+            sink += loan == null ? 0 : loan.getCopyNumber();
+        }
+        double copyMicros = (System.nanoTime() - start) / 1e3 / LOOKUPS;
+        start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            sink += desk.getLoans("patron-" + random.nextInt(PATRONS)).size();
+        }
+        double patronMicros = (System.nanoTime() - start) / 1e3 / LOOKUPS;
+        System.out.printf("lookup by copy %,.3f us   by patron %,.3f us%n", copyMicros, patronMicros);
+
+        clock.advance(LOAN_PERIOD.toMillis() - 20 * 60_000);
+        Instant now = Instant.ofEpochMilli(clock.millis());
+        start = System.nanoTime();
+        int overdue = desk.checkOverdue();
+        double wheelMillis = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        int scanned = 0;
+        for (long copyId : copyIds) {
+            Loan loan = desk.getLoan(copyId);
+            if (loan != null && loan.isOverdue(now)) {
+                scanned++;
+            }
+        }
+        double scanMillis = (System.nanoTime() - start) / 1e6;
+        System.out.printf("overdue check %,d loans in %,.2f ms (full scan found %,d in %,.2f ms)%n",
+                overdue, wheelMillis, scanned, scanMillis);
+        clock.advance(60_000);
+        start = System.nanoTime();
+        overdue = desk.checkOverdue();
+        System.out.printf("next minute: %,d more loans in %,.3f ms%n", overdue, (System.nanoTime() - start) / 1e6);
+
+        int returned = 0;
+        start = System.nanoTime();
+        for (long copyId : copyIds) {
+            if (desk.checkin(copyId) == CirculationStatus.RETURNED) {
+                returned++;
+            }
+        }
+        double checkinMicros = (System.nanoTime() - start) / 1e3 / LOANS;
+        System.out.printf("%,d checkins %,.2f us, second checkin of a copy: %s, %,d overdue left%n",
+                returned, checkinMicros, desk.checkin(copyIds[0]), desk.getOverdueLoans().size() + (sink < 0 ? 1 : 0));
+    }
+
+    /**
+     * Clock moved forward by the benchmark.
+     */
+    private static final class ManualClock extends Clock {
+        /** The current time in epoch milliseconds. */
+        private volatile long millis;
+
+        /**
+         * Creates a clock.
+         * @param millis the start time in epoch milliseconds
+         */
+        ManualClock(long millis) {
+            this.millis = millis;
+        }
+
+        /**
+         * Moves the clock forward.
+         * @param delta the time to add in milliseconds
+         */
+        void advance(long delta) {
+            millis += delta;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package benchmark;
+
+import book.Book;
+import catalog.BookIndexes;
+import recommend.Recommender;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the {@link Recommender} on a catalog of millions of titles.
+ * <p>
+ * Two million books are indexed, grouped in shelves of 20 consecutive books by the same
+ * author and genre. Ten million borrows are recorded for 500 000 patrons: a patron visits
+ * a shelf, picked with a skew towards popular shelves, and borrows a few of its books,
+ * with one borrow in ten of a random book. The benchmark prints the time per recorded
+ * borrow, the share of co-borrowed recommendations from the same shelf, the latency of
+ * {@link Recommender#related(Book, int)} for borrowed and never borrowed books, and the
+ * size of the matrix after each million borrows, which stays bounded.
+ * </p>
+ * <p>
+ * Run with a large heap, e.g. {@code java -Xmx3g benchmark.RecommenderBenchmark}.
+ * </p>
+ */
+public class RecommenderBenchmark {
+
+    /** Number of books in the catalog. */
+    private static final int BOOKS = 2_000_000;
+
+    /** Number of books per shelf. */
+    private static final int SHELF = 20;
+
+    /** Number of patrons. */
+    private static final int PATRONS = 500_000;
+
+    /** Number of borrows recorded. */
+    private static final int BORROWS = 10_000_000;
+
+    /** Number of books recommended per query. */
+    private static final int K = 10;
+
+    /** Number of timed queries. */
+    private static final int QUERIES = 200_000;
+
+    public static void main(String[] args) {
+        BookIndexes indexes = new BookIndexes();
+        Book[] books = new Book[BOOKS];
+        for (int i = 0; i < BOOKS; i++) {
+            int shelf = i / SHELF;
+            books[i] = new Book.Builder("Title " + i, "Author " + shelf)
+                    .genre("Genre " + shelf % 500).language(shelf % 2 == 0 ? "SK" : "EN").pageNumbers(100).value(10).build();
+            indexes.bookRegistered(books[i], 1);
+        }
+        Recommender recommender = new Recommender.Builder(indexes).build();
+        Random random = new Random(42);
+        String[] patronIds = new String[PATRONS];
+        for (int i = 0; i < PATRONS; i++) {
+            patronIds[i] = "patron-" + i;
+        }
+
+        int shelves = BOOKS / SHELF;
+        long recordNanos = 0;
+        for (int done = 0; done < BORROWS; ) {
+            String patron = patronIds[random.nextInt(PATRONS)];
+            // squaring a uniform number skews the visits towards the first shelves
+            double u = random.nextDouble();
+            int shelf = (int) (u * u * u * shelves);
+            int visit = 2 + random.nextInt(5);
+            long start = System.nanoTime();
+            for (int i = 0; i < visit; i++) {
+                int book = random.nextInt(10) == 0 ? random.nextInt(BOOKS) : shelf * SHELF + random.nextInt(SHELF);
+                recommender.recordBorrow(patron, books[book]);
+            }
+            recordNanos += System.nanoTime() - start;
+            int before = done;
+            done += visit;
+            if (done / 1_000_000 != before / 1_000_000) {
+                System.out.printf("%,d borrows: %,d books, %,d entries, %.1f MB%n", done,
+                        recommender.size(), recommender.getEntries(), recommender.footprintBytes() / 1e6);
+            }
+        }
+        System.out.printf("record: %.0f ns per borrow%n", (double) recordNanos / BORROWS);
+
+        int sameShelf = 0;
+        int coBorrowed = 0;
+        long start = System.nanoTime();
+        for (int q = 0; q < QUERIES; q++) {
+            double u = random.nextDouble();
+            int book = (int) (u * u * u * shelves) * SHELF + random.nextInt(SHELF);
+            List<Book> related = recommender.related(books[book], K);
+            for (Book other : related) {
+                String author = books[book].getAuthor();
+                if (other.getAuthor().equals(author)) {
+                    sameShelf++;
+                }
+                coBorrowed++;
+            }
+        }
+        long warmNanos = System.nanoTime() - start;
+        System.out.printf("related, borrowed books: %.2f us per query, %.0f%% from the same shelf%n",
+                warmNanos / 1e3 / QUERIES, 100.0 * sameShelf / coBorrowed);
+
+        int coldQueries = QUERIES / 10;
+        start = System.nanoTime();
+        int coldFound = 0;
+        for (int q = 0; q < coldQueries; q++) {
+            // the last shelves are almost never visited
+            coldFound += recommender.related(books[BOOKS - 1 - random.nextInt(SHELF * 100)], K).size();
+        }
+        System.out.printf("related, cold books: %.2f us per query, %.1f books%n",
+                (System.nanoTime() - start) / 1e3 / coldQueries, (double) coldFound / coldQueries);
+    }
+}
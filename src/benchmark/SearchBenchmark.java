@@ -0,0 +1,127 @@
+package benchmark;
+
+import book.Book;
+import bookLibrary.BookLibrary;
+import search.BookSearch;
+
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Measures autocomplete and typo-tolerant search over the {@link BookLibrary}.
+ * <p>
+ * The catalog is grown to 10 000, 100 000 and 1 000 000 books with titles of two to four
+ * made-up words of random syllables. At each size the benchmark times completing the first few letters of
+ * random titles, and finding random titles with one letter changed.
+ * </p>
+ * <p>
+ * Run with a large heap, e.g. {@code java -Xmx3g benchmark.SearchBenchmark}.
+ * </p>
+ */
+public class SearchBenchmark {
+
+    /** Catalog sizes to measure. */
+    private static final int[] SIZES = {10_000, 100_000, 1_000_000};
+
+    /** Number of queries per measurement. */
+    private static final int QUERIES = 20_000;
+
+    /** Number of results per query. */
+    private static final int LIMIT = 10;
+
+    /** Consonants of the made-up words. */
+    private static final String CONSONANTS = "bcdfghjklmnprstvz";
+
+    /** Vowels of the made-up words. */
+    private static final String VOWELS = "aeiouy";
+
+    public static void main(String[] args) {
+        BookLibrary library = BookLibrary.BookLibrary();
+        BookSearch search = library.getSearch();
+        Random random = new Random(42);
+        String[] titles = new String[SIZES[SIZES.length - 1]];
+
+        int registered = 0;
+        for (int size : SIZES) {
+            int previous = registered;
+            long start = System.nanoTime();
+            for (; registered < size; registered++) {
+                titles[registered] = phrase(random, 2 + random.nextInt(3));
+                library.registerNewBook(new Book.Builder(titles[registered], phrase(random, 2))
+                        .genre("benchmark").language("SK").pageNumbers(200).value(10).build(), 1);
+            }
+            double registerMicros = (System.nanoTime() - start) / 1e3 / (size - previous);
+
+            double prefixMicros = time(random, size, titles, title -> search.complete(title.substring(0, Math.min(5, title.length())), LIMIT));
+            double[] hits = new double[1];
+            double typoMicros = time(random, size, titles, title -> {
+                List<Book> found = search.findSimilar(typo(random, title), LIMIT);
+                if (!found.isEmpty() && found.get(0).getTitle().equals(title)) {
+                    hits[0]++;
+                }
+                return found;
+            });
+            System.out.printf("%,10d books: register %,8.2f us   prefix %,8.2f us   typo %,8.2f us (%.0f%% found first)%n",
+                    size, registerMicros, prefixMicros, typoMicros, 100 * hits[0] / (2.0 * QUERIES));
+        }
+    }
+
+    /**
+     * Times queries for random titles after a warm-up of as many queries.
+     * @param random the random generator
+     * @param count  the number of titles to pick from
+     * @param titles the titles
+     * @param query  the query to run for a title
+     * @return the average time of one query in microseconds
+     */
+    private static double time(Random random, int count, String[] titles, Function<String, List<Book>> query) {
+        int sink = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            sink += query.apply(titles[random.nextInt(count)]).size();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            sink += query.apply(titles[random.nextInt(count)]).size();
+        }
+        double micros = (System.nanoTime() - start) / 1e3 / QUERIES;
+        return sink < 0 ? Double.NaN : micros;
+    }
+
+    /**
+     * Changes one letter of a title.
+     * @param random the random generator
+     * @param title  the title
+     * @return the misspelled title
+     */
+    private static String typo(Random random, String title) {
+        char[] chars = title.toCharArray();
+        chars[random.nextInt(chars.length)] = (char) ('a' + random.nextInt(26));
+        return new String(chars);
+    }
+
+    /**
+     * Creates a phrase of made-up words.
+     * @param random the random generator
+     * @param words  the number of words
+     * @return the phrase
+     */
+    private static String phrase(Random random, int words) {
+        StringBuilder phrase = new StringBuilder();
+        for (int w = 0; w < words; w++) {
+            if (w > 0) {
+                phrase.append(' ');
+            }
+            int syllables = 2 + random.nextInt(2);
+            for (int s = 0; s < syllables; s++) {
+                phrase.append(CONSONANTS.charAt(random.nextInt(CONSONANTS.length())));
+                phrase.append(VOWELS.charAt(random.nextInt(VOWELS.length())));
+                if (random.nextInt(3) == 0) {
+                    phrase.append(CONSONANTS.charAt(random.nextInt(CONSONANTS.length())));
+                }
+            }
+        }
+        phrase.setCharAt(0, Character.toUpperCase(phrase.charAt(0)));
+        return phrase.toString();
+    }
+}
@@ -0,0 +1,351 @@
+package benchmark;
+
+import bookLibrary.BookLibrary;
+import server.LibraryServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Load generator for the {@link LibraryServer}, reporting latency percentiles.
+ * <p>
+ * Opens many keep-alive connections from a few non-blocking client threads. Every
+ * client repeatedly sends a borrow and a return of a random title as two pipelined
+ * requests in one write and sends the next pair as soon as both responses arrived.
+ * After a warm-up, the time from sending a pair to receiving each response is recorded
+ * in a histogram of microseconds, and the throughput and latency percentiles are printed.
+ * </p>
+ * <p>
+ * The titles borrowed are registered through the server first. Without a host the
+ * benchmark starts a server in the same JVM on a free port; every client then needs two
+ * file descriptors, so raise the limit first or run the server in its own process:
+ * {@code java server.LibraryServer 8080} and
+ * {@code java benchmark.ServerLoadBenchmark [clients] [seconds] [host port]}.
+ * </p>
+ */
+public class ServerLoadBenchmark {
+
+    /** Default number of concurrent clients. */
+    private static final int DEFAULT_CLIENTS = 10_000;
+
+    /** Default length of the measurement in seconds. */
+    private static final int DEFAULT_SECONDS = 10;
+
+    /** Length of the warm-up in seconds. */
+    private static final int WARMUP_SECONDS = 3;
+
+    /** Number of titles borrowed and returned. */
+    private static final int TITLES = 1000;
+
+    /** Largest latency recorded exactly, in microseconds; slower responses share the last bucket. */
+    private static final int MAX_MICROS = 1_000_000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CLIENTS;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+        LibraryServer server = null;
+        InetSocketAddress address;
+        if (args.length > 3) {
+            address = new InetSocketAddress(args[2], Integer.parseInt(args[3]));
+        } else {
+            server = new LibraryServer.Builder(BookLibrary.BookLibrary()).port(0).build();
+            server.start();
+            address = new InetSocketAddress("localhost", server.getPort());
+        }
+        registerTitles(address);
+
+        int threads = Math.max(1, Math.min(clients, Runtime.getRuntime().availableProcessors() / 2));
+        List<ClientLoop> loops = new ArrayList<>();
+        List<Thread> running = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            ClientLoop loop = new ClientLoop(address, clients / threads + (t < clients % threads ? 1 : 0), t);
+            loops.add(loop);
+            Thread thread = new Thread(loop, "load-client-" + t);
+            thread.start();
+            running.add(thread);
+        }
+
+        Thread.sleep(WARMUP_SECONDS * 1000L);
+        for (ClientLoop loop : loops) {
+            loop.recording = true;
+        }
+        long start = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        for (ClientLoop loop : loops) {
+            loop.recording = false;
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        for (ClientLoop loop : loops) {
+            loop.stopped = true;
+            loop.selector.wakeup();
+        }
+        for (Thread thread : running) {
+            thread.join();
+        }
+        if (server != null) {
+            server.close();
+        }
+
+        long[] histogram = new long[MAX_MICROS + 1];
+        long responses = 0;
+        long errors = 0;
+        int connected = 0;
+        for (ClientLoop loop : loops) {
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] += loop.histogram[i];
+            }
+            responses += loop.responses;
+            errors += loop.errors;
+            connected += loop.connected;
+        }
+        System.out.printf("%,d clients connected, %,d responses in %.1f s: %,.0f requests/s, %,d errors%n",
+                connected, responses, elapsed, responses / elapsed, errors);
+        System.out.printf("latency p50 %,.2f ms   p90 %,.2f ms   p99 %,.2f ms   p99.9 %,.2f ms   max %,.2f ms%n",
+                percentile(histogram, responses, 0.5), percentile(histogram, responses, 0.9),
+                percentile(histogram, responses, 0.99), percentile(histogram, responses, 0.999),
+                percentile(histogram, responses, 1.0));
+    }
+
+    /**
+     * Registers the titles of the benchmark through the server, as pipelined requests on
+     * one connection.
+     * @param address the server address
+     * @throws IOException if the connection fails
+     */
+    private static void registerTitles(InetSocketAddress address) throws IOException {
+        StringBuilder requests = new StringBuilder();
+        for (int i = 0; i < TITLES; i++) {
+            String book = "{\"title\":\"Load title " + i + "\",\"author\":\"Load author\",\"genre\":\"benchmark\","
+                    + "\"language\":\"EN\",\"pages\":100,\"value\":10,\"quantity\":1000000}";
+            requests.append("POST /books HTTP/1.1\r\nHost: library\r\nContent-Length: ").append(book.length())
+                    .append(i == TITLES - 1 ? "\r\nConnection: close" : "").append("\r\n\r\n").append(book);
+        }
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            ByteBuffer out = StandardCharsets.US_ASCII.encode(requests.toString());
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+            while (channel.read(in) >= 0) {
+                in.clear();
+            }
+        }
+    }
+
+    /**
+     * Reads a percentile from a histogram of microseconds.
+     * @param histogram the number of responses by latency in microseconds
+     * @param total     the number of responses
+     * @param fraction  the percentile as a fraction, e.g. 0.99
+     * @return the latency in milliseconds
+     */
+    private static double percentile(long[] histogram, long total, double fraction) {
+        long rank = Math.max(1, (long) Math.ceil(total * fraction));
+        long seen = 0;
+        for (int micros = 0; micros < histogram.length; micros++) {
+            seen += histogram[micros];
+            if (seen >= rank) {
+                return micros / 1000.0;
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * A client thread driving many connections through one selector.
+     */
+    private static final class ClientLoop implements Runnable {
+        /** The server address. */
+        private final InetSocketAddress address;
+
+        /** Number of connections of this thread. */
+        private final int clients;
+
+        /** Chooses the titles. */
+        private final Random random;
+
+        /** The selector of the connections. */
+        final Selector selector;
+
+        /** Number of responses by latency in microseconds. */
+        final long[] histogram = new long[MAX_MICROS + 1];
+
+        /** Whether responses are recorded. */
+        volatile boolean recording;
+
+        /** Set to stop the thread. */
+        volatile boolean stopped;
+
+        /** Number of responses recorded. */
+        long responses;
+
+        /** Number of recorded responses with an error status. */
+        long errors;
+
+        /** Number of connections established. */
+        int connected;
+
+        /**
+         * Creates a client thread.
+         * @param address the server address
+         * @param clients the number of connections
+         * @param seed    the seed of the title choice
+         * @throws IOException if the selector cannot be opened
+         */
+        ClientLoop(InetSocketAddress address, int clients, int seed) throws IOException {
+            this.address = address;
+            this.clients = clients;
+            this.random = new Random(seed);
+            this.selector = Selector.open();
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < clients; i++) {
+                    SocketChannel channel = SocketChannel.open();
+                    channel.configureBlocking(false);
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    channel.connect(address);
+                    channel.register(selector, SelectionKey.OP_CONNECT, new Client());
+                }
+                while (!stopped) {
+                    selector.select();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        serve(key);
+                    }
+                }
+                for (SelectionKey key : selector.keys()) {
+                    key.channel().close();
+                }
+                selector.close();
+            } catch (IOException e) {
+                System.err.println("Load client failed: " + e.getMessage());
+            }
+        }
+
+        /**
+         * Serves a ready connection.
+         * @param key the selection key of the connection
+         * @throws IOException if the selector fails
+         */
+        private void serve(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            Client client = (Client) key.attachment();
+            try {
+                if (key.isConnectable()) {
+                    channel.finishConnect();
+                    connected++;
+                    key.interestOps(SelectionKey.OP_READ);
+                    send(channel, client);
+                } else if (key.isReadable()) {
+                    if (channel.read(client.in) < 0) {
+                        throw new IOException("Connection closed by the server.");
+                    }
+                    receive(channel, client);
+                }
+            } catch (IOException e) {
+                key.cancel();
+                channel.close();
+            }
+        }
+
+        /**
+         * Sends a pipelined borrow and return of a random title.
+         * @param channel the socket
+         * @param client  the state of the connection
+         * @throws IOException if the socket fails
+         */
+        private void send(SocketChannel channel, Client client) throws IOException {
+            String title = "Load%20title%20" + random.nextInt(TITLES);
+            byte[] requests = ("POST /borrow?title=" + title + " HTTP/1.1\r\nHost: library\r\n\r\n"
+                    + "POST /return?title=" + title + " HTTP/1.1\r\nHost: library\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            ByteBuffer out = ByteBuffer.wrap(requests);
+            client.sentAt = System.nanoTime();
+            client.pending = 2;
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+
+        /**
+         * Consumes the complete responses received and sends the next pair when both arrived.
+         * @param channel the socket
+         * @param client  the state of the connection
+         * @throws IOException if the socket fails
+         */
+        private void receive(SocketChannel channel, Client client) throws IOException {
+            ByteBuffer in = client.in;
+            in.flip();
+            while (true) {
+                int length = responseLength(in);
+                if (length < 0) {
+                    break;
+                }
+                if (recording) {
+                    long micros = (System.nanoTime() - client.sentAt) / 1000;
+                    histogram[(int) Math.min(micros, MAX_MICROS)]++;
+                    responses++;
+                    if (in.get(in.position() + 9) != '2') {
+                        errors++;
+                    }
+                }
+                in.position(in.position() + length);
+                client.pending--;
+            }
+            in.compact();
+            if (client.pending == 0 && !stopped) {
+                send(channel, client);
+            }
+        }
+
+        /**
+         * Returns the length of the complete response at the position of the buffer.
+         * @param in the received bytes in read mode
+         * @return the length of the response, or -1 if it is not complete yet
+         */
+        private static int responseLength(ByteBuffer in) {
+            int start = in.position();
+            int end = in.limit();
+            for (int i = start; i + 3 < end; i++) {
+                if (in.get(i) == '\r' && in.get(i + 1) == '\n' && in.get(i + 2) == '\r' && in.get(i + 3) == '\n') {
+                    String head = StandardCharsets.US_ASCII.decode(in.slice(start, i - start)).toString();
+                    int header = head.indexOf("Content-Length: ");
+                    int lineEnd = head.indexOf('\r', header);
+                    int body = Integer.parseInt(head.substring(header + 16, lineEnd < 0 ? head.length() : lineEnd));
+                    int length = i + 4 - start + body;
+                    return end - start >= length ? length : -1;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * State of one client connection.
+     */
+    private static final class Client {
+        /** Received bytes, in write mode. */
+        final ByteBuffer in = ByteBuffer.allocate(2048);
+
+        /** Time the last pair of requests was sent. */
+        long sentAt;
+
+        /** Number of responses of the last pair not yet received. */
+        int pending;
+    }
+}
@@ -0,0 +1,201 @@
+package benchmark;
+
+import book.Book;
+import branch.Branch;
+import branch.LocalBranch;
+import branch.RemoteBranch;
+import branch.ShardedLibrary;
+import bookLibrary.CirculationStatus;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Throughput benchmark for the {@link ShardedLibrary}.
+ * <p>
+ * Without arguments, the benchmark builds libraries of 1, 2, 4, ... local branches, up to
+ * the number of available processors (at least 4), and runs one thread per branch. Every
+ * thread borrows and returns the titles of its own branch, then borrows titles homed at
+ * the next branch, where they are out of stock, so each borrow is routed to the nearest
+ * branch holding a copy. The stock of every branch is checked after each round.
+ * </p>
+ * <p>
+ * With {@code host:port} arguments, each naming a running {@link server.LibraryServer},
+ * the branches are those servers: the benchmark registers two copies of a title at the
+ * last branch, transfers one to the first, and measures borrowing both from the first
+ * branch, the second copy being routed to the last branch over loopback HTTP.
+ * </p>
+ * <p>
+ * Run with {@code java benchmark.ShardedLibraryBenchmark [host:port ...]}.
+ * </p>
+ */
+public class ShardedLibraryBenchmark {
+
+    /** Number of titles homed at every branch. */
+    private static final int TITLES = 64;
+
+    /** Number of borrow/return pairs done by each thread on its own branch. */
+    private static final int LOCAL_PAIRS = 2_000_000;
+
+    /** Number of routed borrow/return pairs done by each thread. */
+    private static final int ROUTED_PAIRS = 500_000;
+
+    /** Number of borrow/return pairs done against remote branches. */
+    private static final int REMOTE_PAIRS = 20_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length > 0) {
+            runRemote(args);
+            return;
+        }
+        int maxBranches = Math.max(4, Runtime.getRuntime().availableProcessors());
+        for (int count = 1; count <= maxBranches; count *= 2) {
+            ShardedLibrary library = build(count);
+            long local = run(library, count, false);
+            long routed = run(library, count, true);
+            for (Branch branch : library.getBranches()) {
+                for (int i = 0; i < TITLES; i++) {
+                    int quantity = branch.getQuantity(title(branch.getName(), i));
+                    if (quantity != 1) {
+                        throw new IllegalStateException("Stock of " + title(branch.getName(), i)
+                                + " is " + quantity + ", expected 1");
+                    }
+                }
+            }
+            System.out.printf("%2d branches: %,14.0f local ops/s, %,12.0f routed ops/s, stock intact%n",
+                    count, count * (double) LOCAL_PAIRS * 2 / local * 1e9,
+                    count * (double) ROUTED_PAIRS * 2 / routed * 1e9);
+        }
+    }
+
+    /**
+     * Builds a library of local branches on a line, each carrying one copy of its titles.
+     * @param count the number of branches
+     * @return the library
+     */
+    private static ShardedLibrary build(int count) {
+        ShardedLibrary.Builder builder = new ShardedLibrary.Builder();
+        for (int b = 0; b < count; b++) {
+            builder.addBranch(new LocalBranch("Branch " + b), b, 0);
+        }
+        ShardedLibrary library = builder.build();
+        for (int b = 0; b < count; b++) {
+            for (int i = 0; i < TITLES; i++) {
+                library.registerNewBook(book(title("Branch " + b, i)), 1, "Branch " + b);
+            }
+        }
+        return library;
+    }
+
+    /**
+     * Runs one round with one thread per branch.
+     * @param library the library
+     * @param count   the number of branches
+     * @param routed  {@code false} to borrow the titles of the own branch, {@code true} to
+     *                borrow the titles of the next branch from the own one
+     * @return the wall-clock duration of the round in nanoseconds
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    private static long run(ShardedLibrary library, int count, boolean routed) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(count);
+        for (int b = 0; b < count; b++) {
+            String from = "Branch " + b;
+            String home = routed ? "Branch " + (b + 1) % count : from;
+            int pairs = routed ? ROUTED_PAIRS : LOCAL_PAIRS;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < pairs; i++) {
+                    String title = title(home, i % TITLES);
+                    ShardedLibrary.RoutedLoan loan = library.borrowBook(title, from);
+                    if (loan.getStatus() != CirculationStatus.BORROWED) {
+                        throw new IllegalStateException("Could not borrow \"" + title + "\": " + loan);
+                    }
+                    loan.getBranch().returnBook(title);
+                }
+                done.countDown();
+            });
+            worker.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        return System.nanoTime() - begin;
+    }
+
+    /**
+     * Measures a library of remote branches.
+     * @param addresses the {@code host:port} of every branch server
+     */
+    private static void runRemote(String[] addresses) {
+        ShardedLibrary.Builder builder = new ShardedLibrary.Builder();
+        for (int b = 0; b < addresses.length; b++) {
+            int colon = addresses[b].lastIndexOf(':');
+            InetSocketAddress address = new InetSocketAddress(addresses[b].substring(0, colon),
+                    Integer.parseInt(addresses[b].substring(colon + 1)));
+            builder.addBranch(new RemoteBranch("Branch " + b, address), b, 0);
+        }
+        ShardedLibrary library = builder.build();
+        String first = "Branch 0";
+        String last = "Branch " + (addresses.length - 1);
+        String title = title(last, (int) (System.nanoTime() & 0xffff));
+        library.registerNewBook(book(title), 2, last);
+        if (addresses.length > 1 && !library.transfer(title, last, first, 1)) {
+            throw new IllegalStateException("Could not transfer \"" + title + "\"");
+        }
+        Map<String, Integer> availability = library.getAvailability(title);
+        System.out.println("Availability of \"" + title + "\": " + availability);
+
+        for (int round = 0; round < 2; round++) {
+            long begin = System.nanoTime();
+            for (int i = 0; i < REMOTE_PAIRS; i++) {
+                ShardedLibrary.RoutedLoan near = library.borrowBook(title, first);
+                ShardedLibrary.RoutedLoan routed = library.borrowBook(title, first);
+                if (near.getStatus() != CirculationStatus.BORROWED || routed.getStatus() != CirculationStatus.BORROWED) {
+                    throw new IllegalStateException("Could not borrow \"" + title + "\": " + near + ", " + routed);
+                }
+                near.getBranch().returnBook(title);
+                routed.getBranch().returnBook(title);
+            }
+            long nanos = System.nanoTime() - begin;
+            System.out.printf("%s: %,d times two borrows, the second routed, and two returns: %,.1f us per round%n",
+                    round == 0 ? "warm-up" : "measured", REMOTE_PAIRS, nanos / 1e3 / REMOTE_PAIRS);
+        }
+        if (!library.getAvailability(title).equals(availability)) {
+            throw new IllegalStateException("Stock changed: " + library.getAvailability(title));
+        }
+        for (Branch branch : library.getBranches()) {
+            ((RemoteBranch) branch).close();
+        }
+    }
+
+    /**
+     * Returns the title of a book homed at a branch.
+     * @param branch the name of the branch
+     * @param index  the index of the title
+     * @return the title
+     */
+    private static String title(String branch, int index) {
+        return branch + " title " + index;
+    }
+
+    /**
+     * Creates a book.
+     * @param title the title
+     * @return the book
+     */
+    private static Book book(String title) {
+        return new Book.Builder(title, "Sharded author")
+                .genre("benchmark")
+                .language("EN")
+                .pageNumbers(100)
+                .value(10.0)
+                .build();
+    }
+}
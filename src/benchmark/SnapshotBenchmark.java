@@ -0,0 +1,277 @@
+package benchmark;
+
+import book.Book;
+import book.Encyclopedia;
+import book.SpecialBook;
+import importer.CatalogImporter;
+import importer.JsonRowReader;
+import persistence.SnapshotReader;
+import persistence.SnapshotWriter;
+import server.Json;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Compares the size and speed of catalog snapshots with Java serialization and JSON Lines.
+ * <p>
+ * For each catalog size the same mix of books, special books and encyclopedias is
+ * written to a temporary file and read back in three formats:
+ * <ul>
+ *     <li>the binary format of {@link SnapshotWriter} and {@link SnapshotReader},</li>
+ *     <li>Java serialization of one object per book holding its fields and quantity,
+ *     since the books themselves are not serializable,</li>
+ *     <li>JSON Lines with the columns of a {@link CatalogImporter} feed, read back by the
+ *     {@link JsonRowReader}.</li>
+ * </ul>
+ * Every round reads back the total quantity as a check. The best of
+ * {@value #ROUNDS} rounds is reported.
+ * </p>
+ * <p>
+ * Run with a large heap, e.g. {@code java -Xmx3g benchmark.SnapshotBenchmark}.
+ * </p>
+ */
+public class SnapshotBenchmark {
+
+    /** Catalog sizes to measure. */
+    private static final int[] SIZES = {100_000, 1_000_000};
+
+    /** Number of rounds per format and size. */
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        for (int size : SIZES) {
+            Book[] books = new Book[size];
+            long expected = 0;
+            for (int i = 0; i < size; i++) {
+                books[i] = book(i);
+                expected += quantity(i);
+            }
+            Path file = Files.createTempFile("snapshot", ".bin");
+            try {
+                System.out.printf("%,d books%n", size);
+                double[] times = new double[2];
+                for (String format : new String[] {"snapshot", "serialization", "json"}) {
+                    times[0] = Double.MAX_VALUE;
+                    times[1] = Double.MAX_VALUE;
+                    for (int round = 0; round < ROUNDS; round++) {
+                        long start = System.nanoTime();
+                        write(format, books, file);
+                        times[0] = Math.min(times[0], (System.nanoTime() - start) / 1e6);
+                        start = System.nanoTime();
+                        long total = read(format, file);
+                        times[1] = Math.min(times[1], (System.nanoTime() - start) / 1e6);
+                        if (total != expected) {
+                            throw new IllegalStateException(format + " read " + total + " copies, expected " + expected);
+                        }
+                    }
+                    long bytes = Files.size(file);
+                    System.out.printf("  %-14s %,12d bytes (%5.1f per book)   write %,8.1f ms   read %,8.1f ms%n",
+                            format, bytes, bytes / (double) size, times[0], times[1]);
+                }
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Writes the catalog in a format.
+     * @param format the format
+     * @param books  the books
+     * @param file   the file to write
+     * @throws IOException if writing fails
+     */
+    private static void write(String format, Book[] books, Path file) throws IOException {
+        switch (format) {
+            case "snapshot" -> {
+                try (SnapshotWriter writer = SnapshotWriter.create(file)) {
+                    for (int i = 0; i < books.length; i++) {
+                        writer.write(books[i], quantity(i));
+                    }
+                }
+            }
+            case "serialization" -> {
+                try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                    for (int i = 0; i < books.length; i++) {
+                        out.writeObject(new SerializedBook(books[i], quantity(i)));
+                    }
+                }
+            }
+            default -> {
+                try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                    for (int i = 0; i < books.length; i++) {
+                        Map<String, String> row = CatalogImporter.toRow(books[i]);
+                        row.put("quantity", Integer.toString(quantity(i)));
+                        out.write(Json.object(row));
+                        out.newLine();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the catalog back in a format, creating every book.
+     * @param format the format
+     * @param file   the file to read
+     * @return the total quantity read
+     * @throws IOException if reading fails
+     * @throws ClassNotFoundException if a serialized class is missing
+     */
+    private static long read(String format, Path file) throws IOException, ClassNotFoundException {
+        long[] total = new long[1];
+        switch (format) {
+            case "snapshot" -> {
+                try (SnapshotReader reader = SnapshotReader.open(file)) {
+                    reader.read((book, quantity) -> total[0] += quantity);
+                }
+            }
+            case "serialization" -> {
+                try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                    while (true) {
+                        SerializedBook book = (SerializedBook) in.readObject();
+                        book.toBook();
+                        total[0] += book.quantity;
+                    }
+                } catch (EOFException e) {
+                    // end of the stream
+                }
+            }
+            default -> {
+                try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+                     JsonRowReader reader = new JsonRowReader(in)) {
+                    for (Map<String, String> row = reader.nextRow(); row != null; row = reader.nextRow()) {
+                        CatalogImporter.toBook(row);
+                        total[0] += Integer.parseInt(row.get("quantity"));
+                    }
+                }
+            }
+        }
+        return total[0];
+    }
+
+    /**
+     * Returns the quantity of the book with the given number.
+     * @param n the book number
+     * @return the quantity
+     */
+    private static int quantity(int n) {
+        return 1 + n % 5;
+    }
+
+    /**
+     * Creates the synthetic book with the given number.
+     * @param n the book number
+     * @return a book, special book or encyclopedia
+     */
+    private static Book book(int n) {
+        String title = "Snapshot title " + n;
+        String author = "Author " + n % 5000;
+        switch (n % 3) {
+            case 0:
+                return new SpecialBook.Builder(title, author).genre("genre " + n % 40).language("SK")
+                        .pageNumbers(100 + n % 500).value(9.99 + n % 20).signed(n % 2 == 0).rare(n % 7 == 0)
+                        .build();
+            case 1:
+                return new Encyclopedia.Builder(title, author).genre("genre " + n % 40).language("EN")
+                        .pageNumbers(100 + n % 500).value(19.99).illustration(n % 2 == 0)
+                        .build();
+            default:
+                return new Book.Builder(title, author).genre("genre " + n % 40).language("CZ")
+                        .pageNumbers(100 + n % 500).value(12.50)
+                        .build();
+        }
+    }
+
+    /**
+     * The fields of a book and its quantity, for Java serialization.
+     */
+    private static final class SerializedBook implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        /** 0 for a book, 1 for a special book, 2 for an encyclopedia. */
+        final int type;
+
+        /** The title. */
+        final String title;
+
+        /** The author. */
+        final String author;
+
+        /** The genre. */
+        final String genre;
+
+        /** The language. */
+        final String language;
+
+        /** The number of pages. */
+        final int pages;
+
+        /** The base value. */
+        final double value;
+
+        /** Whether a special book is signed or an encyclopedia illustrated. */
+        final boolean signedOrIllustrated;
+
+        /** Whether a special book is rare. */
+        final boolean rare;
+
+        /** The quantity. */
+        final int quantity;
+
+        /**
+         * Captures a book.
+         * @param book     the book
+         * @param quantity its quantity
+         */
+        SerializedBook(Book book, int quantity) {
+            this.title = book.getTitle();
+            this.author = book.getAuthor();
+            this.genre = book.getGenre();
+            this.language = book.getLanguage();
+            this.pages = book.getPageNumbers();
+            this.value = book.getBaseValue();
+            this.quantity = quantity;
+            if (book instanceof SpecialBook specialBook) {
+                type = 1;
+                signedOrIllustrated = specialBook.isSigned();
+                rare = specialBook.isRare();
+            } else if (book instanceof Encyclopedia encyclopedia) {
+                type = 2;
+                signedOrIllustrated = encyclopedia.isIllustration();
+                rare = false;
+            } else {
+                type = 0;
+                signedOrIllustrated = false;
+                rare = false;
+            }
+        }
+
+        /**
+         * Creates the book again.
+         * @return the book
+         */
+        Book toBook() {
+            return switch (type) {
+                case 1 -> new SpecialBook.Builder(title, author).genre(genre).language(language)
+                        .pageNumbers(pages).value(value).signed(signedOrIllustrated).rare(rare).build();
+                case 2 -> new Encyclopedia.Builder(title, author).genre(genre).language(language)
+                        .pageNumbers(pages).value(value).illustration(signedOrIllustrated).build();
+                default -> new Book.Builder(title, author).genre(genre).language(language)
+                        .pageNumbers(pages).value(value).build();
+            };
+        }
+    }
+}
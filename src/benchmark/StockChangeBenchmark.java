@@ -0,0 +1,178 @@
+package benchmark;
+
+import book.Book;
+import bookLibrary.BookLibrary;
+import changes.StockChange;
+import changes.StockChangePublisher;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the cost of a {@link StockChangePublisher} on the checkout path.
+ * <p>
+ * 100 000 books are registered and borrowed and returned at random by two threads,
+ * first without the publisher, then with one subscriber that requests a single event and
+ * stalls, then with another one that takes every event. The benchmark prints the time
+ * per borrow or return of every run and how many events the fast subscriber received for how many
+ * changes. The stalled subscriber then resumes from the last event it got, and the
+ * benchmark checks that the quantities it receives match the library.
+ * </p>
+ */
+public class StockChangeBenchmark {
+
+    /** Number of books in the catalog. */
+    private static final int BOOKS = 100_000;
+
+    /** Number of checkout threads. */
+    private static final int THREADS = 2;
+
+    /** Number of borrows and returns per thread and run. */
+    private static final int OPERATIONS = 2_000_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        BookLibrary library = BookLibrary.BookLibrary();
+        String[] titles = new String[BOOKS];
+        for (int i = 0; i < BOOKS; i++) {
+            titles[i] = "Change Feed " + i;
+            library.registerNewBook(new Book.Builder(titles[i], "Author " + i % 1000)
+                    .pageNumbers(100).value(10).build(), 5);
+        }
+        run(library, titles, "warm-up");
+        double without = run(library, titles, "no publisher");
+
+        StockChangePublisher publisher = StockChangePublisher.attach(library);
+        Map<Book, Integer> stalledView = new ConcurrentHashMap<>();
+        AtomicLong stalledEvents = new AtomicLong();
+        Collector stalled = new Collector(1, stalledEvents, stalledView, null);
+        publisher.subscribe(stalled, 0);
+        double marking = run(library, titles, "publisher, stalled subscriber");
+        AtomicLong fastEvents = new AtomicLong();
+        publisher.subscribe(new Collector(Long.MAX_VALUE, fastEvents, new ConcurrentHashMap<>(), null));
+        long before = publisher.getSequence();
+        double delivering = run(library, titles, "publisher, stalled and fast subscribers");
+        long changes = publisher.getSequence() - before;
+        Thread.sleep(500);
+        System.out.printf("checkout cost of the publisher: %.0f ns per operation for the stalled subscriber, "
+                + "%.0f ns with the fast one, whose deliveries share the processors%n", marking - without, delivering - without);
+        System.out.printf("fast subscriber: %,d events for %,d changes; stalled subscriber: %,d event%n",
+                fastEvents.get(), changes, stalledEvents.get());
+
+        stalled.subscription.cancel();
+        CountDownLatch caughtUp = new CountDownLatch(1);
+        AtomicLong resumedEvents = new AtomicLong();
+        Collector resumed = new Collector(Long.MAX_VALUE, resumedEvents, stalledView, caughtUp);
+        long start = System.nanoTime();
+        publisher.subscribe(resumed, stalled.resumeSequence);
+        caughtUp.await(30, TimeUnit.SECONDS);
+        int mismatches = 0;
+        for (String title : titles) {
+            Book book = library.findByTitle(title);
+            Integer seen = stalledView.get(book);
+            if (seen == null || seen != library.getQuantity(book)) {
+                mismatches++;
+            }
+        }
+        System.out.printf("resumed from #%d: %,d events in %.0f ms, %d quantities differ from the library%n",
+                stalled.resumeSequence, resumedEvents.get(), (System.nanoTime() - start) / 1e6, mismatches);
+        publisher.close();
+    }
+
+    /**
+     * Borrows and returns random books from several threads.
+     * @param library the library
+     * @param titles  the titles
+     * @param label   the name of the run
+     * @return the time per operation in nanoseconds
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    private static double run(BookLibrary library, String[] titles, String label) throws InterruptedException {
+        Thread[] threads = new Thread[THREADS];
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            int seed = t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < OPERATIONS; i += 2) {
+                    String title = titles[random.nextInt(titles.length)];
+                    library.borrowBook(title);
+                    library.returnBook(title);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double nanos = (double) (System.nanoTime() - start) / (THREADS * (long) OPERATIONS);
+        System.out.printf("%s: %.0f ns per borrow or return%n", label, nanos);
+        return nanos;
+    }
+
+    /**
+     * A subscriber keeping the last quantity of every book.
+     */
+    private static final class Collector implements Flow.Subscriber<StockChange> {
+        /** Number of events requested on subscription. */
+        final long initialRequest;
+
+        /** Counts the events. */
+        final AtomicLong events;
+
+        /** The last quantity of every book. */
+        final Map<Book, Integer> view;
+
+        /** Counted down once the stream is caught up, or {@code null}. */
+        final CountDownLatch caughtUp;
+
+        /** The subscription. */
+        volatile Flow.Subscription subscription;
+
+        /** The resume sequence of the last event. */
+        volatile long resumeSequence;
+
+        /**
+         * Creates a subscriber.
+         * @param initialRequest the number of events requested on subscription
+         * @param events         counts the events
+         * @param view           receives the quantities
+         * @param caughtUp       counted down when an event reports the latest change, or {@code null}
+         */
+        Collector(long initialRequest, AtomicLong events, Map<Book, Integer> view, CountDownLatch caughtUp) {
+            this.initialRequest = initialRequest;
+            this.events = events;
+            this.view = view;
+            this.caughtUp = caughtUp;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(StockChange change) {
+            events.incrementAndGet();
+            view.put(change.getBook(), change.getQuantity());
+            resumeSequence = change.getResumeSequence();
+            if (caughtUp != null && events.get() > 1 && change.getResumeSequence() >= change.getSequence()) {
+                caughtUp.countDown();
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            error.printStackTrace();
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package benchmark;
+
+import book.Book;
+import bookLibrary.BookLibrary;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compares title lookup through the {@link BookLibrary} title index with the
+ * linear {@code equalsIgnoreCase} scan it replaced.
+ * <p>
+ * The catalog is grown to 1 000, 100 000 and 1 000 000 titles. At each size the
+ * benchmark times a round of borrow/return pairs on the library and the same number
+ * of lookups using the old full scan over an identical map.
+ * </p>
+ * <p>
+ * Run with a large heap, e.g. {@code java -Xmx2g benchmark.TitleLookupBenchmark}.
+ * </p>
+ */
+public class TitleLookupBenchmark {
+
+    /** Catalog sizes to measure. */
+    private static final int[] SIZES = {1_000, 100_000, 1_000_000};
+
+    /** Number of indexed lookups per measurement. */
+    private static final int INDEXED_LOOKUPS = 200_000;
+
+    /** Number of scanned lookups per measurement; the scan is too slow for more. */
+    private static final int SCANNED_LOOKUPS = 200;
+
+    public static void main(String[] args) {
+        BookLibrary library = BookLibrary.BookLibrary();
+        Map<Book, Integer> scanned = new HashMap<>();
+
+        int registered = 0;
+        for (int size : SIZES) {
+            for (; registered < size; registered++) {
+                Book book = new Book.Builder(title(registered), "Author " + registered % 1000)
+                        .genre("benchmark")
+                        .language("EN")
+                        .pageNumbers(100 + registered % 400)
+                        .value(10.0)
+                        .build();
+                library.registerNewBook(book, 10);
+                scanned.put(book, 10);
+            }
+
+            double indexedNanos = timeIndexed(library, size);
+            double scannedNanos = timeScanned(scanned, size);
+
+            System.out.printf("%,10d titles: index %,12.1f ns/op   scan %,14.1f ns/op%n",
+                    size, indexedNanos, scannedNanos);
+        }
+    }
+
+    /**
+     * Times borrow/return pairs through the title index.
+     * @param library the library to use
+     * @param size    the number of synthetic titles registered
+     * @return the average time of one lookup in nanoseconds
+     */
+    private static double timeIndexed(BookLibrary library, int size) {
+        for (int i = 0; i < INDEXED_LOOKUPS; i++) { // warm-up
+            String title = title((i * 7919) % size);
+            library.borrowBook(title);
+            library.returnBook(title.toUpperCase());
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < INDEXED_LOOKUPS; i++) {
+            String title = title((i * 7919) % size);
+            library.borrowBook(title);
+            library.returnBook(title.toUpperCase());
+        }
+        return (System.nanoTime() - start) / (INDEXED_LOOKUPS * 2.0);
+    }
+
+    /**
+     * Times lookups using the linear scan previously done by {@link BookLibrary}.
+     * @param books the map to scan
+     * @param size  the number of synthetic titles registered
+     * @return the average time of one lookup in nanoseconds
+     */
+    private static double timeScanned(Map<Book, Integer> books, int size) {
+        int found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < SCANNED_LOOKUPS; i++) {
+            String title = title((i * 7919) % size);
+            for (Map.Entry<Book, Integer> entry : books.entrySet()) {
+                if (entry.getKey().getTitle().equalsIgnoreCase(title)) {
+                    found++;
+                    break;
+                }
+            }
+        }
+        double nanos = (System.nanoTime() - start) / (double) SCANNED_LOOKUPS;
+        if (found != SCANNED_LOOKUPS) {
+            throw new IllegalStateException("Scan missed " + (SCANNED_LOOKUPS - found) + " titles");
+        }
+        return nanos;
+    }
+
+    /**
+     * Returns the synthetic title with the given number.
+     * @param n the title number
+     * @return the title
+     */
+    private static String title(int n) {
+        return "Benchmark title " + n;
+    }
+}
@@ -0,0 +1,122 @@
+package benchmark;
+
+import book.Book;
+import book.Encyclopedia;
+import book.SpecialBook;
+import bookLibrary.BookLibrary;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Compares the inventory valuation of the {@link BookLibrary} with a naive loop.
+ * <p>
+ * The catalog is grown to 10 000, 100 000 and 1 000 000 books mixing plain books,
+ * special books and encyclopedias. At each size the benchmark times reading the running
+ * totals, the parallel recomputation, and a sequential loop calling {@code getValue()}
+ * and {@code getQuantity()} for every book. It then borrows and returns books, checks
+ * that the running totals still equal the recomputation, and reports what keeping the
+ * totals costs a borrow/return pair.
+ * </p>
+ * <p>
+ * Run with a large heap, e.g. {@code java -Xmx2g benchmark.ValuationBenchmark}.
+ * </p>
+ */
+public class ValuationBenchmark {
+
+    /** Catalog sizes to measure. */
+    private static final int[] SIZES = {10_000, 100_000, 1_000_000};
+
+    /** Number of timed repetitions of each valuation. */
+    private static final int ROUNDS = 20;
+
+    /** Number of borrow/return pairs between the checks. */
+    private static final int CHECKOUTS = 200_000;
+
+    public static void main(String[] args) {
+        BookLibrary library = BookLibrary.BookLibrary();
+        List<Book> catalog = new ArrayList<>();
+
+        int registered = 0;
+        for (int size : SIZES) {
+            for (; registered < size; registered++) {
+                Book book = book(registered);
+                library.registerNewBook(book, 1 + registered % 5);
+                catalog.add(book);
+            }
+
+            double runningMillis = time(library::getValuation);
+            double recomputeMillis = time(library::recomputeValuation);
+            double naiveMillis = time(() -> naive(library, catalog));
+            System.out.printf("%,10d books: running %,10.3f ms   fork-join %,10.3f ms   naive loop %,10.3f ms%n",
+                    size, runningMillis, recomputeMillis, naiveMillis);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < CHECKOUTS; i++) {
+                String title = catalog.get((i * 7919) % catalog.size()).getTitle();
+                library.borrowBook(title);
+                library.returnBook(title);
+            }
+            double pairNanos = (System.nanoTime() - start) / (double) CHECKOUTS;
+            boolean consistent = library.getValuation().equals(library.recomputeValuation());
+            System.out.printf("%16s borrow/return pair %,8.1f ns, running totals %s%n", "", pairNanos,
+                    consistent ? "match the recomputation" : "DIFFER FROM THE RECOMPUTATION");
+        }
+    }
+
+    /**
+     * Values the catalog the way a caller without the valuation API would.
+     * @param library the library holding the stock
+     * @param catalog all books of the library
+     * @return the total value by genre
+     */
+    private static Map<String, Double> naive(BookLibrary library, List<Book> catalog) {
+        Map<String, Double> byGenre = new HashMap<>();
+        for (Book book : catalog) {
+            byGenre.merge(book.getGenre(), book.getValue() * library.getQuantity(book), Double::sum);
+        }
+        return byGenre;
+    }
+
+    /**
+     * Times a valuation after a warm-up.
+     * @param valuation the valuation to run
+     * @return the average time of one run in milliseconds
+     */
+    private static double time(Supplier<?> valuation) {
+        Object sink = null;
+        for (int i = 0; i < ROUNDS; i++) {
+            sink = valuation.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            sink = valuation.get();
+        }
+        double millis = (System.nanoTime() - start) / (ROUNDS * 1e6);
+        return sink == null ? Double.NaN : millis;
+    }
+
+    /**
+     * Creates the synthetic book with the given number.
+     * @param i the number of the book
+     * @return a plain book, special book or encyclopedia
+     */
+    private static Book book(int i) {
+        String title = "Valuation title " + i;
+        String author = "Author " + i % 2000;
+        String genre = "genre " + i % 30;
+        String language = i % 4 == 0 ? "EN" : "SK";
+        double value = 5 + i % 97 * 0.37;
+        return switch (i % 3) {
+            case 0 -> new SpecialBook.Builder(title, author).genre(genre).language(language)
+                    .pageNumbers(200).signed(i % 2 == 0).rare(i % 5 == 0).value(value).build();
+            case 1 -> new Encyclopedia.Builder(title, author).genre(genre).language(language)
+                    .pageNumbers(300).illustration(i % 2 == 0).value(value).build();
+            default -> new Book.Builder(title, author).genre(genre).language(language)
+                    .pageNumbers(150).value(value).build();
+        };
+    }
+}
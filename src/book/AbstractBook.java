@@ -54,6 +54,16 @@ public abstract class AbstractBook {
      */
     private final double value;
 
+    /**
+     * The value after the pricing rules; the base value until {@link #applyPricing} is called.
+     */
+    private double effectiveValue;
+
+    /**
+     * The {@link BookKey} of the book; {@code null} until first computed.
+     */
+    private BookKey key;
+
 
     /**
      * Constructs an {@code AbstractBook} with the specified properties.
@@ -84,6 +94,20 @@ public abstract class AbstractBook {
         this.language = language;
 
         this.value = value;
+        this.effectiveValue = value;
+    }
+
+    /**
+     * Computes and stores the value returned by {@link #getValue()}.
+     * <p>
+     * Called once by the builders, after the book is constructed, so the rules see the
+     * complete book and are applied once whatever the depth of the class hierarchy.
+     * </p>
+     * @param rules the pricing rules
+     * @throws IllegalArgumentException if the rules make the value negative
+     */
+    protected final void applyPricing(PricingRules rules) {
+        this.effectiveValue = rules.price(this);
     }
 
     /**
@@ -127,13 +151,70 @@ public abstract class AbstractBook {
     }
 
     /**
-     * Returns the monetary value of the book.
+     * Returns the monetary value of the book, as computed by its {@link PricingRules} when
+     * the book was built.
+     * <p>
+     * The value is stored, so this method is a plain field read whatever the type of the
+     * book; see {@link PricingRules#DEFAULT} for the multipliers of special books and
+     * encyclopedias.
+     * </p>
      * @return the monetary value of the book
      */
-    public double getValue() {
+    public final double getValue() {
+        return effectiveValue;
+    }
+
+    /**
+     * Returns the base monetary value of the book, as it was given when the book was created.
+     * <p>
+     * Unlike {@link #getValue()}, this value is never adjusted by pricing rules.
+     * </p>
+     * @return the base monetary value of the book
+     */
+    public final double getBaseValue() {
         return value;
     }
 
+    /**
+     * Checks whether another object is the same book, that is a book with an equal
+     * {@link BookKey}: the same class, title, author and edition flags.
+     * @param other the object to compare with
+     * @return {@code true} if the other object is an equal book
+     */
+    @Override
+    public final boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        return other instanceof AbstractBook book && key().equals(book.key());
+    }
+
+    /**
+     * Returns the hash of the {@link BookKey} of the book.
+     * @return the hash
+     */
+    @Override
+    public final int hashCode() {
+        return key().hashCode();
+    }
+
+    /**
+     * Returns the key of the book, computed on the first call.
+     * <p>
+     * The key depends on final properties only, so threads racing on the first call
+     * compute equal keys and any of them may be kept.
+     * </p>
+     * @return the key
+     */
+    final BookKey key() {
+        BookKey k = key;
+        if (k == null) {
+            k = BookKey.compute(this);
+            key = k;
+        }
+        return k;
+    }
+
     /**
      * Displays the details of the book.
      * <p>
@@ -10,9 +10,13 @@ package book;
 public class Book extends AbstractBook {
     /**
      * Constructs a {@code Book} using the provided {@code Builder}.
+     * <p>
+     * The book is valued at its base value until {@link Builder#build()} applies the
+     * pricing rules.
+     * </p>
      * @param builder the builder containing the properties for the book
      */
-    public Book(Builder builder) {
+    protected Book(Builder builder) {
         super(builder.title, builder.author, builder.genre, builder.pageNumbers, builder.language, builder.value);
     }
 
@@ -71,6 +75,10 @@ public class Book extends AbstractBook {
          */
         private double value;
 
+        /**
+         * The rules computing the value of the book (optional, default is {@link PricingRules#DEFAULT}).
+         */
+        private PricingRules pricing = PricingRules.DEFAULT;
 
         /**
          * Creates a new builder with the specified title and author.
@@ -124,11 +132,35 @@ public class Book extends AbstractBook {
         }
 
         /**
-         * Builds and returns a new {@code Book} instance.
-         * @return a new {@code Book} object
+         * Sets the rules computing the value of the book from its base value.
+         * @param pricing the pricing rules; must not be null
+         * @return this builder instance
+         */
+        public Builder pricing(PricingRules pricing) {
+            this.pricing = pricing;
+            return this;
+        }
+
+        /**
+         * Returns the rules computing the value of the book, for the builders of subclasses.
+         * @return the pricing rules
+         */
+        PricingRules getPricing() {
+            return pricing;
+        }
+
+        /**
+         * Builds and returns a {@code Book} instance.
+         * <p>
+         * If a book with the same properties was built before and is still in use, that
+         * instance is returned, see {@link BookInterner}.
+         * </p>
+         * @return the {@code Book} object
          */
         public Book build() {
-            return new Book(this);
+            Book book = new Book(this);
+            book.applyPricing(pricing);
+            return BookInterner.intern(book);
         }
     }
 }
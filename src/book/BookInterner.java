@@ -0,0 +1,160 @@
+package book;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps one instance of every distinct book in use.
+ * <p>
+ * The builders pass every book they build through {@link #intern(AbstractBook)}, so
+ * building a book with the same {@link BookKey}, the same title and author as written, and
+ * the same genre, language, page count, base value and value as one already built returns
+ * the existing instance, and a catalog imported twice holds its books once. A book that
+ * differs in any of these properties, even only in the case or accents of its title, is a
+ * new instance, even though it is {@link AbstractBook#equals equal} to the other one; which
+ * of two equal books a library keeps is decided when they are registered.
+ * </p>
+ * <p>
+ * The books are held weakly. A book no longer referenced anywhere else, for example a
+ * book that was built but never registered, is dropped from the interner by the garbage
+ * collector, so its memory follows the books in use rather than every book ever built.
+ * Cleared entries are removed on the next call.
+ * </p>
+ */
+public final class BookInterner {
+
+    /** The interned books by their properties. */
+    private static final Map<Properties, Entry> BOOKS = new ConcurrentHashMap<>();
+
+    /** Receives the entries whose books were collected. */
+    private static final ReferenceQueue<AbstractBook> CLEARED = new ReferenceQueue<>();
+
+    /** Utility class, not meant to be instantiated. */
+    private BookInterner() {
+    }
+
+    /**
+     * Returns the interned book with the properties of the given one, interning it if
+     * there is none.
+     * @param book the book
+     * @param <T>  the class of the book
+     * @return the interned instance; {@code book} itself if it is the first with its properties
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends AbstractBook> T intern(T book) {
+        expungeCleared();
+        AbstractBook[] interned = new AbstractBook[1];
+        BOOKS.compute(new Properties(book), (key, current) -> {
+            AbstractBook existing = current == null ? null : current.get();
+            if (existing != null) {
+                interned[0] = existing;
+                return current;
+            }
+            interned[0] = book;
+            return new Entry(book, key);
+        });
+        // keys include the class, so the interned book has the class of the given one
+        return (T) interned[0];
+    }
+
+    /**
+     * Returns the number of interned books, including books collected but not yet removed.
+     * @return the number of books
+     */
+    public static int size() {
+        expungeCleared();
+        return BOOKS.size();
+    }
+
+    /**
+     * Removes the entries of collected books.
+     */
+    private static void expungeCleared() {
+        for (Entry entry = (Entry) CLEARED.poll(); entry != null; entry = (Entry) CLEARED.poll()) {
+            BOOKS.remove(entry.key, entry);
+        }
+    }
+
+    /**
+     * A weakly held interned book.
+     */
+    private static final class Entry extends WeakReference<AbstractBook> {
+        /** The properties of the book, to remove the entry once the book is collected. */
+        final Properties key;
+
+        /**
+         * Creates an entry.
+         * @param book the book
+         * @param key  its properties
+         */
+        Entry(AbstractBook book, Properties key) {
+            super(book, CLEARED);
+            this.key = key;
+        }
+    }
+
+    /**
+     * The properties of a book that tell interned books apart: its key, its title and
+     * author as written, and every other property a builder sets.
+     */
+    private static final class Properties {
+        /** The key of the book, which includes its class. */
+        final BookKey key;
+
+        /** The title as written, which the key only holds normalized. */
+        final String title;
+
+        /** The author as written, which the key only holds normalized. */
+        final String author;
+
+        /** The genre, or {@code null}. */
+        final String genre;
+
+        /** The language, or {@code null}. */
+        final String language;
+
+        /** The number of pages. */
+        final int pageNumbers;
+
+        /** The base value. */
+        final double baseValue;
+
+        /** The value after the pricing rules. */
+        final double value;
+
+        /**
+         * Collects the properties of a book.
+         * @param book the book
+         */
+        Properties(AbstractBook book) {
+            this.key = BookKey.of(book);
+            this.title = book.getTitle();
+            this.author = book.getAuthor();
+            this.genre = book.getGenre();
+            this.language = book.getLanguage();
+            this.pageNumbers = book.getPageNumbers();
+            this.baseValue = book.getBaseValue();
+            this.value = book.getValue();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Properties properties)) {
+                return false;
+            }
+            return key.equals(properties.key) && title.equals(properties.title) && author.equals(properties.author)
+                    && pageNumbers == properties.pageNumbers
+                    && Double.compare(baseValue, properties.baseValue) == 0
+                    && Double.compare(value, properties.value) == 0
+                    && Objects.equals(genre, properties.genre) && Objects.equals(language, properties.language);
+        }
+
+        @Override
+        public int hashCode() {
+            return ((31 * key.hashCode() + title.hashCode()) * 31 + pageNumbers) * 31 + Double.hashCode(value);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package book;
+
+import bookLibrary.TitleNormalizer;
+
+/**
+ * The canonical identity of a book: its normalized title and author and its edition.
+ * <p>
+ * Titles and authors are compared case- and accent-insensitively, like in the
+ * {@link bookLibrary.BookLibrary} title index. The edition is the class of the book and,
+ * for special books and encyclopedias, the signed, rare and illustration flags, so a
+ * signed copy of a title is a different book than an unsigned one. Genre, language, page
+ * count and value are properties of the book, not part of its identity.
+ * </p>
+ * <p>
+ * Books are equal when their keys are; every book caches its key. The {@link BookInterner}
+ * shares books only when all their properties match as well, so equal books can still
+ * be distinct instances with, for example, different values.
+ * </p>
+ * <p>
+ * Example Usage:
+ * <pre>
+ * BookKey key = BookKey.of(book);
+ * </pre>
+ * </p>
+ */
+public final class BookKey {
+
+    /** Edition flag of a signed special book. */
+    private static final int SIGNED = 1;
+
+    /** Edition flag of a rare special book. */
+    private static final int RARE = 2;
+
+    /** Edition flag of an illustrated encyclopedia. */
+    private static final int ILLUSTRATION = 4;
+
+    /** The normalized title, or {@code null}. */
+    private final String title;
+
+    /** The normalized author, or {@code null}. */
+    private final String author;
+
+    /** The class of the book. */
+    private final Class<?> type;
+
+    /** The edition flags. */
+    private final int flags;
+
+    /** The hash of all of the above. */
+    private final int hash;
+
+    /**
+     * Private constructor used by {@link #compute(AbstractBook)}.
+     * @param title  the normalized title
+     * @param author the normalized author
+     * @param type   the class of the book
+     * @param flags  the edition flags
+     */
+    private BookKey(String title, String author, Class<?> type, int flags) {
+        this.title = title;
+        this.author = author;
+        this.type = type;
+        this.flags = flags;
+        int h = type.getName().hashCode();
+        h = 31 * h + flags;
+        h = 31 * h + (title == null ? 0 : title.hashCode());
+        h = 31 * h + (author == null ? 0 : author.hashCode());
+        this.hash = h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the key of a book.
+     * <p>
+     * The key is computed once per book and cached in it.
+     * </p>
+     * @param book the book
+     * @return the key
+     */
+    public static BookKey of(AbstractBook book) {
+        return book.key();
+    }
+
+    /**
+     * Computes the key of a book.
+     * @param book the book
+     * @return the new key
+     */
+    static BookKey compute(AbstractBook book) {
+        int flags = 0;
+        if (book instanceof SpecialBook specialBook) {
+            flags |= specialBook.isSigned() ? SIGNED : 0;
+            flags |= specialBook.isRare() ? RARE : 0;
+        } else if (book instanceof Encyclopedia encyclopedia) {
+            flags |= encyclopedia.isIllustration() ? ILLUSTRATION : 0;
+        }
+        return new BookKey(normalize(book.getTitle()), normalize(book.getAuthor()), book.getClass(), flags);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof BookKey key)) {
+            return false;
+        }
+        return hash == key.hash && type == key.type && flags == key.flags
+                && equal(title, key.title) && equal(author, key.author);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return type.getSimpleName() + "[" + title + " / " + author + (flags == 0 ? "" : " / " + flags) + "]";
+    }
+
+    /**
+     * Normalizes a title or author.
+     * @param text the text, may be null
+     * @return the normalized text, or {@code null}
+     */
+    private static String normalize(String text) {
+        return text == null ? null : TitleNormalizer.normalize(text);
+    }
+
+    /**
+     * Compares two strings that may be null.
+     * @param a the first string
+     * @param b the second string
+     * @return {@code true} if both are null or equal
+     */
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
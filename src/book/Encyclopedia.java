@@ -7,7 +7,8 @@ package book;
  * {@code illustration}, which indicates whether the encyclopedia contains illustrations.
  * </p>
  * <p>
- * The value of the encyclopedia is adjusted based on whether it includes illustrations.
+ * The value of the encyclopedia is adjusted based on whether it includes illustrations,
+ * through {@link PricingRules#ILLUSTRATION}.
  * </p>
  */
 public class Encyclopedia extends Book {
@@ -19,27 +20,17 @@ public class Encyclopedia extends Book {
 
     /**
      * Constructs an {@code Encyclopedia} using the provided {@code Builder}.
+     * <p>
+     * The encyclopedia is valued at its base value until {@link Builder#build()} applies
+     * the pricing rules.
+     * </p>
      * @param builder the builder containing the properties for the encyclopedia
      */
-    public Encyclopedia(Builder builder) {
+    protected Encyclopedia(Builder builder) {
         super(builder);
         this.illustration = builder.illustration;
     }
 
-    /**
-     * Calculates the value of the encyclopedia.
-     * <p>
-     * If the encyclopedia contains illustrations, its value is 2.5 times the base value;
-     * otherwise, it retains the base value.
-     * </p>
-     *
-     * @return the adjusted value of the encyclopedia
-     */
-    @Override
-    public double getValue() {
-        return isIllustration() ? super.getValue() * 2.5 : super.getValue();
-    }
-
     /**
      * Returns whether the encyclopedia contains illustrations.
      * @return {@code true} if the encyclopedia contains illustrations, {@code false} otherwise
@@ -123,6 +114,17 @@ public class Encyclopedia extends Book {
             return this;
         }
 
+        /**
+         * Sets the rules computing the value of the encyclopedia from its base value.
+         * @param pricing the pricing rules; must not be null
+         * @return this builder instance
+         */
+        @Override
+        public Builder pricing(PricingRules pricing) {
+            super.pricing(pricing);
+            return this;
+        }
+
         /**
          * Sets whether the encyclopedia includes illustrations.
          * @param illustration {@code true} if the encyclopedia includes illustrations, {@code false} otherwise
@@ -134,12 +136,18 @@ public class Encyclopedia extends Book {
         }
 
         /**
-         * Builds and returns a new {@code Encyclopedia} instance.
-         * @return a new {@code Encyclopedia} object
+         * Builds and returns a {@code Encyclopedia} instance.
+         * <p>
+         * If a book with the same properties was built before and is still in use, that
+         * instance is returned, see {@link BookInterner}.
+         * </p>
+         * @return the {@code Encyclopedia} object
          */
         @Override
         public Encyclopedia build() {
-            return new Encyclopedia(this);
+            Encyclopedia book = new Encyclopedia(this);
+            book.applyPricing(getPricing());
+            return BookInterner.intern(book);
         }
     }
 }
@@ -0,0 +1,27 @@
+package book;
+
+/**
+ * A rule adjusting the value of a book, such as a multiplier for signed books.
+ * <p>
+ * Rules are combined into {@link PricingRules} and applied once, when a book is built;
+ * {@link AbstractBook#getValue()} then returns the stored result. A rule must therefore
+ * depend only on the final properties of the book.
+ * </p>
+ * <p>
+ * Example Usage:
+ * <pre>
+ * PricingRule firstEditions = (book, value) -&gt; book.getTitle().endsWith("(1st ed.)") ? value * 4 : value;
+ * </pre>
+ * </p>
+ */
+@FunctionalInterface
+public interface PricingRule {
+
+    /**
+     * Adjusts the value of a book.
+     * @param book  the book being priced
+     * @param value the value after the preceding rules, starting with the base value
+     * @return the adjusted value; must be non-negative
+     */
+    double apply(AbstractBook book, double value);
+}
@@ -0,0 +1,105 @@
+package book;
+
+import java.util.Arrays;
+
+/**
+ * An ordered, immutable set of {@link PricingRule}s computing the value of a book from its
+ * base value.
+ * <p>
+ * The {@link #DEFAULT} rules are the multipliers of the library: a signed and rare
+ * {@link SpecialBook} is worth three times its base value, a signed or rare one twice, and
+ * an illustrated {@link Encyclopedia} 2.5 times. Builders price their books with the
+ * default rules unless given others, so new rules are added here rather than as new
+ * {@code getValue()} overrides.
+ * </p>
+ * <p>
+ * Example Usage:
+ * <pre>
+ * PricingRules rules = PricingRules.DEFAULT.and((book, value) -&gt; "SK".equals(book.getLanguage()) ? value * 1.1 : value);
+ * Book book = new SpecialBook.Builder("Program Joshua", "M.J. Arlidge").value(20).signed(true).pricing(rules).build();
+ * </pre>
+ * </p>
+ */
+public final class PricingRules {
+
+    /** Triples the value of a signed and rare special book and doubles that of a signed or rare one. */
+    public static final PricingRule SIGNED_OR_RARE = (book, value) -> {
+        if (book instanceof SpecialBook specialBook) {
+            if (specialBook.isSigned() && specialBook.isRare()) {
+                return value * 3;
+            } else if (specialBook.isSigned() || specialBook.isRare()) {
+                return value * 2;
+            }
+        }
+        return value;
+    };
+
+    /** Multiplies the value of an illustrated encyclopedia by 2.5. */
+    public static final PricingRule ILLUSTRATION = (book, value) ->
+            book instanceof Encyclopedia encyclopedia && encyclopedia.isIllustration() ? value * 2.5 : value;
+
+    /** The rules used by the builders unless configured otherwise. */
+    public static final PricingRules DEFAULT = of(SIGNED_OR_RARE, ILLUSTRATION);
+
+    /** The rules, in the order they are applied. */
+    private final PricingRule[] rules;
+
+    /**
+     * Private constructor used by {@link #of(PricingRule...)}.
+     * @param rules the rules, in the order they are applied
+     */
+    private PricingRules(PricingRule[] rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Creates a set of rules.
+     * @param rules the rules, in the order they are applied
+     * @return the set
+     */
+    public static PricingRules of(PricingRule... rules) {
+        return new PricingRules(rules.clone());
+    }
+
+    /**
+     * Creates a set of rules valuing a book at a given amount, whatever its base value.
+     * <p>
+     * Used to rebuild a book that was priced before, such as a book read back from a file
+     * or received from another branch, with the value it had; the rules that priced it
+     * are not stored with the book, so they may not be known where it is rebuilt.
+     * </p>
+     * @param value the value; must be non-negative
+     * @return the set
+     */
+    public static PricingRules fixed(double value) {
+        return new PricingRules(new PricingRule[] {(book, base) -> value});
+    }
+
+    /**
+     * Returns a set with another rule applied after these.
+     * @param rule the rule
+     * @return the new set; this one is unchanged
+     */
+    public PricingRules and(PricingRule rule) {
+        PricingRule[] extended = Arrays.copyOf(rules, rules.length + 1);
+        extended[rules.length] = rule;
+        return new PricingRules(extended);
+    }
+
+    /**
+     * Computes the value of a book by applying every rule to its base value in order.
+     * @param book the book
+     * @return the value
+     * @throws IllegalArgumentException if a rule returns a negative value
+     */
+    public double price(AbstractBook book) {
+        double value = book.getBaseValue();
+        for (PricingRule rule : rules) {
+            value = rule.apply(book, value);
+        }
+        if (value < 0) {
+            throw new IllegalArgumentException("Pricing rules cannot make a value negative.");
+        }
+        return value;
+    }
+}
@@ -4,8 +4,9 @@ package book;
  * Represents a SpecialBook, a type of {@link Book} with additional unique properties.
  * <p>
  * A {@code SpecialBook} can be signed by the author and/or classified as rare,
- * which affects its calculated value. The {@link Builder} pattern is used for
- * flexible object creation, allowing the customization of these properties.
+ * which affects its value through {@link PricingRules#SIGNED_OR_RARE}. The
+ * {@link Builder} pattern is used for flexible object creation, allowing the
+ * customization of these properties.
  * </p>
  */
 public class SpecialBook extends Book {
@@ -46,29 +47,6 @@ public class SpecialBook extends Book {
         return rare;
     }
 
-    /**
-     * Calculates the value of the book based on its special properties.
-     * <p>
-     * The value is determined as follows:
-     * <ul>
-     *     <li>If the book is both signed and rare, its value is three times the base value.</li>
-     *     <li>If the book is either signed or rare, its value is twice the base value.</li>
-     *     <li>If neither condition is met, the value remains the base value.</li>
-     * </ul>
-     * </p>
-     *
-     * @return the calculated value of the book
-     */
-    @Override
-    public double getValue() {
-        if (isSigned() && isRare()) {
-            return super.getValue() * 3;
-        } else if (isSigned() || isRare()) {
-            return super.getValue() * 2;
-        }
-        return super.getValue();
-    }
-
     /**
      * Displays the details of the special book.
      * <p>
@@ -156,6 +134,17 @@ public class SpecialBook extends Book {
             return this;
         }
 
+        /**
+         * Sets the rules computing the value of the book from its base value.
+         * @param pricing the pricing rules; must not be null
+         * @return this builder instance
+         */
+        @Override
+        public Builder pricing(PricingRules pricing) {
+            super.pricing(pricing);
+            return this;
+        }
+
         /**
          * Sets whether the book is signed by the author.
          * @param signed {@code true} if the book is signed, {@code false} otherwise
@@ -177,12 +166,18 @@ public class SpecialBook extends Book {
         }
 
         /**
-         * Builds and returns a new {@link SpecialBook} instance.
-         * @return a new {@link SpecialBook} object
+         * Builds and returns a {@link SpecialBook} instance.
+         * <p>
+         * If a book with the same properties was built before and is still in use, that
+         * instance is returned, see {@link BookInterner}.
+         * </p>
+         * @return the {@link SpecialBook} object
          */
         @Override
         public SpecialBook build() {
-            return new SpecialBook(this);
+            SpecialBook book = new SpecialBook(this);
+            book.applyPricing(getPricing());
+            return BookInterner.intern(book);
         }
     }
 }
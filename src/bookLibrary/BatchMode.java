@@ -0,0 +1,25 @@
+package bookLibrary;
+
+/**
+ * How a batch of borrows or returns on {@link LibraryServices} treats a failing title.
+ */
+public enum BatchMode {
+
+    /**
+     * Either every title of the batch is applied, or none is. If one title is not found
+     * or out of stock, the failing titles report why and all others report
+     * {@link CirculationStatus#ABORTED}.
+     * <p>
+     * All or nothing is about the outcome, not about isolation: the batch is not atomic
+     * with respect to concurrent operations. Its books are changed one after the other,
+     * and the ones already changed are changed back when a later one fails, so meanwhile
+     * a concurrent borrow may find copies taken that the batch then puts back, and a
+     * snapshot or a quantity read may show part of the batch. Listeners are only told
+     * about a batch that was fully applied.
+     * </p>
+     */
+    ALL_OR_NOTHING,
+
+    /** Every title that can be applied is applied; the others report why they failed. */
+    BEST_EFFORT
+}
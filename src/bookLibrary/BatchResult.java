@@ -0,0 +1,98 @@
+package bookLibrary;
+
+/**
+ * Outcome of a batch of borrows or returns: one {@link CirculationStatus} per title of
+ * the batch, in the order of the titles.
+ * <p>
+ * The statuses are kept as one byte each, so the result of a batch of a hundred titles
+ * is a single small array rather than a hundred objects.
+ * </p>
+ */
+public final class BatchResult {
+
+    /** All statuses, indexed by their ordinal. */
+    private static final CirculationStatus[] STATUSES = CirculationStatus.values();
+
+    /** Ordinals of the statuses, in the order of the titles. */
+    private final byte[] statuses;
+
+    /** Number of titles borrowed or returned. */
+    private final int succeeded;
+
+    /**
+     * Creates a result.
+     * @param statuses  the ordinals of the statuses, in the order of the titles
+     * @param succeeded the number of titles borrowed or returned
+     */
+    BatchResult(byte[] statuses, int succeeded) {
+        this.statuses = statuses;
+        this.succeeded = succeeded;
+    }
+
+    /**
+     * Creates a result from the outcome of every title, for libraries that apply a batch
+     * title by title.
+     * @param statuses the statuses, in the order of the titles
+     * @return the result
+     */
+    public static BatchResult of(CirculationStatus... statuses) {
+        byte[] ordinals = new byte[statuses.length];
+        int succeeded = 0;
+        for (int i = 0; i < statuses.length; i++) {
+            ordinals[i] = (byte) statuses[i].ordinal();
+            succeeded += statuses[i].isSuccess() ? 1 : 0;
+        }
+        return new BatchResult(ordinals, succeeded);
+    }
+
+    /**
+     * Returns the number of titles in the batch.
+     * @return the number of titles
+     */
+    public int size() {
+        return statuses.length;
+    }
+
+    /**
+     * Returns the outcome for one title of the batch.
+     * @param index the position of the title in the batch
+     * @return the status
+     * @throws IndexOutOfBoundsException if {@code index} is not a position in the batch
+     */
+    public CirculationStatus getStatus(int index) {
+        return STATUSES[statuses[index]];
+    }
+
+    /**
+     * Returns the number of titles borrowed or returned.
+     * @return the number of successful titles
+     */
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    /**
+     * Checks whether every title of the batch succeeded.
+     * @return {@code true} if no title failed or was aborted
+     */
+    public boolean isComplete() {
+        return succeeded == statuses.length;
+    }
+
+    /**
+     * Checks whether the batch changed the library stock.
+     * @return {@code true} if at least one title was borrowed or returned
+     */
+    public boolean isApplied() {
+        return succeeded > 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder().append(succeeded).append('/').append(statuses.length).append(" succeeded [");
+        for (int i = 0; i < statuses.length; i++) {
+            text.append(i == 0 ? "" : ", ").append(STATUSES[statuses[i]]);
+        }
+        return text.append(']').toString();
+    }
+}
@@ -0,0 +1,109 @@
+package bookLibrary;
+
+import book.Book;
+
+/**
+ * Selects the books of a catalog listing by genre, language and stock.
+ * <p>
+ * Genres and languages are compared ignoring case. A filter without any criterion, like
+ * {@link #ALL}, accepts every book. Filters are immutable and can be shared between threads.
+ * </p>
+ * <p>
+ * Example Usage:
+ * <pre>
+ * BookFilter filter = new BookFilter.Builder()
+ *         .genre("napinavy")
+ *         .language("SK")
+ *         .inStockOnly(true)
+ *         .build();
+ * </pre>
+ * </p>
+ */
+public final class BookFilter {
+
+    /** Accepts every book. */
+    public static final BookFilter ALL = new Builder().build();
+
+    /** The required genre, or {@code null} for any genre. */
+    private final String genre;
+
+    /** The required language, or {@code null} for any language. */
+    private final String language;
+
+    /** Whether books without a copy in stock are rejected. */
+    private final boolean inStockOnly;
+
+    /**
+     * Private constructor to enforce the use of the {@link Builder}.
+     * @param builder the builder holding the criteria
+     */
+    private BookFilter(Builder builder) {
+        this.genre = builder.genre;
+        this.language = builder.language;
+        this.inStockOnly = builder.inStockOnly;
+    }
+
+    /**
+     * Checks whether a book is selected.
+     * @param book     the book
+     * @param quantity its quantity in stock
+     * @return {@code true} if the book meets every criterion
+     */
+    public boolean test(Book book, int quantity) {
+        return (!inStockOnly || quantity > 0)
+                && (genre == null || genre.equalsIgnoreCase(book.getGenre()))
+                && (language == null || language.equalsIgnoreCase(book.getLanguage()));
+    }
+
+    /**
+     * Builder for creating a {@link BookFilter}; every criterion is optional.
+     */
+    public static class Builder {
+        /** The required genre (optional, default is any genre). */
+        private String genre;
+
+        /** The required language (optional, default is any language). */
+        private String language;
+
+        /** Whether only books in stock are selected (optional, default is {@code false}). */
+        private boolean inStockOnly;
+
+        /**
+         * Selects the books of one genre.
+         * @param genre the genre, or {@code null} for any genre
+         * @return this builder instance
+         */
+        public Builder genre(String genre) {
+            this.genre = genre;
+            return this;
+        }
+
+        /**
+         * Selects the books in one language.
+         * @param language the language, or {@code null} for any language
+         * @return this builder instance
+         */
+        public Builder language(String language) {
+            this.language = language;
+            return this;
+        }
+
+        /**
+         * Selects only the books with at least one copy in stock.
+         * @param inStockOnly {@code true} to skip books that are all lent out
+         * @return this builder instance
+         */
+        public Builder inStockOnly(boolean inStockOnly) {
+            this.inStockOnly = inStockOnly;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new {@code BookFilter} instance.
+         * @return a new {@code BookFilter} object
+         */
+        public BookFilter build() {
+            return new BookFilter(this);
+        }
+    }
+}
@@ -1,11 +1,33 @@
 package bookLibrary;
 
+import analytics.DemandAnalytics;
 import book.Book;
 import book.Encyclopedia;
 import book.SpecialBook;
+import catalog.BookIndexes;
+import catalog.BookQuery;
+import catalog.ColumnarCatalog;
+import catalog.FootprintReport;
+import persistence.CirculationLog;
+import persistence.InventoryStore;
+import persistence.SnapshotReader;
+import persistence.SnapshotWriter;
+import recommend.Recommender;
+import search.BookSearch;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.ObjIntConsumer;
 
 /**
  * Represents a library system for managing books.
@@ -13,49 +35,276 @@ import java.util.Map;
  * The {@code BookLibrary} class provides functionality for:
  * <ul>
  *     <li>Registering new books and their quantities in the library</li>
- *     <li>Borrowing and returning books based on their title</li>
- *     <li>Displaying all available books in the library</li>
+ *     <li>Borrowing and returning books based on their title, one at a time or in batches</li>
+ *     <li>Displaying all available books in the library and listing them page by page</li>
+ *     <li>Valuing the books in stock in total and by genre, language and author</li>
+ *     <li>Searching titles and authors by prefix or with typos</li>
+ *     <li>Finding books by genre, language, author, flags, page count and value</li>
  * </ul>
  * This class uses the Singleton pattern to ensure only one instance of the library exists.
- * Note: This implementation is not thread-safe.
+ * </p>
+ * <p>
+ * The library is thread-safe. Books are kept in concurrent maps and the stock of each
+ * book is changed by compare-and-set, so concurrent checkouts of different titles never
+ * contend and checkouts of the same title never lose a copy. Reports that read the whole
+ * catalog read a {@link CatalogSnapshot}, a consistent point-in-time view that checkouts
+ * never wait for.
+ * </p>
+ * <p>
+ * When the system property {@value #STORE_PROPERTY} names a file, the inventory is kept
+ * in an {@link InventoryStore} at that path: the library is loaded from the file at
+ * startup and every change is written back to it. Without the property the library
+ * starts with the demonstration books from {@link #initializeBooks()} and nothing is saved.
+ * If {@value #LOG_PROPERTY} names a file as well, every change goes through a
+ * {@link CirculationLog} first, which replays lost changes into the store after a crash.
+ * Its durability is chosen by {@value #DURABILITY_PROPERTY} ({@code NONE}, {@code BATCHED}
+ * or {@code SYNC}, default {@code BATCHED}).
  * </p>
  */
 public class BookLibrary implements LibraryServices {
+    /** System property holding the path of the inventory store file. */
+    public static final String STORE_PROPERTY = "bookLibrary.store";
+
+    /** System property holding the path of the circulation log file. */
+    public static final String LOG_PROPERTY = "bookLibrary.log";
+
+    /** System property holding the {@link CirculationLog.Durability} of the circulation log. */
+    public static final String DURABILITY_PROPERTY = "bookLibrary.log.durability";
+
+    /** Cursor returned by {@link #listBooks(BookFilter, long, int, ObjIntConsumer)} after the last page. */
+    public static final long END_OF_CATALOG = -1;
+
+    /** Interval in milliseconds at which the inventory store is flushed to the disk. */
+    private static final long STORE_FLUSH_INTERVAL_MILLIS = 1000;
+
     /** The single instance of the library. */
-    private static BookLibrary single_instance = null;
+    private static volatile BookLibrary single_instance = null;
 
     /** Map to store books and their quantities in the library. */
-    private Map<Book, Integer> books;
+    private Map<Book, Stock> books;
+
+    /**
+     * Index of the stock of books by their normalized title.
+     * <p>
+     * Keys are produced by {@link TitleNormalizer#normalize(String)}, which makes
+     * lookups by title case- and accent-insensitive in constant time. A title maps to the
+     * first book registered with it; later books with the same title, such as other
+     * editions, follow it through {@link Stock#nextEdition}.
+     * </p>
+     */
+    private Map<String, Stock> titleIndex;
+
+    /**
+     * The stock of the books in registration order, the order of
+     * {@link #listBooks(BookFilter, long, int, ObjIntConsumer)}.
+     * <p>
+     * Only the first {@link #catalogSize} entries are used. The array is appended to
+     * under the registration lock and replaced by a larger copy when full, before the
+     * size is published, so a reader that reads the size first always finds the books.
+     * </p>
+     */
+    private volatile Stock[] catalogOrder = new Stock[16];
+
+    /** Number of books in {@link #catalogOrder}. */
+    private volatile int catalogSize;
+
+    /** Versions of the stock and the open {@link CatalogSnapshot}s. */
+    private final VersionClock clock = new VersionClock();
+
+    /** Running totals of the value of the books in stock. */
+    private final InventoryValuation valuation = new InventoryValuation();
 
-    /** Private constructor to enforce the Singleton pattern. */
+    /** Search index of titles and authors. */
+    private final BookSearch search = new BookSearch();
+
+    /** Secondary indexes of genres, languages, authors, flags, page counts and values. */
+    private final BookIndexes indexes = new BookIndexes();
+
+    /** Titles borrowed together, completed from the {@link #indexes} for new titles. */
+    private final Recommender recommender = new Recommender.Builder(indexes).build();
+
+    /** Borrow attempts by title and genre over the last week, served or not. */
+    private final DemandAnalytics demand = new DemandAnalytics.Builder().build();
+
+    /**
+     * Listeners notified about inventory changes.
+     * <p>
+     * The array is replaced, never modified, so notifying iterates without locking or
+     * allocating. The {@link #valuation}, the {@link #search} and the {@link #indexes} are
+     * always the first listeners.
+     * </p>
+     */
+    private volatile InventoryListener[] listeners = {valuation, search, indexes};
+
+    /**
+     * Private constructor to enforce the Singleton pattern.
+     * <p>
+     * Loads the inventory from the store named by {@value #STORE_PROPERTY} if set,
+     * otherwise registers the demonstration books.
+     * </p>
+     *
+     * @throws UncheckedIOException if the inventory store or the circulation log cannot be opened
+     * @throws IllegalStateException if a circulation log is configured without a store
+     */
     private BookLibrary() {
-        books = new HashMap<>();
-        initializeBooks();
+        books = new ConcurrentHashMap<>();
+        titleIndex = new ConcurrentHashMap<>();
+        String storePath = System.getProperty(STORE_PROPERTY);
+        if (storePath == null) {
+            if (System.getProperty(LOG_PROPERTY) != null) {
+                throw new IllegalStateException(LOG_PROPERTY + " requires " + STORE_PROPERTY + " to be set.");
+            }
+            initializeBooks();
+        } else {
+            openStore(Path.of(storePath));
+        }
     }
 
     /**
      * Provides access to the single instance of the {@code BookLibrary}.
      * <p>
      * If the instance does not already exist, it will be created. Otherwise, the existing
-     * instance is returned.
+     * instance is returned. Creation uses double-checked locking, so concurrent callers
+     * always receive the same instance.
      * </p>
      *
      * @return the single instance of the {@code BookLibrary}
      */
     public static BookLibrary BookLibrary()
     {
-        if (single_instance == null) {
-            single_instance = new BookLibrary();
+        BookLibrary instance = single_instance;
+        if (instance == null) {
+            synchronized (BookLibrary.class) {
+                instance = single_instance;
+                if (instance == null) {
+                    instance = new BookLibrary();
+                    single_instance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Loads the inventory from the store file and attaches the store to the library.
+     * <p>
+     * If a circulation log is configured, it is replayed over the store first and attached
+     * in place of the store. An empty store is filled with the demonstration books. The
+     * store is flushed periodically; the log and the store are closed when the JVM shuts down.
+     * </p>
+     *
+     * @param path the path of the store file
+     * @throws UncheckedIOException if the store or the log cannot be opened
+     */
+    private void openStore(Path path) {
+        InventoryStore store;
+        CirculationLog log = null;
+        try {
+            store = InventoryStore.open(path);
+            String logPath = System.getProperty(LOG_PROPERTY);
+            if (logPath != null) {
+                CirculationLog.Durability durability = CirculationLog.Durability.valueOf(
+                        System.getProperty(DURABILITY_PROPERTY, "BATCHED").toUpperCase(Locale.ROOT));
+                log = CirculationLog.open(Path.of(logPath), store, durability);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open the inventory store " + path + ".", e);
+        }
+
+        int loaded = store.load(this::restoreBook);
+        addInventoryListener(log != null ? log : store);
+        if (loaded == 0) {
+            initializeBooks();
+        }
+
+        store.startPeriodicFlush(STORE_FLUSH_INTERVAL_MILLIS);
+        CirculationLog openedLog = log;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                if (openedLog != null) {
+                    openedLog.close();
+                }
+                store.close();
+            } catch (IOException e) {
+                System.err.println("Could not close the inventory store: " + e.getMessage());
+            }
+        }, "inventory-store-shutdown"));
+    }
+
+    /**
+     * Puts a book loaded from persistent storage into the library without notifying listeners.
+     * <p>
+     * Only the valuation, the search and the indexes are told about the book, since they
+     * are not persisted.
+     * </p>
+     *
+     * @param book       the loaded book
+     * @param quantity   the stored quantity
+     * @param registered the stored number of registered copies
+     */
+    private void restoreBook(Book book, int quantity, int registered) {
+        Stock added = appendToCatalogOrder(book, quantity, registered);
+        valuation.bookRegistered(book, quantity);
+        search.bookRegistered(book, quantity);
+        indexes.bookRegistered(book, quantity);
+        indexTitle(added);
+    }
+
+    /**
+     * Adds a listener notified about every following inventory change.
+     *
+     * @param listener the listener to add
+     */
+    public synchronized void addInventoryListener(InventoryListener listener) {
+        InventoryListener[] current = listeners;
+        InventoryListener[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = listener;
+        listeners = updated;
+    }
+
+    /**
+     * Removes a previously added listener.
+     *
+     * @param listener the listener to remove
+     */
+    public synchronized void removeInventoryListener(InventoryListener listener) {
+        listeners = Arrays.stream(listeners)
+                .filter(l -> l != listener)
+                .toArray(InventoryListener[]::new);
+    }
+
+    /**
+     * Notifies all listeners about a quantity change.
+     *
+     * @param book     the book whose quantity changed
+     * @param delta    the change of the quantity
+     * @param quantity the quantity right after the change
+     */
+    private void fireQuantityChanged(Book book, int delta, int quantity) {
+        for (InventoryListener listener : listeners) {
+            listener.quantityChanged(book, delta, quantity);
+        }
+    }
+
+    /**
+     * Notifies all listeners about copies registered for a registered book.
+     *
+     * @param book     the book
+     * @param copies   the number of copies registered
+     * @param quantity the quantity right after the copies were added
+     */
+    private void fireCopiesRegistered(Book book, int copies, int quantity) {
+        for (InventoryListener listener : listeners) {
+            listener.copiesRegistered(book, copies, quantity);
         }
-        return single_instance;
     }
 
     /**
      * Initializes the library with a predefined set of books.
      * <p>
      * This method adds hardcoded books and their quantities to the library. It is primarily
-     * intended for demonstration purposes and should be replaced with dynamic data loading
-     * in a production environment.
+     * intended for demonstration purposes; it is used when no inventory store is configured
+     * and to seed a new, empty store.
      * </p>
      */
     private void initializeBooks() {
@@ -136,85 +385,822 @@ public class BookLibrary implements LibraryServices {
     /**
      * Displays all books available in the library, along with their quantities and special properties.
      * <p>
-     * This method uses pattern matching to identify and display specific characteristics
-     * of {@link SpecialBook} and {@link Encyclopedia} objects.
+     * The books are listed in registration order through a {@link CatalogWriter}, which
+     * buffers the lines and writes them to standard output in large blocks. The listing
+     * reads a {@link #snapshot()}, so it shows the stock of one moment however long the
+     * output takes.
      * </p>
      */
     public void displayListOfBooks() {
-        System.out.println("Books in Library:");
-        for (Map.Entry<Book, Integer> entry : books.entrySet()) {
-            Book book = entry.getKey();
-            System.out.println(book.getTitle() + " by " + book.getAuthor() + " - Quantity: " + entry.getValue());
-            if (book instanceof SpecialBook specialBook) {
-                System.out.println(" (Signed: " + specialBook.isSigned() + ", Rare: " + specialBook.isRare() + ")");
-            } else if (book instanceof Encyclopedia encyclopedia) {
-                System.out.println(" (Illustrated: " + encyclopedia.isIllustration() + ")");
-            } else {
-                System.out.println();
+        CatalogWriter writer = new CatalogWriter(new OutputStreamWriter(System.out, Charset.defaultCharset()));
+        writer.writeLine("Books in Library:");
+        try (CatalogSnapshot snapshot = snapshot()) {
+            snapshot.listBooks(BookFilter.ALL, 0, Integer.MAX_VALUE, writer);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Lists a page of the books selected by a filter, in registration order.
+     * <p>
+     * The listing starts at a cursor: 0 for the first page, then the cursor returned by
+     * the previous page. Books are never removed and always keep their place, so paging
+     * through the whole catalog sees every book registered before the first page exactly
+     * once, however long the paging takes; books registered meanwhile are listed at the
+     * end. The quantities are read as each book is visited; page through a
+     * {@link #snapshot()} for the quantities of one moment. A page only holds the books
+     * passed to the consumer, so listing millions of books takes constant memory.
+     * </p>
+     * <p>
+     * Example Usage:
+     * <pre>
+     * long cursor = 0;
+     * do {
+     *     cursor = library.listBooks(filter, cursor, 1000, writer);
+     * } while (cursor != BookLibrary.END_OF_CATALOG);
+     * </pre>
+     * </p>
+     *
+     * @param filter   selects the books listed
+     * @param cursor   where the page starts: 0 or a cursor returned by an earlier page
+     * @param limit    the largest number of books listed; must be greater than 0
+     * @param consumer receives each selected book and its quantity in stock
+     * @return the cursor of the next page, or {@link #END_OF_CATALOG} if the catalog was
+     *         listed to its end
+     * @throws IllegalArgumentException if {@code cursor} is negative or {@code limit <= 0}
+     */
+    public long listBooks(BookFilter filter, long cursor, int limit, ObjIntConsumer<Book> consumer) {
+        if (cursor < 0) {
+            throw new IllegalArgumentException("Cursor must not be negative.");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be greater than 0.");
+        }
+        int size = catalogSize;
+        Stock[] order = catalogOrder;
+        int listed = 0;
+        for (long position = cursor; position < size; position++) {
+            if (listed == limit) {
+                return position;
+            }
+            Stock stock = order[(int) position];
+            int quantity = stock.get();
+            if (filter.test(stock.book, quantity)) {
+                consumer.accept(stock.book, quantity);
+                listed++;
             }
         }
+        return END_OF_CATALOG;
+    }
+
+    /**
+     * Writes every book, its quantity in stock and its number of copies registered to a
+     * snapshot file, in registration order.
+     * <p>
+     * Books are encoded as they are visited, so the snapshot is written in constant
+     * memory. The books and quantities are read from a {@link #snapshot()}, so the file
+     * holds the stock of one moment; borrows and returns during the export are not blocked.
+     * </p>
+     *
+     * @param path the snapshot file, created or replaced
+     * @return the number of books written
+     * @throws IOException if the file cannot be written
+     */
+    public long exportSnapshot(Path path) throws IOException {
+        try (CatalogSnapshot snapshot = snapshot(); SnapshotWriter writer = SnapshotWriter.create(path)) {
+            snapshot.forEachRecord((book, quantity, registered) -> {
+                try {
+                    writer.write(book, quantity, registered);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return writer.getBooks();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Registers every book of a snapshot file with its copies, as if
+     * {@link #registerNewBook(Book, int)} was called for each with its registered copies
+     * and the copies that were on loan were then borrowed.
+     * <p>
+     * The copies on loan when the snapshot was written are registered but not put in
+     * stock, so they can be returned later. A book of an older snapshot, which only holds
+     * the quantity in stock, has every registered copy in stock; one without copies is
+     * registered with none. The snapshot is streamed, so it is never held in memory as a
+     * whole. Books of a snapshot that turns out to be corrupt stay registered up to the
+     * damaged record.
+     * </p>
+     *
+     * @param path the snapshot file
+     * @return the number of books read
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public long importSnapshot(Path path) throws IOException {
+        try (SnapshotReader reader = SnapshotReader.open(path)) {
+            return reader.read(this::importBook);
+        }
+    }
+
+    /**
+     * Registers a book read from a snapshot with its copies, some of them on loan.
+     * <p>
+     * Listeners are told about the registered copies first and then about the ones on
+     * loan leaving the stock, as for a registration followed by borrows, although the
+     * stock gets both at once: a borrow never takes a copy that is on loan.
+     * </p>
+     *
+     * @param book       the book
+     * @param quantity   the number of copies in stock
+     * @param registered the number of copies registered, in stock or on loan
+     */
+    private synchronized void importBook(Book book, int quantity, int registered) {
+        int onLoan = registered - quantity;
+        Stock stock = books.get(book);
+        if (stock != null) {
+            int updated = stock.register(registered, quantity);
+            fireCopiesRegistered(stock.book, registered, updated + onLoan);
+            if (onLoan > 0) {
+                fireQuantityChanged(stock.book, -onLoan, updated);
+            }
+            return;
+        }
+
+        Stock added = appendToCatalogOrder(book, quantity, registered);
+        for (InventoryListener listener : listeners) {
+            listener.bookRegistered(book, registered);
+        }
+        if (onLoan > 0) {
+            fireQuantityChanged(book, -onLoan, quantity);
+        }
+        indexTitle(added);
     }
 
     /**
      * Registers a new book or updates the quantity of an existing book in the library.
+     * <p>
+     * A book equal to a registered one, that is with the same {@link book.BookKey}, is the
+     * same book: its copies are added to the registered one, so importing a feed twice
+     * does not add a second entry. The registered book keeps its own genre, language,
+     * page count and value; those of the new one are not used. The book is also added to
+     * the title index. A book with the same normalized title as a registered one but not
+     * equal to it, such as another edition, is indexed after it: borrows and returns by
+     * title reach every such book, the first registered first. The book is added to the
+     * stock map and announced to the listeners before it is added to the title index, so
+     * a concurrent lookup that finds the title always finds its stock as well, and no
+     * borrow can be reported before the registration. Registrations are serialized;
+     * borrowing and returning are not blocked by them.
+     * </p>
      *
      * @param book     the book to be registered
      * @param quantity the number of copies to add; must be greater than 0
      * @throws IllegalArgumentException if {@code quantity} is less than or equal to 0
      */
-    public void registerNewBook(Book book, int quantity) {
-        books.put(book, books.getOrDefault(book, 0) + quantity);
+    public synchronized void registerNewBook(Book book, int quantity) {
+        Stock stock = books.get(book);
+        if (stock != null) {
+            fireCopiesRegistered(stock.book, quantity, stock.register(quantity));
+            return;
+        }
+
+        Stock added = appendToCatalogOrder(book, quantity, quantity);
+        for (InventoryListener listener : listeners) {
+            listener.bookRegistered(book, quantity);
+        }
+        indexTitle(added);
+    }
+
+    /**
+     * Adds a newly registered book to the title index, after the books registered before
+     * it with the same normalized title. Called under the registration lock.
+     *
+     * @param stock the stock of the book
+     */
+    private void indexTitle(Stock stock) {
+        Stock edition = titleIndex.putIfAbsent(TitleNormalizer.normalize(stock.book.getTitle()), stock);
+        if (edition != null) {
+            while (edition.nextEdition != null) {
+                edition = edition.nextEdition;
+            }
+            edition.nextEdition = stock;
+        }
+    }
+
+    /**
+     * Adds the stock of a newly registered book to the stock map and the registration order.
+     *
+     * @param book       the book
+     * @param quantity   the number of copies in stock
+     * @param registered the number of copies registered
+     * @return the stock of the book
+     */
+    private Stock appendToCatalogOrder(Book book, int quantity, int registered) {
+        Stock[] order = catalogOrder;
+        int size = catalogSize;
+        Stock stock = new Stock(book, size, quantity, registered, clock);
+        books.put(book, stock);
+        if (size == order.length) {
+            order = Arrays.copyOf(order, size * 2);
+            catalogOrder = order;
+        }
+        order[size] = stock;
+        catalogSize = size + 1;
+        return stock;
+    }
+
+    /**
+     * Registers a batch of books, as if {@link #registerNewBook(Book, int)} was called for each.
+     * <p>
+     * The registration lock is taken once for the whole batch, which makes bulk imports
+     * cheaper than registering the books one by one.
+     * </p>
+     *
+     * @param batch the books to register and the number of copies to add for each
+     */
+    public synchronized void registerNewBooks(Map<Book, Integer> batch) {
+        for (Map.Entry<Book, Integer> entry : batch.entrySet()) {
+            registerNewBook(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Finds a book by its title.
+     *
+     * @param title the title of the book (case- and accent-insensitive)
+     * @return the first book registered with the title, or {@code null} if the library has
+     *         no such title
+     */
+    public Book findByTitle(String title) {
+        Stock stock = titleIndex.get(TitleNormalizer.normalize(title));
+        return stock == null ? null : stock.book;
+    }
+
+    /**
+     * Finds every book with a title, such as the editions of a work.
+     *
+     * @param title the title of the books (case- and accent-insensitive)
+     * @return the books in registration order; empty if the library has no such title
+     */
+    public List<Book> findEditions(String title) {
+        List<Book> editions = new ArrayList<>(1);
+        for (Stock stock = titleIndex.get(TitleNormalizer.normalize(title)); stock != null; stock = stock.nextEdition) {
+            editions.add(stock.book);
+        }
+        return editions;
+    }
+
+    /**
+     * Returns the search over the titles and authors of the library.
+     * <p>
+     * Books are added to the search when they are registered.
+     * </p>
+     *
+     * @return the search
+     */
+    public BookSearch getSearch() {
+        return search;
+    }
+
+    /**
+     * Returns the secondary indexes over the genres, languages, authors, flags, page
+     * counts and values of the books.
+     *
+     * @return the indexes
+     */
+    public BookIndexes getIndexes() {
+        return indexes;
+    }
+
+    /**
+     * Returns the recommender of the titles borrowed together.
+     * <p>
+     * The library does not know who borrows a book, so borrows are recorded by the
+     * callers that do, such as the {@link Librarian}.
+     * </p>
+     *
+     * @return the recommender
+     */
+    public Recommender getRecommender() {
+        return recommender;
+    }
+
+    /**
+     * Returns the demand analytics, which count every borrow attempt, including those
+     * that find no copy in stock or no such title.
+     *
+     * @return the demand analytics
+     */
+    public DemandAnalytics getDemand() {
+        return demand;
+    }
+
+    /**
+     * Finds the books meeting every criterion of a query, using the secondary indexes.
+     * <p>
+     * For example the Slovak thrillers signed by their author for under 20 EUR, with a
+     * copy in stock:
+     * <pre>
+     * library.findBooks(new BookQuery.Builder().language("SK").genre("napinavy")
+     *         .signed(true).valueBetween(0, 20).inStockOnly(true).build(), 10);
+     * </pre>
+     * </p>
+     *
+     * @param query the criteria
+     * @param limit the maximum number of books returned
+     * @return the matching books in registration order
+     */
+    public List<Book> findBooks(BookQuery query, int limit) {
+        return indexes.find(query, limit, book -> getQuantity(book) > 0);
+    }
+
+    /**
+     * Returns the number of copies of a book currently in stock.
+     *
+     * @param book the book to look up
+     * @return the quantity in stock, or 0 if the book is not registered
+     */
+    public int getQuantity(Book book) {
+        Stock stock = books.get(book);
+        return stock == null ? 0 : stock.get();
+    }
+
+    /**
+     * Passes every book of the library and its quantity in stock to the action.
+     * <p>
+     * Books are visited in no particular order. Books registered and quantities changed
+     * during the iteration may or may not be seen.
+     * </p>
+     *
+     * @param action receives each book and its quantity in stock
+     */
+    public void forEachBook(BiConsumer<Book, Integer> action) {
+        for (Stock stock : books.values()) {
+            action.accept(stock.book, stock.get());
+        }
+    }
+
+    /**
+     * Returns the value of the books in stock, from running totals.
+     * <p>
+     * The totals are updated on every registration, borrow and return, so this method
+     * does not iterate over the books. The value of a book in stock is its value times
+     * the number of copies in stock; borrowed copies do not count.
+     * </p>
+     *
+     * @return the current valuation
+     */
+    public Valuation getValuation() {
+        return valuation.snapshot();
+    }
+
+    /**
+     * Computes the value of the books in stock from scratch.
+     * <p>
+     * The books are valued in parallel on the common fork-join pool, from a
+     * {@link #snapshot()}, so the result is the value of the stock at one moment even
+     * during concurrent checkouts. It equals {@link #getValuation()} whenever no checkouts
+     * run at the same time, which makes this method a check of the running totals.
+     * </p>
+     *
+     * @return the recomputed valuation
+     */
+    public Valuation recomputeValuation() {
+        try (CatalogSnapshot snapshot = snapshot()) {
+            return snapshot.getValuation();
+        }
+    }
+
+    /**
+     * Copies the inventory into a compact {@link ColumnarCatalog}.
+     * <p>
+     * The catalog is copied from a {@link #snapshot()}, in registration order; later
+     * changes of the library are not reflected in it.
+     * </p>
+     *
+     * @return a new columnar catalog of the books and their quantities
+     */
+    public ColumnarCatalog toColumnarCatalog() {
+        ColumnarCatalog catalog = new ColumnarCatalog();
+        try (CatalogSnapshot snapshot = snapshot()) {
+            snapshot.forEachBook(catalog::add);
+        }
+        return catalog;
+    }
+
+    /**
+     * Opens a consistent, read-only view of the catalog and its stock as they are now.
+     * <p>
+     * Opening a snapshot takes constant time whatever the size of the catalog. It waits
+     * for a running registration to finish, so a batch of registrations is either wholly
+     * in the snapshot or not at all; borrows and returns are never blocked, neither by
+     * opening nor by reading it. Close the snapshot when done.
+     * </p>
+     * <p>
+     * Example Usage:
+     * <pre>
+     * try (CatalogSnapshot snapshot = library.snapshot()) {
+     *     report(snapshot.getValuation());
+     * }
+     * </pre>
+     * </p>
+     *
+     * @return the open snapshot
+     */
+    public synchronized CatalogSnapshot snapshot() {
+        return new CatalogSnapshot(clock, clock.open(), catalogOrder, catalogSize, books);
+    }
+
+    /**
+     * Estimates the heap used by the books of the library and by a columnar catalog of them.
+     *
+     * @return the footprint report
+     */
+    public FootprintReport footprintReport() {
+        return FootprintReport.compare(books.keySet(), toColumnarCatalog());
     }
 
     /**
      * Borrows a book from the library.
      * <p>
-     * If the book is available, its quantity is decreased by 1. If the book is out of stock
-     * or does not exist in the library, an appropriate message is displayed.
+     * If the book is available, its quantity is decreased by 1. The quantity is decreased
+     * with a compare-and-set loop, so it never drops below 0 under contention. If several
+     * books have the title, the first registered one with a copy in stock lends it. This method
+     * does no console I/O; the outcome is reported through the returned status. Every
+     * attempt, served or not, is counted by the {@link #getDemand() demand analytics}.
      * </p>
      *
-     * @param title the title of the book to borrow (case-insensitive)
+     * @param title the title of the book to borrow (case- and accent-insensitive)
+     * @return {@link CirculationStatus#BORROWED}, {@link CirculationStatus#OUT_OF_STOCK}
+     *         or {@link CirculationStatus#NOT_FOUND}
      */
     @Override
-    public void borrowBook(String title) {
-        for (Map.Entry<Book, Integer> entry : books.entrySet()) {
-            Book book = entry.getKey();
-            int quantity = entry.getValue();
-
-            if (book.getTitle().equalsIgnoreCase(title)) {
-                if (quantity > 0) {
-                    books.put(book, quantity - 1);
-                    System.out.println("You borrowed \"" + book.getTitle() + "\".");
-                } else {
-                    System.out.println("Sorry, \"" + book.getTitle() + "\" is currently out of stock.");
-                }
-                return;
+    public CirculationStatus borrowBook(String title) {
+        String key = TitleNormalizer.normalize(title);
+        Stock first = titleIndex.get(key);
+        if (first == null) {
+            demand.recordAttempt(key, title, null, CirculationStatus.NOT_FOUND);
+            return CirculationStatus.NOT_FOUND;
+        }
+
+        for (Stock stock = first; stock != null; stock = stock.nextEdition) {
+            if (take(stock.book, stock) == CirculationStatus.BORROWED) {
+                demand.recordAttempt(key, stock.book.getTitle(), stock.book, CirculationStatus.BORROWED);
+                return CirculationStatus.BORROWED;
             }
         }
-        System.out.println("The requested book is not available in the library.");
+        demand.recordAttempt(key, first.book.getTitle(), first.book, CirculationStatus.OUT_OF_STOCK);
+        return CirculationStatus.OUT_OF_STOCK;
+    }
+
+    /**
+     * Takes a copy of a book out of stock, like {@link #borrowBook(String)}, but without
+     * counting a borrow attempt in the {@link #getDemand() demand analytics}.
+     * <p>
+     * Meant for callers that count their borrow attempts themselves, such as a
+     * {@link circulation.LoanDesk}, which takes copies for a book it chose and lends
+     * returned copies to the patrons waiting for them without that reading as demand.
+     * </p>
+     *
+     * @param book the book to take a copy of
+     * @return {@link CirculationStatus#BORROWED}, {@link CirculationStatus#OUT_OF_STOCK}
+     *         or {@link CirculationStatus#NOT_FOUND} if the book is not registered
+     */
+    public CirculationStatus takeCopy(Book book) {
+        Stock stock = books.get(book);
+        return stock == null ? CirculationStatus.NOT_FOUND : take(stock.book, stock);
+    }
+
+    /**
+     * Decreases the quantity of a book by 1 if a copy is in stock.
+     *
+     * @param book  the book
+     * @param stock its stock
+     * @return {@link CirculationStatus#BORROWED} or {@link CirculationStatus#OUT_OF_STOCK}
+     */
+    private CirculationStatus take(Book book, Stock stock) {
+        int quantity;
+        do {
+            quantity = stock.get();
+            if (quantity == 0) {
+                return CirculationStatus.OUT_OF_STOCK;
+            }
+        } while (!stock.compareAndSet(quantity, quantity - 1));
+        fireQuantityChanged(book, -1, quantity - 1);
+        return CirculationStatus.BORROWED;
     }
 
     /**
      * Returns a borrowed book to the library.
      * <p>
-     * If the book exists in the library, its quantity is increased by 1. If the book is not
-     * recognized as part of the library collection, a warning message is displayed.
+     * If the book exists in the library and a copy of it is out, its quantity is
+     * increased by 1. The library knows how many copies of every book were registered, so
+     * a return that would put more copies in stock than that is refused with
+     * {@link CirculationStatus#NOT_ON_LOAN}, whichever way it reaches the library. If
+     * several books have the title, the first registered one with a copy out takes it
+     * back. This method does no console I/O; the outcome is reported through the returned
+     * status.
      * </p>
      *
-     * @param title the title of the book to return (case-insensitive)
+     * @param title the title of the book to return (case- and accent-insensitive)
+     * @return {@link CirculationStatus#RETURNED}, {@link CirculationStatus#NOT_ON_LOAN} or
+     *         {@link CirculationStatus#NOT_FOUND}
      */
     @Override
-    public void returnBook(String title) {
-        for (Map.Entry<Book, Integer> entry : books.entrySet()) {
-            Book book = entry.getKey();
-            int quantity = entry.getValue();
+    public CirculationStatus returnBook(String title) {
+        Stock first = titleIndex.get(TitleNormalizer.normalize(title));
+        if (first == null) {
+            return CirculationStatus.NOT_FOUND;
+        }
+        for (Stock stock = first; stock != null; stock = stock.nextEdition) {
+            if (giveBack(stock) == CirculationStatus.RETURNED) {
+                return CirculationStatus.RETURNED;
+            }
+        }
+        return CirculationStatus.NOT_ON_LOAN;
+    }
+
+    /**
+     * Puts a copy of a book back in stock, like {@link #returnBook(String)}, but for this
+     * book only, even if other books have its title.
+     * <p>
+     * Meant for callers that know which book a copy belongs to, such as a
+     * {@link circulation.LoanDesk} checking in a loan.
+     * </p>
+     *
+     * @param book the book to return a copy of
+     * @return {@link CirculationStatus#RETURNED}, {@link CirculationStatus#NOT_ON_LOAN}
+     *         or {@link CirculationStatus#NOT_FOUND} if the book is not registered
+     */
+    public CirculationStatus returnCopy(Book book) {
+        Stock stock = books.get(book);
+        return stock == null ? CirculationStatus.NOT_FOUND : giveBack(stock);
+    }
 
-            if (book.getTitle().equalsIgnoreCase(title)) {
-                books.put(book, quantity + 1);
-                System.out.println("Thank you for returning \"" + book.getTitle() + "\".");
-                return;
+    /**
+     * Increases the quantity of a book by 1 if a copy is out.
+     *
+     * @param stock the stock of the book
+     * @return {@link CirculationStatus#RETURNED} or {@link CirculationStatus#NOT_ON_LOAN}
+     */
+    private CirculationStatus giveBack(Stock stock) {
+        int quantity;
+        do {
+            quantity = stock.get();
+            if (quantity >= stock.registered()) {
+                return CirculationStatus.NOT_ON_LOAN;
+            }
+        } while (!stock.compareAndSet(quantity, quantity + 1));
+        fireQuantityChanged(stock.book, 1, quantity + 1);
+        return CirculationStatus.RETURNED;
+    }
+
+    /**
+     * Borrows one copy for every title of a batch.
+     * <p>
+     * The titles are resolved in one pass and grouped by book, so the stock of every book
+     * is changed once, by one compare-and-set for all its copies in the batch, and the
+     * listeners are notified once per book. A title several books have goes to the first
+     * of them with a copy left for it when the batch is resolved. In {@link BatchMode#BEST_EFFORT} mode a book
+     * with fewer copies in stock than requested lends what it has, to the titles listed
+     * first. This method does no console I/O.
+     * </p>
+     * <p>
+     * An {@link BatchMode#ALL_OR_NOTHING} batch first checks that every book has the copies
+     * it asks for, and takes nothing if one has not. It then takes the copies one book after
+     * the other and puts them back if a concurrent borrow emptied a later book meanwhile.
+     * Listeners are only notified once the whole batch is applied, so they never see a
+     * batch that was undone. The batch is not atomic, though: while it runs, a borrow of
+     * one of its books may find the copies it holds taken, and a snapshot may show part of it.
+     * </p>
+     * <p>
+     * Every title counts as a borrow attempt in the {@link #getDemand() demand analytics},
+     * except the {@link CirculationStatus#ABORTED aborted} ones: they could have been
+     * served, but were not, so they are neither met nor unmet demand.
+     * </p>
+     *
+     * @param titles the titles of the books to borrow (case- and accent-insensitive)
+     * @param mode   how a title that cannot be borrowed affects the others
+     * @return {@link CirculationStatus#BORROWED}, {@link CirculationStatus#OUT_OF_STOCK},
+     *         {@link CirculationStatus#NOT_FOUND} or {@link CirculationStatus#ABORTED} for every title
+     */
+    @Override
+    public BatchResult borrowAll(List<String> titles, BatchMode mode) {
+        return applyAll(titles, mode, true);
+    }
+
+    /**
+     * Returns one copy for every title of a batch.
+     * <p>
+     * The titles are resolved in one pass and grouped by book like in
+     * {@link #borrowAll(List, BatchMode)}. Like {@link #returnBook(String)}, a book takes
+     * back at most as many copies as are out; the titles listed first are taken back. An
+     * {@link BatchMode#ALL_OR_NOTHING} batch returns nothing if any title is not found or
+     * cannot be taken back; like a borrowing batch, it is not atomic with respect to
+     * concurrent operations.
+     * </p>
+     *
+     * @param titles the titles of the books to return (case- and accent-insensitive)
+     * @param mode   how a title that cannot be returned affects the others
+     * @return {@link CirculationStatus#RETURNED}, {@link CirculationStatus#NOT_ON_LOAN},
+     *         {@link CirculationStatus#NOT_FOUND} or {@link CirculationStatus#ABORTED} for every title
+     */
+    @Override
+    public BatchResult returnAll(List<String> titles, BatchMode mode) {
+        return applyAll(titles, mode, false);
+    }
+
+    /**
+     * Borrows or returns a batch of titles.
+     *
+     * @param titles the titles
+     * @param mode   how a failing title affects the others
+     * @param borrow {@code true} to borrow, {@code false} to return
+     * @return the outcome for every title
+     */
+    private BatchResult applyAll(List<String> titles, BatchMode mode, boolean borrow) {
+        int size = titles.size();
+        BatchGroup[] groupOf = new BatchGroup[size];
+        BatchGroup[] groups = new BatchGroup[size];
+        int groupCount = 0;
+        // open-addressed table of the groups by book identity, at most half full
+        BatchGroup[] table = new BatchGroup[Integer.highestOneBit(Math.max(1, size)) << 2];
+        boolean aborted = false;
+        String[] keys = new String[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = TitleNormalizer.normalize(titles.get(i));
+            Stock first = titleIndex.get(keys[i]);
+            if (first == null) {
+                aborted |= mode == BatchMode.ALL_OR_NOTHING;
+                continue;
             }
+            // the first book of the title with a copy left beyond those the batch asks for
+            Stock stock = first;
+            for (Stock edition = first; edition != null; edition = edition.nextEdition) {
+                BatchGroup asked = table[slotOf(table, edition.book)];
+                if ((asked == null ? 0 : asked.requested)
+                        < (borrow ? edition.get() : edition.registered() - edition.get())) {
+                    stock = edition;
+                    break;
+                }
+            }
+            int slot = slotOf(table, stock.book);
+            BatchGroup group = table[slot];
+            if (group == null) {
+                group = new BatchGroup(stock.book, stock);
+                table[slot] = group;
+                groups[groupCount++] = group;
+            }
+            group.requested++;
+            groupOf[i] = group;
+        }
+
+        // check every book before changing any, so a batch that cannot be applied takes
+        // nothing; a concurrent change may still make a book fail below
+        for (int g = 0; g < groupCount && !aborted && mode == BatchMode.ALL_OR_NOTHING; g++) {
+            aborted = !groups[g].fits(borrow);
+        }
+        for (int g = 0; g < groupCount && !aborted; g++) {
+            if (!groups[g].apply(borrow, mode)) {
+                for (int applied = 0; applied < g; applied++) {
+                    groups[applied].undo(borrow);
+                }
+                aborted = true;
+            }
+        }
+        if (!aborted) {
+            for (int g = 0; g < groupCount; g++) {
+                BatchGroup group = groups[g];
+                if (group.granted > 0) {
+                    fireQuantityChanged(group.book, borrow ? -group.granted : group.granted, group.quantity);
+                }
+            }
+        }
+
+        CirculationStatus success = borrow ? CirculationStatus.BORROWED : CirculationStatus.RETURNED;
+        CirculationStatus refused = borrow ? CirculationStatus.OUT_OF_STOCK : CirculationStatus.NOT_ON_LOAN;
+        byte[] statuses = new byte[size];
+        int succeeded = 0;
+        for (int i = 0; i < size; i++) {
+            BatchGroup group = groupOf[i];
+            CirculationStatus status;
+            if (group == null) {
+                status = CirculationStatus.NOT_FOUND;
+            } else if (aborted) {
+                status = group.failed ? refused : CirculationStatus.ABORTED;
+            } else if (group.assigned < group.granted) {
+                group.assigned++;
+                succeeded++;
+                status = success;
+            } else {
+                status = refused;
+            }
+            statuses[i] = (byte) status.ordinal();
+            if (borrow && status != CirculationStatus.ABORTED) {
+                demand.recordAttempt(keys[i], group == null ? titles.get(i) : group.book.getTitle(),
+                        group == null ? null : group.book, status);
+            }
+        }
+        return new BatchResult(statuses, succeeded);
+    }
+
+    /**
+     * Finds the slot of a book in an open-addressed table of batch groups.
+     *
+     * @param table the table, at most half full, its length a power of two
+     * @param book  the book
+     * @return the slot of the group of the book, or the empty slot where it belongs
+     */
+    private static int slotOf(BatchGroup[] table, Book book) {
+        int mask = table.length - 1;
+        int slot = System.identityHashCode(book) & mask;
+        while (table[slot] != null && table[slot].book != book) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * The titles of a batch that name the same book.
+     */
+    private static final class BatchGroup {
+        /** The book. */
+        final Book book;
+
+        /** The stock of the book. */
+        final Stock stock;
+
+        /** Number of copies the batch asks for. */
+        int requested;
+
+        /** Number of copies borrowed or returned. */
+        int granted;
+
+        /** Number of granted copies already reported to a title. */
+        int assigned;
+
+        /** The quantity right after the change was applied. */
+        int quantity;
+
+        /** Whether the group made an all-or-nothing batch fail. */
+        boolean failed;
+
+        /**
+         * Creates a group.
+         * @param book  the book
+         * @param stock the stock of the book
+         */
+        BatchGroup(Book book, Stock stock) {
+            this.book = book;
+            this.stock = stock;
+        }
+
+        /**
+         * Tells whether the stock can move all requested copies right now.
+         * @param borrow {@code true} to borrow, {@code false} to return
+         * @return {@code true} if enough copies are in stock when borrowing, or out when
+         *         returning; otherwise the group is marked as failed
+         */
+        boolean fits(boolean borrow) {
+            int current = stock.get();
+            failed = (borrow ? current : stock.registered() - current) < requested;
+            return !failed;
+        }
+
+        /**
+         * Changes the stock by the requested copies, or by as many as are in stock when
+         * borrowing and as many as are out when returning.
+         * @param borrow {@code true} to borrow, {@code false} to return
+         * @param mode   whether fewer copies than requested may be borrowed or returned
+         * @return {@code false} if an all-or-nothing batch cannot move all requested copies
+         */
+        boolean apply(boolean borrow, BatchMode mode) {
+            int current;
+            int moved;
+            do {
+                current = stock.get();
+                moved = Math.min(borrow ? current : stock.registered() - current, requested);
+                if (moved < requested && mode == BatchMode.ALL_OR_NOTHING) {
+                    failed = true;
+                    return false;
+                }
+                if (moved <= 0) {
+                    return true;
+                }
+            } while (!stock.compareAndSet(current, borrow ? current - moved : current + moved));
+            granted = moved;
+            quantity = borrow ? current - moved : current + moved;
+            return true;
+        }
+
+        /**
+         * Reverts the applied change.
+         * @param borrow {@code true} if the copies were borrowed, {@code false} if returned
+         */
+        void undo(boolean borrow) {
+            stock.addAndGet(borrow ? granted : -granted);
+            granted = 0;
         }
-        System.out.println("This book does not belong to the library.");
     }
 }
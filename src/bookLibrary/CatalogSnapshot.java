@@ -0,0 +1,231 @@
+package bookLibrary;
+
+import book.Book;
+
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A consistent, read-only view of the catalog and its stock at one point in time.
+ * <p>
+ * A snapshot is opened by {@link BookLibrary#snapshot()} in constant time, whatever the
+ * size of the catalog: it copies nothing, but remembers a version of the library and
+ * the number of books registered. Every read returns the quantities as they were when
+ * the snapshot was opened, however long the read takes and however many borrows and
+ * returns happen meanwhile, so a listing or a valuation over a snapshot is never torn.
+ * Reads take no lock and borrows and returns never wait for them; the library keeps the
+ * older quantities a snapshot reads next to the current ones until it is closed.
+ * </p>
+ * <p>
+ * Close a snapshot as soon as the report is done, since its older quantities are kept
+ * until then. A snapshot can be read by several threads at once; reading a closed
+ * snapshot fails. Closing a snapshot while it is read makes the read fail too, as soon
+ * as it reaches a book it has not read yet: every quantity handed out before was read
+ * while the snapshot was open, so a report never mixes in later quantities.
+ * </p>
+ * <p>
+ * Example Usage:
+ * <pre>
+ * try (CatalogSnapshot snapshot = library.snapshot()) {
+ *     Valuation valuation = snapshot.getValuation();
+ *     snapshot.listBooks(BookFilter.ALL, 0, Integer.MAX_VALUE, writer);
+ * }
+ * </pre>
+ * </p>
+ */
+public final class CatalogSnapshot implements AutoCloseable {
+
+    /** The clock the snapshot is registered with. */
+    private final VersionClock clock;
+
+    /** The version of the snapshot. */
+    private final long version;
+
+    /** The stock of the books in registration order. */
+    private final Stock[] order;
+
+    /** The number of books in the snapshot. */
+    private final int size;
+
+    /** The stock of every book of the library, including books registered later. */
+    private final Map<Book, Stock> books;
+
+    /** Set once the snapshot is closed. */
+    private volatile boolean closed;
+
+    /**
+     * Creates a snapshot of a version opened by the clock.
+     * @param clock   the clock the version was opened with
+     * @param version the version
+     * @param order   the stock of the books in registration order
+     * @param size    the number of books registered before the version
+     * @param books   the stock of every book of the library
+     */
+    CatalogSnapshot(VersionClock clock, long version, Stock[] order, int size, Map<Book, Stock> books) {
+        this.clock = clock;
+        this.version = version;
+        this.order = order;
+        this.size = size;
+        this.books = books;
+    }
+
+    /**
+     * Returns the version of the library the snapshot shows.
+     * @return the version; a later snapshot has a greater one
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the number of books in the snapshot.
+     * @return the number of books registered when the snapshot was opened
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of copies of a book in stock when the snapshot was opened.
+     *
+     * @param book the book to look up
+     * @return the quantity in stock, or 0 if the book was not registered
+     * @throws IllegalStateException if the snapshot is closed
+     */
+    public int getQuantity(Book book) {
+        checkOpen();
+        Stock stock = books.get(book);
+        int quantity = stock == null || stock.position >= size ? 0 : stock.getAt(version);
+        checkOpen();
+        return quantity;
+    }
+
+    /**
+     * Lists a page of the books selected by a filter, in registration order, like
+     * {@link BookLibrary#listBooks(BookFilter, long, int, ObjIntConsumer)}.
+     * <p>
+     * Every page of a snapshot shows the same point in time, so paging through the whole
+     * snapshot lists each book once with the quantities of that moment.
+     * </p>
+     *
+     * @param filter   selects the books listed
+     * @param cursor   where the page starts: 0 or a cursor returned by an earlier page
+     * @param limit    the largest number of books listed; must be greater than 0
+     * @param consumer receives each selected book and its quantity in stock
+     * @return the cursor of the next page, or {@link BookLibrary#END_OF_CATALOG} if the
+     *         snapshot was listed to its end
+     * @throws IllegalArgumentException if {@code cursor} is negative or {@code limit <= 0}
+     * @throws IllegalStateException if the snapshot is closed, or closed during the listing
+     */
+    public long listBooks(BookFilter filter, long cursor, int limit, ObjIntConsumer<Book> consumer) {
+        if (cursor < 0) {
+            throw new IllegalArgumentException("Cursor must not be negative.");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be greater than 0.");
+        }
+        checkOpen();
+        int listed = 0;
+        for (long position = cursor; position < size; position++) {
+            if (listed == limit) {
+                return position;
+            }
+            Stock stock = order[(int) position];
+            int quantity = stock.getAt(version);
+            checkOpen();
+            if (filter.test(stock.book, quantity)) {
+                consumer.accept(stock.book, quantity);
+                listed++;
+            }
+        }
+        return BookLibrary.END_OF_CATALOG;
+    }
+
+    /**
+     * Passes every book of the snapshot and its quantity in stock to the action, in
+     * registration order.
+     *
+     * @param action receives each book and its quantity in stock
+     * @throws IllegalStateException if the snapshot is closed, or closed during the walk
+     */
+    public void forEachBook(ObjIntConsumer<Book> action) {
+        checkOpen();
+        for (int position = 0; position < size; position++) {
+            int quantity = order[position].getAt(version);
+            checkOpen();
+            action.accept(order[position].book, quantity);
+        }
+    }
+
+    /**
+     * Passes every book of the snapshot, its quantity in stock and its number of copies
+     * registered to the action, in registration order.
+     *
+     * @param action receives each book, its quantity in stock and its registered copies
+     * @throws IllegalStateException if the snapshot is closed, or closed during the walk
+     */
+    void forEachRecord(RecordConsumer action) {
+        checkOpen();
+        for (int position = 0; position < size; position++) {
+            int quantity = order[position].getAt(version);
+            int registered = order[position].registeredAt(version);
+            checkOpen();
+            action.accept(order[position].book, quantity, registered);
+        }
+    }
+
+    /**
+     * Computes the value of the books in stock when the snapshot was opened.
+     * <p>
+     * The books are valued in parallel on the common fork-join pool.
+     * </p>
+     *
+     * @return the valuation
+     * @throws IllegalStateException if the snapshot is closed, or closed during the valuation
+     */
+    public Valuation getValuation() {
+        checkOpen();
+        Valuation valuation = InventoryValuation.recompute(order, size, version);
+        checkOpen();
+        return valuation;
+    }
+
+    /**
+     * Closes the snapshot, so the library no longer keeps the quantities it reads.
+     * Closing a closed snapshot does nothing.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        clock.close(version);
+    }
+
+    /**
+     * Receives the books of a snapshot with their quantities and registered copies.
+     */
+    @FunctionalInterface
+    interface RecordConsumer {
+        /**
+         * Receives a book.
+         * @param book       the book
+         * @param quantity   the number of copies in stock
+         * @param registered the number of copies registered
+         */
+        void accept(Book book, int quantity, int registered);
+    }
+
+    /**
+     * Fails if the snapshot is closed.
+     * @throws IllegalStateException if the snapshot is closed
+     */
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Snapshot is closed.");
+        }
+    }
+}
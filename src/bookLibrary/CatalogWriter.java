@@ -0,0 +1,160 @@
+package bookLibrary;
+
+import book.Book;
+import book.Encyclopedia;
+import book.SpecialBook;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Writes books and their quantities as text lines, one line per book.
+ * <p>
+ * A line reads {@code Strach by Jozef Karika - Quantity: 5}, followed by
+ * {@code  (Signed: true, Rare: false)} for a {@link SpecialBook} or
+ * {@code  (Illustrated: true)} for an {@link Encyclopedia}.
+ * </p>
+ * <p>
+ * The lines are formatted straight into a char buffer that is handed to the underlying
+ * writer only when full: titles and authors are copied without creating strings and
+ * quantities are written digit by digit, so writing a line allocates nothing. The writer
+ * is the consumer of {@link BookLibrary#listBooks(BookFilter, long, int, ObjIntConsumer)}
+ * and is not thread-safe. Call {@link #flush()} when done; the underlying writer is never
+ * closed by this class.
+ * </p>
+ */
+public final class CatalogWriter implements ObjIntConsumer<Book>, Flushable {
+
+    /** Size of the buffer in chars. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Receives the full buffers. */
+    private final Writer out;
+
+    /** The buffered chars. */
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    /** Number of buffered chars. */
+    private int length;
+
+    /** Number of lines written. */
+    private long lines;
+
+    /**
+     * Creates a writer.
+     * @param out receives the lines
+     */
+    public CatalogWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes the line of one book.
+     * @param book     the book
+     * @param quantity its quantity in stock
+     * @throws UncheckedIOException if the underlying writer fails
+     */
+    @Override
+    public void accept(Book book, int quantity) {
+        append(book.getTitle());
+        append(" by ");
+        append(book.getAuthor());
+        append(" - Quantity: ");
+        append(quantity);
+        if (book instanceof SpecialBook specialBook) {
+            append(specialBook.isSigned() ? " (Signed: true" : " (Signed: false");
+            append(specialBook.isRare() ? ", Rare: true)" : ", Rare: false)");
+        } else if (book instanceof Encyclopedia encyclopedia) {
+            append(encyclopedia.isIllustration() ? " (Illustrated: true)" : " (Illustrated: false)");
+        }
+        append(System.lineSeparator());
+        lines++;
+    }
+
+    /**
+     * Writes a text line.
+     * @param line the text, without line separator
+     * @throws UncheckedIOException if the underlying writer fails
+     */
+    public void writeLine(String line) {
+        append(line);
+        append(System.lineSeparator());
+    }
+
+    /**
+     * Returns the number of book lines written.
+     * @return the number of books
+     */
+    public long getLines() {
+        return lines;
+    }
+
+    /**
+     * Hands the buffered chars to the underlying writer and flushes it.
+     * @throws UncheckedIOException if the underlying writer fails
+     */
+    @Override
+    public void flush() {
+        drain();
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Buffers a string, draining the buffer whenever it fills up.
+     * @param text the string; {@code null} is written as {@code null}
+     */
+    private void append(String text) {
+        if (text == null) {
+            text = "null";
+        }
+        int copied = 0;
+        while (copied < text.length()) {
+            if (length == buffer.length) {
+                drain();
+            }
+            int count = Math.min(text.length() - copied, buffer.length - length);
+            text.getChars(copied, copied + count, buffer, length);
+            length += count;
+            copied += count;
+        }
+    }
+
+    /**
+     * Buffers the decimal digits of a non-negative number.
+     * @param value the number
+     */
+    private void append(int value) {
+        if (buffer.length - length < 11) {
+            drain();
+        }
+        int digits = 1;
+        for (int rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    /**
+     * Hands the buffered chars to the underlying writer.
+     * @throws UncheckedIOException if the underlying writer fails
+     */
+    private void drain() {
+        try {
+            out.write(buffer, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        length = 0;
+    }
+}
@@ -0,0 +1,58 @@
+package bookLibrary;
+
+/**
+ * Outcome of a borrow or return operation on {@link LibraryServices}.
+ * <p>
+ * The service layer reports outcomes through these constants instead of printing
+ * messages, so callers can branch on the result and the library does no console I/O
+ * or string building on the checkout path. Presenting the outcome to the user is the
+ * job of the caller, e.g. the {@link Librarian}.
+ * </p>
+ */
+public enum CirculationStatus {
+
+    /** The book was borrowed and its quantity decreased by 1. */
+    BORROWED,
+
+    /** The book exists in the library, but no copy is currently in stock. */
+    OUT_OF_STOCK,
+
+    /** The book was returned and its quantity increased by 1. */
+    RETURNED,
+
+    /** No book with the requested title belongs to the library. */
+    NOT_FOUND,
+
+    /**
+     * The copy is not on loan, so taking it back would raise the stock above what was
+     * registered. Reported by {@link circulation.LoanDesk} for a copy ID and by
+     * {@link BookLibrary} for a title with every copy in stock.
+     */
+    NOT_ON_LOAN,
+
+    /**
+     * No copy is in stock, and the patron was put in the hold queue of the book.
+     * Reported by {@link circulation.LoanDesk}.
+     */
+    ON_HOLD,
+
+    /**
+     * The returned copy was lent straight to the next patron in the hold queue, so the
+     * stock did not change. Reported by {@link circulation.LoanDesk}.
+     */
+    HANDED_TO_HOLD,
+
+    /**
+     * The operation was possible, but was not applied because another operation of the
+     * same {@link BatchMode#ALL_OR_NOTHING} batch failed.
+     */
+    ABORTED;
+
+    /**
+     * Checks whether the operation changed the library stock.
+     * @return {@code true} for {@link #BORROWED} and {@link #RETURNED}, {@code false} otherwise
+     */
+    public boolean isSuccess() {
+        return this == BORROWED || this == RETURNED;
+    }
+}
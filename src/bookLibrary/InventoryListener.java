@@ -0,0 +1,53 @@
+package bookLibrary;
+
+import book.Book;
+
+/**
+ * Receives notifications about changes of the {@link BookLibrary} inventory.
+ * <p>
+ * Listeners are called synchronously on the thread that changed the inventory, right
+ * after the change was applied, so implementations must be thread-safe and fast.
+ * For a given book, {@link #bookRegistered(Book, int)} is always delivered before any
+ * {@link #quantityChanged(Book, int, int)}.
+ * </p>
+ */
+public interface InventoryListener {
+
+    /**
+     * Called when a book is registered in the library for the first time.
+     *
+     * @param book     the newly registered book
+     * @param quantity the number of copies it was registered with
+     */
+    void bookRegistered(Book book, int quantity);
+
+    /**
+     * Called when the quantity of an already registered book changes.
+     * <p>
+     * Under concurrent updates the notifications for one book may arrive in a different
+     * order than the changes were applied, so implementations that keep their own count
+     * should apply {@code delta} rather than copy {@code quantity}.
+     * </p>
+     *
+     * @param book     the book whose quantity changed
+     * @param delta    the change of the quantity, e.g. -1 for a borrow
+     * @param quantity the quantity right after this change was applied
+     */
+    void quantityChanged(Book book, int delta, int quantity);
+
+    /**
+     * Called when more copies of an already registered book are registered.
+     * <p>
+     * The copies are added to the quantity in stock like a return, but also to the number
+     * of copies the library owns, which bounds the returns. Listeners that only follow the
+     * quantity can rely on the default, which reports the copies as a quantity change.
+     * </p>
+     *
+     * @param book     the book
+     * @param copies   the number of copies registered
+     * @param quantity the quantity right after the copies were added
+     */
+    default void copiesRegistered(Book book, int copies, int quantity) {
+        quantityChanged(book, copies, quantity);
+    }
+}
@@ -0,0 +1,227 @@
+package bookLibrary;
+
+import book.Book;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps running totals of the value of the books in stock.
+ * <p>
+ * The valuation is attached to the {@link BookLibrary} as an {@link InventoryListener}.
+ * For every registered book it remembers the value of one copy and the counters of the
+ * book's genre, language and author, so a borrow or return only adds to four
+ * {@link LongAdder}s and never calls {@link book.AbstractBook#getValue()} again.
+ * </p>
+ * <p>
+ * {@link #recompute(Stock[], int, long)} computes the same figures from scratch for a
+ * {@link CatalogSnapshot} with fork-join parallelism, which is used to verify the running totals.
+ * </p>
+ */
+class InventoryValuation implements InventoryListener {
+
+    /** Number of books a fork-join leaf task values sequentially. */
+    private static final int RECOMPUTE_THRESHOLD = 8192;
+
+    /** Total value in units. */
+    private final LongAdder total = new LongAdder();
+
+    /** Value by genre in units. */
+    private final Map<String, LongAdder> byGenre = new ConcurrentHashMap<>();
+
+    /** Value by language in units. */
+    private final Map<String, LongAdder> byLanguage = new ConcurrentHashMap<>();
+
+    /** Value by author in units. */
+    private final Map<String, LongAdder> byAuthor = new ConcurrentHashMap<>();
+
+    /** Precomputed value and counters of every registered book. */
+    private final Map<Book, Entry> entries = new ConcurrentHashMap<>();
+
+    @Override
+    public void bookRegistered(Book book, int quantity) {
+        Entry entry = new Entry(Valuation.toUnits(book.getValue()),
+                byGenre.computeIfAbsent(Valuation.key(book.getGenre()), k -> new LongAdder()),
+                byLanguage.computeIfAbsent(Valuation.key(book.getLanguage()), k -> new LongAdder()),
+                byAuthor.computeIfAbsent(Valuation.key(book.getAuthor()), k -> new LongAdder()));
+        entries.put(book, entry);
+        entry.add(quantity, total);
+    }
+
+    @Override
+    public void quantityChanged(Book book, int delta, int quantity) {
+        Entry entry = entries.get(book);
+        if (entry != null) {
+            entry.add(delta, total);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the running totals.
+     * <p>
+     * The counters are read one after another, so a snapshot taken during concurrent
+     * checkouts may mix totals from slightly different moments.
+     * </p>
+     * @return the current valuation
+     */
+    Valuation snapshot() {
+        return new Valuation(total.sum(), sums(byGenre), sums(byLanguage), sums(byAuthor));
+    }
+
+    /**
+     * Computes the valuation of the stock seen by a snapshot from scratch, in parallel.
+     *
+     * @param stock    the stock of the books in registration order
+     * @param size     the number of books of the snapshot
+     * @param snapshot the version of the snapshot
+     * @return the recomputed valuation
+     */
+    static Valuation recompute(Stock[] stock, int size, long snapshot) {
+        Partial result = new RecomputeTask(stock, snapshot, 0, size).invoke();
+        return new Valuation(result.total, result.byGenre, result.byLanguage, result.byAuthor);
+    }
+
+    /**
+     * Sums a map of counters.
+     * @param counters the counters
+     * @return the sums by key
+     */
+    private static Map<String, Long> sums(Map<String, LongAdder> counters) {
+        Map<String, Long> sums = new HashMap<>();
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            sums.put(entry.getKey(), entry.getValue().sum());
+        }
+        return sums;
+    }
+
+    /**
+     * Precomputed value of one copy of a book and the counters it contributes to.
+     */
+    private static final class Entry {
+        /** Value of one copy in units. */
+        final long unitValue;
+
+        /** Counter of the book's genre. */
+        final LongAdder genre;
+
+        /** Counter of the book's language. */
+        final LongAdder language;
+
+        /** Counter of the book's author. */
+        final LongAdder author;
+
+        /**
+         * Creates an entry.
+         * @param unitValue the value of one copy in units
+         * @param genre     the counter of the genre
+         * @param language  the counter of the language
+         * @param author    the counter of the author
+         */
+        Entry(long unitValue, LongAdder genre, LongAdder language, LongAdder author) {
+            this.unitValue = unitValue;
+            this.genre = genre;
+            this.language = language;
+            this.author = author;
+        }
+
+        /**
+         * Adds the value of the given number of copies to all counters.
+         * @param copies the number of copies, negative when copies leave the stock
+         * @param total  the total counter
+         */
+        void add(int copies, LongAdder total) {
+            long value = unitValue * copies;
+            total.add(value);
+            genre.add(value);
+            language.add(value);
+            author.add(value);
+        }
+    }
+
+    /**
+     * Totals of a part of the stock.
+     */
+    private static final class Partial {
+        /** Total value in units. */
+        long total;
+
+        /** Value by genre in units. */
+        final Map<String, Long> byGenre = new HashMap<>();
+
+        /** Value by language in units. */
+        final Map<String, Long> byLanguage = new HashMap<>();
+
+        /** Value by author in units. */
+        final Map<String, Long> byAuthor = new HashMap<>();
+
+        /**
+         * Adds the totals of another part.
+         * @param other the other part
+         * @return this part
+         */
+        Partial merge(Partial other) {
+            total += other.total;
+            other.byGenre.forEach((k, v) -> byGenre.merge(k, v, Long::sum));
+            other.byLanguage.forEach((k, v) -> byLanguage.merge(k, v, Long::sum));
+            other.byAuthor.forEach((k, v) -> byAuthor.merge(k, v, Long::sum));
+            return this;
+        }
+    }
+
+    /**
+     * Fork-join task valuing a range of the stock.
+     */
+    private static final class RecomputeTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        /** The stock being valued. */
+        private final Stock[] stock;
+
+        /** The version of the snapshot being valued. */
+        private final long snapshot;
+
+        /** First index of the range, inclusive. */
+        private final int from;
+
+        /** Last index of the range, exclusive. */
+        private final int to;
+
+        /**
+         * Creates a task for a range of the stock.
+         * @param stock    the stock
+         * @param snapshot the version of the snapshot
+         * @param from     the first index, inclusive
+         * @param to       the last index, exclusive
+         */
+        RecomputeTask(Stock[] stock, long snapshot, int from, int to) {
+            this.stock = stock;
+            this.snapshot = snapshot;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= RECOMPUTE_THRESHOLD) {
+                Partial partial = new Partial();
+                for (int i = from; i < to; i++) {
+                    Book book = stock[i].book;
+                    long value = Valuation.toUnits(book.getValue()) * stock[i].getAt(snapshot);
+                    partial.total += value;
+                    partial.byGenre.merge(Valuation.key(book.getGenre()), value, Long::sum);
+                    partial.byLanguage.merge(Valuation.key(book.getLanguage()), value, Long::sum);
+                    partial.byAuthor.merge(Valuation.key(book.getAuthor()), value, Long::sum);
+                }
+                return partial;
+            }
+            int middle = (from + to) >>> 1;
+            RecomputeTask left = new RecomputeTask(stock, snapshot, from, middle);
+            left.fork();
+            Partial right = new RecomputeTask(stock, snapshot, middle, to).compute();
+            return left.join().merge(right);
+        }
+    }
+}
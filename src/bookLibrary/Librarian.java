@@ -1,5 +1,8 @@
 package bookLibrary;
 
+import book.Book;
+
+import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -12,11 +15,22 @@ import java.util.Scanner;
  *     <li>Return books by title</li>
  *     <li>Exit the system</li>
  * </ul>
- * This class acts as a bridge between the user and the {@link BookLibrary}.
+ * This class acts as a bridge between the user and the {@link BookLibrary}. When a typed
+ * title is not found, the librarian suggests similar titles from the library search.
+ * After a borrow, it lists the titles other patrons borrowed together with the book.
  * </p>
  */
 public class Librarian {
 
+    /** Maximum number of titles suggested for a title that is not found. */
+    private static final int SUGGESTIONS = 3;
+
+    /** Maximum number of titles recommended after a borrow. */
+    private static final int RECOMMENDATIONS = 3;
+
+    /** Identifies the patron of this session to the recommender. */
+    private final String patronId = "librarian-" + Integer.toHexString(System.identityHashCode(this));
+
     /**
      * Constructs a new {@code Librarian} instance and initializes the user interface.
      * <p>
@@ -94,8 +108,9 @@ public class Librarian {
     /**
      * Allows the user to borrow a book by entering its title.
      * <p>
-     * If the book is available, it is borrowed, and the library inventory is updated.
-     * Otherwise, an appropriate message is displayed.
+     * If the book is available, it is borrowed, the library inventory is updated, and the
+     * titles other patrons borrowed together with it are recommended. Otherwise, an
+     * appropriate message is displayed, with suggestions for a title that is not found.
      * </p>
      *
      * @param input a {@link Scanner} object for reading user input
@@ -103,15 +118,28 @@ public class Librarian {
     public void borrowBook(Scanner input) {
         System.out.println("\nType a book title, which you would've to borrow");
         BookLibrary library = BookLibrary.BookLibrary();
-        String scanner = input.nextLine();
-        library.borrowBook(scanner);
+        String title = input.nextLine();
+        switch (library.borrowBook(title)) {
+            case BORROWED:
+                Book borrowed = library.findByTitle(title);
+                System.out.println("You borrowed \"" + borrowed.getTitle() + "\".");
+                recommendTitles(library, borrowed);
+                break;
+            case OUT_OF_STOCK:
+                System.out.println("Sorry, \"" + library.findByTitle(title).getTitle() + "\" is currently out of stock.");
+                break;
+            default:
+                System.out.println("The requested book is not available in the library.");
+                suggestTitles(library, title);
+        }
     }
 
     /**
      * Allows the user to return a borrowed book by entering its title.
      * <p>
      * If the book belongs to the library, it is returned, and the library inventory is updated.
-     * Otherwise, an appropriate message is displayed.
+     * Otherwise, an appropriate message is displayed, with suggestions for a title that
+     * is not found.
      * </p>
      *
      * @param input a {@link Scanner} object for reading user input
@@ -119,7 +147,52 @@ public class Librarian {
     public void returnBook(Scanner input) {
         System.out.println("\nType a book title, which you would've to borrow");
         BookLibrary library = BookLibrary.BookLibrary();
-        String scanner = input.nextLine();
-        library.returnBook(scanner);
+        String title = input.nextLine();
+        switch (library.returnBook(title)) {
+            case RETURNED:
+                System.out.println("Thank you for returning \"" + library.findByTitle(title).getTitle() + "\".");
+                break;
+            case NOT_ON_LOAN:
+                System.out.println("Every copy of \"" + library.findByTitle(title).getTitle() + "\" is already on the shelf.");
+                break;
+            default:
+                System.out.println("This book does not belong to the library.");
+                suggestTitles(library, title);
+        }
+    }
+
+    /**
+     * Records a borrow of this session and prints the titles borrowed together with the book.
+     *
+     * @param library the library whose recommender is used
+     * @param book    the book borrowed
+     */
+    private void recommendTitles(BookLibrary library, Book book) {
+        library.getRecommender().recordBorrow(patronId, book);
+        List<Book> recommendations = library.getRecommender().related(book, RECOMMENDATIONS);
+        if (recommendations.isEmpty()) {
+            return;
+        }
+        System.out.println("Patrons also borrowed:");
+        for (Book related : recommendations) {
+            System.out.println(" - " + related.getTitle() + " by " + related.getAuthor());
+        }
+    }
+
+    /**
+     * Prints the titles of the books best matching a title that was not found.
+     *
+     * @param library the library to search
+     * @param title   the title typed by the user
+     */
+    private void suggestTitles(BookLibrary library, String title) {
+        List<Book> suggestions = library.getSearch().search(title, SUGGESTIONS);
+        if (suggestions.isEmpty()) {
+            return;
+        }
+        System.out.println("Did you mean:");
+        for (Book book : suggestions) {
+            System.out.println(" - " + book.getTitle() + " by " + book.getAuthor());
+        }
     }
 }
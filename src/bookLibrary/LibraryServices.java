@@ -1,10 +1,13 @@
 package bookLibrary;
 
+import java.util.List;
+
 /**
  * Represents a contract for a book library system.
  * <p>
  * Implementing classes are responsible for handling core library services,
- * including borrowing and returning books
+ * including borrowing and returning books. Outcomes are reported as a
+ * {@link CirculationStatus}; implementations should not print to the console.
  * </p>
  */
 public interface LibraryServices {
@@ -13,23 +16,54 @@ public interface LibraryServices {
      * Borrows a book from the library.
      * <p>
      * This method marks the specified book as borrowed in the library system.
-     * If the book is unavailable (e.g., already borrowed), an appropriate
-     * exception or error handling mechanism should be provided by the implementation.
+     * If the book is unavailable (e.g., already borrowed), nothing is changed and
+     * the returned status tells the caller why.
      * </p>
      *
      * @param title the title of the book to borrow; must not be null or empty
+     * @return {@link CirculationStatus#BORROWED}, {@link CirculationStatus#OUT_OF_STOCK}
+     *         or {@link CirculationStatus#NOT_FOUND}
      */
-    void borrowBook(String title);
+    CirculationStatus borrowBook(String title);
 
     /**
      * Returns a borrowed book to the library.
      * <p>
      * This method updates the library system to mark the specified book as returned.
      * If the book is not recognized (e.g., not borrowed from this library),
-     * the implementation should handle the error appropriately.
+     * nothing is changed and {@link CirculationStatus#NOT_FOUND} is returned. An
+     * implementation that knows every copy of the book is in stock refuses the return
+     * with {@link CirculationStatus#NOT_ON_LOAN}.
      * </p>
      *
      * @param title the title of the book to return; must not be null or empty
+     * @return {@link CirculationStatus#RETURNED}, {@link CirculationStatus#NOT_ON_LOAN}
+     *         or {@link CirculationStatus#NOT_FOUND}
+     */
+    CirculationStatus returnBook(String title);
+
+    /**
+     * Borrows one copy for every title of a batch.
+     * <p>
+     * A title listed several times borrows several copies. In
+     * {@link BatchMode#ALL_OR_NOTHING} mode either all copies are borrowed or none is.
+     * </p>
+     *
+     * @param titles the titles of the books to borrow
+     * @param mode   how a title that cannot be borrowed affects the others
+     * @return the outcome for every title, in the order of {@code titles}
+     */
+    BatchResult borrowAll(List<String> titles, BatchMode mode);
+
+    /**
+     * Returns one copy for every title of a batch.
+     * <p>
+     * In {@link BatchMode#ALL_OR_NOTHING} mode nothing is returned if a title is not found.
+     * </p>
+     *
+     * @param titles the titles of the books to return
+     * @param mode   how a title that cannot be returned affects the others
+     * @return the outcome for every title, in the order of {@code titles}
      */
-    void returnBook(String title);
+    BatchResult returnAll(List<String> titles, BatchMode mode);
 }
@@ -0,0 +1,276 @@
+package bookLibrary;
+
+import book.Book;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * The number of copies of a book in stock, with the older quantities open snapshots still read.
+ * <p>
+ * Every version also holds the number of copies registered, so a return can be checked
+ * against it: the quantity never exceeds the copies the library owns.
+ * </p>
+ * <p>
+ * The quantity is a chain of immutable {@link Version}s, newest first. A change installs
+ * a new version by compare-and-set, like an {@code AtomicInteger}, and then stamps it with
+ * the {@link VersionClock#current() current version}. A {@link CatalogSnapshot} reads the
+ * newest version stamped before it, so it never waits for a writer and never sees a
+ * change made after it was opened. A snapshot that finds a version not stamped yet stamps
+ * it itself: the change then counts as made after the snapshot, for every reader.
+ * </p>
+ * <p>
+ * After every change the versions no open snapshot reads are unlinked, so the chain
+ * holds about one version per open snapshot besides the current one, however many
+ * changes happen while a snapshot is open. Without open snapshots a change costs one
+ * allocation and two compare-and-sets. Thread-safe.
+ * </p>
+ */
+final class Stock {
+
+    /** Stamp of a version installed by a writer that has not stamped it yet. */
+    private static final long UNSTAMPED = Long.MAX_VALUE;
+
+    /** Atomic access to {@link #head}. */
+    private static final VarHandle HEAD;
+
+    /** Atomic access to {@link Version#stamp}. */
+    private static final VarHandle STAMP;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            HEAD = lookup.findVarHandle(Stock.class, "head", Version.class);
+            STAMP = lookup.findVarHandle(Version.class, "stamp", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /** The book. */
+    final Book book;
+
+    /** The position of the book in the registration order. */
+    final int position;
+
+    /** Stamps the versions. */
+    private final VersionClock clock;
+
+    /** The current quantity. */
+    private volatile Version head;
+
+    /**
+     * The stock of the next book registered with the same normalized title, or
+     * {@code null}. Set once, under the registration lock.
+     */
+    volatile Stock nextEdition;
+
+    /**
+     * Creates the stock of a newly registered book.
+     * <p>
+     * Called under the registration lock, which snapshots are opened under as well, so
+     * the first version is stamped before any snapshot that lists the book.
+     * </p>
+     * @param book       the book
+     * @param position   the position of the book in the registration order
+     * @param quantity   the number of copies in stock
+     * @param registered the number of copies registered
+     * @param clock      the clock of the library
+     */
+    Stock(Book book, int position, int quantity, int registered, VersionClock clock) {
+        this.book = book;
+        this.position = position;
+        this.clock = clock;
+        this.head = new Version(quantity, registered, clock.current(), null);
+    }
+
+    /**
+     * Returns the current quantity.
+     * @return the number of copies in stock
+     */
+    int get() {
+        return head.quantity;
+    }
+
+    /**
+     * Returns the number of copies registered, in stock or not.
+     * <p>
+     * The number only ever grows, so a quantity checked against an older reading is
+     * checked against a stricter bound.
+     * </p>
+     * @return the number of copies registered
+     */
+    int registered() {
+        return head.registered;
+    }
+
+    /**
+     * Sets the quantity if it is the expected one.
+     * @param expected the expected quantity
+     * @param quantity the new quantity
+     * @return {@code true} if the quantity was set
+     */
+    boolean compareAndSet(int expected, int quantity) {
+        Version current;
+        do {
+            current = head;
+            if (current.quantity != expected) {
+                return false;
+            }
+        } while (!install(current, quantity, current.registered));
+        return true;
+    }
+
+    /**
+     * Adds to the quantity.
+     * @param delta the number of copies to add, negative to remove copies
+     * @return the quantity right after the change
+     */
+    int addAndGet(int delta) {
+        Version current;
+        do {
+            current = head;
+        } while (!install(current, current.quantity + delta, current.registered));
+        return current.quantity + delta;
+    }
+
+    /**
+     * Registers more copies: adds them to the quantity and to the registered copies at once.
+     * @param copies the number of copies
+     * @return the quantity right after the change
+     */
+    int register(int copies) {
+        return register(copies, copies);
+    }
+
+    /**
+     * Registers more copies, some of them on loan: adds them to the registered copies and
+     * the ones in stock to the quantity, at once.
+     * @param copies  the number of copies
+     * @param inStock the number of them in stock; at most {@code copies}
+     * @return the quantity right after the change
+     */
+    int register(int copies, int inStock) {
+        Version current;
+        do {
+            current = head;
+        } while (!install(current, current.quantity + inStock, current.registered + copies));
+        return current.quantity + inStock;
+    }
+
+    /**
+     * Returns the quantity a snapshot sees.
+     * @param snapshot the version of an open snapshot
+     * @return the quantity of the newest version stamped before the snapshot
+     * @throws IllegalStateException if the snapshot was closed and its version unlinked
+     */
+    int getAt(long snapshot) {
+        return versionAt(snapshot).quantity;
+    }
+
+    /**
+     * Returns the number of copies registered a snapshot sees.
+     * @param snapshot the version of an open snapshot
+     * @return the registered copies of the newest version stamped before the snapshot
+     * @throws IllegalStateException if the snapshot was closed and its version unlinked
+     */
+    int registeredAt(long snapshot) {
+        return versionAt(snapshot).registered;
+    }
+
+    /**
+     * Returns the version a snapshot sees.
+     * @param snapshot the version of an open snapshot
+     * @return the newest version stamped before the snapshot
+     * @throws IllegalStateException if the snapshot was closed and its version unlinked
+     */
+    private Version versionAt(long snapshot) {
+        Version version = head;
+        while (stamp(version) >= snapshot) {
+            version = version.previous;
+            if (version == null) {
+                throw new IllegalStateException("Snapshot is closed.");
+            }
+        }
+        return version;
+    }
+
+    /**
+     * Replaces the current version by a new one, stamps it and unlinks the versions no
+     * open snapshot reads.
+     * @param current    the current version
+     * @param quantity   the new quantity
+     * @param registered the new number of registered copies
+     * @return {@code false} if the current version was replaced meanwhile
+     */
+    private boolean install(Version current, int quantity, int registered) {
+        Version next = new Version(quantity, registered, UNSTAMPED, current);
+        if (!HEAD.compareAndSet(this, current, next)) {
+            return false;
+        }
+        // a snapshot reads the newest version stamped before it; read after stamping,
+        // the open snapshots include every snapshot opened up to the stamp
+        long stamp = stamp(next);
+        long oldest = clock.oldestOpen();
+        if (stamp < oldest) {
+            // every open snapshot reads this version
+            next.previous = null;
+        } else if (current.stamp >= clock.newestOpen()) {
+            // no open snapshot reads the replaced version
+            next.previous = current.previous;
+        } else if (current.stamp < oldest) {
+            // every open snapshot reads the replaced version or a newer one
+            current.previous = null;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the stamp of a version, stamping it with the current version first if needed.
+     * @param version the version
+     * @return the stamp
+     */
+    private long stamp(Version version) {
+        long stamp = version.stamp;
+        if (stamp == UNSTAMPED) {
+            STAMP.compareAndSet(version, UNSTAMPED, clock.current());
+            stamp = version.stamp;
+        }
+        return stamp;
+    }
+
+    /**
+     * A quantity and the version of the library it was set in.
+     */
+    private static final class Version {
+        /** The number of copies. */
+        final int quantity;
+
+        /** The number of copies registered. */
+        final int registered;
+
+        /** The version the quantity was set in, or {@link #UNSTAMPED}. */
+        volatile long stamp;
+
+        /**
+         * The previous version, or {@code null} once no open snapshot reads it. The link
+         * is only ever moved past versions nobody reads, so a reader that finds an old
+         * link only follows the chain further than needed.
+         */
+        Version previous;
+
+        /**
+         * Creates a version.
+         * @param quantity   the number of copies
+         * @param registered the number of copies registered
+         * @param stamp      the version of the library, or {@link #UNSTAMPED}
+         * @param previous   the previous version
+         */
+        Version(int quantity, int registered, long stamp, Version previous) {
+            this.quantity = quantity;
+            this.registered = registered;
+            this.stamp = stamp;
+            this.previous = previous;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package bookLibrary;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Produces normalized lookup keys for book titles.
+ * <p>
+ * Two titles map to the same key when they differ only in letter case or in
+ * diacritics, so {@code "Výkupné"}, {@code "VÝKUPNÉ"} and {@code "vykupne"}
+ * all resolve to the key {@code "vykupne"}. The key is used by
+ * {@link BookLibrary} as the hash key of its title index.
+ * </p>
+ */
+public final class TitleNormalizer {
+
+    /** Matches combining marks left over after canonical decomposition. */
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    /** Utility class, not meant to be instantiated. */
+    private TitleNormalizer() {
+    }
+
+    /**
+     * Returns the normalized lookup key for the given title.
+     * <p>
+     * Leading and trailing whitespace is removed, the title is case folded
+     * (upper-casing first so that characters such as {@code ß} fold to
+     * {@code ss}) and accents are stripped. Pure ASCII titles skip the Unicode
+     * decomposition step.
+     * </p>
+     *
+     * @param title the title to normalize; must not be null
+     * @return the normalized key
+     */
+    public static String normalize(String title) {
+        String trimmed = title.strip();
+        if (isAscii(trimmed)) {
+            return trimmed.toLowerCase(Locale.ROOT);
+        }
+        String folded = trimmed.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+        String decomposed = Normalizer.normalize(folded, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("");
+    }
+
+    /**
+     * Checks whether the text consists of ASCII characters only.
+     * @param text the text to check
+     * @return {@code true} if every character is below {@code 0x80}
+     */
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,151 @@
+package bookLibrary;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the value of the books in stock.
+ * <p>
+ * The value of a book in stock is its {@link book.AbstractBook#getValue() value} times its
+ * quantity. Values are accumulated in fixed-point units of 1/{@value #UNITS_PER_CURRENCY}
+ * of the currency, so running totals and full recomputations add up to exactly the same
+ * result and can be compared with {@link #equals(Object)}.
+ * </p>
+ */
+public final class Valuation {
+
+    /** Number of fixed-point units per unit of currency. */
+    public static final long UNITS_PER_CURRENCY = 10_000;
+
+    /** Key used for books without a genre, language or author. */
+    public static final String UNKNOWN = "unknown";
+
+    /** Total value in units. */
+    private final long total;
+
+    /** Value by genre in units. */
+    private final Map<String, Long> byGenre;
+
+    /** Value by language in units. */
+    private final Map<String, Long> byLanguage;
+
+    /** Value by author in units. */
+    private final Map<String, Long> byAuthor;
+
+    /**
+     * Creates a snapshot; the maps are copied without their zero entries.
+     *
+     * @param total      the total value in units
+     * @param byGenre    the value by genre in units
+     * @param byLanguage the value by language in units
+     * @param byAuthor   the value by author in units
+     */
+    Valuation(long total, Map<String, Long> byGenre, Map<String, Long> byLanguage, Map<String, Long> byAuthor) {
+        this.total = total;
+        this.byGenre = withoutZeros(byGenre);
+        this.byLanguage = withoutZeros(byLanguage);
+        this.byAuthor = withoutZeros(byAuthor);
+    }
+
+    /**
+     * Converts a monetary value to fixed-point units.
+     * @param value the value
+     * @return the value in units, rounded to the nearest unit
+     */
+    static long toUnits(double value) {
+        return Math.round(value * UNITS_PER_CURRENCY);
+    }
+
+    /**
+     * Returns the key under which a genre, language or author is aggregated.
+     * @param value the genre, language or author, may be null
+     * @return the value itself, or {@link #UNKNOWN} for null
+     */
+    static String key(String value) {
+        return value == null ? UNKNOWN : value;
+    }
+
+    /**
+     * Returns the total value of all books in stock.
+     * @return the total value
+     */
+    public double getTotalValue() {
+        return (double) total / UNITS_PER_CURRENCY;
+    }
+
+    /**
+     * Returns the value of the books in stock by genre.
+     * @return an unmodifiable map from genre to value
+     */
+    public Map<String, Double> getValueByGenre() {
+        return toCurrency(byGenre);
+    }
+
+    /**
+     * Returns the value of the books in stock by language.
+     * @return an unmodifiable map from language to value
+     */
+    public Map<String, Double> getValueByLanguage() {
+        return toCurrency(byLanguage);
+    }
+
+    /**
+     * Returns the value of the books in stock by author.
+     * @return an unmodifiable map from author to value
+     */
+    public Map<String, Double> getValueByAuthor() {
+        return toCurrency(byAuthor);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Valuation other)) {
+            return false;
+        }
+        return total == other.total && byGenre.equals(other.byGenre)
+                && byLanguage.equals(other.byLanguage) && byAuthor.equals(other.byAuthor);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(total) * 31 + byGenre.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Total value: %.2f, by genre: %s, by language: %s",
+                getTotalValue(), getValueByGenre(), getValueByLanguage());
+    }
+
+    /**
+     * Copies a map of units, leaving out zero entries.
+     * @param units the map to copy
+     * @return an unmodifiable copy
+     */
+    private static Map<String, Long> withoutZeros(Map<String, Long> units) {
+        Map<String, Long> copy = new HashMap<>();
+        for (Map.Entry<String, Long> entry : units.entrySet()) {
+            if (entry.getValue() != 0) {
+                copy.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * Converts a map of units to a map of currency values.
+     * @param units the map of units
+     * @return an unmodifiable map of values
+     */
+    private static Map<String, Double> toCurrency(Map<String, Long> units) {
+        Map<String, Double> values = new HashMap<>();
+        for (Map.Entry<String, Long> entry : units.entrySet()) {
+            values.put(entry.getKey(), (double) entry.getValue() / UNITS_PER_CURRENCY);
+        }
+        return Collections.unmodifiableMap(values);
+    }
+}
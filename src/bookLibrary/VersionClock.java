@@ -0,0 +1,78 @@
+package bookLibrary;
+
+import java.util.TreeMap;
+
+/**
+ * Numbers the versions of the stock and keeps track of the open {@link CatalogSnapshot}s.
+ * <p>
+ * Every change of a {@link Stock} is stamped with the current version. Opening a snapshot
+ * advances the version, so the snapshot sees exactly the changes stamped before it, and
+ * registers it until it is closed. The {@link #oldestOpen() oldest open snapshot} tells
+ * the stock which old versions nobody can read any more.
+ * </p>
+ */
+final class VersionClock {
+
+    /** The current version; advanced by {@link #open()} only. */
+    private volatile long version;
+
+    /** The version of the oldest open snapshot, or {@code Long.MAX_VALUE} if none is. */
+    private volatile long oldestOpen = Long.MAX_VALUE;
+
+    /** The version of the newest open snapshot, or {@code Long.MIN_VALUE} if none is. */
+    private volatile long newestOpen = Long.MIN_VALUE;
+
+    /** Number of open snapshots by version. */
+    private final TreeMap<Long, Integer> open = new TreeMap<>();
+
+    /**
+     * Returns the current version, which stamps the changes made now.
+     * @return the version
+     */
+    long current() {
+        return version;
+    }
+
+    /**
+     * Returns the version of the oldest open snapshot.
+     * @return the version, or {@code Long.MAX_VALUE} if no snapshot is open
+     */
+    long oldestOpen() {
+        return oldestOpen;
+    }
+
+    /**
+     * Returns the version of the newest open snapshot.
+     * @return the version, or {@code Long.MIN_VALUE} if no snapshot is open
+     */
+    long newestOpen() {
+        return newestOpen;
+    }
+
+    /**
+     * Opens a snapshot: advances the version and registers the snapshot.
+     * <p>
+     * The snapshot is registered before the version is advanced, so a writer that
+     * stamps a change with the new version also finds the snapshot open.
+     * </p>
+     * @return the version of the snapshot; it sees the changes stamped with a smaller version
+     */
+    synchronized long open() {
+        long snapshot = version + 1;
+        open.merge(snapshot, 1, Integer::sum);
+        oldestOpen = open.firstKey();
+        newestOpen = snapshot;
+        version = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Closes a snapshot opened by {@link #open()}.
+     * @param snapshot the version of the snapshot
+     */
+    synchronized void close(long snapshot) {
+        open.computeIfPresent(snapshot, (key, count) -> count == 1 ? null : count - 1);
+        oldestOpen = open.isEmpty() ? Long.MAX_VALUE : open.firstKey();
+        newestOpen = open.isEmpty() ? Long.MIN_VALUE : open.lastKey();
+    }
+}
@@ -0,0 +1,67 @@
+package branch;
+
+import book.Book;
+import bookLibrary.CirculationStatus;
+
+/**
+ * One branch of a {@link ShardedLibrary}, owning the stock of the copies on its shelves.
+ * <p>
+ * Titles are looked up case- and accent-insensitively, like in the
+ * {@link bookLibrary.BookLibrary}. A branch shares no state with the other branches, so
+ * branches never contend with each other, whether they live in the same process, as a
+ * {@link LocalBranch}, or in a process of their own, as a {@link RemoteBranch}.
+ * </p>
+ */
+public interface Branch {
+
+    /**
+     * Returns the name of the branch, unique within a library.
+     * @return the name
+     */
+    String getName();
+
+    /**
+     * Lends one copy of a title.
+     * @param title the title
+     * @return {@link CirculationStatus#BORROWED}, {@link CirculationStatus#OUT_OF_STOCK}
+     *         or {@link CirculationStatus#NOT_FOUND} if the branch does not carry the title
+     */
+    CirculationStatus borrowBook(String title);
+
+    /**
+     * Takes back one copy of a title the branch carries.
+     * @param title the title
+     * @return {@link CirculationStatus#RETURNED} or {@link CirculationStatus#NOT_FOUND}
+     */
+    CirculationStatus returnBook(String title);
+
+    /**
+     * Returns the number of copies of a title on the shelves.
+     * @param title the title
+     * @return the quantity in stock, or -1 if the branch does not carry the title
+     */
+    int getQuantity(String title);
+
+    /**
+     * Finds a title the branch carries.
+     * @param title the title
+     * @return the book, or {@code null} if the branch does not carry the title
+     */
+    Book findBook(String title);
+
+    /**
+     * Takes copies of a title off the shelves, to move them to another branch.
+     * @param title  the title
+     * @param copies the number of copies; must be greater than 0
+     * @return {@code true} if all copies were taken, {@code false} if the branch has fewer
+     *         in stock or does not carry the title, in which case nothing was taken
+     */
+    boolean takeCopies(String title, int copies);
+
+    /**
+     * Puts copies of a book on the shelves, carrying the title from now on if it did not.
+     * @param book   the book
+     * @param copies the number of copies; must be greater than 0
+     */
+    void addCopies(Book book, int copies);
+}
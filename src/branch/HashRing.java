@@ -0,0 +1,66 @@
+package branch;
+
+import bookLibrary.TitleNormalizer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Assigns titles to branches by consistent hashing.
+ * <p>
+ * Every branch is placed on a ring of 32-bit hashes at {@value #VIRTUAL_NODES} points, and
+ * a title belongs to the first branch clockwise from the hash of its normalized form. The
+ * many points spread the titles evenly, and adding a branch only moves the titles that
+ * now fall on its points; the others keep their branch.
+ * </p>
+ */
+final class HashRing {
+
+    /** Number of points of every branch on the ring. */
+    private static final int VIRTUAL_NODES = 128;
+
+    /** The branches by the hashes of their points. */
+    private final TreeMap<Integer, Branch> ring = new TreeMap<>();
+
+    /**
+     * Places a branch on the ring.
+     * @param branch the branch; its name must be unique
+     */
+    void add(Branch branch) {
+        for (int i = 0; i < VIRTUAL_NODES; i++) {
+            ring.put(hash(branch.getName() + '#' + i), branch);
+        }
+    }
+
+    /**
+     * Returns the branch owning a title.
+     * @param title the title (case- and accent-insensitive)
+     * @return the branch, or {@code null} if the ring is empty
+     */
+    Branch owner(String title) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Integer, Branch> point = ring.ceilingEntry(hash(TitleNormalizer.normalize(title)));
+        return (point == null ? ring.firstEntry() : point).getValue();
+    }
+
+    /**
+     * Hashes a string with FNV-1a over its UTF-8 bytes, finished with the MurmurHash3
+     * mixer so that similar names land far apart.
+     * @param key the string
+     * @return the hash
+     */
+    private static int hash(String key) {
+        int h = 0x811c9dc5;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h = (h ^ b) * 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,137 @@
+package branch;
+
+import book.Book;
+import bookLibrary.CirculationStatus;
+import bookLibrary.TitleNormalizer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A branch living in the same process, with its own stock map.
+ * <p>
+ * Unlike the {@link bookLibrary.BookLibrary} singleton, any number of local branches can
+ * exist. Each keeps its titles in its own concurrent map and the stock of each title in
+ * an {@link AtomicInteger} changed by compare-and-set, so threads working on different
+ * branches share nothing and run on separate cores without contending.
+ * </p>
+ */
+public class LocalBranch implements Branch {
+
+    /** The name of the branch. */
+    private final String name;
+
+    /** The stock of every carried title, by normalized title. */
+    private final Map<String, Stock> stock = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an empty branch.
+     * @param name the name of the branch
+     */
+    public LocalBranch(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public CirculationStatus borrowBook(String title) {
+        Stock copies = stock.get(TitleNormalizer.normalize(title));
+        if (copies == null) {
+            return CirculationStatus.NOT_FOUND;
+        }
+        return copies.take(1) ? CirculationStatus.BORROWED : CirculationStatus.OUT_OF_STOCK;
+    }
+
+    @Override
+    public CirculationStatus returnBook(String title) {
+        Stock copies = stock.get(TitleNormalizer.normalize(title));
+        if (copies == null) {
+            return CirculationStatus.NOT_FOUND;
+        }
+        copies.quantity.incrementAndGet();
+        return CirculationStatus.RETURNED;
+    }
+
+    @Override
+    public int getQuantity(String title) {
+        Stock copies = stock.get(TitleNormalizer.normalize(title));
+        return copies == null ? -1 : copies.quantity.get();
+    }
+
+    @Override
+    public Book findBook(String title) {
+        Stock copies = stock.get(TitleNormalizer.normalize(title));
+        return copies == null ? null : copies.book;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if {@code copies <= 0}
+     */
+    @Override
+    public boolean takeCopies(String title, int copies) {
+        if (copies <= 0) {
+            throw new IllegalArgumentException("Copies must be greater than 0.");
+        }
+        Stock shelf = stock.get(TitleNormalizer.normalize(title));
+        return shelf != null && shelf.take(copies);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if {@code copies <= 0}
+     */
+    @Override
+    public void addCopies(Book book, int copies) {
+        if (copies <= 0) {
+            throw new IllegalArgumentException("Copies must be greater than 0.");
+        }
+        stock.computeIfAbsent(TitleNormalizer.normalize(book.getTitle()), key -> new Stock(book))
+                .quantity.addAndGet(copies);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * The copies of one title on the shelves.
+     */
+    private static final class Stock {
+        /** The book. */
+        final Book book;
+
+        /** Number of copies in stock. */
+        final AtomicInteger quantity = new AtomicInteger();
+
+        /**
+         * Creates an empty stock.
+         * @param book the book
+         */
+        Stock(Book book) {
+            this.book = book;
+        }
+
+        /**
+         * Takes copies if enough are in stock.
+         * @param copies the number of copies
+         * @return {@code true} if they were taken
+         */
+        boolean take(int copies) {
+            int current;
+            do {
+                current = quantity.get();
+                if (current < copies) {
+                    return false;
+                }
+            } while (!quantity.compareAndSet(current, current - copies));
+            return true;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package branch;
+
+import book.Book;
+import bookLibrary.CirculationStatus;
+import importer.CatalogImporter;
+import importer.JsonRowReader;
+import server.Json;
+import server.LibraryServer;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A branch running in a process of its own, reached over HTTP.
+ * <p>
+ * The process runs a {@link LibraryServer} in front of its {@link bookLibrary.BookLibrary};
+ * the branch is that library. Every call is one request on a keep-alive connection, so a
+ * branch on the same machine answers in a few tens of microseconds. Calls are serialized
+ * on the connection; use one {@code RemoteBranch} per thread for parallel calls. A broken
+ * connection is reopened once per call; if that fails too, the call throws an
+ * {@link UncheckedIOException}, and whether the branch applied it is unknown.
+ * </p>
+ * <p>
+ * Every call that changes the stock is named by a {@code request} parameter unique to
+ * it, and the server answers a name it has seen with its first answer. A call sent again
+ * on the reopened connection is therefore applied once, even if the branch had applied
+ * it before the connection broke.
+ * </p>
+ * <p>
+ * Example Usage, with {@code java server.LibraryServer 8081} running:
+ * <pre>
+ * Branch petrzalka = new RemoteBranch("Petrzalka", new InetSocketAddress("localhost", 8081));
+ * </pre>
+ * </p>
+ */
+public class RemoteBranch implements Branch, Closeable {
+
+    /** Number of times a resent request is sent while the server is still answering it. */
+    private static final int BUSY_ATTEMPTS = 100;
+
+    /** Pause before sending a resent request the server is still answering again. */
+    private static final long BUSY_PAUSE_MILLIS = 10;
+
+    /** The name of the branch. */
+    private final String name;
+
+    /** The address of the server of the branch. */
+    private final InetSocketAddress address;
+
+    /** Prefix of the request names, unique to this branch object. */
+    private final String requestPrefix = UUID.randomUUID() + "-";
+
+    /** Number of requests named so far. Guarded by {@code this}. */
+    private long requests;
+
+    /** The open connection, or {@code null}. */
+    private Socket socket;
+
+    /** Reads the responses of {@link #socket}. */
+    private InputStream in;
+
+    /** Writes the requests to {@link #socket}. */
+    private OutputStream out;
+
+    /**
+     * Creates a branch; the connection is opened on the first call.
+     * @param name    the name of the branch
+     * @param address the address of its server
+     */
+    public RemoteBranch(String name, InetSocketAddress address) {
+        this.name = name;
+        this.address = address;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public CirculationStatus borrowBook(String title) {
+        return status(call("POST", "/borrow?title=" + encode(title) + "&" + nextRequest(), null));
+    }
+
+    @Override
+    public CirculationStatus returnBook(String title) {
+        return status(call("POST", "/return?title=" + encode(title) + "&" + nextRequest(), null));
+    }
+
+    @Override
+    public int getQuantity(String title) {
+        Map<String, String> stock = stock(title);
+        return stock == null ? -1 : Integer.parseInt(stock.get("quantity"));
+    }
+
+    @Override
+    public Book findBook(String title) {
+        Map<String, String> stock = stock(title);
+        return stock == null ? null : CatalogImporter.toBook(stock);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if {@code copies <= 0}
+     */
+    @Override
+    public boolean takeCopies(String title, int copies) {
+        if (copies <= 0) {
+            throw new IllegalArgumentException("Copies must be greater than 0.");
+        }
+        return status(call("POST", "/borrow?copies=" + copies + "&title=" + encode(title) + "&" + nextRequest(), null))
+                .isSuccess();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if {@code copies <= 0}
+     */
+    @Override
+    public void addCopies(Book book, int copies) {
+        if (copies <= 0) {
+            throw new IllegalArgumentException("Copies must be greater than 0.");
+        }
+        Map<String, String> row = CatalogImporter.toRow(book);
+        row.put("quantity", Integer.toString(copies));
+        Response response = call("POST", "/books?" + nextRequest(), Json.object(row));
+        if (response.status != 201) {
+            throw new IllegalStateException("Branch " + name + " refused the copies: " + response.body);
+        }
+    }
+
+    /**
+     * Closes the connection; a later call opens a new one.
+     */
+    @Override
+    public synchronized void close() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // the connection is gone either way
+            }
+            socket = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + address + ")";
+    }
+
+    /**
+     * Reads the stock of a title.
+     * @param title the title
+     * @return the book row with its quantity, or {@code null} if the branch does not carry it
+     */
+    private Map<String, String> stock(String title) {
+        Response response = call("GET", "/stock?title=" + encode(title), null);
+        if (response.status == 404) {
+            return null;
+        }
+        try (JsonRowReader reader = new JsonRowReader(new StringReader(response.body))) {
+            return reader.nextRow();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Invalid stock from branch " + name + ".", e);
+        }
+    }
+
+    /**
+     * Names a new request.
+     * @return the {@code request} query parameter
+     */
+    private synchronized String nextRequest() {
+        return "request=" + requestPrefix + requests++;
+    }
+
+    /**
+     * Reads the status of a borrow or return response.
+     * @param response the response
+     * @return the status
+     */
+    private static CirculationStatus status(Response response) {
+        int start = response.body.indexOf("\"status\":\"");
+        if (start < 0) {
+            throw new IllegalStateException("Unexpected response " + response.status + ": " + response.body);
+        }
+        start += 10;
+        return CirculationStatus.valueOf(response.body.substring(start, response.body.indexOf('"', start)));
+    }
+
+    /**
+     * Sends a request and reads the response, reconnecting once if the connection broke.
+     * A resent request the server is still answering from the first time is sent again
+     * until the first answer is ready.
+     * @param method the method
+     * @param target the path and query
+     * @param body   the JSON body, or {@code null}
+     * @return the response
+     * @throws UncheckedIOException if the server cannot be reached
+     */
+    private synchronized Response call(String method, String target, String body) {
+        try {
+            try {
+                return exchange(method, target, body);
+            } catch (IOException e) {
+                close();
+                Response response = exchange(method, target, body);
+                for (int attempt = 1; response.status == 503 && attempt < BUSY_ATTEMPTS; attempt++) {
+                    Thread.sleep(BUSY_PAUSE_MILLIS);
+                    response = exchange(method, target, body);
+                }
+                return response;
+            }
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException("Branch " + name + " cannot be reached.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while calling branch " + name + ".", e);
+        }
+    }
+
+    /**
+     * Sends a request on the connection, opening it if needed, and reads the response.
+     * @param method the method
+     * @param target the path and query
+     * @param body   the JSON body, or {@code null}
+     * @return the response
+     * @throws IOException if the connection fails
+     */
+    private Response exchange(String method, String target, String body) throws IOException {
+        if (socket == null) {
+            socket = new Socket();
+            socket.setTcpNoDelay(true);
+            socket.connect(address);
+            in = new BufferedInputStream(socket.getInputStream());
+            out = socket.getOutputStream();
+        }
+        byte[] content = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+        String head = method + " " + target + " HTTP/1.1\r\nHost: " + address.getHostString()
+                + "\r\nContent-Length: " + content.length + "\r\n\r\n";
+        out.write(head.getBytes(StandardCharsets.US_ASCII));
+        out.write(content);
+        out.flush();
+
+        String statusLine = readLine();
+        if (statusLine == null || statusLine.length() < 12) {
+            throw new IOException("Connection closed by branch " + name + ".");
+        }
+        int status = Integer.parseInt(statusLine.substring(9, 12));
+        int length = 0;
+        for (String line = readLine(); line != null && !line.isEmpty(); line = readLine()) {
+            if (line.toLowerCase(Locale.ROOT).startsWith("content-length:")) {
+                length = Integer.parseInt(line.substring(15).strip());
+            }
+        }
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length < length) {
+            throw new IOException("Connection closed by branch " + name + ".");
+        }
+        return new Response(status, new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads a header line.
+     * @return the line without its line break, or {@code null} at the end of the stream
+     * @throws IOException if reading fails
+     */
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        for (int c = in.read(); c != '\n'; c = in.read()) {
+            if (c < 0) {
+                return null;
+            }
+            if (c != '\r') {
+                line.write(c);
+            }
+        }
+        return line.toString(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Encodes a query parameter value.
+     * @param value the value
+     * @return the encoded value
+     */
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A response of the branch server.
+     */
+    private static final class Response {
+        /** The HTTP status code. */
+        final int status;
+
+        /** The JSON body. */
+        final String body;
+
+        /**
+         * Creates a response.
+         * @param status the HTTP status code
+         * @param body   the JSON body
+         */
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
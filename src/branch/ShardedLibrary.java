@@ -0,0 +1,435 @@
+package branch;
+
+import book.Book;
+import bookLibrary.BatchMode;
+import bookLibrary.BatchResult;
+import bookLibrary.CirculationStatus;
+import bookLibrary.LibraryServices;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A library split into branches, each owning the stock of its own shelves.
+ * <p>
+ * A title is carried by the branch it is registered at: its home branch if one is given,
+ * otherwise the branch owning it by consistent hashing of the title. Later transfers and
+ * returns may spread its copies over more branches. The branches share no state, so
+ * local branches used from different threads run on separate cores without contending,
+ * and {@link RemoteBranch remote} branches run in processes of their own.
+ * </p>
+ * <p>
+ * Every branch has a position; a borrow starting at a branch tries that branch first,
+ * then the others from the nearest to the farthest, and reports the branch that lent the
+ * copy. The library itself holds no lock: operations spanning several branches, like
+ * {@link #transfer} and batches, are not atomic with respect to concurrent borrows, but
+ * never duplicate copies. A {@link RemoteBranch} applies every call once, even when it
+ * resends it over a new connection; only a branch that cannot be reached at all in the
+ * middle of a transfer leaves copies in transit, neither at the source nor at the
+ * destination, and the transfer then fails naming them.
+ * </p>
+ * <p>
+ * Example Usage:
+ * <pre>
+ * ShardedLibrary library = new ShardedLibrary.Builder()
+ *         .addBranch(new LocalBranch("Stare Mesto"), 0, 0)
+ *         .addBranch(new LocalBranch("Petrzalka"), 1, -2)
+ *         .build();
+ * library.registerNewBook(book, 3, "Petrzalka");
+ * RoutedLoan loan = library.borrowBook("Program Joshua", "Stare Mesto");
+ * </pre>
+ * </p>
+ */
+public class ShardedLibrary implements LibraryServices {
+
+    /** The branches, in the order they were added. */
+    private final Branch[] branches;
+
+    /** The index of every branch in {@link #branches}, by name. */
+    private final Map<String, Integer> indexes;
+
+    /** For every branch, all branches from the nearest, itself, to the farthest. */
+    private final Branch[][] nearest;
+
+    /** Assigns titles without a home branch to branches. */
+    private final HashRing ring = new HashRing();
+
+    /**
+     * Private constructor used by the {@link Builder}.
+     * @param builder the builder holding the branches
+     */
+    private ShardedLibrary(Builder builder) {
+        int count = builder.branches.size();
+        this.branches = builder.branches.toArray(new Branch[0]);
+        this.indexes = new HashMap<>(builder.indexes);
+        this.nearest = new Branch[count][];
+        for (int i = 0; i < count; i++) {
+            double x = builder.xs[i];
+            double y = builder.ys[i];
+            Integer[] order = new Integer[count];
+            for (int j = 0; j < count; j++) {
+                order[j] = j;
+            }
+            Arrays.sort(order, Comparator.comparingDouble(j -> Math.hypot(builder.xs[j] - x, builder.ys[j] - y)));
+            nearest[i] = new Branch[count];
+            for (int j = 0; j < count; j++) {
+                nearest[i][j] = branches[order[j]];
+            }
+        }
+        for (Branch branch : branches) {
+            ring.add(branch);
+        }
+    }
+
+    /**
+     * Returns the branches in the order they were added.
+     * @return an unmodifiable list of the branches
+     */
+    public List<Branch> getBranches() {
+        return Collections.unmodifiableList(Arrays.asList(branches));
+    }
+
+    /**
+     * Returns a branch by its name.
+     * @param name the name of the branch
+     * @return the branch
+     * @throws IllegalArgumentException if the library has no such branch
+     */
+    public Branch getBranch(String name) {
+        return branches[index(name)];
+    }
+
+    /**
+     * Returns the branch owning a title by consistent hashing, where it is registered
+     * unless a home branch is given.
+     * @param title the title (case- and accent-insensitive)
+     * @return the branch
+     */
+    public Branch getOwner(String title) {
+        return ring.owner(title);
+    }
+
+    /**
+     * Registers copies of a book at the branch owning its title.
+     * @param book   the book
+     * @param copies the number of copies; must be greater than 0
+     */
+    public void registerNewBook(Book book, int copies) {
+        ring.owner(book.getTitle()).addCopies(book, copies);
+    }
+
+    /**
+     * Registers copies of a book at its home branch.
+     * @param book       the book
+     * @param copies     the number of copies; must be greater than 0
+     * @param homeBranch the name of the branch
+     * @throws IllegalArgumentException if the library has no such branch
+     */
+    public void registerNewBook(Book book, int copies, String homeBranch) {
+        getBranch(homeBranch).addCopies(book, copies);
+    }
+
+    /**
+     * Lends one copy of a title, starting at the branch owning the title.
+     * @param title the title
+     * @return the outcome, see {@link #borrowBook(String, String)}
+     */
+    @Override
+    public CirculationStatus borrowBook(String title) {
+        return borrow(title, nearest[index(ring.owner(title).getName())]).getStatus();
+    }
+
+    /**
+     * Lends one copy of a title from the nearest branch that has one in stock.
+     * @param title      the title
+     * @param fromBranch the name of the branch the reader is at
+     * @return the outcome and the branch that lent the copy; the outcome is
+     *         {@link CirculationStatus#OUT_OF_STOCK} if some branch carries the title but
+     *         none has a copy, and {@link CirculationStatus#NOT_FOUND} if no branch carries it
+     * @throws IllegalArgumentException if the library has no such branch
+     */
+    public RoutedLoan borrowBook(String title, String fromBranch) {
+        return borrow(title, nearest[index(fromBranch)]);
+    }
+
+    /**
+     * Takes back one copy of a title at the branch owning the title.
+     * @param title the title
+     * @return the outcome, see {@link #returnBook(String, String)}
+     */
+    @Override
+    public CirculationStatus returnBook(String title) {
+        return returnBook(title, ring.owner(title).getName());
+    }
+
+    /**
+     * Takes back one copy of a title at a branch. If the branch does not carry the title,
+     * it starts carrying it with the returned copy.
+     * @param title    the title
+     * @param atBranch the name of the branch
+     * @return {@link CirculationStatus#RETURNED}, or {@link CirculationStatus#NOT_FOUND}
+     *         if no branch carries the title
+     * @throws IllegalArgumentException if the library has no such branch
+     */
+    public CirculationStatus returnBook(String title, String atBranch) {
+        int index = index(atBranch);
+        Branch branch = branches[index];
+        if (branch.returnBook(title) == CirculationStatus.RETURNED) {
+            return CirculationStatus.RETURNED;
+        }
+        for (Branch other : nearest[index]) {
+            Book book = other == branch ? null : other.findBook(title);
+            if (book != null) {
+                branch.addCopies(book, 1);
+                return CirculationStatus.RETURNED;
+            }
+        }
+        return CirculationStatus.NOT_FOUND;
+    }
+
+    /**
+     * Returns the copies of a title in stock at every branch carrying it.
+     * @param title the title
+     * @return the quantities by branch name, in the order the branches were added; empty
+     *         if no branch carries the title
+     */
+    public Map<String, Integer> getAvailability(String title) {
+        Map<String, Integer> availability = new LinkedHashMap<>();
+        for (Branch branch : branches) {
+            int quantity = branch.getQuantity(title);
+            if (quantity >= 0) {
+                availability.put(branch.getName(), quantity);
+            }
+        }
+        return availability;
+    }
+
+    /**
+     * Moves copies of a title from one branch to another.
+     * <p>
+     * The copies are taken off the shelves of the source first, so concurrent borrows
+     * never see them at both branches. If the destination refuses them, they are put back.
+     * If the destination cannot be reached, it may have shelved them before the
+     * connection broke, so they are not put back: they are in transit until added to
+     * one of the branches by hand.
+     * </p>
+     * @param title  the title
+     * @param from   the name of the source branch
+     * @param to     the name of the destination branch
+     * @param copies the number of copies; must be greater than 0
+     * @return {@code true} if the copies were moved, {@code false} if the source has fewer
+     *         in stock or does not carry the title
+     * @throws IllegalArgumentException if a branch is unknown or {@code copies <= 0}
+     * @throws UncheckedIOException if a remote branch cannot be reached; the copies may
+     *         then be in transit
+     */
+    public boolean transfer(String title, String from, String to, int copies) {
+        Branch source = getBranch(from);
+        Branch destination = getBranch(to);
+        Book book = source.findBook(title);
+        if (book == null || !source.takeCopies(title, copies)) {
+            return false;
+        }
+        try {
+            destination.addCopies(book, copies);
+        } catch (UncheckedIOException e) {
+            throw new UncheckedIOException(copies + " copies of \"" + book.getTitle() + "\" taken from " + from
+                    + " may not have reached " + to + ".", e.getCause());
+        } catch (RuntimeException e) {
+            source.addCopies(book, copies);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The titles are borrowed one by one, each from the nearest branch of the branch
+     * owning it; an {@link BatchMode#ALL_OR_NOTHING} batch returns the borrowed copies to
+     * the branches that lent them when a title fails.
+     * </p>
+     */
+    @Override
+    public BatchResult borrowAll(List<String> titles, BatchMode mode) {
+        CirculationStatus[] statuses = new CirculationStatus[titles.size()];
+        List<RoutedLoan> loans = new ArrayList<>(titles.size());
+        for (int i = 0; i < statuses.length; i++) {
+            String title = titles.get(i);
+            RoutedLoan loan = borrow(title, nearest[index(ring.owner(title).getName())]);
+            statuses[i] = loan.getStatus();
+            loans.add(loan);
+            if (!loan.getStatus().isSuccess() && mode == BatchMode.ALL_OR_NOTHING) {
+                for (int j = 0; j < i; j++) {
+                    loans.get(j).getBranch().returnBook(titles.get(j));
+                    statuses[j] = CirculationStatus.ABORTED;
+                }
+                Arrays.fill(statuses, i + 1, statuses.length, CirculationStatus.ABORTED);
+                break;
+            }
+        }
+        return BatchResult.of(statuses);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The titles are returned one by one to the branches owning them. A title is only
+     * unknown if no branch carries it, so an {@link BatchMode#ALL_OR_NOTHING} batch is
+     * checked before any copy is returned.
+     * </p>
+     */
+    @Override
+    public BatchResult returnAll(List<String> titles, BatchMode mode) {
+        CirculationStatus[] statuses = new CirculationStatus[titles.size()];
+        if (mode == BatchMode.ALL_OR_NOTHING) {
+            for (int i = 0; i < statuses.length; i++) {
+                if (getAvailability(titles.get(i)).isEmpty()) {
+                    Arrays.fill(statuses, CirculationStatus.ABORTED);
+                    statuses[i] = CirculationStatus.NOT_FOUND;
+                    return BatchResult.of(statuses);
+                }
+            }
+        }
+        for (int i = 0; i < statuses.length; i++) {
+            statuses[i] = returnBook(titles.get(i));
+        }
+        return BatchResult.of(statuses);
+    }
+
+    /**
+     * Tries the branches in order until one lends a copy.
+     * @param title the title
+     * @param order the branches, nearest first
+     * @return the outcome and the branch that lent the copy
+     */
+    private static RoutedLoan borrow(String title, Branch[] order) {
+        CirculationStatus status = CirculationStatus.NOT_FOUND;
+        for (Branch branch : order) {
+            CirculationStatus outcome = branch.borrowBook(title);
+            if (outcome == CirculationStatus.BORROWED) {
+                return new RoutedLoan(outcome, branch);
+            }
+            if (outcome == CirculationStatus.OUT_OF_STOCK) {
+                status = outcome;
+            }
+        }
+        return new RoutedLoan(status, null);
+    }
+
+    /**
+     * Returns the index of a branch.
+     * @param name the name of the branch
+     * @return the index in {@link #branches}
+     * @throws IllegalArgumentException if the library has no such branch
+     */
+    private int index(String name) {
+        Integer index = indexes.get(name);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown branch " + name + ".");
+        }
+        return index;
+    }
+
+    /**
+     * The outcome of a borrow and the branch that lent the copy.
+     */
+    public static final class RoutedLoan {
+        /** The outcome. */
+        private final CirculationStatus status;
+
+        /** The branch that lent the copy, or {@code null}. */
+        private final Branch branch;
+
+        /**
+         * Creates an outcome.
+         * @param status the outcome
+         * @param branch the branch that lent the copy, or {@code null}
+         */
+        RoutedLoan(CirculationStatus status, Branch branch) {
+            this.status = status;
+            this.branch = branch;
+        }
+
+        /**
+         * Returns the outcome of the borrow.
+         * @return {@link CirculationStatus#BORROWED}, {@link CirculationStatus#OUT_OF_STOCK}
+         *         or {@link CirculationStatus#NOT_FOUND}
+         */
+        public CirculationStatus getStatus() {
+            return status;
+        }
+
+        /**
+         * Returns the branch that lent the copy.
+         * @return the branch, or {@code null} if the borrow failed
+         */
+        public Branch getBranch() {
+            return branch;
+        }
+
+        @Override
+        public String toString() {
+            return branch == null ? status.toString() : status + " at " + branch.getName();
+        }
+    }
+
+    /**
+     * Builder for creating a {@link ShardedLibrary}.
+     */
+    public static class Builder {
+        /** The branches, in the order they were added. */
+        private final List<Branch> branches = new ArrayList<>();
+
+        /** The index of every branch, by name. */
+        private final Map<String, Integer> indexes = new HashMap<>();
+
+        /** The horizontal positions of the branches. */
+        private double[] xs = new double[4];
+
+        /** The vertical positions of the branches. */
+        private double[] ys = new double[4];
+
+        /**
+         * Adds a branch at a position. Distances between branches are straight-line
+         * distances, so any planar coordinates will do.
+         * @param branch the branch; its name must be unique
+         * @param x      the horizontal position of the branch
+         * @param y      the vertical position of the branch
+         * @return this builder instance
+         * @throws IllegalArgumentException if a branch with the same name was added
+         */
+        public Builder addBranch(Branch branch, double x, double y) {
+            if (indexes.putIfAbsent(branch.getName(), branches.size()) != null) {
+                throw new IllegalArgumentException("Branch " + branch.getName() + " is already added.");
+            }
+            if (branches.size() == xs.length) {
+                xs = Arrays.copyOf(xs, xs.length * 2);
+                ys = Arrays.copyOf(ys, ys.length * 2);
+            }
+            xs[branches.size()] = x;
+            ys[branches.size()] = y;
+            branches.add(branch);
+            return this;
+        }
+
+        /**
+         * Builds and returns a new {@code ShardedLibrary} instance.
+         * @return a new {@code ShardedLibrary} object
+         * @throws IllegalStateException if no branch was added
+         */
+        public ShardedLibrary build() {
+            if (branches.isEmpty()) {
+                throw new IllegalStateException("A library needs at least one branch.");
+            }
+            return new ShardedLibrary(this);
+        }
+    }
+}
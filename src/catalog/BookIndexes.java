@@ -0,0 +1,575 @@
+package catalog;
+
+import book.Book;
+import book.Encyclopedia;
+import book.SpecialBook;
+import bookLibrary.InventoryListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Secondary indexes over the attributes of the books in the library.
+ * <p>
+ * The indexes are attached to the {@link bookLibrary.BookLibrary} as an
+ * {@link InventoryListener} and number every book in registration order when it is
+ * registered. They keep:
+ * <ul>
+ *     <li>hash indexes from the genre, the language and the author, normalized like
+ *     titles, to the sorted list of the numbers of their books,</li>
+ *     <li>lists of the signed and rare special books and of the illustrated encyclopedias,</li>
+ *     <li>range indexes of the page count, in bins of {@value #PAGE_BIN} pages, and of the
+ *     value, in bins of one unit, each bin listing its books,</li>
+ *     <li>the same attributes as columns by book number, which check a book against a
+ *     criterion without touching the book.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * A {@link BookQuery} is planned by estimating, from the list sizes, how many books each
+ * indexed criterion selects. The smallest list drives the search, and every book in it is
+ * checked against the columns of the remaining criteria, which intersects the indexes in
+ * time proportional to the smallest one. Without an indexed criterion the columns are
+ * scanned. {@link #explain(BookQuery)} shows the chosen plan.
+ * </p>
+ * <p>
+ * The indexes are thread-safe. Queries run in parallel; registrations take a write lock.
+ * Quantities are not indexed, so checkouts never touch the indexes.
+ * </p>
+ * <p>
+ * Example Usage:
+ * <pre>
+ * List&lt;Book&gt; books = BookLibrary.BookLibrary().findBooks(query, 20);
+ * </pre>
+ * </p>
+ */
+public class BookIndexes implements InventoryListener {
+
+    /** Width of a bin of the page count index. */
+    static final int PAGE_BIN = 50;
+
+    /** Flag of a signed special book. */
+    private static final byte SIGNED = 1;
+
+    /** Flag of a rare special book. */
+    private static final byte RARE = 2;
+
+    /** Flag of an illustrated encyclopedia. */
+    private static final byte ILLUSTRATED = 4;
+
+    /** Guards the columns and the indexes. */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Number of indexed books. */
+    private int size;
+
+    /** Books by their number. */
+    private Book[] books = new Book[64];
+
+    /** Genre codes into {@link #genreDictionary}. */
+    private int[] genres = new int[64];
+
+    /** Language codes into {@link #languageDictionary}. */
+    private int[] languages = new int[64];
+
+    /** Author codes into {@link #authorDictionary}. */
+    private int[] authors = new int[64];
+
+    /** Page counts. */
+    private int[] pages = new int[64];
+
+    /** Values of one copy. */
+    private double[] values = new double[64];
+
+    /** The {@link #SIGNED}, {@link #RARE} and {@link #ILLUSTRATED} flags. */
+    private byte[] flags = new byte[64];
+
+    /** Codes of the normalized genres. */
+    private final StringDictionary genreDictionary = new StringDictionary();
+
+    /** Codes of the normalized languages. */
+    private final StringDictionary languageDictionary = new StringDictionary();
+
+    /** Codes of the normalized authors. */
+    private final StringDictionary authorDictionary = new StringDictionary();
+
+    /** Books by genre code. */
+    private final List<IdList> byGenre = new ArrayList<>();
+
+    /** Books by language code. */
+    private final List<IdList> byLanguage = new ArrayList<>();
+
+    /** Books by author code. */
+    private final List<IdList> byAuthor = new ArrayList<>();
+
+    /** Signed special books. */
+    private final IdList signedBooks = new IdList();
+
+    /** Rare special books. */
+    private final IdList rareBooks = new IdList();
+
+    /** Illustrated encyclopedias. */
+    private final IdList illustratedBooks = new IdList();
+
+    /** Books by page count divided by {@link #PAGE_BIN}. */
+    private final NavigableMap<Integer, IdList> pageBins = new TreeMap<>();
+
+    /** Books by their value rounded down. */
+    private final NavigableMap<Integer, IdList> valueBins = new TreeMap<>();
+
+    @Override
+    public void bookRegistered(Book book, int quantity) {
+        lock.writeLock().lock();
+        try {
+            if (size == books.length) {
+                int capacity = size * 2;
+                books = Arrays.copyOf(books, capacity);
+                genres = Arrays.copyOf(genres, capacity);
+                languages = Arrays.copyOf(languages, capacity);
+                authors = Arrays.copyOf(authors, capacity);
+                pages = Arrays.copyOf(pages, capacity);
+                values = Arrays.copyOf(values, capacity);
+                flags = Arrays.copyOf(flags, capacity);
+            }
+            int id = size++;
+            books[id] = book;
+            genres[id] = index(genreDictionary, byGenre, book.getGenre(), id);
+            languages[id] = index(languageDictionary, byLanguage, book.getLanguage(), id);
+            authors[id] = index(authorDictionary, byAuthor, book.getAuthor(), id);
+            pages[id] = book.getPageNumbers();
+            values[id] = book.getValue();
+            pageBins.computeIfAbsent(book.getPageNumbers() / PAGE_BIN, bin -> new IdList()).add(id);
+            valueBins.computeIfAbsent(valueBin(book.getValue()), bin -> new IdList()).add(id);
+            byte bookFlags = 0;
+            if (book instanceof SpecialBook specialBook) {
+                bookFlags |= specialBook.isSigned() ? SIGNED : 0;
+                bookFlags |= specialBook.isRare() ? RARE : 0;
+            } else if (book instanceof Encyclopedia encyclopedia) {
+                bookFlags |= encyclopedia.isIllustration() ? ILLUSTRATED : 0;
+            }
+            flags[id] = bookFlags;
+            if ((bookFlags & SIGNED) != 0) {
+                signedBooks.add(id);
+            }
+            if ((bookFlags & RARE) != 0) {
+                rareBooks.add(id);
+            }
+            if ((bookFlags & ILLUSTRATED) != 0) {
+                illustratedBooks.add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void quantityChanged(Book book, int delta, int quantity) {
+        // the indexes do not depend on the quantity
+    }
+
+    /**
+     * Finds the books meeting every criterion of a query.
+     *
+     * @param query   the criteria
+     * @param limit   the maximum number of books returned
+     * @param inStock tells whether a book has a copy in stock; used only when the query
+     *                asks for books in stock
+     * @return the matching books in registration order, at most {@code limit}
+     */
+    public List<Book> find(BookQuery query, int limit, Predicate<Book> inStock) {
+        List<Book> found = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Plan plan = plan(query);
+            if (plan.empty) {
+                return found;
+            }
+            if (plan.bins != null) {
+                int[] ids = new int[(int) Math.min(plan.estimate, Integer.MAX_VALUE)];
+                int count = 0;
+                for (IdList bin : plan.bins) {
+                    for (int i = 0; i < bin.size(); i++) {
+                        int id = bin.get(i);
+                        if (plan.matches(id)) {
+                            ids[count++] = id;
+                        }
+                    }
+                }
+                Arrays.sort(ids, 0, count);
+                for (int i = 0; i < count && found.size() < limit; i++) {
+                    addIfInStock(found, books[ids[i]], query, inStock);
+                }
+            } else if (plan.list != null) {
+                for (int i = 0; i < plan.list.size() && found.size() < limit; i++) {
+                    int id = plan.list.get(i);
+                    if (plan.matches(id)) {
+                        addIfInStock(found, books[id], query, inStock);
+                    }
+                }
+            } else {
+                for (int id = 0; id < size && found.size() < limit; id++) {
+                    if (plan.matches(id)) {
+                        addIfInStock(found, books[id], query, inStock);
+                    }
+                }
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Describes how a query would be run.
+     * <p>
+     * For example {@code "author index (3 of 100000 books), check genre, value"}: the
+     * index driving the search, the number of books it selects, and the criteria checked
+     * against the columns.
+     * </p>
+     *
+     * @param query the criteria
+     * @return the plan, in words
+     */
+    public String explain(BookQuery query) {
+        lock.readLock().lock();
+        try {
+            Plan plan = plan(query);
+            if (plan.empty) {
+                return plan.driver + " index selects no books";
+            }
+            StringBuilder text = new StringBuilder(plan.driver)
+                    .append(plan.list == null && plan.bins == null ? " (" : " index (")
+                    .append(plan.estimate).append(" of ").append(size).append(" books)");
+            String separator = ", check ";
+            for (String criterion : plan.checked) {
+                text.append(separator).append(criterion);
+                separator = ", ";
+            }
+            return text.toString();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of indexed books.
+     * @return the number of books
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Estimates the heap used by the columns and the indexes, not counting the books.
+     * @return the size in bytes
+     */
+    public long footprintBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = MemoryLayout.referenceArray(books.length) + 4 * MemoryLayout.intArray(books.length)
+                    + MemoryLayout.doubleArray(books.length) + MemoryLayout.align(16 + flags.length);
+            bytes += MemoryLayout.dictionary(genreDictionary) + MemoryLayout.dictionary(languageDictionary)
+                    + MemoryLayout.dictionary(authorDictionary);
+            bytes += lists(byGenre) + lists(byLanguage) + lists(byAuthor);
+            bytes += signedBooks.bytes() + rareBooks.bytes() + illustratedBooks.bytes();
+            bytes += bins(pageBins) + bins(valueBins);
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a book to a hash index.
+     * @param dictionary the codes of the keys
+     * @param lists      the books by key code
+     * @param value      the key, not yet normalized; may be null
+     * @param id         the book number
+     * @return the code of the key
+     */
+    private static int index(StringDictionary dictionary, List<IdList> lists, String value, int id) {
+        if (value == null) {
+            return StringDictionary.NULL_CODE;
+        }
+        int code = dictionary.encode(BookQuery.normalize(value));
+        if (code == lists.size()) {
+            lists.add(new IdList());
+        }
+        lists.get(code).add(id);
+        return code;
+    }
+
+    /**
+     * Returns the bin of the value index holding a value.
+     * @param value the value
+     * @return the value rounded down
+     */
+    private static int valueBin(double value) {
+        return (int) Math.min(Math.floor(value), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Adds a book to the result unless the query asks for books in stock and it has none.
+     * @param found   the result
+     * @param book    the book
+     * @param query   the criteria
+     * @param inStock tells whether a book has a copy in stock
+     */
+    private static void addIfInStock(List<Book> found, Book book, BookQuery query, Predicate<Book> inStock) {
+        if (!query.isInStockOnly() || inStock.test(book)) {
+            found.add(book);
+        }
+    }
+
+    /**
+     * Estimates the heap used by the lists of a hash index.
+     * @param lists the lists
+     * @return the size in bytes
+     */
+    private static long lists(List<IdList> lists) {
+        long bytes = MemoryLayout.object(MemoryLayout.REFERENCE + Integer.BYTES) + MemoryLayout.referenceArray(lists.size());
+        for (IdList list : lists) {
+            bytes += list.bytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Estimates the heap used by the bins of a range index.
+     * @param bins the bins
+     * @return the size in bytes
+     */
+    private static long bins(Map<Integer, IdList> bins) {
+        long bytes = MemoryLayout.object(MemoryLayout.REFERENCE + 2 * Integer.BYTES);
+        for (IdList bin : bins.values()) {
+            // a tree map entry holds key, value, three links and the color
+            bytes += MemoryLayout.object(5 * MemoryLayout.REFERENCE + 1) + MemoryLayout.BOXED_INT + bin.bytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Chooses the index driving a query: the one selecting the fewest books.
+     * @param query the criteria
+     * @return the plan
+     */
+    private Plan plan(BookQuery query) {
+        Plan plan = new Plan(query);
+        plan.consider("genre", hashList(genreDictionary, byGenre, query.genre));
+        plan.consider("language", hashList(languageDictionary, byLanguage, query.language));
+        plan.consider("author", hashList(authorDictionary, byAuthor, query.author));
+        plan.consider("signed", Boolean.TRUE.equals(query.signed) ? signedBooks : null);
+        plan.consider("rare", Boolean.TRUE.equals(query.rare) ? rareBooks : null);
+        plan.consider("illustrated", Boolean.TRUE.equals(query.illustrated) ? illustratedBooks : null);
+        if (query.hasPageRange()) {
+            plan.consider("pages", query.maxPages <= query.minPages ? List.of()
+                    : pageBins.subMap(query.minPages / PAGE_BIN, true, (query.maxPages - 1) / PAGE_BIN, true).values());
+        }
+        if (query.hasValueRange()) {
+            plan.consider("value", query.maxValue <= query.minValue ? List.of()
+                    : valueBins.subMap(valueBin(query.minValue), true, valueBin(query.maxValue), true).values());
+        }
+        plan.finish();
+        return plan;
+    }
+
+    /**
+     * Returns the list of a key of a hash index.
+     * @param dictionary the codes of the keys
+     * @param lists      the books by key code
+     * @param key        the normalized key, or {@code null} if the query does not use the index
+     * @return the list, an empty list for an unknown key, or {@code null} if not used
+     */
+    private static IdList hashList(StringDictionary dictionary, List<IdList> lists, String key) {
+        if (key == null) {
+            return null;
+        }
+        int code = dictionary.lookup(key);
+        return code == StringDictionary.NULL_CODE ? new IdList() : lists.get(code);
+    }
+
+    /**
+     * A planned query: the criteria with their key codes, and the index driving the search.
+     */
+    private final class Plan {
+        /** The criteria. */
+        private final BookQuery query;
+
+        /** Code of the genre, or {@link StringDictionary#NULL_CODE} for any. */
+        private final int genre;
+
+        /** Code of the language, or {@link StringDictionary#NULL_CODE} for any. */
+        private final int language;
+
+        /** Code of the author, or {@link StringDictionary#NULL_CODE} for any. */
+        private final int author;
+
+        /** The flags the book must have. */
+        private final byte requiredFlags;
+
+        /** The flags the book must not have. */
+        private final byte forbiddenFlags;
+
+        /** Name of the driving index, or of the full scan. */
+        private String driver = "full scan";
+
+        /** Number of books the driving index selects. */
+        private long estimate = size;
+
+        /** The list of a driving hash or flag index. */
+        private IdList list;
+
+        /** The bins of a driving range index. */
+        private Collection<IdList> bins;
+
+        /** Whether the query selects no book at all. */
+        private boolean empty;
+
+        /** The names of the criteria checked against the columns. */
+        private final List<String> checked = new ArrayList<>();
+
+        /** The names of all criteria of the query. */
+        private final List<String> criteria = new ArrayList<>();
+
+        /**
+         * Looks up the key codes of a query.
+         * @param query the criteria
+         */
+        Plan(BookQuery query) {
+            this.query = query;
+            this.genre = code(genreDictionary, query.genre);
+            this.language = code(languageDictionary, query.language);
+            this.author = code(authorDictionary, query.author);
+            this.requiredFlags = flags(query, true);
+            this.forbiddenFlags = flags(query, false);
+            addCriterion("genre", query.genre != null);
+            addCriterion("language", query.language != null);
+            addCriterion("author", query.author != null);
+            addCriterion("signed", query.signed != null);
+            addCriterion("rare", query.rare != null);
+            addCriterion("illustrated", query.illustrated != null);
+            addCriterion("pages", query.hasPageRange());
+            addCriterion("value", query.hasValueRange());
+        }
+
+        /**
+         * Drives the search with a list if it selects fewer books than the current driver.
+         * @param name the name of the criterion
+         * @param list the list of the books meeting it, or {@code null} if the query does not use it
+         */
+        void consider(String name, IdList list) {
+            if (list != null && list.size() < estimate) {
+                use(name, list.size());
+                this.list = list;
+                this.bins = null;
+            }
+        }
+
+        /**
+         * Drives the search with the bins of a range if they hold fewer books than the
+         * current driver.
+         * @param name the name of the criterion
+         * @param bins the bins overlapping the range
+         */
+        void consider(String name, Collection<IdList> bins) {
+            long count = 0;
+            for (IdList bin : bins) {
+                count += bin.size();
+            }
+            if (count < estimate) {
+                use(name, count);
+                this.list = null;
+                this.bins = bins;
+            }
+        }
+
+        /**
+         * Makes an index the driver.
+         * @param name     the name of the criterion
+         * @param selected the number of books it selects
+         */
+        private void use(String name, long selected) {
+            driver = name;
+            estimate = selected;
+        }
+
+        /**
+         * Settles the plan once every index was considered.
+         */
+        void finish() {
+            empty = estimate == 0;
+            for (String criterion : criteria) {
+                // the books of a hash list all meet its criterion; range bins may overlap the range
+                if (!criterion.equals(driver) || bins != null) {
+                    checked.add(criterion);
+                }
+            }
+        }
+
+        /**
+         * Checks a book against all criteria of the query.
+         * @param id the book number
+         * @return {@code true} if the book meets them all
+         */
+        boolean matches(int id) {
+            return (query.genre == null || genres[id] == genre)
+                    && (query.language == null || languages[id] == language)
+                    && (query.author == null || authors[id] == author)
+                    && (flags[id] & requiredFlags) == requiredFlags
+                    && (flags[id] & forbiddenFlags) == 0
+                    && pages[id] >= query.minPages && pages[id] < query.maxPages
+                    && values[id] >= query.minValue && values[id] < query.maxValue;
+        }
+
+        /**
+         * Records the name of a criterion the query uses.
+         * @param name the name
+         * @param used whether the query uses it
+         */
+        private void addCriterion(String name, boolean used) {
+            if (used) {
+                criteria.add(name);
+            }
+        }
+
+        /**
+         * Returns the code of a key, or a code no book has for an unknown key.
+         * @param dictionary the codes of the keys
+         * @param key        the normalized key, may be null
+         * @return the code
+         */
+        private static int code(StringDictionary dictionary, String key) {
+            if (key == null) {
+                return StringDictionary.NULL_CODE;
+            }
+            int code = dictionary.lookup(key);
+            return code == StringDictionary.NULL_CODE ? Integer.MIN_VALUE : code;
+        }
+
+        /**
+         * Returns the flags the query requires to be set or to be clear.
+         * @param query the criteria
+         * @param value {@code true} for the required flags, {@code false} for the forbidden ones
+         * @return the flags
+         */
+        private static byte flags(BookQuery query, boolean value) {
+            byte result = 0;
+            result |= Boolean.valueOf(value).equals(query.signed) ? SIGNED : 0;
+            result |= Boolean.valueOf(value).equals(query.rare) ? RARE : 0;
+            result |= Boolean.valueOf(value).equals(query.illustrated) ? ILLUSTRATED : 0;
+            return result;
+        }
+    }
+}
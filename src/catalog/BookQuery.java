@@ -0,0 +1,260 @@
+package catalog;
+
+import bookLibrary.TitleNormalizer;
+
+/**
+ * Criteria of a search of the {@link BookIndexes}: all given criteria must hold.
+ * <p>
+ * Genres, languages and authors are compared like titles, ignoring case and accents, so
+ * {@code "Jozef Karika"} and {@code "Jozef karika"} are the same author. The signed and
+ * rare flags only hold for a {@link book.SpecialBook} and the illustration flag only for
+ * an {@link book.Encyclopedia}. Ranges include their minimum and exclude their maximum;
+ * the value is the value of one copy, multipliers of special books included. Queries are
+ * immutable and can be shared between threads.
+ * </p>
+ * <p>
+ * Example Usage, Slovak thrillers signed by their author for under 20 EUR:
+ * <pre>
+ * BookQuery query = new BookQuery.Builder()
+ *         .language("SK")
+ *         .genre("napinavy")
+ *         .signed(true)
+ *         .valueBetween(0, 20)
+ *         .build();
+ * </pre>
+ * </p>
+ */
+public final class BookQuery {
+
+    /** The normalized genre, or {@code null} for any genre. */
+    final String genre;
+
+    /** The normalized language, or {@code null} for any language. */
+    final String language;
+
+    /** The normalized author, or {@code null} for any author. */
+    final String author;
+
+    /** The required signed flag, or {@code null} for any. */
+    final Boolean signed;
+
+    /** The required rare flag, or {@code null} for any. */
+    final Boolean rare;
+
+    /** The required illustration flag, or {@code null} for any. */
+    final Boolean illustrated;
+
+    /** The smallest page count, inclusive. */
+    final int minPages;
+
+    /** The largest page count, exclusive. */
+    final int maxPages;
+
+    /** The smallest value, inclusive. */
+    final double minValue;
+
+    /** The largest value, exclusive. */
+    final double maxValue;
+
+    /** Whether books without a copy in stock are skipped. */
+    final boolean inStockOnly;
+
+    /**
+     * Private constructor to enforce the use of the {@link Builder}.
+     * @param builder the builder holding the criteria
+     */
+    private BookQuery(Builder builder) {
+        this.genre = normalize(builder.genre);
+        this.language = normalize(builder.language);
+        this.author = normalize(builder.author);
+        this.signed = builder.signed;
+        this.rare = builder.rare;
+        this.illustrated = builder.illustrated;
+        this.minPages = builder.minPages;
+        this.maxPages = builder.maxPages;
+        this.minValue = builder.minValue;
+        this.maxValue = builder.maxValue;
+        this.inStockOnly = builder.inStockOnly;
+    }
+
+    /**
+     * Normalizes a genre, language or author like the indexes do.
+     * @param value the value, may be null
+     * @return the normalized value, or {@code null}
+     */
+    static String normalize(String value) {
+        return value == null ? null : TitleNormalizer.normalize(value);
+    }
+
+    /**
+     * Checks whether only books in stock are searched for.
+     * @return {@code true} if books without a copy in stock are skipped
+     */
+    public boolean isInStockOnly() {
+        return inStockOnly;
+    }
+
+    /**
+     * Checks whether the query restricts the page count.
+     * @return {@code true} if a page range was given
+     */
+    boolean hasPageRange() {
+        return minPages > 0 || maxPages < Integer.MAX_VALUE;
+    }
+
+    /**
+     * Checks whether the query restricts the value.
+     * @return {@code true} if a value range was given
+     */
+    boolean hasValueRange() {
+        return minValue > 0 || maxValue < Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Builder for creating a {@link BookQuery}; every criterion is optional.
+     */
+    public static class Builder {
+        /** The genre (optional, default is any genre). */
+        private String genre;
+
+        /** The language (optional, default is any language). */
+        private String language;
+
+        /** The author (optional, default is any author). */
+        private String author;
+
+        /** The signed flag (optional, default is any). */
+        private Boolean signed;
+
+        /** The rare flag (optional, default is any). */
+        private Boolean rare;
+
+        /** The illustration flag (optional, default is any). */
+        private Boolean illustrated;
+
+        /** The smallest page count (optional, default is 0). */
+        private int minPages;
+
+        /** The largest page count, exclusive (optional, default is unlimited). */
+        private int maxPages = Integer.MAX_VALUE;
+
+        /** The smallest value (optional, default is 0). */
+        private double minValue;
+
+        /** The largest value, exclusive (optional, default is unlimited). */
+        private double maxValue = Double.POSITIVE_INFINITY;
+
+        /** Whether only books in stock are found (optional, default is {@code false}). */
+        private boolean inStockOnly;
+
+        /**
+         * Selects the books of one genre.
+         * @param genre the genre (case- and accent-insensitive)
+         * @return this builder instance
+         */
+        public Builder genre(String genre) {
+            this.genre = genre;
+            return this;
+        }
+
+        /**
+         * Selects the books in one language.
+         * @param language the language (case- and accent-insensitive)
+         * @return this builder instance
+         */
+        public Builder language(String language) {
+            this.language = language;
+            return this;
+        }
+
+        /**
+         * Selects the books of one author.
+         * @param author the author (case- and accent-insensitive)
+         * @return this builder instance
+         */
+        public Builder author(String author) {
+            this.author = author;
+            return this;
+        }
+
+        /**
+         * Selects special books that are signed, or books that are not.
+         * @param signed the required flag
+         * @return this builder instance
+         */
+        public Builder signed(boolean signed) {
+            this.signed = signed;
+            return this;
+        }
+
+        /**
+         * Selects special books that are rare, or books that are not.
+         * @param rare the required flag
+         * @return this builder instance
+         */
+        public Builder rare(boolean rare) {
+            this.rare = rare;
+            return this;
+        }
+
+        /**
+         * Selects illustrated encyclopedias, or books that are not.
+         * @param illustrated the required flag
+         * @return this builder instance
+         */
+        public Builder illustrated(boolean illustrated) {
+            this.illustrated = illustrated;
+            return this;
+        }
+
+        /**
+         * Selects the books with a page count in a range.
+         * @param min the smallest page count, inclusive
+         * @param max the largest page count, exclusive
+         * @return this builder instance
+         * @throws IllegalArgumentException if {@code min < 0} or {@code min > max}
+         */
+        public Builder pagesBetween(int min, int max) {
+            if (min < 0 || min > max) {
+                throw new IllegalArgumentException("Page range must not be negative or empty.");
+            }
+            this.minPages = min;
+            this.maxPages = max;
+            return this;
+        }
+
+        /**
+         * Selects the books with a value in a range.
+         * @param min the smallest value, inclusive
+         * @param max the largest value, exclusive
+         * @return this builder instance
+         * @throws IllegalArgumentException if {@code min < 0} or {@code min > max}
+         */
+        public Builder valueBetween(double min, double max) {
+            if (min < 0 || min > max) {
+                throw new IllegalArgumentException("Value range must not be negative or empty.");
+            }
+            this.minValue = min;
+            this.maxValue = max;
+            return this;
+        }
+
+        /**
+         * Selects only the books with at least one copy in stock.
+         * @param inStockOnly {@code true} to skip books that are all lent out
+         * @return this builder instance
+         */
+        public Builder inStockOnly(boolean inStockOnly) {
+            this.inStockOnly = inStockOnly;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new {@code BookQuery} instance.
+         * @return a new {@code BookQuery} object
+         */
+        public BookQuery build() {
+            return new BookQuery(this);
+        }
+    }
+}
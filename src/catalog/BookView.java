@@ -0,0 +1,189 @@
+package catalog;
+
+import book.Book;
+import book.Encyclopedia;
+import book.PricingRules;
+import book.SpecialBook;
+
+/**
+ * Flyweight view of one row of a {@link ColumnarCatalog}.
+ * <p>
+ * A view holds only the catalog and the row number; every getter reads the columns of
+ * the catalog, so it always returns the current quantity. The getters have the names
+ * and the meaning of those of {@link book.AbstractBook}, {@link SpecialBook} and
+ * {@link Encyclopedia}, and {@link #toBook()} turns the row back into a book object
+ * when one is needed.
+ * </p>
+ */
+public final class BookView {
+
+    /** The catalog holding the row. */
+    private final ColumnarCatalog catalog;
+
+    /** The row number. */
+    private final int row;
+
+    /**
+     * Creates a view of a row.
+     * @param catalog the catalog holding the row
+     * @param row     the row number
+     */
+    BookView(ColumnarCatalog catalog, int row) {
+        this.catalog = catalog;
+        this.row = row;
+    }
+
+    /**
+     * Returns the row number of the book in the catalog.
+     * @return the row number
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * Returns the title of the book.
+     * @return the title of the book
+     */
+    public String getTitle() {
+        return catalog.title(row);
+    }
+
+    /**
+     * Returns the author of the book.
+     * @return the author of the book
+     */
+    public String getAuthor() {
+        return catalog.author(row);
+    }
+
+    /**
+     * Returns the genre of the book.
+     * @return the genre of the book
+     */
+    public String getGenre() {
+        return catalog.genre(row);
+    }
+
+    /**
+     * Returns the number of pages in the book.
+     * @return the number of pages in the book
+     */
+    public int getPageNumbers() {
+        return catalog.pageNumbers(row);
+    }
+
+    /**
+     * Returns the language of the book.
+     * @return the language of the book
+     */
+    public String getLanguage() {
+        return catalog.language(row);
+    }
+
+    /**
+     * Returns the monetary value of the book, as computed by its {@link PricingRules} when
+     * the book was built.
+     * @return the monetary value of the book
+     */
+    public double getValue() {
+        return catalog.value(row);
+    }
+
+    /**
+     * Returns the base monetary value of the book, as it was given when the book was created.
+     * @return the base monetary value of the book
+     */
+    public double getBaseValue() {
+        return catalog.baseValue(row);
+    }
+
+    /**
+     * Returns the number of copies in stock.
+     * @return the quantity in stock
+     */
+    public int getQuantity() {
+        return catalog.quantity(row);
+    }
+
+    /**
+     * Checks whether the book is a {@link SpecialBook}.
+     * @return {@code true} for a special book
+     */
+    public boolean isSpecialBook() {
+        return catalog.isSpecialBook(row);
+    }
+
+    /**
+     * Checks whether the book is an {@link Encyclopedia}.
+     * @return {@code true} for an encyclopedia
+     */
+    public boolean isEncyclopedia() {
+        return catalog.isEncyclopedia(row);
+    }
+
+    /**
+     * Checks if the book is signed by the author.
+     * @return {@code true} for a signed special book, {@code false} otherwise
+     */
+    public boolean isSigned() {
+        return catalog.isSigned(row);
+    }
+
+    /**
+     * Checks if the book is classified as rare.
+     * @return {@code true} for a rare special book, {@code false} otherwise
+     */
+    public boolean isRare() {
+        return catalog.isRare(row);
+    }
+
+    /**
+     * Returns whether the book contains illustrations.
+     * @return {@code true} for an illustrated encyclopedia, {@code false} otherwise
+     */
+    public boolean isIllustration() {
+        return catalog.isIllustration(row);
+    }
+
+    /**
+     * Creates a book object with the fields of the row, through the matching builder.
+     * <p>
+     * The book is valued at the value of the row, whatever rules priced the book it was
+     * added from.
+     * </p>
+     * @return a new {@link Book}, {@link SpecialBook} or {@link Encyclopedia}
+     */
+    public Book toBook() {
+        PricingRules pricing = PricingRules.fixed(getValue());
+        if (isSpecialBook()) {
+            return new SpecialBook.Builder(getTitle(), getAuthor()).genre(getGenre())
+                    .pageNumbers(getPageNumbers()).language(getLanguage()).value(getBaseValue()).pricing(pricing)
+                    .signed(isSigned()).rare(isRare())
+                    .build();
+        } else if (isEncyclopedia()) {
+            return new Encyclopedia.Builder(getTitle(), getAuthor()).genre(getGenre())
+                    .pageNumbers(getPageNumbers()).language(getLanguage()).value(getBaseValue()).pricing(pricing)
+                    .illustration(isIllustration())
+                    .build();
+        }
+        return new Book.Builder(getTitle(), getAuthor()).genre(getGenre())
+                .pageNumbers(getPageNumbers()).language(getLanguage()).value(getBaseValue()).pricing(pricing)
+                .build();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof BookView other && catalog == other.catalog && row == other.row;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(catalog) * 31 + row;
+    }
+
+    @Override
+    public String toString() {
+        return getTitle() + " by " + getAuthor() + " - Quantity: " + getQuantity();
+    }
+}
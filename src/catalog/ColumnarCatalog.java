@@ -0,0 +1,463 @@
+package catalog;
+
+import book.Book;
+import book.Encyclopedia;
+import book.SpecialBook;
+import bookLibrary.CirculationStatus;
+import bookLibrary.TitleNormalizer;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.Consumer;
+
+/**
+ * Compact, column-oriented catalog of books and their quantities.
+ * <p>
+ * Instead of one object per book, every field is kept in its own column indexed by a
+ * row number:
+ * <ul>
+ *     <li>page counts, base values, values after the pricing rules and quantities in
+ *     primitive arrays,</li>
+ *     <li>authors, genres and languages as {@code int} codes into a dictionary that keeps
+ *     every distinct string once,</li>
+ *     <li>the book type and the signed, rare and illustration flags in {@link BitSet}s,
+ *     one bit per row,</li>
+ *     <li>titles in a {@code String[]} with an open-addressing index of their normalized
+ *     form, so lookups by title are case- and accent-insensitive like in the
+ *     {@link bookLibrary.BookLibrary}.</li>
+ * </ul>
+ * A large catalog therefore needs a fraction of the heap of the object layout; see
+ * {@link FootprintReport}. Rows are read through {@link BookView} flyweights, which offer
+ * the getters of {@link book.AbstractBook} and its subclasses without materializing a book.
+ * </p>
+ * <p>
+ * The catalog is thread-safe; all access is synchronized on the catalog. Rows are only
+ * ever appended, so a row number stays valid for the lifetime of the catalog.
+ * </p>
+ * <p>
+ * Example Usage:
+ * <pre>
+ * ColumnarCatalog catalog = BookLibrary.BookLibrary().toColumnarCatalog();
+ * BookView view = catalog.findByTitle("vykupne");
+ * System.out.println(view.getTitle() + " - " + view.getValue());
+ * </pre>
+ * </p>
+ */
+public class ColumnarCatalog {
+
+    /** Initial number of rows the columns have room for. */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** Number of rows.*/
+    private int size;
+
+    /** Titles of the books. */
+    private String[] titles = new String[INITIAL_CAPACITY];
+
+    /** Hash codes of the normalized titles, compared before the titles themselves. */
+    private int[] titleHashes = new int[INITIAL_CAPACITY];
+
+    /** Author codes into {@link #authorDictionary}. */
+    private int[] authors = new int[INITIAL_CAPACITY];
+
+    /** Genre codes into {@link #genreDictionary}. */
+    private int[] genres = new int[INITIAL_CAPACITY];
+
+    /** Language codes into {@link #languageDictionary}. */
+    private int[] languages = new int[INITIAL_CAPACITY];
+
+    /** Page counts. */
+    private int[] pageNumbers = new int[INITIAL_CAPACITY];
+
+    /** Base values, before any {@link SpecialBook} or {@link Encyclopedia} multiplier. */
+    private double[] baseValues = new double[INITIAL_CAPACITY];
+
+    /** Values, as computed by the pricing rules of each book when it was built. */
+    private double[] values = new double[INITIAL_CAPACITY];
+
+    /** Quantities in stock. */
+    private int[] quantities = new int[INITIAL_CAPACITY];
+
+    /** Rows holding a {@link SpecialBook}. */
+    private final BitSet specialBooks = new BitSet();
+
+    /** Rows holding an {@link Encyclopedia}. */
+    private final BitSet encyclopedias = new BitSet();
+
+    /** Rows of signed special books. */
+    private final BitSet signed = new BitSet();
+
+    /** Rows of rare special books. */
+    private final BitSet rare = new BitSet();
+
+    /** Rows of illustrated encyclopedias. */
+    private final BitSet illustrated = new BitSet();
+
+    /** Distinct authors. */
+    private final StringDictionary authorDictionary = new StringDictionary();
+
+    /** Distinct genres. */
+    private final StringDictionary genreDictionary = new StringDictionary();
+
+    /** Distinct languages. */
+    private final StringDictionary languageDictionary = new StringDictionary();
+
+    /**
+     * Open-addressing hash table of the title index.
+     * <p>
+     * Each slot holds a row number plus one, or 0 when empty. The length is a power of two
+     * and the table is kept at most half full.
+     * </p>
+     */
+    private int[] titleSlots = new int[INITIAL_CAPACITY * 2];
+
+    /** Number of occupied slots in {@link #titleSlots}. */
+    private int indexedTitles;
+
+    /**
+     * Adds a book as a new row.
+     * <p>
+     * If another row already has the same normalized title, the earlier row keeps the title
+     * in the index, as in the {@link bookLibrary.BookLibrary}.
+     * </p>
+     *
+     * @param book     the book to add
+     * @param quantity the number of copies in stock; must not be negative
+     * @return the row number of the book
+     * @throws IllegalArgumentException if {@code quantity} is negative
+     */
+    public synchronized int add(Book book, int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity cannot be negative.");
+        }
+        if (size == titles.length) {
+            grow();
+        }
+
+        int row = size;
+        titles[row] = book.getTitle();
+        authors[row] = authorDictionary.encode(book.getAuthor());
+        genres[row] = genreDictionary.encode(book.getGenre());
+        languages[row] = languageDictionary.encode(book.getLanguage());
+        pageNumbers[row] = book.getPageNumbers();
+        baseValues[row] = book.getBaseValue();
+        values[row] = book.getValue();
+        quantities[row] = quantity;
+        if (book instanceof SpecialBook specialBook) {
+            specialBooks.set(row);
+            signed.set(row, specialBook.isSigned());
+            rare.set(row, specialBook.isRare());
+        } else if (book instanceof Encyclopedia encyclopedia) {
+            encyclopedias.set(row);
+            illustrated.set(row, encyclopedia.isIllustration());
+        }
+        size++;
+
+        String key = TitleNormalizer.normalize(book.getTitle());
+        titleHashes[row] = key.hashCode();
+        if (findRow(key) < 0) {
+            insertSlot(row);
+        }
+        return row;
+    }
+
+    /**
+     * Returns the number of rows.
+     * @return the number of books in the catalog
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns a view of the given row.
+     *
+     * @param row the row number
+     * @return a flyweight view of the row
+     * @throws IndexOutOfBoundsException if the row does not exist
+     */
+    public synchronized BookView view(int row) {
+        checkRow(row);
+        return new BookView(this, row);
+    }
+
+    /**
+     * Finds a book by its title.
+     *
+     * @param title the title of the book (case- and accent-insensitive)
+     * @return a view of the matching row, or {@code null} if the catalog has no such title
+     */
+    public synchronized BookView findByTitle(String title) {
+        int row = findRow(TitleNormalizer.normalize(title));
+        return row < 0 ? null : new BookView(this, row);
+    }
+
+    /**
+     * Passes a view of every row to the action, in row order.
+     * @param action the action to perform on each row
+     */
+    public void forEach(Consumer<BookView> action) {
+        int rows = size();
+        for (int row = 0; row < rows; row++) {
+            action.accept(new BookView(this, row));
+        }
+    }
+
+    /**
+     * Borrows a book, decreasing its quantity by 1 if a copy is in stock.
+     *
+     * @param title the title of the book to borrow (case- and accent-insensitive)
+     * @return {@link CirculationStatus#BORROWED}, {@link CirculationStatus#OUT_OF_STOCK}
+     *         or {@link CirculationStatus#NOT_FOUND}
+     */
+    public synchronized CirculationStatus borrowBook(String title) {
+        int row = findRow(TitleNormalizer.normalize(title));
+        if (row < 0) {
+            return CirculationStatus.NOT_FOUND;
+        }
+        if (quantities[row] == 0) {
+            return CirculationStatus.OUT_OF_STOCK;
+        }
+        quantities[row]--;
+        return CirculationStatus.BORROWED;
+    }
+
+    /**
+     * Returns a borrowed book, increasing its quantity by 1.
+     *
+     * @param title the title of the book to return (case- and accent-insensitive)
+     * @return {@link CirculationStatus#RETURNED} or {@link CirculationStatus#NOT_FOUND}
+     */
+    public synchronized CirculationStatus returnBook(String title) {
+        int row = findRow(TitleNormalizer.normalize(title));
+        if (row < 0) {
+            return CirculationStatus.NOT_FOUND;
+        }
+        quantities[row]++;
+        return CirculationStatus.RETURNED;
+    }
+
+    /**
+     * Estimates the heap used by the catalog.
+     * @return the estimated size of the catalog in bytes
+     */
+    public synchronized long estimateBytes() {
+        long bytes = MemoryLayout.object(17 * MemoryLayout.REFERENCE + 2 * Integer.BYTES);
+        bytes += MemoryLayout.referenceArray(titles.length);
+        for (int row = 0; row < size; row++) {
+            bytes += MemoryLayout.string(titles[row]);
+        }
+        for (int[] column : new int[][] {titleHashes, authors, genres, languages, pageNumbers, quantities, titleSlots}) {
+            bytes += MemoryLayout.intArray(column.length);
+        }
+        bytes += MemoryLayout.doubleArray(baseValues.length) + MemoryLayout.doubleArray(values.length);
+        for (BitSet bits : new BitSet[] {specialBooks, encyclopedias, signed, rare, illustrated}) {
+            bytes += MemoryLayout.bitSet(bits);
+        }
+        for (StringDictionary dictionary : new StringDictionary[] {authorDictionary, genreDictionary, languageDictionary}) {
+            bytes += MemoryLayout.dictionary(dictionary);
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the title of a row.
+     * @param row the row number
+     * @return the title
+     */
+    synchronized String title(int row) {
+        return titles[row];
+    }
+
+    /**
+     * Returns the author of a row.
+     * @param row the row number
+     * @return the author
+     */
+    synchronized String author(int row) {
+        return authorDictionary.decode(authors[row]);
+    }
+
+    /**
+     * Returns the genre of a row.
+     * @param row the row number
+     * @return the genre, may be null
+     */
+    synchronized String genre(int row) {
+        return genreDictionary.decode(genres[row]);
+    }
+
+    /**
+     * Returns the language of a row.
+     * @param row the row number
+     * @return the language, may be null
+     */
+    synchronized String language(int row) {
+        return languageDictionary.decode(languages[row]);
+    }
+
+    /**
+     * Returns the page count of a row.
+     * @param row the row number
+     * @return the number of pages
+     */
+    synchronized int pageNumbers(int row) {
+        return pageNumbers[row];
+    }
+
+    /**
+     * Returns the base value of a row.
+     * @param row the row number
+     * @return the base value
+     */
+    synchronized double baseValue(int row) {
+        return baseValues[row];
+    }
+
+    /**
+     * Returns the value of a row.
+     * @param row the row number
+     * @return the value after the pricing rules
+     */
+    synchronized double value(int row) {
+        return values[row];
+    }
+
+    /**
+     * Returns the quantity of a row.
+     * @param row the row number
+     * @return the number of copies in stock
+     */
+    synchronized int quantity(int row) {
+        return quantities[row];
+    }
+
+    /**
+     * Checks whether a row holds a {@link SpecialBook}.
+     * @param row the row number
+     * @return {@code true} for a special book
+     */
+    synchronized boolean isSpecialBook(int row) {
+        return specialBooks.get(row);
+    }
+
+    /**
+     * Checks whether a row holds an {@link Encyclopedia}.
+     * @param row the row number
+     * @return {@code true} for an encyclopedia
+     */
+    synchronized boolean isEncyclopedia(int row) {
+        return encyclopedias.get(row);
+    }
+
+    /**
+     * Checks whether a row holds a signed special book.
+     * @param row the row number
+     * @return {@code true} if signed
+     */
+    synchronized boolean isSigned(int row) {
+        return signed.get(row);
+    }
+
+    /**
+     * Checks whether a row holds a rare special book.
+     * @param row the row number
+     * @return {@code true} if rare
+     */
+    synchronized boolean isRare(int row) {
+        return rare.get(row);
+    }
+
+    /**
+     * Checks whether a row holds an illustrated encyclopedia.
+     * @param row the row number
+     * @return {@code true} if illustrated
+     */
+    synchronized boolean isIllustration(int row) {
+        return illustrated.get(row);
+    }
+
+    /**
+     * Finds the row indexed under a normalized title.
+     * @param key the normalized title
+     * @return the row number, or -1 if no row has the title
+     */
+    private int findRow(String key) {
+        int hash = key.hashCode();
+        int mask = titleSlots.length - 1;
+        for (int slot = spread(hash) & mask; titleSlots[slot] != 0; slot = (slot + 1) & mask) {
+            int row = titleSlots[slot] - 1;
+            if (titleHashes[row] == hash && TitleNormalizer.normalize(titles[row]).equals(key)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Puts a row into the title index, doubling the table when it is half full.
+     * @param row the row number, whose title hash is already set
+     */
+    private void insertSlot(int row) {
+        if ((indexedTitles + 1) * 2 > titleSlots.length) {
+            int[] old = titleSlots;
+            titleSlots = new int[old.length * 2];
+            for (int slot : old) {
+                if (slot != 0) {
+                    place(slot - 1);
+                }
+            }
+        }
+        place(row);
+        indexedTitles++;
+    }
+
+    /**
+     * Puts a row into the first free slot of its probe sequence.
+     * @param row the row number
+     */
+    private void place(int row) {
+        int mask = titleSlots.length - 1;
+        int slot = spread(titleHashes[row]) & mask;
+        while (titleSlots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        titleSlots[slot] = row + 1;
+    }
+
+    /**
+     * Mixes the high bits of a hash code into the low bits used to pick a slot.
+     * @param hash the hash code
+     * @return the spread hash code
+     */
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Doubles the capacity of all array columns.
+     */
+    private void grow() {
+        int capacity = titles.length * 2;
+        titles = Arrays.copyOf(titles, capacity);
+        titleHashes = Arrays.copyOf(titleHashes, capacity);
+        authors = Arrays.copyOf(authors, capacity);
+        genres = Arrays.copyOf(genres, capacity);
+        languages = Arrays.copyOf(languages, capacity);
+        pageNumbers = Arrays.copyOf(pageNumbers, capacity);
+        baseValues = Arrays.copyOf(baseValues, capacity);
+        values = Arrays.copyOf(values, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+    }
+
+    /**
+     * Checks that a row exists.
+     * @param row the row number
+     * @throws IndexOutOfBoundsException if the row does not exist
+     */
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of bounds for " + size + " rows.");
+        }
+    }
+}
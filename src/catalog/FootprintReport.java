@@ -0,0 +1,145 @@
+package catalog;
+
+import book.Book;
+import book.Encyclopedia;
+import book.SpecialBook;
+import bookLibrary.TitleNormalizer;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Estimated heap footprint of a catalog in the object layout of the
+ * {@link bookLibrary.BookLibrary} and in a {@link ColumnarCatalog}.
+ * <p>
+ * The object layout covers what the library keeps per book: the book object, its title,
+ * author, genre and language strings (each distinct string instance counted once), the
+ * stock map with the stock of every book and its current version, and the title index
+ * with its normalized keys. The sizes are estimated, not measured; see
+ * {@link MemoryLayout} for the assumptions.
+ * </p>
+ * <p>
+ * Example Usage:
+ * <pre>
+ * System.out.println(BookLibrary.BookLibrary().footprintReport());
+ * </pre>
+ * </p>
+ */
+public final class FootprintReport {
+
+    /** Number of books compared. */
+    private final int books;
+
+    /** Size of the book objects in the object layout. */
+    private final long bookObjectBytes;
+
+    /** Size of the distinct strings in the object layout. */
+    private final long stringBytes;
+
+    /** Size of the stock map and the title index in the object layout. */
+    private final long mapBytes;
+
+    /** Size of the columnar catalog. */
+    private final long columnarBytes;
+
+    /**
+     * Creates a report.
+     * @param books           the number of books
+     * @param bookObjectBytes the size of the book objects
+     * @param stringBytes     the size of the strings
+     * @param mapBytes        the size of the maps
+     * @param columnarBytes   the size of the columnar catalog
+     */
+    private FootprintReport(int books, long bookObjectBytes, long stringBytes, long mapBytes, long columnarBytes) {
+        this.books = books;
+        this.bookObjectBytes = bookObjectBytes;
+        this.stringBytes = stringBytes;
+        this.mapBytes = mapBytes;
+        this.columnarBytes = columnarBytes;
+    }
+
+    /**
+     * Compares the object layout of the given books with a columnar catalog of the same books.
+     *
+     * @param books   the books as kept by the library
+     * @param catalog a columnar catalog holding the same books
+     * @return the report
+     */
+    public static FootprintReport compare(Collection<? extends Book> books, ColumnarCatalog catalog) {
+        Set<String> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        long bookObjects = 0;
+        long strings = 0;
+        for (Book book : books) {
+            bookObjects += bookObject(book);
+            String key = TitleNormalizer.normalize(book.getTitle());
+            for (String value : new String[] {book.getTitle(), book.getAuthor(), book.getGenre(), book.getLanguage(), key}) {
+                if (value != null && seen.add(value)) {
+                    strings += MemoryLayout.string(value);
+                }
+            }
+        }
+        long maps = 2 * (MemoryLayout.hashTable(books.size()) + books.size() * MemoryLayout.MAP_NODE)
+                + books.size() * (MemoryLayout.object(3 * MemoryLayout.REFERENCE + 4)
+                        + MemoryLayout.object(MemoryLayout.REFERENCE + 4 + 8));
+        return new FootprintReport(books.size(), bookObjects, strings, maps, catalog.estimateBytes());
+    }
+
+    /**
+     * Returns the size of a book object without its strings.
+     * @param book the book
+     * @return the size in bytes
+     */
+    private static long bookObject(Book book) {
+        long fields = 4 * MemoryLayout.REFERENCE + Integer.BYTES + Double.BYTES;
+        if (book instanceof SpecialBook) {
+            fields += 2;
+        } else if (book instanceof Encyclopedia) {
+            fields += 1;
+        }
+        return MemoryLayout.object(fields);
+    }
+
+    /**
+     * Returns the number of books compared.
+     * @return the number of books
+     */
+    public int getBooks() {
+        return books;
+    }
+
+    /**
+     * Returns the estimated size of the books in the object layout.
+     * @return the size in bytes
+     */
+    public long getObjectLayoutBytes() {
+        return bookObjectBytes + stringBytes + mapBytes;
+    }
+
+    /**
+     * Returns the estimated size of the columnar catalog.
+     * @return the size in bytes
+     */
+    public long getColumnarBytes() {
+        return columnarBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%,d books%n"
+                        + "  object layout: %,15d bytes (%,d book objects, %,d strings, %,d maps), %,.1f bytes per book%n"
+                        + "  columnar:      %,15d bytes, %,.1f bytes per book (%.1f%% of the object layout)",
+                books, getObjectLayoutBytes(), bookObjectBytes, stringBytes, mapBytes, perBook(getObjectLayoutBytes()),
+                columnarBytes, perBook(columnarBytes), 100.0 * columnarBytes / Math.max(1, getObjectLayoutBytes()));
+    }
+
+    /**
+     * Divides a size by the number of books.
+     * @param bytes the size
+     * @return the size per book
+     */
+    private double perBook(long bytes) {
+        return books == 0 ? 0 : (double) bytes / books;
+    }
+}
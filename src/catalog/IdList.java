@@ -0,0 +1,56 @@
+package catalog;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of book numbers, the posting list of one key of a {@link BookIndexes}.
+ * <p>
+ * Book numbers are assigned in registration order and appended as books are registered,
+ * so the list of a key is always sorted. The list is not thread-safe; the
+ * {@link BookIndexes} guard it with their lock.
+ * </p>
+ */
+final class IdList {
+
+    /** The book numbers; only the first {@link #size} are used. */
+    private int[] ids = new int[4];
+
+    /** Number of book numbers. */
+    private int size;
+
+    /**
+     * Appends a book number.
+     * @param id the number, greater than every number already in the list
+     */
+    void add(int id) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        ids[size++] = id;
+    }
+
+    /**
+     * Returns a book number.
+     * @param index the position in the list
+     * @return the book number
+     */
+    int get(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Returns the number of book numbers.
+     * @return the size of the list
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Estimates the heap used by the list.
+     * @return the size in bytes
+     */
+    long bytes() {
+        return MemoryLayout.object(MemoryLayout.REFERENCE + Integer.BYTES) + MemoryLayout.intArray(ids.length);
+    }
+}
@@ -0,0 +1,137 @@
+package catalog;
+
+import java.util.BitSet;
+
+/**
+ * Estimates the heap size of objects, assuming a 64-bit JVM with compressed references.
+ * <p>
+ * Objects have a 12 byte header, arrays a 16 byte header, references take 4 bytes and
+ * every object is padded to a multiple of 8 bytes. Strings are assumed to use the
+ * compact one byte per character encoding when all their characters are Latin-1.
+ * These are the defaults of HotSpot for heaps below 32 GB.
+ * </p>
+ */
+final class MemoryLayout {
+
+    /** Size of a reference in bytes. */
+    static final int REFERENCE = 4;
+
+    /** Size of an object header in bytes. */
+    private static final int OBJECT_HEADER = 12;
+
+    /** Size of an array header in bytes. */
+    private static final int ARRAY_HEADER = 16;
+
+    /** Size of a {@code String} object without its byte array: header, array, hash and flags. */
+    private static final long STRING_OBJECT = 24;
+
+    /** Size of a {@code HashMap} or {@code ConcurrentHashMap} node: header, hash, key, value and next. */
+    static final long MAP_NODE = 32;
+
+    /** Size of a boxed {@code Integer} or an {@code AtomicInteger}. */
+    static final long BOXED_INT = 16;
+
+    /** Utility class, not meant to be instantiated. */
+    private MemoryLayout() {
+    }
+
+    /**
+     * Returns the size of an object with the given fields.
+     * @param fieldBytes the total size of the fields in bytes
+     * @return the padded size of the object
+     */
+    static long object(long fieldBytes) {
+        return align(OBJECT_HEADER + fieldBytes);
+    }
+
+    /**
+     * Returns the size of a string including its byte array.
+     * @param value the string, may be null
+     * @return the size in bytes, 0 for null
+     */
+    static long string(String value) {
+        if (value == null) {
+            return 0;
+        }
+        boolean latin1 = true;
+        for (int i = 0; i < value.length() && latin1; i++) {
+            latin1 = value.charAt(i) <= 0xFF;
+        }
+        return STRING_OBJECT + align(ARRAY_HEADER + (long) value.length() * (latin1 ? 1 : 2));
+    }
+
+    /**
+     * Returns the size of an array of references.
+     * @param length the length of the array
+     * @return the size in bytes
+     */
+    static long referenceArray(int length) {
+        return align(ARRAY_HEADER + (long) length * REFERENCE);
+    }
+
+    /**
+     * Returns the size of an {@code int[]}.
+     * @param length the length of the array
+     * @return the size in bytes
+     */
+    static long intArray(int length) {
+        return align(ARRAY_HEADER + (long) length * Integer.BYTES);
+    }
+
+    /**
+     * Returns the size of a {@code double[]}.
+     * @param length the length of the array
+     * @return the size in bytes
+     */
+    static long doubleArray(int length) {
+        return align(ARRAY_HEADER + (long) length * Double.BYTES);
+    }
+
+    /**
+     * Returns the size of a bit set including its words.
+     * @param bits the bit set
+     * @return the size in bytes
+     */
+    static long bitSet(BitSet bits) {
+        long words = (bits.size() + Long.SIZE - 1) / Long.SIZE;
+        return object(REFERENCE + 2 * Integer.BYTES + 1) + align(ARRAY_HEADER + words * Long.BYTES);
+    }
+
+    /**
+     * Returns the size of a hash table of a {@code HashMap} or {@code ConcurrentHashMap}
+     * holding the given number of entries at the default load factor.
+     * @param entries the number of entries
+     * @return the size of the table array in bytes
+     */
+    static long hashTable(int entries) {
+        int length = 16;
+        while (length * 3L / 4 < entries) {
+            length *= 2;
+        }
+        return referenceArray(length);
+    }
+
+    /**
+     * Returns the size of a string dictionary with its strings, codes and hash map.
+     * @param dictionary the dictionary
+     * @return the size in bytes
+     */
+    static long dictionary(StringDictionary dictionary) {
+        String[] strings = dictionary.strings();
+        long bytes = object(2 * REFERENCE) + referenceArray(dictionary.capacity());
+        bytes += object(4 * Integer.BYTES + 4 * REFERENCE) + hashTable(strings.length);
+        for (String value : strings) {
+            bytes += string(value) + MAP_NODE + BOXED_INT;
+        }
+        return bytes;
+    }
+
+    /**
+     * Rounds a size up to a multiple of 8 bytes.
+     * @param bytes the size
+     * @return the padded size
+     */
+    static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
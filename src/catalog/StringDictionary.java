@@ -0,0 +1,90 @@
+package catalog;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns dense integer codes to strings, so that a column of repeated strings can be
+ * stored as an {@code int[]} with every distinct string kept once.
+ * <p>
+ * {@code null} is encoded as {@link #NULL_CODE}. The dictionary is not thread-safe; the
+ * {@link ColumnarCatalog} guards it with its own lock.
+ * </p>
+ */
+final class StringDictionary {
+
+    /** Code of a {@code null} string. */
+    static final int NULL_CODE = -1;
+
+    /** Codes of the strings seen so far. */
+    private final Map<String, Integer> codes = new HashMap<>();
+
+    /** Strings by their code. */
+    private String[] strings = new String[16];
+
+    /**
+     * Returns the code of a string, assigning the next free code to a new string.
+     * @param value the string, may be null
+     * @return the code of the string
+     */
+    int encode(String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        int next = codes.size();
+        if (next == strings.length) {
+            strings = Arrays.copyOf(strings, next * 2);
+        }
+        strings[next] = value;
+        codes.put(value, next);
+        return next;
+    }
+
+    /**
+     * Returns the code of a string without assigning one to a new string.
+     * @param value the string, must not be null
+     * @return the code of the string, or {@link #NULL_CODE} if it was never encoded
+     */
+    int lookup(String value) {
+        Integer code = codes.get(value);
+        return code == null ? NULL_CODE : code;
+    }
+
+    /**
+     * Returns the string with the given code.
+     * @param code a code returned by {@link #encode(String)}
+     * @return the string, or {@code null} for {@link #NULL_CODE}
+     */
+    String decode(int code) {
+        return code == NULL_CODE ? null : strings[code];
+    }
+
+    /**
+     * Returns the number of distinct strings.
+     * @return the number of codes assigned
+     */
+    int size() {
+        return codes.size();
+    }
+
+    /**
+     * Returns the number of strings the dictionary has room for without growing.
+     * @return the length of the code table
+     */
+    int capacity() {
+        return strings.length;
+    }
+
+    /**
+     * Returns the distinct strings.
+     * @return the strings in code order
+     */
+    String[] strings() {
+        return Arrays.copyOf(strings, codes.size());
+    }
+}
@@ -0,0 +1,86 @@
+package changes;
+
+import book.Book;
+
+/**
+ * The stock of a book as delivered by a {@link StockChangePublisher}.
+ * <p>
+ * One event may stand for several registrations, borrows and returns of the book, since
+ * the changes a subscriber has not received yet are coalesced per book. The quantity is
+ * read when the event is delivered, so it is never older than the changes it reports.
+ * </p>
+ */
+public final class StockChange {
+
+    /** Sequence number of the latest change of the book reported. */
+    private final long sequence;
+
+    /** Sequence number a subscriber can resume from after this event. */
+    private final long resumeSequence;
+
+    /** The book. */
+    private final Book book;
+
+    /** Number of copies in stock. */
+    private final int quantity;
+
+    /**
+     * Creates an event.
+     * @param sequence       the sequence number of the latest change of the book
+     * @param resumeSequence the sequence number to resume from after this event
+     * @param book           the book
+     * @param quantity       the number of copies in stock
+     */
+    StockChange(long sequence, long resumeSequence, Book book, int quantity) {
+        this.sequence = sequence;
+        this.resumeSequence = resumeSequence;
+        this.book = book;
+        this.quantity = quantity;
+    }
+
+    /**
+     * Returns the sequence number of the latest change of the book this event reports.
+     * <p>
+     * Every change of the inventory gets the next sequence number. Coalesced events are
+     * not delivered in sequence order.
+     * </p>
+     *
+     * @return the sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the sequence number to pass to
+     * {@link StockChangePublisher#subscribe(java.util.concurrent.Flow.Subscriber, long)}
+     * to resume after this event: every change up to it was delivered by this event or
+     * an earlier one of the same subscription.
+     *
+     * @return the sequence number, at most the largest sequence number delivered so far
+     */
+    public long getResumeSequence() {
+        return resumeSequence;
+    }
+
+    /**
+     * Returns the book.
+     * @return the book
+     */
+    public Book getBook() {
+        return book;
+    }
+
+    /**
+     * Returns the number of copies in stock.
+     * @return the quantity
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + book.getTitle() + ": " + quantity;
+    }
+}
@@ -0,0 +1,501 @@
+package changes;
+
+import book.Book;
+import bookLibrary.BookLibrary;
+import bookLibrary.InventoryListener;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the changes of the stock of a {@link BookLibrary} as a {@link Flow} of
+ * {@link StockChange} events, for stock badges, kiosks and other downstream systems.
+ * <p>
+ * The publisher is an {@link InventoryListener} of the library, so registrations,
+ * borrows and returns, single or in batches, are published. Every change gets the next
+ * sequence number. Publishing never waits for a subscriber: a change only marks the book
+ * as pending in every subscription, which takes a few lock-free operations on the thread
+ * of the change, and the events are delivered on an executor.
+ * </p>
+ * <p>
+ * Each subscription keeps at most one pending event per book: the changes of a book made
+ * while its event waits are coalesced into it, and its quantity is read from the library
+ * when it is delivered. A subscriber that requests nothing, or requests slowly, therefore
+ * holds at most one entry per book of the catalog, however many changes happen, and
+ * always receives current quantities. Events are delivered only as requested through
+ * {@link Flow.Subscription#request(long)}.
+ * </p>
+ * <p>
+ * A subscriber that disconnects can resume with
+ * {@link #subscribe(Flow.Subscriber, long)} from the {@link StockChange#getResumeSequence()}
+ * of the last event it processed: it then receives one event for every book changed
+ * since. Resuming from 0 delivers the whole catalog.
+ * </p>
+ * <p>
+ * Example Usage:
+ * <pre>
+ * StockChangePublisher publisher = StockChangePublisher.attach(BookLibrary.BookLibrary());
+ * publisher.subscribe(new Flow.Subscriber&lt;&gt;() {
+ *     public void onSubscribe(Flow.Subscription subscription) { subscription.request(Long.MAX_VALUE); }
+ *     public void onNext(StockChange change) { badges.update(change.getBook(), change.getQuantity()); }
+ *     public void onError(Throwable error) { }
+ *     public void onComplete() { }
+ * });
+ * </pre>
+ * </p>
+ */
+public class StockChangePublisher implements Flow.Publisher<StockChange>, InventoryListener, AutoCloseable {
+
+    /** No subscriptions. */
+    private static final Subscription[] NONE = new Subscription[0];
+
+    /** The library whose stock is published. */
+    private final BookLibrary library;
+
+    /** Delivers the events. */
+    private final Executor executor;
+
+    /** The executor created by the publisher, shut down on close, or {@code null}. */
+    private final ExecutorService ownExecutor;
+
+    /** The sequence number of the latest change. */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /** Number of changes being marked in the subscriptions. */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /** Number of books numbered so far. */
+    private final AtomicInteger books = new AtomicInteger();
+
+    /** The number and the latest change of every book. */
+    private final Map<Book, Entry> latestChanges = new ConcurrentHashMap<>();
+
+    /** The subscriptions; replaced, never modified, like the listeners of the library. */
+    private volatile Subscription[] subscriptions = NONE;
+
+    /** Set once the publisher is closed. */
+    private boolean closed;
+
+    /**
+     * Private constructor used by the {@link Builder}.
+     * @param builder the builder containing the settings
+     */
+    private StockChangePublisher(Builder builder) {
+        this.library = builder.library;
+        if (builder.executor != null) {
+            this.executor = builder.executor;
+            this.ownExecutor = null;
+        } else {
+            this.ownExecutor = Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "stock-change-publisher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.executor = ownExecutor;
+        }
+    }
+
+    /**
+     * Creates a publisher delivering on its own daemon threads and attaches it to a library.
+     *
+     * @param library the library
+     * @return the attached publisher
+     */
+    public static StockChangePublisher attach(BookLibrary library) {
+        return new Builder(library).build();
+    }
+
+    /**
+     * Subscribes to the changes made from now on.
+     *
+     * @param subscriber the subscriber
+     * @throws NullPointerException if the subscriber is null
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super StockChange> subscriber) {
+        subscribe(subscriber, -1);
+    }
+
+    /**
+     * Subscribes to the changes made after a sequence number.
+     * <p>
+     * Every book changed after {@code fromSequence} gets one event with its current
+     * quantity, followed by the changes made from now on. Books registered before the
+     * publisher was attached count as changed when it was attached. Sequence numbers
+     * belong to one publisher; a sequence number above the latest one, for example from
+     * before a restart, is taken as 0.
+     * </p>
+     *
+     * @param subscriber   the subscriber
+     * @param fromSequence the sequence number to resume from, 0 for the whole catalog,
+     *                     or a negative number for the changes made from now on only
+     * @throws NullPointerException if the subscriber is null
+     */
+    public void subscribe(Flow.Subscriber<? super StockChange> subscriber, long fromSequence) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        // numbers of another publisher, for example before a restart: resend everything
+        long from = fromSequence > sequence.get() ? 0 : fromSequence;
+        Subscription subscription;
+        synchronized (this) {
+            subscription = new Subscription(subscriber, from < 0 ? sequence.get() : from);
+            if (closed) {
+                subscription.completing = true;
+            } else {
+                Subscription[] current = subscriptions;
+                Subscription[] updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = subscription;
+                subscriptions = updated;
+            }
+        }
+        if (from >= 0) {
+            // counted as a change in flight, so the resume sequence waits for the scan
+            inFlight.incrementAndGet();
+            try {
+                for (Entry entry : latestChanges.values()) {
+                    if (entry.latest.get() > from) {
+                        subscription.mark(entry);
+                    }
+                }
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+        // delivers onSubscribe, on the executor like every other signal
+        subscription.signal();
+    }
+
+    @Override
+    public void bookRegistered(Book book, int quantity) {
+        changed(book);
+    }
+
+    @Override
+    public void quantityChanged(Book book, int delta, int quantity) {
+        changed(book);
+    }
+
+    /**
+     * Returns the sequence number of the latest change.
+     * @return the sequence number, 0 before any change
+     */
+    public long getSequence() {
+        return sequence.get();
+    }
+
+    /**
+     * Returns the number of active subscriptions.
+     * @return the number of subscriptions
+     */
+    public int getSubscriberCount() {
+        return subscriptions.length;
+    }
+
+    /**
+     * Detaches the publisher from the library and completes every subscription; events
+     * not delivered yet are dropped.
+     */
+    @Override
+    public void close() {
+        Subscription[] current;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            current = subscriptions;
+            subscriptions = NONE;
+        }
+        library.removeInventoryListener(this);
+        for (Subscription subscription : current) {
+            subscription.completing = true;
+            subscription.signal();
+        }
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Numbers a change of a book and marks the book as pending in every subscription.
+     * @param book the book changed
+     */
+    private void changed(Book book) {
+        inFlight.incrementAndGet();
+        try {
+            long changeSequence = sequence.incrementAndGet();
+            Entry entry = latestChanges.get(book);
+            if (entry == null) {
+                entry = latestChanges.computeIfAbsent(book, key -> new Entry(key, books.getAndIncrement(), 0));
+            }
+            entry.latest.accumulateAndGet(changeSequence, Math::max);
+            for (Subscription subscription : subscriptions) {
+                subscription.mark(entry);
+            }
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Numbers the books of the library that have no change yet.
+     */
+    private void numberCatalog() {
+        library.forEachBook((book, quantity) -> latestChanges.computeIfAbsent(book,
+                key -> new Entry(key, books.getAndIncrement(), sequence.incrementAndGet())));
+    }
+
+    /**
+     * Removes a subscription.
+     * @param subscription the subscription
+     */
+    private synchronized void remove(Subscription subscription) {
+        subscriptions = Arrays.stream(subscriptions)
+                .filter(s -> s != subscription)
+                .toArray(Subscription[]::new);
+    }
+
+    /**
+     * A book with its number, which indexes the pending bits of the subscriptions, and the
+     * sequence number of its latest change.
+     */
+    private static final class Entry {
+        /** The book. */
+        final Book book;
+
+        /** The number of the book, from 0 in the order books are first seen. */
+        final int id;
+
+        /** Sequence number of the latest change of the book. */
+        final AtomicLong latest;
+
+        /**
+         * Creates an entry.
+         * @param book   the book
+         * @param id     the number of the book
+         * @param latest the sequence number of its latest change
+         */
+        Entry(Book book, int id, long latest) {
+            this.book = book;
+            this.id = id;
+            this.latest = new AtomicLong(latest);
+        }
+    }
+
+    /**
+     * A subscription, with its pending books and its demand.
+     * <p>
+     * Signals are delivered by a drain task on the executor. The {@link #wip} counter
+     * makes sure at most one drain runs at a time, so the subscriber is signaled serially,
+     * and that a signal arriving during a drain makes it loop once more instead of
+     * starting another.
+     * </p>
+     */
+    private final class Subscription implements Flow.Subscription {
+        /** The subscriber. */
+        final Flow.Subscriber<? super StockChange> subscriber;
+
+        /** The numbers of the books with a pending event. */
+        final PendingBits dirty = new PendingBits();
+
+        /** The books with a pending event, in the order they were first changed. */
+        final Queue<Entry> pending = new ConcurrentLinkedQueue<>();
+
+        /** Number of events requested and not delivered yet. */
+        final AtomicLong demand = new AtomicLong();
+
+        /** Number of signals since the running drain started; 0 when none runs. */
+        final AtomicInteger wip = new AtomicInteger();
+
+        /** Set when the subscription is cancelled, failed or completed. */
+        volatile boolean cancelled;
+
+        /** Set when the publisher is closed. */
+        volatile boolean completing;
+
+        /** The error of an invalid request, or {@code null}. */
+        volatile IllegalArgumentException invalidRequest;
+
+        /** Whether the subscriber was given this subscription; read by the drain only. */
+        boolean started;
+
+        /** Every change up to this sequence number was delivered; read by the drain only. */
+        long resumeSequence;
+
+        /**
+         * Creates a subscription.
+         * @param subscriber     the subscriber
+         * @param resumeSequence the sequence number the subscription starts after
+         */
+        Subscription(Flow.Subscriber<? super StockChange> subscriber, long resumeSequence) {
+            this.subscriber = subscriber;
+            this.resumeSequence = resumeSequence;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Number of requested events must be greater than 0.");
+            } else {
+                demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                remove(this);
+                pending.clear();
+            }
+        }
+
+        /**
+         * Marks a book as pending, unless it already is.
+         * @param entry the entry of the book changed
+         */
+        void mark(Entry entry) {
+            if (!cancelled && dirty.add(entry.id)) {
+                pending.offer(entry);
+                if (demand.get() > 0) {
+                    signal();
+                }
+            }
+        }
+
+        /**
+         * Starts a drain, or makes the running one loop once more.
+         */
+        void signal() {
+            if (wip.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    // the executor is shut down with the publisher; no drain runs or will
+                    if (!started) {
+                        started = true;
+                        subscriber.onSubscribe(this);
+                    }
+                    cancel();
+                    subscriber.onComplete();
+                }
+            }
+        }
+
+        /**
+         * Delivers the pending events as far as requested, then the completion or error.
+         */
+        void drain() {
+            int missed = 1;
+            do {
+                if (!cancelled) {
+                    try {
+                        deliver();
+                    } catch (RuntimeException e) {
+                        cancel();
+                        subscriber.onError(e);
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Signals the subscriber for one run of the drain.
+         */
+        private void deliver() {
+            if (!started) {
+                started = true;
+                subscriber.onSubscribe(this);
+            }
+            if (completing) {
+                cancel();
+                subscriber.onComplete();
+                return;
+            }
+            if (invalidRequest != null) {
+                cancel();
+                subscriber.onError(invalidRequest);
+                return;
+            }
+            long requested = demand.get();
+            long delivered = 0;
+            while (delivered < requested && !cancelled) {
+                Entry entry = pending.poll();
+                if (entry == null) {
+                    break;
+                }
+                // a change from now on marks the book again
+                dirty.remove(entry.id);
+                int quantity = library.getQuantity(entry.book);
+                long latest = sequence.get();
+                // with no change being marked and nothing pending, every change up to
+                // the latest one is in this event or was delivered before
+                if (inFlight.get() == 0 && pending.isEmpty()) {
+                    resumeSequence = Math.max(resumeSequence, latest);
+                }
+                delivered++;
+                subscriber.onNext(new StockChange(entry.latest.get(), resumeSequence, entry.book, quantity));
+            }
+            if (delivered > 0 && requested != Long.MAX_VALUE) {
+                demand.addAndGet(-delivered);
+            }
+        }
+    }
+
+    /**
+     * Builder for creating a {@link StockChangePublisher}.
+     */
+    public static class Builder {
+        /** The library whose stock is published (required). */
+        private final BookLibrary library;
+
+        /** Delivers the events (optional, default is a pool of daemon threads of the publisher). */
+        private Executor executor;
+
+        /**
+         * Creates a new builder for a publisher of the changes of the given library.
+         * @param library the library; must not be null
+         */
+        public Builder(BookLibrary library) {
+            this.library = library;
+        }
+
+        /**
+         * Sets the executor delivering the events; a slow subscriber occupies one of its
+         * threads while it handles an event.
+         * @param executor the executor; must not be null
+         * @return this builder instance
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Builds the publisher and attaches it to the library.
+         * <p>
+         * The books already in the library are numbered right after the publisher is
+         * attached, so resuming from 0 delivers them too.
+         * </p>
+         * @return the attached publisher
+         */
+        public StockChangePublisher build() {
+            StockChangePublisher publisher = new StockChangePublisher(this);
+            library.addInventoryListener(publisher);
+            publisher.numberCatalog();
+            return publisher;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package circulation;
+
+import bookLibrary.CirculationStatus;
+
+/**
+ * Outcome of a {@link LoanDesk#checkout(String, String)} or
+ * {@link LoanDesk#reserve(String, String)}: the status, the new loan if a copy was lent
+ * and the hold if the patron has to wait.
+ */
+public final class CheckoutResult {
+
+    /** The outcome of the checkout. */
+    private final CirculationStatus status;
+
+    /** The new loan, {@code null} unless the book was borrowed. */
+    private final Loan loan;
+
+    /** The hold placed, {@code null} unless the patron was put in the hold queue. */
+    private final Hold hold;
+
+    /**
+     * Creates a result.
+     * @param status the outcome of the checkout
+     * @param loan   the new loan, or {@code null}
+     * @param hold   the hold placed, or {@code null}
+     */
+    CheckoutResult(CirculationStatus status, Loan loan, Hold hold) {
+        this.status = status;
+        this.loan = loan;
+        this.hold = hold;
+    }
+
+    /**
+     * Returns the outcome of the checkout.
+     * @return {@link CirculationStatus#BORROWED}, {@link CirculationStatus#OUT_OF_STOCK},
+     *         {@link CirculationStatus#ON_HOLD} or {@link CirculationStatus#NOT_FOUND}
+     */
+    public CirculationStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the new loan.
+     * @return the loan, or {@code null} if the book was not borrowed
+     */
+    public Loan getLoan() {
+        return loan;
+    }
+
+    /**
+     * Returns the hold placed for the patron.
+     * @return the hold, or {@code null} if the patron was not put in the hold queue
+     */
+    public Hold getHold() {
+        return hold;
+    }
+
+    @Override
+    public String toString() {
+        return loan != null ? status + ": " + loan : hold != null ? status + ": " + hold : status.toString();
+    }
+}
@@ -0,0 +1,124 @@
+package circulation;
+
+import book.Book;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A patron waiting for a copy of a book.
+ * <p>
+ * A hold is placed by {@link LoanDesk#reserve(String, String)} when no copy is in stock
+ * and waits in the first-in, first-out queue of its book. It ends in one of two ways,
+ * decided by a compare-and-set so the two can race safely: a returned copy is lent to
+ * the patron, and {@link #getLoan()} returns the new loan, or the patron gives up with
+ * {@link LoanDesk#cancelHold(Hold)}.
+ * </p>
+ */
+public final class Hold {
+
+    /** State of a hold in its queue. */
+    private static final int WAITING = 0;
+
+    /** State of a hold whose patron received a copy. */
+    private static final int FILLED = 1;
+
+    /** State of a cancelled hold. */
+    private static final int CANCELLED = 2;
+
+    /** ID of the waiting patron. */
+    private final String patronId;
+
+    /** The book the patron waits for. */
+    private final Book book;
+
+    /** Time the hold was placed in epoch milliseconds. */
+    private final long placedAt;
+
+    /** One of {@link #WAITING}, {@link #FILLED} and {@link #CANCELLED}. */
+    private final AtomicInteger state = new AtomicInteger(WAITING);
+
+    /** The loan filling the hold, set once the hold is filled. */
+    private volatile Loan loan;
+
+    /**
+     * Creates a waiting hold.
+     * @param patronId the ID of the patron
+     * @param book     the book the patron waits for
+     * @param placedAt the time the hold was placed in epoch milliseconds
+     */
+    Hold(String patronId, Book book, long placedAt) {
+        this.patronId = patronId;
+        this.book = book;
+        this.placedAt = placedAt;
+    }
+
+    /**
+     * Takes the hold out of waiting to fill it.
+     * @return {@code true} if the hold was waiting, {@code false} if it was cancelled
+     */
+    boolean claim() {
+        return state.compareAndSet(WAITING, FILLED);
+    }
+
+    /**
+     * Takes the hold out of waiting to cancel it.
+     * @return {@code true} if the hold was waiting, {@code false} if it was already filled or cancelled
+     */
+    boolean cancel() {
+        return state.compareAndSet(WAITING, CANCELLED);
+    }
+
+    /**
+     * Records the loan filling the claimed hold.
+     * @param loan the loan
+     */
+    void fill(Loan loan) {
+        this.loan = loan;
+    }
+
+    /**
+     * Returns the ID of the waiting patron.
+     * @return the patron ID
+     */
+    public String getPatronId() {
+        return patronId;
+    }
+
+    /**
+     * Returns the book the patron waits for.
+     * @return the book
+     */
+    public Book getBook() {
+        return book;
+    }
+
+    /**
+     * Returns the time the hold was placed.
+     * @return the time the hold was placed
+     */
+    public Instant getPlacedAt() {
+        return Instant.ofEpochMilli(placedAt);
+    }
+
+    /**
+     * Checks whether the patron is still waiting.
+     * @return {@code true} if the hold is neither filled nor cancelled
+     */
+    public boolean isWaiting() {
+        return state.get() == WAITING;
+    }
+
+    /**
+     * Returns the loan filling the hold.
+     * @return the loan, or {@code null} while the patron is waiting or if the hold was cancelled
+     */
+    public Loan getLoan() {
+        return loan;
+    }
+
+    @Override
+    public String toString() {
+        return patronId + " waiting for \"" + book.getTitle() + "\" since " + getPlacedAt();
+    }
+}
@@ -0,0 +1,146 @@
+package circulation;
+
+import book.Book;
+
+import java.time.Instant;
+
+/**
+ * A copy of a book lent to a patron.
+ * <p>
+ * A loan is created by {@link LoanDesk#checkout(String, String)} and ends when its copy
+ * is checked in. The copy ID names the physical copy: the upper 32 bits number the book
+ * within the desk and the lower 32 bits the copy of that book, starting at 1. Timestamps
+ * are kept as epoch milliseconds.
+ * </p>
+ * <p>
+ * Loans are compared by identity. Besides its public data, a loan carries the links of
+ * the {@link TimerWheel} slot it is scheduled in, so scheduling its due date allocates
+ * nothing; those fields are guarded by the wheel.
+ * </p>
+ */
+public final class Loan {
+
+    /** ID of the lent copy. */
+    private final long copyId;
+
+    /** ID of the patron holding the copy. */
+    private final String patronId;
+
+    /** The book the copy belongs to. */
+    private final Book book;
+
+    /** Time of the checkout in epoch milliseconds. */
+    private final long loanedAt;
+
+    /** Due time in epoch milliseconds. */
+    private final long dueAt;
+
+    /** Tick of the timer wheel at which the loan becomes overdue. */
+    long deadlineTick;
+
+    /** Previous loan in the same wheel slot. */
+    Loan previous;
+
+    /** Next loan in the same wheel slot. */
+    Loan next;
+
+    /** Whether the loan is linked into the wheel. */
+    boolean scheduled;
+
+    /**
+     * Creates a loan.
+     * @param copyId   the ID of the lent copy
+     * @param patronId the ID of the patron
+     * @param book     the book the copy belongs to
+     * @param loanedAt the time of the checkout in epoch milliseconds
+     * @param dueAt    the due time in epoch milliseconds
+     */
+    Loan(long copyId, String patronId, Book book, long loanedAt, long dueAt) {
+        this.copyId = copyId;
+        this.patronId = patronId;
+        this.book = book;
+        this.loanedAt = loanedAt;
+        this.dueAt = dueAt;
+    }
+
+    /**
+     * Builds a copy ID.
+     * @param bookNumber the number of the book within the desk
+     * @param copyNumber the number of the copy, starting at 1
+     * @return the copy ID
+     */
+    static long copyId(int bookNumber, int copyNumber) {
+        return ((long) bookNumber << 32) | (copyNumber & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the ID of the lent copy.
+     * @return the copy ID
+     */
+    public long getCopyId() {
+        return copyId;
+    }
+
+    /**
+     * Returns the number of the copy among the copies of its book.
+     * @return the copy number, starting at 1
+     */
+    public int getCopyNumber() {
+        return (int) copyId;
+    }
+
+    /**
+     * Returns the ID of the patron holding the copy.
+     * @return the patron ID
+     */
+    public String getPatronId() {
+        return patronId;
+    }
+
+    /**
+     * Returns the book the copy belongs to.
+     * @return the book
+     */
+    public Book getBook() {
+        return book;
+    }
+
+    /**
+     * Returns the time of the checkout.
+     * @return the checkout time
+     */
+    public Instant getLoanedAt() {
+        return Instant.ofEpochMilli(loanedAt);
+    }
+
+    /**
+     * Returns the time the copy is due back.
+     * @return the due time
+     */
+    public Instant getDueAt() {
+        return Instant.ofEpochMilli(dueAt);
+    }
+
+    /**
+     * Returns the due time in epoch milliseconds.
+     * @return the due time
+     */
+    long dueAtMillis() {
+        return dueAt;
+    }
+
+    /**
+     * Checks whether the loan is past its due time.
+     * @param now the current time
+     * @return {@code true} if the copy was due before {@code now}
+     */
+    public boolean isOverdue(Instant now) {
+        return now.toEpochMilli() > dueAt;
+    }
+
+    @Override
+    public String toString() {
+        return "\"" + book.getTitle() + "\" copy " + (copyId >>> 32) + "-" + getCopyNumber()
+                + " lent to " + patronId + " until " + getDueAt();
+    }
+}
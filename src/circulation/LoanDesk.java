@@ -0,0 +1,631 @@
+package circulation;
+
+import book.Book;
+import bookLibrary.BookLibrary;
+import bookLibrary.CirculationStatus;
+import bookLibrary.TitleNormalizer;
+
+import java.io.Closeable;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Lends individual copies of the books of a {@link BookLibrary} to patrons.
+ * <p>
+ * The library only counts the copies of a book in stock. The desk checks copies out
+ * through {@link BookLibrary#takeCopy(Book)}, so the stock stays the single limit on
+ * lending, and records who holds which copy in a {@link Loan} with its checkout and
+ * due time. Every copy on loan gets a copy ID; copy numbers of returned copies are
+ * reused, so the copies of a book are numbered from 1 up to the most copies ever lent
+ * at once.
+ * </p>
+ * <p>
+ * Loans are indexed by copy ID and by patron in concurrent hash maps, so looking up a
+ * loan either way takes constant time however many loans are active. A copy is taken
+ * back with {@link #checkin(long)} only if it is on loan; anything else is reported as
+ * {@link CirculationStatus#NOT_ON_LOAN} and leaves the stock alone. Copies go back to
+ * the stock of their own book with {@link BookLibrary#returnCopy(Book)}, even when other
+ * books, such as other editions, have the same title. Returns that bypass
+ * the desk are bounded by the library itself: {@link BookLibrary#returnBook(String)}
+ * never takes back more copies than were registered, but cannot tell which copy it was.
+ * </p>
+ * <p>
+ * Due dates are kept in a {@link TimerWheel} with ticks of one minute, so
+ * {@link #checkOverdue()} only looks at the loans falling due since the last check
+ * instead of scanning all of them. Overdue loans stay in {@link #getOverdueLoans()}
+ * until they are checked in. The check runs when called, or in the background after
+ * {@link #startOverdueCheck(long)}.
+ * </p>
+ * <p>
+ * A patron finding no copy in stock can {@link #reserve(String, String) reserve} the
+ * book and wait in its first-in, first-out hold queue. A copy checked in while patrons
+ * wait is lent straight to the first of them and never goes back to the stock, so
+ * retrying a popular title gains nothing over waiting, and {@link #checkout(String, String)}
+ * does not lend a copy of a book to anyone else while its queue is not empty. Every book
+ * has its own queue, a {@link ConcurrentLinkedQueue}, and holds are claimed by
+ * compare-and-set, so a burst of reservations and returns of one title never blocks
+ * another. Cancelled holds are only dropped when they reach the head of their queue.
+ * </p>
+ * <p>
+ * Example Usage:
+ * <pre>
+ * LoanDesk desk = new LoanDesk.Builder(BookLibrary.BookLibrary())
+ *         .loanPeriod(Duration.ofDays(14))
+ *         .onOverdue(loan -&gt; System.out.println("Overdue: " + loan))
+ *         .onHoldFilled(loan -&gt; System.out.println("Ready for pickup: " + loan))
+ *         .build();
+ * CheckoutResult result = desk.reserve("patron-42", "Program Joshua");
+ * if (result.getLoan() != null) {
+ *     desk.checkin(result.getLoan().getCopyId());
+ * }
+ * </pre>
+ * </p>
+ */
+public class LoanDesk implements Closeable {
+
+    /** Length of a tick of the timer wheel in milliseconds. */
+    private static final long TICK_MILLIS = 60_000;
+
+    /** Number of slots of the timer wheel, about 45 days of one minute ticks. */
+    private static final int WHEEL_SLOTS = 1 << 16;
+
+    /** The library the copies belong to. */
+    private final BookLibrary library;
+
+    /** Time a copy may be kept, in milliseconds. */
+    private final long loanPeriodMillis;
+
+    /** Source of the current time. */
+    private final Clock clock;
+
+    /** Receives loans becoming overdue, or {@code null}. */
+    private final Consumer<Loan> overdueListener;
+
+    /** Receives loans filling holds, or {@code null}. */
+    private final Consumer<Loan> holdListener;
+
+    /** Copy numbering of every book lent so far. */
+    private final Map<Book, Copies> copies = new ConcurrentHashMap<>();
+
+    /** Last number given to a book. */
+    private final AtomicInteger bookNumbers = new AtomicInteger();
+
+    /** Active loans by copy ID. */
+    private final Map<Long, Loan> loansByCopy = new ConcurrentHashMap<>();
+
+    /** Active loans by patron ID. */
+    private final Map<String, Set<Loan>> loansByPatron = new ConcurrentHashMap<>();
+
+    /** Hold queues by book. */
+    private final Map<Book, HoldQueue> holdQueues = new ConcurrentHashMap<>();
+
+    /** Active loans found overdue. */
+    private final Set<Loan> overdue = ConcurrentHashMap.newKeySet();
+
+    /** Due dates of the active loans not yet overdue. */
+    private final TimerWheel dueDates;
+
+    /** Runs the background overdue check, or {@code null}. */
+    private ScheduledExecutorService checker;
+
+    /**
+     * Private constructor to enforce the use of the {@link Builder}.
+     * @param builder the builder holding the settings
+     */
+    private LoanDesk(Builder builder) {
+        this.library = builder.library;
+        this.loanPeriodMillis = builder.loanPeriod.toMillis();
+        this.clock = builder.clock;
+        this.overdueListener = builder.overdueListener;
+        this.holdListener = builder.holdListener;
+        this.dueDates = new TimerWheel(TICK_MILLIS, WHEEL_SLOTS, clock.millis());
+    }
+
+    /**
+     * Lends a copy of a book to a patron.
+     * <p>
+     * If several books have the title, such as other editions, the first registered one
+     * with a copy in stock is lent. While patrons wait in the hold queue of a book, no
+     * copy of it is lent to anyone else; if no book of the title can be lent,
+     * {@link CirculationStatus#OUT_OF_STOCK} is returned.
+     * </p>
+     *
+     * @param patronId the ID of the patron; must not be null or empty
+     * @param title    the title of the book (case- and accent-insensitive)
+     * @return the outcome, holding the new loan if a copy was lent
+     * @throws IllegalArgumentException if {@code patronId} is null or empty
+     */
+    public CheckoutResult checkout(String patronId, String title) {
+        requirePatron(patronId);
+        List<Book> editions = library.findEditions(title);
+        if (editions.isEmpty()) {
+            return new CheckoutResult(CirculationStatus.NOT_FOUND, null, null);
+        }
+        return borrow(patronId, editions);
+    }
+
+    /**
+     * Lends a copy of a book to a patron, or puts the patron in the hold queue of the
+     * book if no copy is in stock.
+     * <p>
+     * If several books have the title, a copy of any of them is lent like by
+     * {@link #checkout(String, String)}; if none can be, the patron waits for the first
+     * registered one.
+     * </p>
+     *
+     * @param patronId the ID of the patron; must not be null or empty
+     * @param title    the title of the book (case- and accent-insensitive)
+     * @return {@link CirculationStatus#BORROWED} with the new loan, {@link CirculationStatus#ON_HOLD}
+     *         with the new hold, or {@link CirculationStatus#NOT_FOUND}
+     * @throws IllegalArgumentException if {@code patronId} is null or empty
+     */
+    public CheckoutResult reserve(String patronId, String title) {
+        requirePatron(patronId);
+        List<Book> editions = library.findEditions(title);
+        if (editions.isEmpty()) {
+            return new CheckoutResult(CirculationStatus.NOT_FOUND, null, null);
+        }
+        CheckoutResult result = borrow(patronId, editions);
+        if (result.getStatus() != CirculationStatus.OUT_OF_STOCK) {
+            return result;
+        }
+        Book book = editions.get(0);
+
+        Hold hold = new Hold(patronId, book, clock.millis());
+        HoldQueue queue = holdQueues.computeIfAbsent(book, b -> new HoldQueue());
+        queue.add(hold);
+        // A copy returned between the failed borrow and the enqueue went back to the stock.
+        fillHolds(book, queue);
+        Loan loan = hold.getLoan();
+        return loan == null
+                ? new CheckoutResult(CirculationStatus.ON_HOLD, null, hold)
+                : new CheckoutResult(CirculationStatus.BORROWED, loan, hold);
+    }
+
+    /**
+     * Takes a patron out of a hold queue.
+     *
+     * @param hold the hold
+     * @return {@code true} if the hold was cancelled, {@code false} if it was already filled or cancelled
+     */
+    public boolean cancelHold(Hold hold) {
+        if (!hold.cancel()) {
+            return false;
+        }
+        holdQueues.get(hold.getBook()).cancelled();
+        return true;
+    }
+
+    /**
+     * Returns the number of patrons waiting for a book.
+     * @param title the title of the book (case- and accent-insensitive)
+     * @return the number of waiting holds, 0 if the title is not found
+     */
+    public int getWaitingHolds(String title) {
+        Book book = library.findByTitle(title);
+        HoldQueue queue = book == null ? null : holdQueues.get(book);
+        return queue == null ? 0 : queue.waiting();
+    }
+
+    /**
+     * Takes a copy of the first of the books with a title that has one in stock and no
+     * patrons waiting for it, and lends it to a patron. The attempt is counted once in the
+     * demand of the title, served or not.
+     * @param patronId the ID of the patron
+     * @param editions the books with the title, in registration order; not empty
+     * @return the outcome, holding the new loan if a copy was lent
+     */
+    private CheckoutResult borrow(String patronId, List<Book> editions) {
+        for (Book book : editions) {
+            HoldQueue queue = holdQueues.get(book);
+            if ((queue == null || queue.waiting() == 0) && library.takeCopy(book) == CirculationStatus.BORROWED) {
+                recordAttempt(book, CirculationStatus.BORROWED);
+                return new CheckoutResult(CirculationStatus.BORROWED, lend(patronId, book, newCopyId(book)), null);
+            }
+        }
+        // also counted when refused for the hold queues alone, which the library never sees
+        recordAttempt(editions.get(0), CirculationStatus.OUT_OF_STOCK);
+        return new CheckoutResult(CirculationStatus.OUT_OF_STOCK, null, null);
+    }
+
+    /**
+     * Counts a borrow attempt in the demand analytics of the library.
+     * @param book   the book asked for
+     * @param status the outcome
+     */
+    private void recordAttempt(Book book, CirculationStatus status) {
+        library.getDemand().recordAttempt(TitleNormalizer.normalize(book.getTitle()), book.getTitle(), book, status);
+    }
+
+    /**
+     * Lends copies taken from the stock to waiting patrons while both are available.
+     * <p>
+     * The patrons were counted as demand when they were refused, so the copies are taken
+     * with {@link BookLibrary#takeCopy(Book)}, which counts no further attempts.
+     * </p>
+     * @param book  the book
+     * @param queue the hold queue of the book
+     */
+    private void fillHolds(Book book, HoldQueue queue) {
+        while (queue.waiting() > 0 && library.takeCopy(book) == CirculationStatus.BORROWED) {
+            Hold hold = queue.claimNext();
+            if (hold == null) {
+                library.returnCopy(book);
+                return;
+            }
+            fill(hold, newCopyId(book));
+        }
+    }
+
+    /**
+     * Lends a copy to the patron of a claimed hold.
+     * @param hold   the claimed hold
+     * @param copyId the ID of the copy
+     */
+    private void fill(Hold hold, long copyId) {
+        Loan loan = lend(hold.getPatronId(), hold.getBook(), copyId);
+        hold.fill(loan);
+        if (holdListener != null) {
+            holdListener.accept(loan);
+        }
+    }
+
+    /**
+     * Gives a copy of a book a number.
+     * @param book the book
+     * @return the ID of the copy
+     */
+    private long newCopyId(Book book) {
+        Copies bookCopies = copies.computeIfAbsent(book, b -> new Copies(bookNumbers.incrementAndGet()));
+        return Loan.copyId(bookCopies.bookNumber, bookCopies.acquire());
+    }
+
+    /**
+     * Records a new loan of a copy taken out of the stock.
+     * @param patronId the ID of the patron
+     * @param book     the book
+     * @param copyId   the ID of the copy
+     * @return the loan
+     */
+    private Loan lend(String patronId, Book book, long copyId) {
+        long now = clock.millis();
+        Loan loan = new Loan(copyId, patronId, book, now, now + loanPeriodMillis);
+        dueDates.schedule(loan);
+        loansByPatron.compute(patronId, (patron, loans) -> {
+            Set<Loan> result = loans == null ? ConcurrentHashMap.newKeySet() : loans;
+            result.add(loan);
+            return result;
+        });
+        loansByCopy.put(loan.getCopyId(), loan);
+        return loan;
+    }
+
+    /**
+     * Checks a patron ID.
+     * @param patronId the ID of the patron
+     * @throws IllegalArgumentException if {@code patronId} is null or empty
+     */
+    private static void requirePatron(String patronId) {
+        if (patronId == null || patronId.isEmpty()) {
+            throw new IllegalArgumentException("Patron ID must not be empty.");
+        }
+    }
+
+    /**
+     * Takes back a copy on loan and lends it to the first patron waiting for its book,
+     * or returns it to the stock of the library if nobody waits.
+     *
+     * @param copyId the ID of the copy
+     * @return {@link CirculationStatus#HANDED_TO_HOLD}, {@link CirculationStatus#RETURNED},
+     *         or {@link CirculationStatus#NOT_ON_LOAN} if the copy is not on loan
+     */
+    public CirculationStatus checkin(long copyId) {
+        Loan loan = loansByCopy.remove(copyId);
+        if (loan == null) {
+            return CirculationStatus.NOT_ON_LOAN;
+        }
+        dueDates.cancel(loan);
+        overdue.remove(loan);
+        loansByPatron.computeIfPresent(loan.getPatronId(), (patron, loans) -> {
+            loans.remove(loan);
+            return loans.isEmpty() ? null : loans;
+        });
+
+        Book book = loan.getBook();
+        HoldQueue queue = holdQueues.get(book);
+        Hold hold = queue == null ? null : queue.claimNext();
+        if (hold != null) {
+            fill(hold, copyId);
+            return CirculationStatus.HANDED_TO_HOLD;
+        }
+        copies.get(book).release(loan.getCopyNumber());
+        CirculationStatus status = library.returnCopy(book);
+        // A patron may have joined the queue after it was found empty.
+        queue = holdQueues.get(book);
+        if (queue != null) {
+            fillHolds(book, queue);
+        }
+        return status;
+    }
+
+    /**
+     * Returns the loan of a copy.
+     * @param copyId the ID of the copy
+     * @return the loan, or {@code null} if the copy is not on loan
+     */
+    public Loan getLoan(long copyId) {
+        return loansByCopy.get(copyId);
+    }
+
+    /**
+     * Returns the active loans of a patron.
+     * @param patronId the ID of the patron
+     * @return a snapshot of the loans, in no particular order
+     */
+    public List<Loan> getLoans(String patronId) {
+        Set<Loan> loans = loansByPatron.get(patronId);
+        return loans == null ? List.of() : List.copyOf(loans);
+    }
+
+    /**
+     * Returns the number of active loans.
+     * @return the number of copies on loan through this desk
+     */
+    public int getActiveLoans() {
+        return loansByCopy.size();
+    }
+
+    /**
+     * Returns the active loans found overdue by the last overdue check.
+     * @return an unmodifiable live view of the overdue loans
+     */
+    public Collection<Loan> getOverdueLoans() {
+        return Collections.unmodifiableSet(overdue);
+    }
+
+    /**
+     * Finds the loans that became overdue since the last check and passes them to the
+     * overdue listener.
+     * <p>
+     * Only the timer wheel slots of the minutes passed since the last check are visited.
+     * </p>
+     *
+     * @return the number of loans that became overdue
+     */
+    public int checkOverdue() {
+        List<Loan> expired = overdueListener == null ? null : new ArrayList<>();
+        int count = dueDates.advance(clock.millis(), loan -> {
+            overdue.add(loan);
+            if (expired != null) {
+                expired.add(loan);
+            }
+        });
+        if (expired != null) {
+            for (Loan loan : expired) {
+                if (overdue.contains(loan)) {
+                    overdueListener.accept(loan);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Starts checking for overdue loans in the background at a fixed interval.
+     *
+     * @param intervalMillis the check interval in milliseconds; must be greater than 0
+     * @throws IllegalArgumentException if {@code intervalMillis <= 0}
+     */
+    public synchronized void startOverdueCheck(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Check interval must be greater than 0.");
+        }
+        if (checker == null) {
+            checker = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "loan-desk-overdue-check");
+                thread.setDaemon(true);
+                return thread;
+            });
+            checker.scheduleWithFixedDelay(this::checkOverdue, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the background overdue check. Active loans are kept.
+     */
+    @Override
+    public synchronized void close() {
+        if (checker != null) {
+            checker.shutdown();
+            checker = null;
+        }
+    }
+
+    /**
+     * Numbering of the copies of one book.
+     */
+    private static final class Copies {
+        /** Number of the book within the desk. */
+        final int bookNumber;
+
+        /** Numbers of returned copies, reused first. */
+        private int[] free = new int[4];
+
+        /** Number of entries in {@link #free}. */
+        private int freeCount;
+
+        /** Next number never used. */
+        private int nextNumber = 1;
+
+        /**
+         * Creates the numbering of a book.
+         * @param bookNumber the number of the book
+         */
+        Copies(int bookNumber) {
+            this.bookNumber = bookNumber;
+        }
+
+        /**
+         * Takes a copy number for a copy going on loan.
+         * @return the copy number
+         */
+        synchronized int acquire() {
+            return freeCount > 0 ? free[--freeCount] : nextNumber++;
+        }
+
+        /**
+         * Gives back the number of a returned copy.
+         * @param number the copy number
+         */
+        synchronized void release(int number) {
+            if (freeCount == free.length) {
+                free = Arrays.copyOf(free, freeCount * 2);
+            }
+            free[freeCount++] = number;
+        }
+    }
+
+    /**
+     * First-in, first-out queue of the holds of one book.
+     */
+    private static final class HoldQueue {
+        /** The holds, including cancelled ones not yet dropped. */
+        private final Queue<Hold> holds = new ConcurrentLinkedQueue<>();
+
+        /** Number of waiting holds. */
+        private final AtomicInteger waiting = new AtomicInteger();
+
+        /**
+         * Appends a waiting hold.
+         * @param hold the hold
+         */
+        void add(Hold hold) {
+            waiting.incrementAndGet();
+            holds.add(hold);
+        }
+
+        /**
+         * Removes the first waiting hold and claims it, dropping cancelled holds before it.
+         * @return the claimed hold, or {@code null} if no hold is waiting
+         */
+        Hold claimNext() {
+            for (Hold hold = holds.poll(); hold != null; hold = holds.poll()) {
+                if (hold.claim()) {
+                    waiting.decrementAndGet();
+                    return hold;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Records that a waiting hold was cancelled.
+         */
+        void cancelled() {
+            waiting.decrementAndGet();
+        }
+
+        /**
+         * Returns the number of waiting holds.
+         * @return the number of holds neither filled nor cancelled
+         */
+        int waiting() {
+            return waiting.get();
+        }
+    }
+
+    /**
+     * Builder for creating a {@link LoanDesk}.
+     */
+    public static class Builder {
+        /** The library the copies belong to (required). */
+        private final BookLibrary library;
+
+        /** Time a copy may be kept (optional, default is 21 days). */
+        private Duration loanPeriod = Duration.ofDays(21);
+
+        /** Source of the current time (optional, default is the system clock in UTC). */
+        private Clock clock = Clock.systemUTC();
+
+        /** Receives loans becoming overdue (optional, default is none). */
+        private Consumer<Loan> overdueListener;
+
+        /** Receives loans filling holds (optional, default is none). */
+        private Consumer<Loan> holdListener;
+
+        /**
+         * Creates a new builder for a desk lending from the given library.
+         * @param library the library the copies belong to; must not be null
+         */
+        public Builder(BookLibrary library) {
+            this.library = library;
+        }
+
+        /**
+         * Sets the time a copy may be kept.
+         * @param loanPeriod the loan period; must be greater than 0
+         * @return this builder instance
+         * @throws IllegalArgumentException if {@code loanPeriod} is not positive
+         */
+        public Builder loanPeriod(Duration loanPeriod) {
+            if (loanPeriod.isNegative() || loanPeriod.isZero()) {
+                throw new IllegalArgumentException("Loan period must be greater than 0.");
+            }
+            this.loanPeriod = loanPeriod;
+            return this;
+        }
+
+        /**
+         * Sets the source of the current time.
+         * @param clock the clock
+         * @return this builder instance
+         */
+        public Builder clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * Sets the listener receiving loans as they become overdue.
+         * @param listener the listener, called from the thread running the overdue check
+         * @return this builder instance
+         */
+        public Builder onOverdue(Consumer<Loan> listener) {
+            this.overdueListener = listener;
+            return this;
+        }
+
+        /**
+         * Sets the listener receiving the loans lent to patrons waiting in a hold queue.
+         * @param listener the listener, called from the thread checking in the copy
+         * @return this builder instance
+         */
+        public Builder onHoldFilled(Consumer<Loan> listener) {
+            this.holdListener = listener;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new {@code LoanDesk} instance.
+         * @return a new {@code LoanDesk} object
+         */
+        public LoanDesk build() {
+            return new LoanDesk(this);
+        }
+    }
+}
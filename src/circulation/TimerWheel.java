@@ -0,0 +1,142 @@
+package circulation;
+
+import java.util.function.Consumer;
+
+/**
+ * Hashed timer wheel of loan due dates.
+ * <p>
+ * Time is cut into ticks of a fixed length, and a loan due in tick {@code t} is linked
+ * into slot {@code t mod slots}. Advancing the wheel visits only the slots of the ticks
+ * that passed since the last advance and expires the loans in them whose deadline has
+ * come, so finding the overdue loans costs time proportional to the elapsed ticks and
+ * the loans expiring, not to the number of active loans. Loans due further ahead than
+ * one turn of the wheel share a slot with nearer ones and are skipped until their turn.
+ * </p>
+ * <p>
+ * Loans are linked into their slot through their own fields, so scheduling and
+ * cancelling allocate nothing and cancelling is constant time. A loan expires at the
+ * first tick after its due time, so it is reported overdue at most one tick late and
+ * never early. All methods are synchronized.
+ * </p>
+ */
+final class TimerWheel {
+
+    /** Length of a tick in milliseconds. */
+    private final long tickMillis;
+
+    /** First loan of every slot. */
+    private final Loan[] slots;
+
+    /** The last tick advanced to. */
+    private long currentTick;
+
+    /** Number of scheduled loans. */
+    private int size;
+
+    /**
+     * Creates an empty wheel.
+     * @param tickMillis the length of a tick in milliseconds
+     * @param slotCount  the number of slots, a power of two
+     * @param nowMillis  the current time in epoch milliseconds
+     */
+    TimerWheel(long tickMillis, int slotCount, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.slots = new Loan[slotCount];
+        this.currentTick = Math.floorDiv(nowMillis, tickMillis);
+    }
+
+    /**
+     * Schedules a loan to expire after its due time. A loan already due expires at the
+     * next advance.
+     * @param loan the loan, not scheduled yet
+     */
+    synchronized void schedule(Loan loan) {
+        loan.deadlineTick = Math.max(Math.floorDiv(loan.dueAtMillis(), tickMillis) + 1, currentTick + 1);
+        int slot = slotOf(loan.deadlineTick);
+        loan.previous = null;
+        loan.next = slots[slot];
+        if (loan.next != null) {
+            loan.next.previous = loan;
+        }
+        slots[slot] = loan;
+        loan.scheduled = true;
+        size++;
+    }
+
+    /**
+     * Removes a loan from the wheel.
+     * @param loan the loan
+     * @return {@code true} if the loan was scheduled, {@code false} if it had already expired
+     */
+    synchronized boolean cancel(Loan loan) {
+        if (!loan.scheduled) {
+            return false;
+        }
+        unlink(loan, slotOf(loan.deadlineTick));
+        return true;
+    }
+
+    /**
+     * Advances the wheel to the current time and expires the loans whose deadline has passed.
+     * @param nowMillis the current time in epoch milliseconds
+     * @param expired   receives every expired loan, called while the wheel is locked
+     * @return the number of expired loans
+     */
+    synchronized int advance(long nowMillis, Consumer<Loan> expired) {
+        long nowTick = Math.floorDiv(nowMillis, tickMillis);
+        long last = Math.min(nowTick, currentTick + slots.length);
+        int count = 0;
+        for (long tick = currentTick + 1; tick <= last; tick++) {
+            int slot = slotOf(tick);
+            Loan loan = slots[slot];
+            while (loan != null) {
+                Loan next = loan.next;
+                if (loan.deadlineTick <= nowTick) {
+                    unlink(loan, slot);
+                    expired.accept(loan);
+                    count++;
+                }
+                loan = next;
+            }
+        }
+        currentTick = Math.max(currentTick, nowTick);
+        return count;
+    }
+
+    /**
+     * Returns the number of scheduled loans.
+     * @return the number of loans not yet expired or cancelled
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Unlinks a scheduled loan from its slot.
+     * @param loan the loan
+     * @param slot the slot of the loan
+     */
+    private void unlink(Loan loan, int slot) {
+        if (loan.previous == null) {
+            slots[slot] = loan.next;
+        } else {
+            loan.previous.next = loan.next;
+        }
+        if (loan.next != null) {
+            loan.next.previous = loan.previous;
+        }
+        loan.previous = null;
+        loan.next = null;
+        loan.scheduled = false;
+        size--;
+    }
+
+    /**
+     * Returns the slot of a tick.
+     * @param tick the tick
+     * @return the slot index
+     */
+    private int slotOf(long tick) {
+        return (int) (tick & (slots.length - 1));
+    }
+}
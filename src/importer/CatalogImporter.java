@@ -0,0 +1,610 @@
+package importer;
+
+import book.Book;
+import book.Encyclopedia;
+import book.PricingRules;
+import book.SpecialBook;
+import bookLibrary.BookLibrary;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Streaming bulk importer of publisher feeds into the {@link BookLibrary}.
+ * <p>
+ * An import runs as a pipeline with bounded queues between the stages, so memory use
+ * does not depend on the size of the feed:
+ * <ol>
+ *     <li>the calling thread reads rows from a {@link RowReader} and groups them into batches,</li>
+ *     <li>a pool of validator threads turns each row into a book, picking the builder from the
+ *     columns: rows with an {@code illustration} value become an {@link Encyclopedia}, rows
+ *     with a {@code signed} or {@code rare} value a {@link SpecialBook}, and all others a {@link Book},</li>
+ *     <li>one registrar thread registers each validated batch with
+ *     {@link BookLibrary#registerNewBooks(Map)} and reports progress.</li>
+ * </ol>
+ * Recognized columns are {@code title}, {@code author} and {@code pages} (required),
+ * {@code genre}, {@code language}, {@code value}, {@code price}, {@code quantity}
+ * (default 1), {@code signed}, {@code rare} and {@code illustration}. The {@code value}
+ * is the base value; a book is worth it with the multipliers of the
+ * {@link PricingRules#DEFAULT default rules}, or the {@code price} if one is given.
+ * Invalid rows are counted and skipped; a malformed source stops the import. Batches are
+ * validated in parallel, so books may be registered in a different order than they
+ * appear in the feed.
+ * </p>
+ * <p>
+ * Example Usage:
+ * <pre>
+ * ImportStats stats = new CatalogImporter.Builder(BookLibrary.BookLibrary())
+ *         .threads(4)
+ *         .onProgress(System.out::println, 1000)
+ *         .build()
+ *         .importCsv(Path.of("feed.csv"));
+ * </pre>
+ * </p>
+ */
+public class CatalogImporter {
+
+    /** Maximum number of rejection messages kept in the result. */
+    private static final int MAX_ERRORS = 100;
+
+    /** Batch passed on by a validator thread when the input is exhausted. */
+    private static final Batch END = new Batch();
+
+    /** The library the books are registered in. */
+    private final BookLibrary library;
+
+    /** Number of validator threads. */
+    private final int threads;
+
+    /** Number of rows per batch. */
+    private final int batchSize;
+
+    /** Receives progress snapshots, or {@code null}. */
+    private final Consumer<ImportStats> progressListener;
+
+    /** Minimum time between two progress snapshots, in nanoseconds. */
+    private final long progressIntervalNanos;
+
+    /**
+     * Constructs a {@code CatalogImporter} using the provided {@code Builder}.
+     * @param builder the builder containing the settings of the importer
+     */
+    private CatalogImporter(Builder builder) {
+        this.library = builder.library;
+        this.threads = builder.threads;
+        this.batchSize = builder.batchSize;
+        this.progressListener = builder.progressListener;
+        this.progressIntervalNanos = TimeUnit.MILLISECONDS.toNanos(builder.progressIntervalMillis);
+    }
+
+    /**
+     * Imports a UTF-8 CSV file with a header row.
+     *
+     * @param file the file to import
+     * @return the result of the import
+     * @throws IOException          if the file cannot be read or is malformed
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public ImportStats importCsv(Path file) throws IOException, InterruptedException {
+        try (RowReader rows = new CsvRowReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            return importRows(rows);
+        }
+    }
+
+    /**
+     * Imports a UTF-8 JSON file holding an array or a sequence of flat objects.
+     *
+     * @param file the file to import
+     * @return the result of the import
+     * @throws IOException          if the file cannot be read or is malformed
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public ImportStats importJson(Path file) throws IOException, InterruptedException {
+        try (RowReader rows = new JsonRowReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            return importRows(rows);
+        }
+    }
+
+    /**
+     * Imports all rows of the reader.
+     *
+     * @param rows the source of the rows; it is not closed
+     * @return the result of the import
+     * @throws IOException          if the source cannot be read or is malformed
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public ImportStats importRows(RowReader rows) throws IOException, InterruptedException {
+        BlockingQueue<List<Row>> parsed = new ArrayBlockingQueue<>(threads * 2);
+        BlockingQueue<Batch> validated = new ArrayBlockingQueue<>(threads * 2);
+        Progress progress = new Progress();
+        ExecutorService workers = Executors.newFixedThreadPool(threads + 1, task -> {
+            Thread thread = new Thread(task, "catalog-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(workers.submit(() -> {
+                validate(parsed, validated);
+                return null;
+            }));
+        }
+        futures.add(workers.submit(() -> {
+            register(validated, progress);
+            return null;
+        }));
+
+        try {
+            List<Row> batch = new ArrayList<>(batchSize);
+            Map<String, String> row;
+            while ((row = rows.nextRow()) != null) {
+                batch.add(new Row(rows.getLineNumber(), row));
+                progress.rowsRead++;
+                if (batch.size() == batchSize) {
+                    offer(parsed, batch, futures);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                offer(parsed, batch, futures);
+            }
+            for (int i = 0; i < threads; i++) {
+                offer(parsed, List.of(), futures);
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw rethrow(e);
+        } finally {
+            workers.shutdownNow();
+        }
+        return progress.snapshot();
+    }
+
+    /**
+     * Body of a validator thread: converts batches of rows into batches of books.
+     * <p>
+     * An empty batch of rows marks the end of the input; it is passed on to the
+     * registrar as {@link #END}.
+     * </p>
+     * @param parsed    the queue of row batches
+     * @param validated the queue of book batches
+     * @throws InterruptedException if the import is cancelled
+     */
+    private void validate(BlockingQueue<List<Row>> parsed, BlockingQueue<Batch> validated)
+            throws InterruptedException {
+        while (true) {
+            List<Row> rows = parsed.take();
+            if (rows.isEmpty()) {
+                validated.put(END);
+                return;
+            }
+            Batch batch = new Batch();
+            for (Row row : rows) {
+                try {
+                    int quantity = parseInt(row.values, "quantity", 1);
+                    if (quantity <= 0) {
+                        throw new IllegalArgumentException("Quantity must be greater than 0.");
+                    }
+                    batch.books.merge(toBook(row.values), quantity, Integer::sum);
+                    batch.accepted++;
+                } catch (IllegalArgumentException e) {
+                    batch.rejected++;
+                    if (batch.errors.size() < MAX_ERRORS) {
+                        batch.errors.add("Line " + row.line + ": " + e.getMessage());
+                    }
+                }
+            }
+            validated.put(batch);
+        }
+    }
+
+    /**
+     * Body of the registrar thread: registers validated batches and reports progress.
+     * @param validated the queue of book batches
+     * @param progress  the progress of the import
+     * @throws InterruptedException if the import is cancelled
+     */
+    private void register(BlockingQueue<Batch> validated, Progress progress) throws InterruptedException {
+        int finishedValidators = 0;
+        long lastReport = System.nanoTime();
+        while (finishedValidators < threads) {
+            Batch batch = validated.take();
+            if (batch == END) {
+                finishedValidators++;
+                continue;
+            }
+            library.registerNewBooks(batch.books);
+            progress.add(batch);
+
+            long now = System.nanoTime();
+            if (progressListener != null && now - lastReport >= progressIntervalNanos) {
+                progressListener.accept(progress.snapshot());
+                lastReport = now;
+            }
+        }
+    }
+
+    /**
+     * Converts a row into a book using the builder matching its columns.
+     * <p>
+     * The columns are those of an import, without {@code quantity}. Also used by the
+     * network server to register books sent as JSON objects.
+     * </p>
+     * @param row the row, with lower-case column names
+     * @return the book
+     * @throws IllegalArgumentException if a value is missing or invalid
+     */
+    public static Book toBook(Map<String, String> row) {
+        String title = required(row, "title");
+        String author = required(row, "author");
+        String genre = optional(row, "genre");
+        String language = optional(row, "language");
+        int pages = parseInt(row, "pages");
+        double value = parseDouble(row, "value");
+        PricingRules pricing = optional(row, "price") == null
+                ? PricingRules.DEFAULT : PricingRules.fixed(parseDouble(row, "price"));
+
+        if (optional(row, "illustration") != null) {
+            return new Encyclopedia.Builder(title, author).genre(genre).language(language)
+                    .pageNumbers(pages).value(value).pricing(pricing)
+                    .illustration(parseBoolean(row, "illustration"))
+                    .build();
+        }
+        if (optional(row, "signed") != null || optional(row, "rare") != null) {
+            return new SpecialBook.Builder(title, author).genre(genre).language(language)
+                    .pageNumbers(pages).value(value).pricing(pricing)
+                    .signed(parseBoolean(row, "signed"))
+                    .rare(parseBoolean(row, "rare"))
+                    .build();
+        }
+        return new Book.Builder(title, author).genre(genre).language(language)
+                .pageNumbers(pages).value(value).pricing(pricing)
+                .build();
+    }
+
+    /**
+     * Converts a book into a row that {@link #toBook(Map)} turns back into an equal book.
+     * <p>
+     * The value is the base value, before any multiplier of a special book or an
+     * encyclopedia. A book priced otherwise than by the {@link PricingRules#DEFAULT
+     * default rules} also gets a {@code price}, so it keeps its value. Used to send books
+     * between the branches of a {@link branch.ShardedLibrary}.
+     * </p>
+     * @param book the book
+     * @return the row, with lower-case column names and without {@code quantity}
+     */
+    public static Map<String, String> toRow(Book book) {
+        Map<String, String> row = new LinkedHashMap<>();
+        row.put("title", book.getTitle());
+        row.put("author", book.getAuthor());
+        if (book.getGenre() != null) {
+            row.put("genre", book.getGenre());
+        }
+        if (book.getLanguage() != null) {
+            row.put("language", book.getLanguage());
+        }
+        row.put("pages", Integer.toString(book.getPageNumbers()));
+        row.put("value", Double.toString(book.getBaseValue()));
+        if (Double.compare(PricingRules.DEFAULT.price(book), book.getValue()) != 0) {
+            row.put("price", Double.toString(book.getValue()));
+        }
+        if (book instanceof SpecialBook specialBook) {
+            row.put("signed", Boolean.toString(specialBook.isSigned()));
+            row.put("rare", Boolean.toString(specialBook.isRare()));
+        } else if (book instanceof Encyclopedia encyclopedia) {
+            row.put("illustration", Boolean.toString(encyclopedia.isIllustration()));
+        }
+        return row;
+    }
+
+    /**
+     * Returns a non-blank column value.
+     * @param row    the row
+     * @param column the column name
+     * @return the trimmed value
+     * @throws IllegalArgumentException if the value is missing or blank
+     */
+    private static String required(Map<String, String> row, String column) {
+        String value = optional(row, column);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing " + column + ".");
+        }
+        return value;
+    }
+
+    /**
+     * Returns a column value, treating blank values as missing.
+     * @param row    the row
+     * @param column the column name
+     * @return the trimmed value, or {@code null} if missing or blank
+     */
+    private static String optional(Map<String, String> row, String column) {
+        String value = row.get(column);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return value.strip();
+    }
+
+    /**
+     * Parses a required integer column.
+     * @param row    the row
+     * @param column the column name
+     * @return the parsed value
+     * @throws IllegalArgumentException if the value is missing or not an integer
+     */
+    private static int parseInt(Map<String, String> row, String column) {
+        required(row, column);
+        return parseInt(row, column, 0);
+    }
+
+    /**
+     * Parses an integer column.
+     * @param row          the row
+     * @param column       the column name
+     * @param defaultValue the value used when the column is missing
+     * @return the parsed value
+     * @throws IllegalArgumentException if the value is not an integer
+     */
+    private static int parseInt(Map<String, String> row, String column, int defaultValue) {
+        String value = optional(row, column);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + column + " \"" + value + "\".");
+        }
+    }
+
+    /**
+     * Parses a decimal column; a missing value counts as 0.
+     * @param row    the row
+     * @param column the column name
+     * @return the parsed value
+     * @throws IllegalArgumentException if the value is not a number
+     */
+    private static double parseDouble(Map<String, String> row, String column) {
+        String value = optional(row, column);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + column + " \"" + value + "\".");
+        }
+    }
+
+    /**
+     * Parses a boolean column; accepts true/false, yes/no and 1/0, a missing value is false.
+     * @param row    the row
+     * @param column the column name
+     * @return the parsed value
+     * @throws IllegalArgumentException if the value is not a boolean
+     */
+    private static boolean parseBoolean(Map<String, String> row, String column) {
+        String value = optional(row, column);
+        if (value == null) {
+            return false;
+        }
+        switch (value.toLowerCase(Locale.ROOT)) {
+            case "true": case "yes": case "1":
+                return true;
+            case "false": case "no": case "0":
+                return false;
+            default:
+                throw new IllegalArgumentException("Invalid " + column + " \"" + value + "\".");
+        }
+    }
+
+    /**
+     * Puts an item on a queue, giving up if one of the pipeline stages has failed.
+     * @param queue   the queue
+     * @param item    the item
+     * @param futures the pipeline stages
+     * @param <T>     the type of the item
+     * @throws InterruptedException if the calling thread is interrupted
+     * @throws ExecutionException   if a pipeline stage has failed
+     */
+    private static <T> void offer(BlockingQueue<T> queue, T item, List<Future<?>> futures)
+            throws InterruptedException, ExecutionException {
+        while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+            for (Future<?> future : futures) {
+                if (future.isDone()) {
+                    future.get();
+                }
+            }
+        }
+    }
+
+    /**
+     * Unwraps the failure of a pipeline stage.
+     * @param e the failure
+     * @return the exception to throw
+     */
+    private static RuntimeException rethrow(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException runtime) {
+            return runtime;
+        } else if (cause instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException("Catalog import failed.", cause);
+    }
+
+    /**
+     * A row together with the line it started on.
+     */
+    private static final class Row {
+        /** The line the row started on. */
+        final int line;
+
+        /** The values of the row. */
+        final Map<String, String> values;
+
+        /**
+         * Creates a row.
+         * @param line   the line the row started on
+         * @param values the values of the row
+         */
+        Row(int line, Map<String, String> values) {
+            this.line = line;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Books validated from one batch of rows.
+     */
+    private static final class Batch {
+        /** The valid books and their quantities, in row order. */
+        final Map<Book, Integer> books = new LinkedHashMap<>();
+
+        /** Messages of rejected rows. */
+        final List<String> errors = new ArrayList<>();
+
+        /** Number of valid rows. */
+        int accepted;
+
+        /** Number of rejected rows. */
+        int rejected;
+    }
+
+    /**
+     * Running totals of an import.
+     */
+    private static final class Progress {
+        /** Start of the import. */
+        final long start = System.nanoTime();
+
+        /** Rows read; written by the reading thread only. */
+        volatile long rowsRead;
+
+        /** Rows registered; written by the registrar only. */
+        volatile long rowsImported;
+
+        /** Rows rejected; written by the registrar only. */
+        volatile long rowsRejected;
+
+        /** Messages of the first rejected rows; guarded by this. */
+        final List<String> errors = new ArrayList<>();
+
+        /**
+         * Adds a registered batch to the totals.
+         * @param batch the batch
+         */
+        synchronized void add(Batch batch) {
+            rowsImported += batch.accepted;
+            rowsRejected += batch.rejected;
+            for (String error : batch.errors) {
+                if (errors.size() < MAX_ERRORS) {
+                    errors.add(error);
+                }
+            }
+        }
+
+        /**
+         * Creates a snapshot of the totals.
+         * @return the snapshot
+         */
+        synchronized ImportStats snapshot() {
+            return new ImportStats(rowsRead, rowsImported, rowsRejected, System.nanoTime() - start, errors);
+        }
+    }
+
+    /**
+     * Builder for creating a {@link CatalogImporter}.
+     */
+    public static class Builder {
+        /** The library the books are registered in (required). */
+        private final BookLibrary library;
+
+        /** Number of validator threads (optional, default is the number of processors). */
+        private int threads = Runtime.getRuntime().availableProcessors();
+
+        /** Number of rows per batch (optional, default is 1000). */
+        private int batchSize = 1000;
+
+        /** Receives progress snapshots (optional, default is none). */
+        private Consumer<ImportStats> progressListener;
+
+        /** Minimum time between progress snapshots in milliseconds (optional, default is 1000). */
+        private long progressIntervalMillis = 1000;
+
+        /**
+         * Creates a new builder for an importer into the given library.
+         * @param library the library the books are registered in; must not be null
+         */
+        public Builder(BookLibrary library) {
+            this.library = library;
+        }
+
+        /**
+         * Sets the number of validator threads.
+         * @param threads the number of threads; must be greater than 0
+         * @return this builder instance
+         * @throws IllegalArgumentException if {@code threads <= 0}
+         */
+        public Builder threads(int threads) {
+            if (threads <= 0) {
+                throw new IllegalArgumentException("Number of threads must be greater than 0.");
+            }
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Sets the number of rows validated and registered together.
+         * @param batchSize the batch size; must be greater than 0
+         * @return this builder instance
+         * @throws IllegalArgumentException if {@code batchSize <= 0}
+         */
+        public Builder batchSize(int batchSize) {
+            if (batchSize <= 0) {
+                throw new IllegalArgumentException("Batch size must be greater than 0.");
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Sets the listener receiving progress snapshots while the import runs.
+         * @param listener       the listener, called from the registrar thread
+         * @param intervalMillis the minimum time between two snapshots in milliseconds
+         * @return this builder instance
+         */
+        public Builder onProgress(Consumer<ImportStats> listener, long intervalMillis) {
+            this.progressListener = listener;
+            this.progressIntervalMillis = intervalMillis;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new {@code CatalogImporter} instance.
+         * @return a new {@code CatalogImporter} object
+         */
+        public CatalogImporter build() {
+            return new CatalogImporter(this);
+        }
+    }
+}
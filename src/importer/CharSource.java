@@ -0,0 +1,99 @@
+package importer;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Unsynchronized, buffered character source with one character of look-ahead and
+ * line counting, shared by the row readers.
+ */
+class CharSource {
+
+    /** Size of the character buffer. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** The underlying reader. */
+    private final Reader reader;
+
+    /** Buffered characters. */
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    /** Position of the next character in the buffer. */
+    private int position;
+
+    /** Number of valid characters in the buffer. */
+    private int limit;
+
+    /** The current 1-based line number. */
+    private int line = 1;
+
+    /**
+     * Creates a source reading from the given reader.
+     * @param reader the reader to read from
+     */
+    CharSource(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the next character.
+     * @return the character, or -1 at the end of the input
+     * @throws IOException if reading fails
+     */
+    int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        char c = buffer[position++];
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+
+    /**
+     * Returns the next character without consuming it.
+     * @return the character, or -1 at the end of the input
+     * @throws IOException if reading fails
+     */
+    int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    /**
+     * Returns the current line number.
+     * @return the 1-based line number
+     */
+    int line() {
+        return line;
+    }
+
+    /**
+     * Closes the underlying reader.
+     * @throws IOException if closing fails
+     */
+    void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Refills the buffer.
+     * @return {@code false} at the end of the input
+     * @throws IOException if reading fails
+     */
+    private boolean fill() throws IOException {
+        int read;
+        do {
+            read = reader.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        if (read < 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+}
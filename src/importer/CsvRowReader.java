@@ -0,0 +1,139 @@
+package importer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streaming reader of comma-separated values with a header row.
+ * <p>
+ * The first record names the columns; names are trimmed and lower-cased. Fields may be
+ * quoted with {@code "}, in which case they can contain commas, line breaks and doubled
+ * quotes. Both {@code \n} and {@code \r\n} line endings are accepted and blank lines are
+ * skipped.
+ * </p>
+ * <p>
+ * Example input:
+ * <pre>
+ * title,author,genre,language,pages,value,quantity,signed,rare
+ * "Oko za oko",M.J. Arlidge,napinavy,SK,560,18.91,5,true,false
+ * </pre>
+ * </p>
+ */
+public class CsvRowReader implements RowReader {
+
+    /** The character source. */
+    private final CharSource source;
+
+    /** Column names from the header row. */
+    private final String[] columns;
+
+    /** Line on which the last record started. */
+    private int lineNumber;
+
+    /** Reused buffer for the field being read. */
+    private final StringBuilder field = new StringBuilder();
+
+    /**
+     * Creates a reader and reads the header row.
+     *
+     * @param reader the source of the CSV text
+     * @throws IOException if the header cannot be read or is missing
+     */
+    public CsvRowReader(Reader reader) throws IOException {
+        this.source = new CharSource(reader);
+        List<String> header = readRecord();
+        if (header == null) {
+            throw new IOException("CSV input has no header row.");
+        }
+        columns = new String[header.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = header.get(i).strip().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Reads the next row.
+     *
+     * @return the row keyed by column name, or {@code null} at the end of the input
+     * @throws IOException if reading fails, a quoted field is not terminated or the row
+     *                     has more fields than the header
+     */
+    @Override
+    public Map<String, String> nextRow() throws IOException {
+        List<String> values = readRecord();
+        if (values == null) {
+            return null;
+        }
+        if (values.size() > columns.length) {
+            throw new IOException("Line " + lineNumber + " has " + values.size()
+                    + " fields, but the header has " + columns.length + ".");
+        }
+        Map<String, String> row = new HashMap<>(columns.length * 2);
+        for (int i = 0; i < values.size(); i++) {
+            row.put(columns[i], values.get(i));
+        }
+        return row;
+    }
+
+    @Override
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    /**
+     * Reads the fields of the next non-blank record.
+     * @return the fields, or {@code null} at the end of the input
+     * @throws IOException if reading fails or a quoted field is not terminated
+     */
+    private List<String> readRecord() throws IOException {
+        while (source.peek() == '\n' || source.peek() == '\r') {
+            source.read();
+        }
+        if (source.peek() < 0) {
+            return null;
+        }
+
+        lineNumber = source.line();
+        List<String> fields = new ArrayList<>();
+        field.setLength(0);
+        boolean quoted = false;
+        while (true) {
+            int c = source.read();
+            if (quoted) {
+                if (c < 0) {
+                    throw new IOException("Quoted field starting on line " + lineNumber + " is not terminated.");
+                } else if (c == '"') {
+                    if (source.peek() == '"') {
+                        field.append((char) source.read());
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' && source.peek() == '\n') {
+                // part of a \r\n line ending
+            } else if (c == '\n' || c < 0) {
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+        }
+    }
+}
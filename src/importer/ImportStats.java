@@ -0,0 +1,100 @@
+package importer;
+
+import java.util.List;
+
+/**
+ * Snapshot of the progress or the final result of a catalog import.
+ * <p>
+ * Instances are immutable. During an import they are passed to the progress listener of
+ * the {@link CatalogImporter}; the final instance is returned by the import itself and
+ * also carries the messages of the first rejected rows.
+ * </p>
+ */
+public final class ImportStats {
+
+    /** Number of rows read from the source. */
+    private final long rowsRead;
+
+    /** Number of rows registered in the library. */
+    private final long rowsImported;
+
+    /** Number of rows rejected by validation. */
+    private final long rowsRejected;
+
+    /** Time since the import started, in nanoseconds. */
+    private final long elapsedNanos;
+
+    /** Messages of the first rejected rows. */
+    private final List<String> errors;
+
+    /**
+     * Creates a snapshot.
+     *
+     * @param rowsRead     the number of rows read from the source
+     * @param rowsImported the number of rows registered in the library
+     * @param rowsRejected the number of rows rejected by validation
+     * @param elapsedNanos the time since the import started, in nanoseconds
+     * @param errors       messages of the first rejected rows
+     */
+    ImportStats(long rowsRead, long rowsImported, long rowsRejected, long elapsedNanos, List<String> errors) {
+        this.rowsRead = rowsRead;
+        this.rowsImported = rowsImported;
+        this.rowsRejected = rowsRejected;
+        this.elapsedNanos = elapsedNanos;
+        this.errors = List.copyOf(errors);
+    }
+
+    /**
+     * Returns the number of rows read from the source.
+     * @return the number of rows read
+     */
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    /**
+     * Returns the number of rows registered in the library.
+     * @return the number of imported rows
+     */
+    public long getRowsImported() {
+        return rowsImported;
+    }
+
+    /**
+     * Returns the number of rows rejected by validation.
+     * @return the number of rejected rows
+     */
+    public long getRowsRejected() {
+        return rowsRejected;
+    }
+
+    /**
+     * Returns the time since the import started.
+     * @return the elapsed time in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns the throughput of the import so far.
+     * @return processed (imported or rejected) rows per second
+     */
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : (rowsImported + rowsRejected) * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Returns the messages of the first rejected rows, each prefixed with its line number.
+     * @return an unmodifiable list of messages
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("read %,d rows, imported %,d, rejected %,d, %,.0f rows/s",
+                rowsRead, rowsImported, rowsRejected, getRowsPerSecond());
+    }
+}
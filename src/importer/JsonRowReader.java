@@ -0,0 +1,229 @@
+package importer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streaming reader of flat JSON objects.
+ * <p>
+ * The input is either a JSON array of objects or a sequence of objects, such as
+ * JSON Lines. Objects are parsed one at a time, so the array is never held in memory.
+ * Each object must be flat: values are strings, numbers, booleans or {@code null}.
+ * Keys are lower-cased, values are returned as their text and {@code null} values are
+ * left out of the row.
+ * </p>
+ * <p>
+ * Example input:
+ * <pre>
+ * {"title": "Encyklopédia zvierat", "author": "Genevieve Warnau", "pages": 304, "illustration": true}
+ * </pre>
+ * </p>
+ */
+public class JsonRowReader implements RowReader {
+
+    /** The character source. */
+    private final CharSource source;
+
+    /** Line on which the last object started. */
+    private int lineNumber;
+
+    /** Whether the input is a JSON array; decided by the first character. */
+    private Boolean array;
+
+    /** Whether the end of the input or of the array was reached. */
+    private boolean finished;
+
+    /** Reused buffer for strings and literals. */
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * Creates a reader.
+     * @param reader the source of the JSON text
+     */
+    public JsonRowReader(Reader reader) {
+        this.source = new CharSource(reader);
+    }
+
+    /**
+     * Reads the next object.
+     *
+     * @return the object as a row, or {@code null} at the end of the input
+     * @throws IOException if reading fails or the input is not a sequence of flat objects
+     */
+    @Override
+    public Map<String, String> nextRow() throws IOException {
+        if (finished) {
+            return null;
+        }
+        int c = skipWhitespace();
+        if (array == null) {
+            array = c == '[';
+            if (array) {
+                source.read();
+                c = skipWhitespace();
+                if (c == ']') {
+                    finished = true;
+                    return null;
+                }
+            }
+        } else if (array) {
+            if (c == ']') {
+                finished = true;
+                return null;
+            }
+            expect(',');
+            c = skipWhitespace();
+        }
+        if (c < 0) {
+            if (array) {
+                throw error("Unterminated JSON array");
+            }
+            finished = true;
+            return null;
+        }
+
+        lineNumber = source.line();
+        expect('{');
+        Map<String, String> row = new HashMap<>();
+        if (skipWhitespace() == '}') {
+            source.read();
+            return row;
+        }
+        while (true) {
+            skipWhitespace();
+            String key = readString().toLowerCase(Locale.ROOT);
+            skipWhitespace();
+            expect(':');
+            String value = readValue();
+            if (value != null) {
+                row.put(key, value);
+            }
+            skipWhitespace();
+            int next = source.read();
+            if (next == '}') {
+                return row;
+            } else if (next != ',') {
+                throw error("Expected ',' or '}'");
+            }
+        }
+    }
+
+    @Override
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    /**
+     * Reads a scalar value.
+     * @return the text of the value, or {@code null} for a JSON {@code null}
+     * @throws IOException if the value is not a string, number, boolean or null
+     */
+    private String readValue() throws IOException {
+        int c = skipWhitespace();
+        if (c == '"') {
+            return readString();
+        } else if (c == '{' || c == '[') {
+            throw error("Nested values are not supported");
+        }
+        text.setLength(0);
+        while (true) {
+            c = source.peek();
+            if (c < 0 || c == ',' || c == '}' || Character.isWhitespace(c)) {
+                break;
+            }
+            text.append((char) source.read());
+        }
+        String literal = text.toString();
+        if (literal.isEmpty()) {
+            throw error("Missing value");
+        }
+        return literal.equals("null") ? null : literal;
+    }
+
+    /**
+     * Reads a quoted string, resolving escape sequences.
+     * @return the string
+     * @throws IOException if the string is malformed or not terminated
+     */
+    private String readString() throws IOException {
+        expect('"');
+        text.setLength(0);
+        while (true) {
+            int c = source.read();
+            if (c < 0) {
+                throw error("Unterminated string");
+            } else if (c == '"') {
+                return text.toString();
+            } else if (c == '\\') {
+                int escaped = source.read();
+                switch (escaped) {
+                    case '"': case '\\': case '/':
+                        text.append((char) escaped);
+                        break;
+                    case 'b': text.append('\b'); break;
+                    case 'f': text.append('\f'); break;
+                    case 'n': text.append('\n'); break;
+                    case 'r': text.append('\r'); break;
+                    case 't': text.append('\t'); break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(source.read(), 16);
+                            if (digit < 0) {
+                                throw error("Invalid \\u escape");
+                            }
+                            code = code * 16 + digit;
+                        }
+                        text.append((char) code);
+                        break;
+                    default:
+                        throw error("Invalid escape sequence");
+                }
+            } else {
+                text.append((char) c);
+            }
+        }
+    }
+
+    /**
+     * Skips whitespace.
+     * @return the next character without consuming it, or -1 at the end of the input
+     * @throws IOException if reading fails
+     */
+    private int skipWhitespace() throws IOException {
+        int c = source.peek();
+        while (c >= 0 && Character.isWhitespace(c)) {
+            source.read();
+            c = source.peek();
+        }
+        return c;
+    }
+
+    /**
+     * Consumes the expected character.
+     * @param expected the expected character
+     * @throws IOException if the next character is different
+     */
+    private void expect(char expected) throws IOException {
+        if (source.read() != expected) {
+            throw error("Expected '" + expected + "'");
+        }
+    }
+
+    /**
+     * Creates an exception for malformed input at the current line.
+     * @param message what is wrong
+     * @return the exception
+     */
+    private IOException error(String message) {
+        return new IOException(message + " on line " + source.line() + ".");
+    }
+}
@@ -0,0 +1,29 @@
+package importer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Reads catalog rows one at a time from a streamed source.
+ * <p>
+ * A row maps lower-case column names to their text values. Implementations keep only
+ * the current row in memory, so arbitrarily large feeds can be read with bounded memory.
+ * </p>
+ */
+public interface RowReader extends Closeable {
+
+    /**
+     * Reads the next row.
+     *
+     * @return the row, or {@code null} when the source is exhausted
+     * @throws IOException if the source cannot be read or is malformed
+     */
+    Map<String, String> nextRow() throws IOException;
+
+    /**
+     * Returns the line number on which the last row read started.
+     * @return the 1-based line number, 0 before the first row
+     */
+    int getLineNumber();
+}
@@ -0,0 +1,164 @@
+package metrics;
+
+import bookLibrary.BatchMode;
+import bookLibrary.BatchResult;
+import bookLibrary.CirculationStatus;
+import bookLibrary.LibraryServices;
+import metrics.LibraryMetrics.Operation;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A {@link LibraryServices} that reports every borrow and return of another one to
+ * {@link LibraryMetrics}.
+ * <p>
+ * The outcome of every operation is counted. Reading the clock twice costs about as much
+ * as the rest of the instrumentation together, so only a random sample of the operations
+ * is timed, one in {@value #DEFAULT_LATENCY_SAMPLING} by default; the latency histograms
+ * describe that sample, and the operation counters give the totals. Batches are always
+ * timed, since the clock is cheap next to a batch.
+ * </p>
+ * <p>
+ * Example Usage:
+ * <pre>
+ * LibraryServices library = new InstrumentedLibrary.Builder(BookLibrary.BookLibrary(), metrics)
+ *         .latencySampling(1)
+ *         .build();
+ * </pre>
+ * </p>
+ */
+public class InstrumentedLibrary implements LibraryServices {
+
+    /** One operation in this many is timed unless configured otherwise. */
+    private static final int DEFAULT_LATENCY_SAMPLING = 16;
+
+    /** The instrumented library. */
+    private final LibraryServices delegate;
+
+    /** Receives the outcomes and latencies. */
+    private final LibraryMetrics metrics;
+
+    /** One operation in this many is timed. */
+    private final int latencySampling;
+
+    /**
+     * Creates an instrumented library timing one operation in {@value #DEFAULT_LATENCY_SAMPLING}.
+     * @param delegate the library instrumented
+     * @param metrics  receives the outcomes and latencies
+     */
+    public InstrumentedLibrary(LibraryServices delegate, LibraryMetrics metrics) {
+        this(new Builder(delegate, metrics));
+    }
+
+    /**
+     * Private constructor used by the {@link Builder}.
+     * @param builder the builder holding the settings
+     */
+    private InstrumentedLibrary(Builder builder) {
+        this.delegate = builder.delegate;
+        this.metrics = builder.metrics;
+        this.latencySampling = builder.latencySampling;
+    }
+
+    @Override
+    public CirculationStatus borrowBook(String title) {
+        return circulate(title, Operation.BORROW);
+    }
+
+    @Override
+    public CirculationStatus returnBook(String title) {
+        return circulate(title, Operation.RETURN);
+    }
+
+    @Override
+    public BatchResult borrowAll(List<String> titles, BatchMode mode) {
+        return circulateAll(titles, mode, Operation.BORROW_BATCH);
+    }
+
+    @Override
+    public BatchResult returnAll(List<String> titles, BatchMode mode) {
+        return circulateAll(titles, mode, Operation.RETURN_BATCH);
+    }
+
+    /**
+     * Borrows or returns one title, timing a sample of the calls.
+     * @param title     the title
+     * @param operation {@link Operation#BORROW} or {@link Operation#RETURN}
+     * @return the outcome
+     */
+    private CirculationStatus circulate(String title, Operation operation) {
+        boolean timed = latencySampling == 1 || ThreadLocalRandom.current().nextInt(latencySampling) == 0;
+        long start = timed ? System.nanoTime() : 0;
+        CirculationStatus status = operation == Operation.BORROW ? delegate.borrowBook(title) : delegate.returnBook(title);
+        if (timed) {
+            metrics.recordLatency(operation, System.nanoTime() - start);
+        }
+        metrics.recordOutcome(operation, status);
+        return status;
+    }
+
+    /**
+     * Borrows or returns a batch, counting the outcome of every title.
+     * @param titles    the titles
+     * @param mode      how a failing title affects the others
+     * @param operation {@link Operation#BORROW_BATCH} or {@link Operation#RETURN_BATCH}
+     * @return the outcomes
+     */
+    private BatchResult circulateAll(List<String> titles, BatchMode mode, Operation operation) {
+        long start = System.nanoTime();
+        BatchResult result = operation == Operation.BORROW_BATCH
+                ? delegate.borrowAll(titles, mode) : delegate.returnAll(titles, mode);
+        metrics.recordLatency(operation, System.nanoTime() - start);
+        for (int i = 0; i < result.size(); i++) {
+            metrics.recordOutcome(operation, result.getStatus(i));
+        }
+        return result;
+    }
+
+    /**
+     * Builder for creating an {@link InstrumentedLibrary}.
+     */
+    public static class Builder {
+        /** The library instrumented (required). */
+        private final LibraryServices delegate;
+
+        /** Receives the outcomes and latencies (required). */
+        private final LibraryMetrics metrics;
+
+        /** One operation in this many is timed (optional, default is {@value InstrumentedLibrary#DEFAULT_LATENCY_SAMPLING}). */
+        private int latencySampling = DEFAULT_LATENCY_SAMPLING;
+
+        /**
+         * Creates a new builder instrumenting the given library.
+         * @param delegate the library instrumented; must not be null
+         * @param metrics  receives the outcomes and latencies; must not be null
+         */
+        public Builder(LibraryServices delegate, LibraryMetrics metrics) {
+            this.delegate = delegate;
+            this.metrics = metrics;
+        }
+
+        /**
+         * Sets how many operations share one timed operation.
+         * @param oneIn time one operation in this many, 1 to time all of them
+         * @return this builder instance
+         * @throws IllegalArgumentException if {@code oneIn <= 0}
+         */
+        public Builder latencySampling(int oneIn) {
+            if (oneIn <= 0) {
+                throw new IllegalArgumentException("Latency sampling must be greater than 0.");
+            }
+            this.latencySampling = oneIn;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new {@code InstrumentedLibrary} instance.
+         * @return a new {@code InstrumentedLibrary} object
+         */
+        public InstrumentedLibrary build() {
+            return new InstrumentedLibrary(this);
+        }
+    }
+}
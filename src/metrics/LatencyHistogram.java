@@ -0,0 +1,143 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies in nanoseconds with a bounded relative error, in the style of
+ * an HDR histogram.
+ * <p>
+ * Every power of two is split into {@value #SUB_BUCKETS} buckets of equal width, so a
+ * recorded latency is known to within 1/{@value #SUB_BUCKETS} of its value, about 6%,
+ * from one nanosecond up to about 18 minutes; longer latencies share the last bucket.
+ * The bucket of a latency is found with a few shifts, and the counts live in one
+ * preallocated array, so recording allocates nothing and takes no lock.
+ * </p>
+ * <p>
+ * The histogram is thread-safe. Reading while latencies are recorded gives counts that
+ * may be slightly inconsistent with each other, which is fine for monitoring.
+ * </p>
+ */
+public final class LatencyHistogram {
+
+    /** Number of bits of the sub-bucket index. */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /** Number of buckets per power of two. */
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** Largest power of two with buckets: latencies of 2^40 ns and more share the last bucket. */
+    private static final int MAX_EXPONENT = 40;
+
+    /** Number of buckets. */
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    /** Number of latencies by bucket. */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /** Number of latencies recorded. */
+    private final LongAdder count = new LongAdder();
+
+    /** Sum of the latencies recorded, in nanoseconds. */
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Records a latency.
+     * @param nanos the latency in nanoseconds; negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+    }
+
+    /**
+     * Returns the number of latencies recorded.
+     * @return the count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the sum of the latencies recorded.
+     * @return the sum in nanoseconds
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Returns the number of latencies in the buckets ending at or below a bound.
+     * <p>
+     * A latency in the bucket straddling the bound is not counted, so the result may
+     * miss latencies up to about 6% below the bound.
+     * </p>
+     *
+     * @param nanos the bound in nanoseconds
+     * @return the number of latencies known to be at most the bound
+     */
+    public long getCountAtOrBelow(long nanos) {
+        long total = 0;
+        for (int bucket = 0; bucket < BUCKETS && upperBound(bucket) <= nanos + 1; bucket++) {
+            total += counts.get(bucket);
+        }
+        return total;
+    }
+
+    /**
+     * Returns a percentile of the latencies recorded.
+     * @param fraction the percentile as a fraction, e.g. 0.99
+     * @return the upper bound of the bucket holding the percentile in nanoseconds, or 0
+     *         if nothing was recorded
+     */
+    public long getPercentile(double fraction) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            snapshot[bucket] = counts.get(bucket);
+            total += snapshot[bucket];
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * fraction));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += snapshot[bucket];
+            if (seen >= rank) {
+                return upperBound(bucket) - 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the bucket of a latency.
+     * @param nanos the latency, not negative
+     * @return the bucket index
+     */
+    static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((nanos >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Returns the smallest latency above a bucket.
+     * @param bucket the bucket index
+     * @return the exclusive upper bound of the bucket in nanoseconds
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket + 1;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : lower + (1L << shift);
+    }
+}
@@ -0,0 +1,345 @@
+package metrics;
+
+import book.Book;
+import bookLibrary.BookLibrary;
+import bookLibrary.CirculationStatus;
+import bookLibrary.InventoryListener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters, latency histograms and gauges of the library, exported in the Prometheus
+ * text format.
+ * <p>
+ * The metrics are fed from two sides:
+ * <ul>
+ *     <li>an {@link InstrumentedLibrary} in front of the library reports the outcome and
+ *     the latency of every borrow and return, which gives the hit, miss and out-of-stock
+ *     counts and the latency histograms,</li>
+ *     <li>as an {@link InventoryListener} of the {@link BookLibrary}, the metrics count
+ *     registrations and the borrows of every book, for the hottest titles, and keep the
+ *     stock gauges up to date from the quantity changes.</li>
+ * </ul>
+ * Every signal is a {@link LongAdder} or a {@link LatencyHistogram}, so recording takes
+ * no lock and allocates nothing, except the first borrow of a book, which creates its
+ * counter. Rates are computed by Prometheus from the counters.
+ * </p>
+ * <p>
+ * Example Usage:
+ * <pre>
+ * LibraryMetrics metrics = LibraryMetrics.attach(BookLibrary.BookLibrary());
+ * LibraryServices library = new InstrumentedLibrary(BookLibrary.BookLibrary(), metrics);
+ * library.borrowBook("Strach");
+ * System.out.println(metrics.toPrometheusText());
+ * </pre>
+ * </p>
+ */
+public class LibraryMetrics implements InventoryListener {
+
+    /** Number of hottest titles exported. */
+    private static final int HOT_TITLES = 10;
+
+    /** Upper bounds of the exported latency buckets, in nanoseconds. */
+    private static final long[] LATENCY_BOUNDS = {
+            1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000,
+            1_000_000, 2_500_000, 5_000_000, 10_000_000, 100_000_000, 1_000_000_000};
+
+    /** All statuses, indexed by their ordinal. */
+    private static final CirculationStatus[] STATUSES = CirculationStatus.values();
+
+    /**
+     * The operations measured.
+     */
+    public enum Operation {
+        /** Borrowing one title. */
+        BORROW,
+        /** Returning one title. */
+        RETURN,
+        /** Borrowing a batch of titles. */
+        BORROW_BATCH,
+        /** Returning a batch of titles. */
+        RETURN_BATCH;
+
+        /** The value of the {@code operation} label. */
+        private final String label = name().toLowerCase(Locale.ROOT);
+    }
+
+    /** Outcomes by operation ordinal and status ordinal; batches count every title. */
+    private final LongAdder[][] outcomes = new LongAdder[Operation.values().length][STATUSES.length];
+
+    /** Latencies by operation ordinal. */
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+
+    /** Number of books registered for the first time; adding copies counts as a quantity change. */
+    private final LongAdder registrations = new LongAdder();
+
+    /** Number of registered books. */
+    private final LongAdder titles = new LongAdder();
+
+    /** Number of copies in stock. */
+    private final LongAdder copiesInStock = new LongAdder();
+
+    /** Number of registered books without a copy in stock. */
+    private final LongAdder titlesOutOfStock = new LongAdder();
+
+    /** Number of borrowed copies by book, for the books borrowed at least once. */
+    private final Map<Book, LongAdder> borrowsByBook = new ConcurrentHashMap<>();
+
+    /**
+     * Creates empty metrics; attach them to a library with {@link #attach(BookLibrary)}
+     * to fill the gauges.
+     */
+    public LibraryMetrics() {
+        for (Operation operation : Operation.values()) {
+            latencies[operation.ordinal()] = new LatencyHistogram();
+            for (CirculationStatus status : STATUSES) {
+                outcomes[operation.ordinal()][status.ordinal()] = new LongAdder();
+            }
+        }
+    }
+
+    /**
+     * Creates metrics and attaches them to a library as an inventory listener.
+     * <p>
+     * The gauges start from the current inventory. Changes made while the metrics are
+     * being attached may be counted twice or missed, so attach the metrics at startup.
+     * </p>
+     *
+     * @param library the library
+     * @return the attached metrics
+     */
+    public static LibraryMetrics attach(BookLibrary library) {
+        LibraryMetrics metrics = new LibraryMetrics();
+        library.forEachBook((book, quantity) -> {
+            metrics.titles.increment();
+            metrics.copiesInStock.add(quantity);
+            if (quantity == 0) {
+                metrics.titlesOutOfStock.increment();
+            }
+        });
+        library.addInventoryListener(metrics);
+        return metrics;
+    }
+
+    /**
+     * Counts the outcome of an operation on one title.
+     * @param operation the operation
+     * @param status    its outcome
+     */
+    public void recordOutcome(Operation operation, CirculationStatus status) {
+        outcomes[operation.ordinal()][status.ordinal()].increment();
+    }
+
+    /**
+     * Records the latency of an operation.
+     * @param operation the operation
+     * @param nanos     the latency in nanoseconds
+     */
+    public void recordLatency(Operation operation, long nanos) {
+        latencies[operation.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void bookRegistered(Book book, int quantity) {
+        registrations.increment();
+        titles.increment();
+        copiesInStock.add(quantity);
+        if (quantity == 0) {
+            titlesOutOfStock.increment();
+        }
+    }
+
+    @Override
+    public void quantityChanged(Book book, int delta, int quantity) {
+        copiesInStock.add(delta);
+        if (delta < 0) {
+            LongAdder borrows = borrowsByBook.get(book);
+            if (borrows == null) {
+                borrows = borrowsByBook.computeIfAbsent(book, key -> new LongAdder());
+            }
+            borrows.add(-delta);
+            if (quantity == 0) {
+                titlesOutOfStock.increment();
+            }
+        } else if (delta > 0 && quantity == delta) {
+            titlesOutOfStock.decrement();
+        }
+    }
+
+    /**
+     * Returns the number of operations with a given outcome.
+     * @param operation the operation
+     * @param status    the outcome
+     * @return the count; titles are counted one by one for batches
+     */
+    public long getCount(Operation operation, CirculationStatus status) {
+        return outcomes[operation.ordinal()][status.ordinal()].sum();
+    }
+
+    /**
+     * Returns the latency histogram of an operation.
+     * @param operation the operation
+     * @return the histogram
+     */
+    public LatencyHistogram getLatency(Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    /**
+     * Returns the books borrowed most often.
+     * <p>
+     * The borrow counters are scanned with a heap of {@code k} entries, so this takes
+     * time proportional to the number of books ever borrowed.
+     * </p>
+     *
+     * @param k the number of books
+     * @return the books and their numbers of borrowed copies, most borrowed first
+     */
+    public List<Map.Entry<Book, Long>> getHotTitles(int k) {
+        PriorityQueue<Map.Entry<Book, Long>> heap = new PriorityQueue<>(Map.Entry.comparingByValue());
+        for (Map.Entry<Book, LongAdder> entry : borrowsByBook.entrySet()) {
+            long borrows = entry.getValue().sum();
+            if (heap.size() < k) {
+                heap.add(Map.entry(entry.getKey(), borrows));
+            } else if (k > 0 && borrows > heap.peek().getValue()) {
+                heap.poll();
+                heap.add(Map.entry(entry.getKey(), borrows));
+            }
+        }
+        List<Map.Entry<Book, Long>> hottest = new ArrayList<>(heap);
+        hottest.sort(Map.Entry.<Book, Long>comparingByValue(Comparator.reverseOrder()));
+        return hottest;
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text exposition format, version 0.0.4.
+     * @param out receives the text
+     * @throws UncheckedIOException if writing fails
+     */
+    public void writePrometheus(Appendable out) {
+        try {
+            out.append("# HELP library_operations_total Borrows and returns by outcome; batches count every title.\n")
+                    .append("# TYPE library_operations_total counter\n");
+            for (Operation operation : Operation.values()) {
+                for (CirculationStatus status : STATUSES) {
+                    long count = outcomes[operation.ordinal()][status.ordinal()].sum();
+                    if (count > 0) {
+                        out.append("library_operations_total{operation=\"").append(operation.label)
+                                .append("\",status=\"").append(status.name()).append("\"} ")
+                                .append(Long.toString(count)).append('\n');
+                    }
+                }
+            }
+
+            out.append("# HELP library_operation_latency_seconds Latency of borrows and returns.\n")
+                    .append("# TYPE library_operation_latency_seconds histogram\n");
+            for (Operation operation : Operation.values()) {
+                LatencyHistogram histogram = latencies[operation.ordinal()];
+                long count = histogram.getCount();
+                if (count == 0) {
+                    continue;
+                }
+                for (long bound : LATENCY_BOUNDS) {
+                    out.append("library_operation_latency_seconds_bucket{operation=\"").append(operation.label)
+                            .append("\",le=\"").append(seconds(bound)).append("\"} ")
+                            .append(Long.toString(histogram.getCountAtOrBelow(bound))).append('\n');
+                }
+                out.append("library_operation_latency_seconds_bucket{operation=\"").append(operation.label)
+                        .append("\",le=\"+Inf\"} ").append(Long.toString(count)).append('\n');
+                out.append("library_operation_latency_seconds_sum{operation=\"").append(operation.label)
+                        .append("\"} ").append(seconds(histogram.getSum())).append('\n');
+                out.append("library_operation_latency_seconds_count{operation=\"").append(operation.label)
+                        .append("\"} ").append(Long.toString(count)).append('\n');
+            }
+
+            counter(out, "library_registrations_total", "Books registered for the first time.", registrations.sum());
+            gauge(out, "library_titles", "Registered books.", titles.sum());
+            gauge(out, "library_copies_in_stock", "Copies of all books in stock.", copiesInStock.sum());
+            gauge(out, "library_titles_out_of_stock", "Registered books without a copy in stock.", titlesOutOfStock.sum());
+
+            out.append("# HELP library_hot_title_borrows_total Copies borrowed of the most borrowed titles.\n")
+                    .append("# TYPE library_hot_title_borrows_total counter\n");
+            for (Map.Entry<Book, Long> entry : getHotTitles(HOT_TITLES)) {
+                out.append("library_hot_title_borrows_total{title=\"");
+                appendLabelValue(out, entry.getKey().getTitle());
+                out.append("\"} ").append(Long.toString(entry.getValue())).append('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns all metrics in the Prometheus text exposition format.
+     * @return the text
+     */
+    public String toPrometheusText() {
+        StringBuilder text = new StringBuilder(4096);
+        writePrometheus(text);
+        return text.toString();
+    }
+
+    /**
+     * Writes a counter with its help and type lines.
+     * @param out   receives the text
+     * @param name  the metric name
+     * @param help  the description
+     * @param value the value
+     * @throws IOException if writing fails
+     */
+    private static void counter(Appendable out, String name, String help, long value) throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(" counter\n")
+                .append(name).append(' ').append(Long.toString(value)).append('\n');
+    }
+
+    /**
+     * Writes a gauge with its help and type lines.
+     * @param out   receives the text
+     * @param name  the metric name
+     * @param help  the description
+     * @param value the value
+     * @throws IOException if writing fails
+     */
+    private static void gauge(Appendable out, String name, String help, long value) throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(" gauge\n")
+                .append(name).append(' ').append(Long.toString(value)).append('\n');
+    }
+
+    /**
+     * Formats nanoseconds as seconds.
+     * @param nanos the duration in nanoseconds
+     * @return the duration in seconds
+     */
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    /**
+     * Writes a label value, escaping backslashes, double quotes and line feeds.
+     * @param out   receives the text
+     * @param value the value
+     * @throws IOException if writing fails
+     */
+    private static void appendLabelValue(Appendable out, String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> out.append("\\\\");
+                case '"' -> out.append("\\\"");
+                case '\n' -> out.append("\\n");
+                default -> out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package persistence;
+
+import book.Book;
+import book.Encyclopedia;
+import book.PricingRules;
+import book.SpecialBook;
+
+/**
+ * Maps books to the type codes and flag bits used by the persistent formats, and back.
+ * <p>
+ * Every format in this package stores a book as its type, its flags and the fields of
+ * {@link book.AbstractBook}, including the value after the pricing rules, since the rules
+ * themselves cannot be stored; this class keeps the codes in one place.
+ * </p>
+ */
+final class BookCodec {
+
+    /** Type code of a plain {@link Book}. */
+    static final byte TYPE_BOOK = 0;
+
+    /** Type code of a {@link SpecialBook}. */
+    static final byte TYPE_SPECIAL_BOOK = 1;
+
+    /** Type code of an {@link Encyclopedia}. */
+    static final byte TYPE_ENCYCLOPEDIA = 2;
+
+    /** Flag bit of a signed special book. */
+    static final int FLAG_SIGNED = 1;
+
+    /** Flag bit of a rare special book. */
+    static final int FLAG_RARE = 2;
+
+    /** Flag bit of an illustrated encyclopedia. */
+    static final int FLAG_ILLUSTRATION = 4;
+
+    /** Utility class, not meant to be instantiated. */
+    private BookCodec() {
+    }
+
+    /**
+     * Returns the type code of the book.
+     * @param book the book
+     * @return one of the {@code TYPE_*} constants
+     */
+    static byte typeOf(Book book) {
+        if (book instanceof SpecialBook) {
+            return TYPE_SPECIAL_BOOK;
+        } else if (book instanceof Encyclopedia) {
+            return TYPE_ENCYCLOPEDIA;
+        }
+        return TYPE_BOOK;
+    }
+
+    /**
+     * Returns the flags of the book.
+     * @param book the book
+     * @return a combination of the {@code FLAG_*} bits
+     */
+    static byte flagsOf(Book book) {
+        int flags = 0;
+        if (book instanceof SpecialBook specialBook) {
+            flags |= specialBook.isSigned() ? FLAG_SIGNED : 0;
+            flags |= specialBook.isRare() ? FLAG_RARE : 0;
+        } else if (book instanceof Encyclopedia encyclopedia) {
+            flags |= encyclopedia.isIllustration() ? FLAG_ILLUSTRATION : 0;
+        }
+        return (byte) flags;
+    }
+
+    /**
+     * Tells whether the value of a book is the one the {@link PricingRules#DEFAULT default
+     * rules} give it, so a format may leave it out and price the book again when reading.
+     * @param book the book
+     * @return {@code true} if the default rules give the book its value
+     */
+    static boolean hasDefaultPrice(Book book) {
+        return Double.compare(PricingRules.DEFAULT.price(book), book.getValue()) == 0;
+    }
+
+    /**
+     * Creates a book of the given type through the matching builder, valued by the
+     * {@link PricingRules#DEFAULT default rules}.
+     *
+     * @param type     the type code
+     * @param flags    the flag bits
+     * @param title    the title
+     * @param author   the author
+     * @param genre    the genre, may be null
+     * @param language the language, may be null
+     * @param pages    the number of pages
+     * @param value    the base value
+     * @return the new book
+     */
+    static Book newBook(int type, int flags, String title, String author, String genre,
+                        String language, int pages, double value) {
+        return newBook(type, flags, title, author, genre, language, pages, value, PricingRules.DEFAULT);
+    }
+
+    /**
+     * Creates a book of the given type through the matching builder, valued at the value
+     * it was stored with, so books priced by other than the default rules keep their value.
+     *
+     * @param type      the type code
+     * @param flags     the flag bits
+     * @param title     the title
+     * @param author    the author
+     * @param genre     the genre, may be null
+     * @param language  the language, may be null
+     * @param pages     the number of pages
+     * @param baseValue the base value
+     * @param value     the value after the pricing rules
+     * @return the new book
+     */
+    static Book newBook(int type, int flags, String title, String author, String genre,
+                        String language, int pages, double baseValue, double value) {
+        return newBook(type, flags, title, author, genre, language, pages, baseValue, PricingRules.fixed(value));
+    }
+
+    /**
+     * Creates a book of the given type through the matching builder.
+     *
+     * @param type     the type code
+     * @param flags    the flag bits
+     * @param title    the title
+     * @param author   the author
+     * @param genre    the genre, may be null
+     * @param language the language, may be null
+     * @param pages    the number of pages
+     * @param value    the base value
+     * @param pricing  the pricing rules
+     * @return the new book
+     */
+    private static Book newBook(int type, int flags, String title, String author, String genre,
+                                String language, int pages, double value, PricingRules pricing) {
+        switch (type) {
+            case TYPE_SPECIAL_BOOK:
+                return new SpecialBook.Builder(title, author).genre(genre).pageNumbers(pages)
+                        .language(language).value(value).pricing(pricing)
+                        .signed((flags & FLAG_SIGNED) != 0)
+                        .rare((flags & FLAG_RARE) != 0)
+                        .build();
+            case TYPE_ENCYCLOPEDIA:
+                return new Encyclopedia.Builder(title, author).genre(genre).pageNumbers(pages)
+                        .language(language).value(value).pricing(pricing)
+                        .illustration((flags & FLAG_ILLUSTRATION) != 0)
+                        .build();
+            default:
+                return new Book.Builder(title, author).genre(genre).pageNumbers(pages)
+                        .language(language).value(value).pricing(pricing)
+                        .build();
+        }
+    }
+}
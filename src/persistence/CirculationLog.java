@@ -0,0 +1,604 @@
+package persistence;
+
+import book.Book;
+import bookLibrary.InventoryListener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log of inventory changes, layered over an {@link InventoryStore}.
+ * <p>
+ * The log is attached to the library as an {@link InventoryListener}. Every registration
+ * and quantity change is put on a bounded queue and handled by a single writer thread,
+ * which assigns it the next log sequence number (LSN) and appends it to the log file.
+ * An event is applied to the store only after its record is written to the log, so the
+ * periodic flush of the store never writes a change the log does not hold. Events are
+ * written in batches and the file is synced according to the {@link Durability} mode, so
+ * many events share one {@code fsync} (group commit).
+ * </p>
+ * <p>
+ * The library applies a change in memory before it reports it to the log, so a change
+ * may be seen by other threads before it is logged. What a crash may lose depends on the
+ * {@link Durability} mode:
+ * <ul>
+ *     <li>{@link Durability#SYNC}: a borrow, return or registration returns only once its
+ *     record is synced, so no acknowledged change is lost; one under way may be,</li>
+ *     <li>{@link Durability#BATCHED}: the acknowledged changes of the last
+ *     {@value #BATCH_EVENTS} events or {@value #BATCH_MILLIS} ms may be lost, as may the
+ *     ones still queued for the writer thread when the process dies,</li>
+ *     <li>{@link Durability#NONE}: the changes the operating system has not written to
+ *     the disk yet may be lost in a machine crash, and the queued ones when the process
+ *     dies.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * Each log record is framed as {@code [int length][int crc32][long lsn][byte kind][payload]}.
+ * When the log is opened, every intact record is replayed over the store; records the
+ * store already contains are skipped by comparing LSNs, and replay stops at the first
+ * torn or corrupt record. New LSNs continue after the highest one found in the log, the
+ * checkpoint or any record of the store, so an LSN is never reused. Once the log grows beyond {@value #COMPACTION_BYTES} bytes,
+ * and when it is closed, the store is checkpointed and the log is truncated, so the log
+ * only ever holds the changes since the last checkpoint.
+ * </p>
+ */
+public class CirculationLog implements InventoryListener, Closeable {
+
+    /**
+     * How strongly logged events are made durable.
+     */
+    public enum Durability {
+        /** Events are written to the file but never synced; the OS decides when they reach the disk. */
+        NONE,
+        /** The file is synced every {@value CirculationLog#BATCH_EVENTS} events or {@value CirculationLog#BATCH_MILLIS} ms. */
+        BATCHED,
+        /** Every change waits until it is synced; concurrent changes share one sync. */
+        SYNC
+    }
+
+    /** Number of unsynced events after which a {@link Durability#BATCHED} log is synced. */
+    public static final int BATCH_EVENTS = 256;
+
+    /** Time in milliseconds after which a {@link Durability#BATCHED} log is synced. */
+    public static final long BATCH_MILLIS = 10;
+
+    /** Log size in bytes at which the log is compacted. */
+    public static final long COMPACTION_BYTES = 64L * 1024 * 1024;
+
+    /** Maximum number of events waiting for the writer thread. */
+    private static final int QUEUE_CAPACITY = 64 * 1024;
+
+    /** Maximum number of events handled by the writer in one batch. */
+    private static final int MAX_BATCH = 4096;
+
+    /** Size of the record frame before the body: length and checksum. */
+    private static final int FRAME_SIZE = 2 * Integer.BYTES;
+
+    /** Record kind of a book registration. */
+    private static final byte KIND_REGISTER = 1;
+
+    /** Record kind of a quantity change. */
+    private static final byte KIND_CHANGE = 2;
+
+    /** Record kind of copies registered for a registered book. */
+    private static final byte KIND_COPIES = 3;
+
+    /** The channel of the log file. */
+    private final FileChannel channel;
+
+    /** The store the logged events are applied to. */
+    private final InventoryStore store;
+
+    /** The durability mode. */
+    private final Durability durability;
+
+    /** Events waiting for the writer thread. */
+    private final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    /** Buffer the writer encodes records into. */
+    private final ByteBuffer out = ByteBuffer.allocateDirect(1024 * 1024);
+
+    /** Checksum of the record bodies. */
+    private final CRC32 crc = new CRC32();
+
+    /** The writer thread. */
+    private final Thread writer;
+
+    /** Whether the log accepts new events. */
+    private volatile boolean running = true;
+
+    /** The failure that stopped the writer thread, or {@code null}. */
+    private volatile Exception failure;
+
+    /** The last assigned log sequence number; used by the writer thread only. */
+    private long lastLsn;
+
+    /** Events encoded into the buffer and not applied to the store yet; used by the writer thread only. */
+    private final List<Event> unapplied = new ArrayList<>();
+
+    /** Record numbers of the books registered by {@link #unapplied} events; used by the writer thread only. */
+    private final Map<Book, Integer> unappliedSlots = new HashMap<>();
+
+    /**
+     * Creates a log over an opened and recovered log file and starts the writer thread.
+     * @param channel    the channel of the log file
+     * @param store      the store the events are applied to
+     * @param durability the durability mode
+     * @param lastLsn    the last log sequence number in use
+     */
+    private CirculationLog(FileChannel channel, InventoryStore store, Durability durability, long lastLsn) {
+        this.channel = channel;
+        this.store = store;
+        this.durability = durability;
+        this.lastLsn = lastLsn;
+        this.writer = new Thread(this::writeLoop, "circulation-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Opens the log at the given path, replays it over the store and compacts it.
+     * <p>
+     * The store must not be attached to the library; the log applies every change to it.
+     * </p>
+     *
+     * @param path       the path of the log file, created if it does not exist
+     * @param store      the store holding the last checkpoint
+     * @param durability the durability mode
+     * @return the opened log, ready to be attached to the library
+     * @throws IOException if the log cannot be read or refers to records missing in the store
+     */
+    public static CirculationLog open(Path path, InventoryStore store, Durability durability) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long lastLsn = recover(channel, store);
+            store.checkpoint(lastLsn);
+            channel.truncate(0);
+            channel.force(true);
+            return new CirculationLog(channel, store, durability, lastLsn);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Queues the registration of a new book; in {@link Durability#SYNC} mode waits until it is synced.
+     *
+     * @param book     the newly registered book
+     * @param quantity the number of copies it was registered with
+     * @throws UncheckedIOException  if the log has failed
+     * @throws IllegalStateException if the log is closed
+     */
+    @Override
+    public void bookRegistered(Book book, int quantity) {
+        submit(new Event(book, quantity, KIND_REGISTER));
+    }
+
+    /**
+     * Queues a quantity change; in {@link Durability#SYNC} mode waits until it is synced.
+     *
+     * @param book     the book whose quantity changed
+     * @param delta    the change of the quantity
+     * @param quantity the quantity right after the change (unused, the delta is logged)
+     * @throws UncheckedIOException  if the log has failed
+     * @throws IllegalStateException if the log is closed
+     */
+    @Override
+    public void quantityChanged(Book book, int delta, int quantity) {
+        submit(new Event(book, delta, KIND_CHANGE));
+    }
+
+    /**
+     * Queues copies registered for a registered book; in {@link Durability#SYNC} mode
+     * waits until they are synced.
+     *
+     * @param book     the book
+     * @param copies   the number of copies registered
+     * @param quantity the quantity right after the copies were added (unused)
+     * @throws UncheckedIOException  if the log has failed
+     * @throws IllegalStateException if the log is closed
+     */
+    @Override
+    public void copiesRegistered(Book book, int copies, int quantity) {
+        submit(new Event(book, copies, KIND_COPIES));
+    }
+
+    /**
+     * Stops accepting events, writes all queued events, compacts the log and closes it.
+     * @throws IOException if the writer thread failed or the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        List<Event> unlogged = new ArrayList<>();
+        queue.drainTo(unlogged); // submitted while closing; release any waiting threads
+        markDurable(unlogged);
+        channel.close();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw new IOException("The circulation log writer failed.", failure);
+        }
+    }
+
+    /**
+     * Hands an event to the writer thread and, in {@link Durability#SYNC} mode, waits for its sync.
+     * @param event the event to log
+     */
+    private void submit(Event event) {
+        checkHealthy();
+        if (!running) {
+            throw new IllegalStateException("The circulation log is closed.");
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(event);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (durability == Durability.SYNC) {
+            synchronized (event) {
+                while (!event.durable && failure == null) {
+                    try {
+                        event.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+            checkHealthy();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Throws if the writer thread has failed.
+     * @throws UncheckedIOException if the writer thread has failed
+     */
+    private void checkHealthy() {
+        Exception cause = failure;
+        if (cause != null) {
+            throw new UncheckedIOException("The circulation log writer failed.",
+                    cause instanceof IOException io ? io : new IOException(cause));
+        }
+    }
+
+    /**
+     * Body of the writer thread: takes batches of events, applies and logs them and syncs
+     * the file according to the durability mode.
+     */
+    private void writeLoop() {
+        List<Event> batch = new ArrayList<>();
+        List<Event> waiting = new ArrayList<>();
+        int unsynced = 0;
+        long lastSync = System.nanoTime();
+        try {
+            while (running || !queue.isEmpty()) {
+                Event first = queue.poll(BATCH_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    for (Event event : batch) {
+                        append(event);
+                    }
+                    writeOut();
+                    unsynced += batch.size();
+                    if (durability == Durability.SYNC) {
+                        waiting.addAll(batch);
+                    }
+                    batch.clear();
+                }
+
+                long now = System.nanoTime();
+                boolean sync = unsynced > 0 && (durability == Durability.SYNC
+                        || durability == Durability.BATCHED && (unsynced >= BATCH_EVENTS
+                        || now - lastSync >= TimeUnit.MILLISECONDS.toNanos(BATCH_MILLIS)));
+                if (sync) {
+                    channel.force(false);
+                    markDurable(waiting);
+                    unsynced = 0;
+                    lastSync = now;
+                }
+                if (channel.position() >= COMPACTION_BYTES) {
+                    compact();
+                }
+            }
+            channel.force(false);
+            compact();
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            failure = e;
+            running = false;
+        } finally {
+            markDurable(waiting);
+            markDurable(batch);
+        }
+    }
+
+    /**
+     * Assigns the next LSN to the event and encodes it into the buffer; the event is
+     * applied to the store once the buffer is written out.
+     * @param event the event
+     * @throws IOException if the buffer cannot be written out
+     */
+    private void append(Event event) throws IOException {
+        int slot;
+        boolean register = event.kind == KIND_REGISTER;
+        if (register) {
+            slot = store.size() + unappliedSlots.size();
+        } else {
+            Integer registered = unappliedSlots.get(event.book);
+            slot = registered != null ? registered : store.slotOf(event.book);
+            if (slot < 0) {
+                return; // registered before the log was attached; nothing to log against
+            }
+        }
+        long lsn = ++lastLsn;
+
+        byte[][] strings = register ? encodeStrings(event.book) : null;
+        int bodySize = Long.BYTES + 1 + Integer.BYTES * 2;
+        if (strings != null) {
+            bodySize += 2 + Integer.BYTES + 2 * Double.BYTES;
+            for (byte[] string : strings) {
+                bodySize += Integer.BYTES + (string == null ? 0 : string.length);
+            }
+        }
+        if (FRAME_SIZE + bodySize > out.capacity()) {
+            throw new IOException("Log record of " + bodySize + " bytes is too large.");
+        }
+        if (out.remaining() < FRAME_SIZE + bodySize) {
+            writeOut();
+        }
+
+        int start = out.position();
+        out.position(start + FRAME_SIZE);
+        out.putLong(lsn);
+        out.put(event.kind);
+        out.putInt(slot);
+        out.putInt(event.amount);
+        if (strings != null) {
+            out.put(BookCodec.typeOf(event.book));
+            out.put(BookCodec.flagsOf(event.book));
+            out.putInt(event.book.getPageNumbers());
+            out.putDouble(event.book.getBaseValue());
+            out.putDouble(event.book.getValue());
+            for (byte[] string : strings) {
+                out.putInt(string == null ? -1 : string.length);
+                if (string != null) {
+                    out.put(string);
+                }
+            }
+        }
+        int end = out.position();
+
+        crc.reset();
+        crc.update(out.duplicate().position(start + FRAME_SIZE).limit(end));
+        out.putInt(start, bodySize);
+        out.putInt(start + Integer.BYTES, (int) crc.getValue());
+
+        event.slot = slot;
+        event.lsn = lsn;
+        unapplied.add(event);
+        if (register) {
+            unappliedSlots.put(event.book, slot);
+        }
+    }
+
+    /**
+     * Writes the encoded records from the buffer to the log file, then applies their
+     * events to the store.
+     * @throws IOException if writing fails or a registration does not get its logged record number
+     */
+    private void writeOut() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+        for (Event event : unapplied) {
+            if (event.kind != KIND_REGISTER) {
+                store.apply(event.slot, event.amount, event.kind == KIND_COPIES ? event.amount : 0, event.lsn);
+            } else if (store.append(event.book, event.amount, event.lsn) != event.slot) {
+                throw new IOException("Logged record " + event.slot + " of " + event.book.getTitle()
+                        + " does not match the store.");
+            }
+        }
+        unapplied.clear();
+        unappliedSlots.clear();
+    }
+
+    /**
+     * Checkpoints the store and truncates the log.
+     * <p>
+     * Every logged event has already been applied to the store, so after the checkpoint
+     * the log holds nothing that is not in the store.
+     * </p>
+     * @throws IOException if the log cannot be truncated
+     */
+    private void compact() throws IOException {
+        store.checkpoint(lastLsn);
+        channel.truncate(0);
+        channel.position(0);
+    }
+
+    /**
+     * Marks events as durable and wakes up the threads waiting for them.
+     * @param events the events; the list is cleared
+     */
+    private static void markDurable(List<Event> events) {
+        for (Event event : events) {
+            synchronized (event) {
+                event.durable = true;
+                event.notifyAll();
+            }
+        }
+        events.clear();
+    }
+
+    /**
+     * Replays all intact records of the log over the store.
+     * @param channel the channel of the log file
+     * @param store   the store to replay into
+     * @return the highest log sequence number seen in the store or the log
+     * @throws IOException if the log cannot be read or refers to records missing in the store
+     */
+    private static long recover(FileChannel channel, InventoryStore store) throws IOException {
+        // the store may hold changes whose log records were lost; their LSNs are taken
+        long lastLsn = Math.max(store.checkpointLsn(), store.highestRecordLsn());
+        long size = channel.size();
+        if (size == 0) {
+            return lastLsn;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Circulation log is larger than 2 GB.");
+        }
+        ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        CRC32 crc = new CRC32();
+        while (in.remaining() >= FRAME_SIZE) {
+            int bodySize = in.getInt();
+            int checksum = in.getInt();
+            if (bodySize <= 0 || bodySize > in.remaining()) {
+                break; // torn tail
+            }
+            ByteBuffer body = in.slice(in.position(), bodySize);
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break; // corrupt tail
+            }
+            in.position(in.position() + bodySize);
+
+            long lsn = body.getLong();
+            byte kind = body.get();
+            int slot = body.getInt();
+            int amount = body.getInt();
+            if (kind == KIND_REGISTER) {
+                if (slot > store.size()) {
+                    throw new IOException("Log registers record " + slot + " but the store has " + store.size() + ".");
+                }
+                if (slot == store.size()) {
+                    store.append(decodeBook(body), amount, lsn);
+                }
+            } else if (kind == KIND_CHANGE) {
+                store.applyRecovered(slot, amount, 0, lsn);
+            } else if (kind == KIND_COPIES) {
+                store.applyRecovered(slot, amount, amount, lsn);
+            } else {
+                throw new IOException("Unknown log record kind " + kind + ".");
+            }
+            lastLsn = Math.max(lastLsn, lsn);
+        }
+        return lastLsn;
+    }
+
+    /**
+     * Encodes the strings of a book as UTF-8.
+     * @param book the book
+     * @return the title, author, genre and language; null strings stay null
+     */
+    private static byte[][] encodeStrings(Book book) {
+        String[] strings = {book.getTitle(), book.getAuthor(), book.getGenre(), book.getLanguage()};
+        byte[][] encoded = new byte[strings.length][];
+        for (int i = 0; i < strings.length; i++) {
+            encoded[i] = strings[i] == null ? null : strings[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return encoded;
+    }
+
+    /**
+     * Decodes the book of a registration record.
+     * @param body the record body positioned after the quantity
+     * @return the decoded book
+     */
+    private static Book decodeBook(ByteBuffer body) {
+        byte type = body.get();
+        byte flags = body.get();
+        int pages = body.getInt();
+        double baseValue = body.getDouble();
+        double value = body.getDouble();
+        String title = decodeString(body);
+        String author = decodeString(body);
+        String genre = decodeString(body);
+        String language = decodeString(body);
+        return BookCodec.newBook(type, flags, title, author, genre, language, pages, baseValue, value);
+    }
+
+    /**
+     * Decodes a length-prefixed UTF-8 string.
+     * @param body the buffer positioned at the length
+     * @return the string, or {@code null} for length -1
+     */
+    private static String decodeString(ByteBuffer body) {
+        int length = body.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * An inventory change waiting to be logged.
+     */
+    private static final class Event {
+        /** The book the change belongs to. */
+        final Book book;
+
+        /** The registered quantity, the change of the quantity or the copies registered. */
+        final int amount;
+
+        /** The record kind: {@link #KIND_REGISTER}, {@link #KIND_CHANGE} or {@link #KIND_COPIES}. */
+        final byte kind;
+
+        /** Whether the event has been synced; guarded by the event's monitor. */
+        boolean durable;
+
+        /** The record number of the book; set by the writer thread. */
+        int slot;
+
+        /** The log sequence number; set by the writer thread. */
+        long lsn;
+
+        /**
+         * Creates an event.
+         * @param book   the book
+         * @param amount the registered quantity, the change of the quantity or the copies registered
+         * @param kind   the record kind
+         */
+        Event(Book book, int amount, byte kind) {
+            this.book = book;
+            this.amount = amount;
+            this.kind = kind;
+        }
+    }
+}
@@ -0,0 +1,592 @@
+package persistence;
+
+import book.Book;
+import bookLibrary.InventoryListener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent inventory of the library kept in a memory-mapped file.
+ * <p>
+ * The file consists of three areas:
+ * <ul>
+ *     <li>a 64 byte header with a magic number, the format version, the number of
+ *     records, the record capacity and the checkpoint log sequence number,</li>
+ *     <li>fixed-width records of 56 bytes, one per book, holding the log sequence number
+ *     of the last change, the quantity, the number of copies registered, the base value,
+ *     the value after the pricing rules, the page count, offsets of the title, author,
+ *     genre and language, the book type and the signed/rare/illustration flags,</li>
+ *     <li>a string table of length-prefixed UTF-8 strings. Authors, genres and languages
+ *     are stored once and shared by all records that use them.</li>
+ * </ul>
+ * All numbers are big-endian. When the record area or the string table is full, the
+ * file is grown and the string table is moved behind the larger record area.
+ * </p>
+ * <p>
+ * The store is attached to the library as an {@link InventoryListener}. New books are
+ * appended as records; quantity changes are applied in place with an atomic add on the
+ * mapped record, so they cost no more than an ordinary memory write. Changes reach the
+ * disk when {@link #flush()} is called, either directly or periodically after
+ * {@link #startPeriodicFlush(long)}. A single file can hold up to 2 GB.
+ * </p>
+ * <p>
+ * When a {@link CirculationLog} is used, the store is not attached to the library
+ * directly. The log applies every change to the store together with its log sequence
+ * number, which makes replaying the log over the store after a crash idempotent. The
+ * sequence number, the quantity and the registered copies of a record share an aligned
+ * 16 byte block, so they always reach the disk together.
+ * </p>
+ */
+public class InventoryStore implements InventoryListener, Closeable {
+
+    /** Magic number at the start of every store file ("BLIB"). */
+    private static final int MAGIC = 0x424C4942;
+
+    /** Version of the file format. */
+    private static final int VERSION = 4;
+
+    /** Size of the file header in bytes. */
+    private static final int HEADER_SIZE = 64;
+
+    /** Size of one book record in bytes. */
+    private static final int RECORD_SIZE = 56;
+
+    /** Header offset of the number of records. */
+    private static final int COUNT_OFFSET = 8;
+
+    /** Header offset of the record capacity. */
+    private static final int CAPACITY_OFFSET = 12;
+
+    /** Header offset of the number of used bytes in the string table. */
+    private static final int STRING_BYTES_OFFSET = 16;
+
+    /** Header offset of the log sequence number of the last checkpoint. */
+    private static final int CHECKPOINT_LSN_OFFSET = 24;
+
+    /** Record offsets of the individual fields. */
+    private static final int LSN = 0;
+    private static final int QUANTITY = 8;
+    private static final int REGISTERED = 12;
+    private static final int VALUE = 16;
+    private static final int PRICE = 24;
+    private static final int PAGES = 32;
+    private static final int TITLE = 36;
+    private static final int AUTHOR = 40;
+    private static final int GENRE = 44;
+    private static final int LANGUAGE = 48;
+    private static final int TYPE = 52;
+    private static final int FLAGS = 53;
+
+    /** String offset used for a missing (null) string. */
+    private static final int NO_STRING = -1;
+
+    /** Record capacity of a newly created store. */
+    private static final int INITIAL_RECORD_CAPACITY = 1024;
+
+    /** String table capacity of a newly created store, in bytes. */
+    private static final int INITIAL_STRING_CAPACITY = 64 * 1024;
+
+    /** View of the mapped file as big-endian ints, used for atomic quantity updates. */
+    private static final VarHandle INT_VIEW =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    /** The channel of the store file. */
+    private final FileChannel channel;
+
+    /** The current mapping of the whole file; replaced when the file grows. */
+    private volatile MappedByteBuffer buffer;
+
+    /** Number of records the record area can hold. */
+    private int recordCapacity;
+
+    /** Number of bytes the string table can hold. */
+    private int stringCapacity;
+
+    /** Number of records written. */
+    private int recordCount;
+
+    /** Number of used bytes in the string table. */
+    private int stringBytes;
+
+    /** Record number of every book known to the store. */
+    private final Map<Book, Integer> slots = new ConcurrentHashMap<>();
+
+    /** Offsets of shared strings (authors, genres, languages) in the string table. */
+    private final Map<String, Integer> sharedStrings = new HashMap<>();
+
+    /** Background task flushing the mapping, or {@code null} if not started. */
+    private ScheduledExecutorService flusher;
+
+    /**
+     * Creates a store over an already opened and mapped file.
+     * @param channel the channel of the store file
+     * @param buffer  the mapping of the whole file
+     */
+    private InventoryStore(FileChannel channel, MappedByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.recordCount = buffer.getInt(COUNT_OFFSET);
+        this.recordCapacity = buffer.getInt(CAPACITY_OFFSET);
+        this.stringBytes = buffer.getInt(STRING_BYTES_OFFSET);
+        this.stringCapacity = buffer.capacity() - stringTableStart(recordCapacity);
+    }
+
+    /**
+     * Opens the store file at the given path, creating an empty store if it does not exist.
+     *
+     * @param path the path of the store file
+     * @return the opened store
+     * @throws IOException if the file cannot be opened or is not a store file
+     */
+    public static InventoryStore open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer;
+            if (channel.size() == 0) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                        stringTableStart(INITIAL_RECORD_CAPACITY) + INITIAL_STRING_CAPACITY);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(COUNT_OFFSET, 0);
+                buffer.putInt(CAPACITY_OFFSET, INITIAL_RECORD_CAPACITY);
+                buffer.putInt(STRING_BYTES_OFFSET, 0);
+                buffer.putLong(CHECKPOINT_LSN_OFFSET, 0);
+            } else {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                    throw new IOException(path + " is not an inventory store.");
+                }
+                if (buffer.getInt(4) != VERSION) {
+                    throw new IOException("Unsupported inventory store version " + buffer.getInt(4) + ".");
+                }
+            }
+            return new InventoryStore(channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads all records and passes every book with its quantity and registered copies to
+     * the consumer.
+     * <p>
+     * Shared strings are decoded once, so books of the same genre, language or author
+     * share one {@code String} instance.
+     * </p>
+     *
+     * @param consumer receives each stored book
+     * @return the number of books read
+     */
+    public synchronized int load(RecordConsumer consumer) {
+        Map<Integer, String> decoded = new HashMap<>();
+        slots.clear();
+        for (int slot = 0; slot < recordCount; slot++) {
+            int record = recordOffset(slot);
+            Book book = readBook(record, decoded);
+            int quantity = buffer.getInt(record + QUANTITY);
+            int registered = buffer.getInt(record + REGISTERED);
+            slots.put(book, slot);
+            consumer.accept(book, quantity, registered);
+        }
+        for (Map.Entry<Integer, String> entry : decoded.entrySet()) {
+            sharedStrings.put(entry.getValue(), entry.getKey());
+        }
+        return recordCount;
+    }
+
+    /**
+     * Appends a record for the newly registered book.
+     *
+     * @param book     the newly registered book
+     * @param quantity the number of copies it was registered with
+     * @throws UncheckedIOException if the store file cannot be grown
+     */
+    @Override
+    public void bookRegistered(Book book, int quantity) {
+        append(book, quantity, 0);
+    }
+
+    /**
+     * Adds the change to the stored quantity of the book, in place.
+     *
+     * @param book     the book whose quantity changed
+     * @param delta    the change of the quantity
+     * @param quantity the quantity right after the change (unused, the delta is applied)
+     */
+    @Override
+    public void quantityChanged(Book book, int delta, int quantity) {
+        Integer slot = slots.get(book);
+        if (slot != null) {
+            INT_VIEW.getAndAdd(buffer, recordOffset(slot) + QUANTITY, delta);
+        }
+    }
+
+    /**
+     * Adds the copies to the stored quantity and registered copies of the book, in place.
+     *
+     * @param book     the book
+     * @param copies   the number of copies registered
+     * @param quantity the quantity right after the copies were added (unused)
+     */
+    @Override
+    public void copiesRegistered(Book book, int copies, int quantity) {
+        Integer slot = slots.get(book);
+        if (slot != null) {
+            INT_VIEW.getAndAdd(buffer, recordOffset(slot) + QUANTITY, copies);
+            INT_VIEW.getAndAdd(buffer, recordOffset(slot) + REGISTERED, copies);
+        }
+    }
+
+    /**
+     * Appends a record for a book.
+     *
+     * @param book     the book
+     * @param quantity the number of copies
+     * @param lsn      the log sequence number of the registration, 0 without a log
+     * @return the record number of the book
+     * @throws UncheckedIOException if the store file cannot be grown
+     */
+    synchronized int append(Book book, int quantity, long lsn) {
+        byte[] title = book.getTitle().getBytes(StandardCharsets.UTF_8);
+        try {
+            ensureCapacity(4 * Integer.BYTES + title.length + sharedLength(book.getAuthor())
+                    + sharedLength(book.getGenre()) + sharedLength(book.getLanguage()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot grow the inventory store.", e);
+        }
+
+        MappedByteBuffer buffer = this.buffer;
+        int slot = recordCount;
+        int record = recordOffset(slot);
+        buffer.putLong(record + LSN, lsn);
+        buffer.putInt(record + QUANTITY, quantity);
+        buffer.putInt(record + REGISTERED, quantity);
+        buffer.put(record + TYPE, BookCodec.typeOf(book));
+        buffer.put(record + FLAGS, BookCodec.flagsOf(book));
+        buffer.putDouble(record + VALUE, book.getBaseValue());
+        buffer.putDouble(record + PRICE, book.getValue());
+        buffer.putInt(record + PAGES, book.getPageNumbers());
+        buffer.putInt(record + TITLE, appendString(title));
+        buffer.putInt(record + AUTHOR, sharedString(book.getAuthor()));
+        buffer.putInt(record + GENRE, sharedString(book.getGenre()));
+        buffer.putInt(record + LANGUAGE, sharedString(book.getLanguage()));
+
+        slots.put(book, slot);
+        recordCount++;
+        buffer.putInt(STRING_BYTES_OFFSET, stringBytes);
+        buffer.putInt(COUNT_OFFSET, recordCount);
+        return slot;
+    }
+
+    /**
+     * Adds a logged change to the stored quantity and registered copies and records its
+     * log sequence number.
+     * <p>
+     * Called by the single writer thread of the {@link CirculationLog}, in log order.
+     * </p>
+     *
+     * @param slot       the record number of the book
+     * @param delta      the change of the quantity
+     * @param registered the change of the registered copies
+     * @param lsn        the log sequence number of the change
+     */
+    void apply(int slot, int delta, int registered, long lsn) {
+        MappedByteBuffer buffer = this.buffer;
+        int record = recordOffset(slot);
+        INT_VIEW.getAndAdd(buffer, record + QUANTITY, delta);
+        if (registered != 0) {
+            INT_VIEW.getAndAdd(buffer, record + REGISTERED, registered);
+        }
+        buffer.putLong(record + LSN, lsn);
+    }
+
+    /**
+     * Applies a change replayed from the log unless the record already contains it.
+     *
+     * @param slot       the record number of the book
+     * @param delta      the change of the quantity
+     * @param registered the change of the registered copies
+     * @param lsn        the log sequence number of the change
+     * @return {@code true} if the change was applied
+     * @throws IOException if the record does not exist
+     */
+    synchronized boolean applyRecovered(int slot, int delta, int registered, long lsn) throws IOException {
+        if (slot < 0 || slot >= recordCount) {
+            throw new IOException("Log refers to missing record " + slot + ".");
+        }
+        if (lsn <= buffer.getLong(recordOffset(slot) + LSN)) {
+            return false;
+        }
+        apply(slot, delta, registered, lsn);
+        return true;
+    }
+
+    /**
+     * Returns the record number of a book.
+     * @param book the book
+     * @return the record number, or -1 if the book is not stored
+     */
+    int slotOf(Book book) {
+        Integer slot = slots.get(book);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Returns the highest log sequence number recorded in any record.
+     * <p>
+     * A record can be flushed with a change whose log record was lost in a crash, so the
+     * highest number may be above the checkpoint and every number in the log.
+     * </p>
+     * @return the highest log sequence number, 0 if there is none
+     */
+    synchronized long highestRecordLsn() {
+        long highest = 0;
+        for (int slot = 0; slot < recordCount; slot++) {
+            highest = Math.max(highest, buffer.getLong(recordOffset(slot) + LSN));
+        }
+        return highest;
+    }
+
+    /**
+     * Returns the log sequence number of the last checkpoint.
+     * @return the checkpoint log sequence number, 0 if there was none
+     */
+    long checkpointLsn() {
+        return buffer.getLong(CHECKPOINT_LSN_OFFSET);
+    }
+
+    /**
+     * Makes the store durable up to the given log sequence number.
+     * <p>
+     * All records are flushed first; only then the checkpoint number is written and
+     * flushed, so a checkpoint never claims changes that are not on the disk.
+     * </p>
+     *
+     * @param lsn the log sequence number of the last change applied to the store
+     */
+    synchronized void checkpoint(long lsn) {
+        buffer.force();
+        buffer.putLong(CHECKPOINT_LSN_OFFSET, lsn);
+        buffer.force();
+    }
+
+    /**
+     * Writes all changes of the mapping to the disk.
+     */
+    public void flush() {
+        buffer.force();
+    }
+
+    /**
+     * Starts flushing the mapping to the disk in the background at a fixed interval.
+     *
+     * @param intervalMillis the flush interval in milliseconds; must be greater than 0
+     * @throws IllegalArgumentException if {@code intervalMillis <= 0}
+     */
+    public synchronized void startPeriodicFlush(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Flush interval must be greater than 0.");
+        }
+        if (flusher == null) {
+            flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "inventory-store-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns the number of books in the store.
+     * @return the number of records
+     */
+    public synchronized int size() {
+        return recordCount;
+    }
+
+    /**
+     * Stops the periodic flush, flushes all changes and closes the file.
+     * @throws IOException if closing the file fails
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher = null;
+        }
+        flush();
+        channel.close();
+    }
+
+    /**
+     * Decodes the book stored in the record at the given offset.
+     * @param record  the offset of the record
+     * @param decoded cache of already decoded shared strings by offset
+     * @return the decoded book
+     */
+    private Book readBook(int record, Map<Integer, String> decoded) {
+        String title = readString(buffer.getInt(record + TITLE));
+        String author = readShared(buffer.getInt(record + AUTHOR), decoded);
+        String genre = readShared(buffer.getInt(record + GENRE), decoded);
+        String language = readShared(buffer.getInt(record + LANGUAGE), decoded);
+        int pages = buffer.getInt(record + PAGES);
+        double baseValue = buffer.getDouble(record + VALUE);
+        double value = buffer.getDouble(record + PRICE);
+        int flags = buffer.get(record + FLAGS);
+
+        return BookCodec.newBook(buffer.get(record + TYPE), flags, title, author, genre, language, pages,
+                baseValue, value);
+    }
+
+    /**
+     * Returns the number of string table bytes a shared string would need if it is not stored yet.
+     * @param text the string, may be null
+     * @return the number of bytes, 0 if the string is null or already stored
+     */
+    private int sharedLength(String text) {
+        if (text == null || sharedStrings.containsKey(text)) {
+            return 0;
+        }
+        return Integer.BYTES + text.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * Returns the offset of a shared string, appending it to the string table if needed.
+     * @param text the string, may be null
+     * @return the offset of the string, or {@link #NO_STRING} for null
+     */
+    private int sharedString(String text) {
+        if (text == null) {
+            return NO_STRING;
+        }
+        Integer offset = sharedStrings.get(text);
+        if (offset == null) {
+            offset = appendString(text.getBytes(StandardCharsets.UTF_8));
+            sharedStrings.put(text, offset);
+        }
+        return offset;
+    }
+
+    /**
+     * Appends a string to the string table; capacity must have been ensured beforehand.
+     * @param bytes the UTF-8 bytes of the string
+     * @return the offset of the string within the string table
+     */
+    private int appendString(byte[] bytes) {
+        int offset = stringBytes;
+        int position = stringTableStart(recordCapacity) + offset;
+        buffer.putInt(position, bytes.length);
+        buffer.put(position + Integer.BYTES, bytes);
+        stringBytes += Integer.BYTES + bytes.length;
+        return offset;
+    }
+
+    /**
+     * Reads a shared string, decoding it only the first time it is seen.
+     * @param offset  the offset within the string table
+     * @param decoded cache of already decoded strings by offset
+     * @return the string, or {@code null} for {@link #NO_STRING}
+     */
+    private String readShared(int offset, Map<Integer, String> decoded) {
+        if (offset == NO_STRING) {
+            return null;
+        }
+        return decoded.computeIfAbsent(offset, this::readString);
+    }
+
+    /**
+     * Reads a string from the string table.
+     * @param offset the offset within the string table
+     * @return the string, or {@code null} for {@link #NO_STRING}
+     */
+    private String readString(int offset) {
+        if (offset == NO_STRING) {
+            return null;
+        }
+        int position = stringTableStart(recordCapacity) + offset;
+        byte[] bytes = new byte[buffer.getInt(position)];
+        buffer.get(position + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Grows the file if one more record and the given number of string bytes do not fit.
+     * @param extraStringBytes the number of string table bytes about to be written
+     * @throws IOException if the file cannot be grown
+     */
+    private void ensureCapacity(int extraStringBytes) throws IOException {
+        int newRecordCapacity = recordCount < recordCapacity ? recordCapacity : recordCapacity * 2;
+        long newStringCapacity = stringCapacity;
+        while (stringBytes + extraStringBytes > newStringCapacity) {
+            newStringCapacity *= 2;
+        }
+        if (newRecordCapacity == recordCapacity && newStringCapacity == stringCapacity) {
+            return;
+        }
+
+        long size = HEADER_SIZE + (long) newRecordCapacity * RECORD_SIZE + newStringCapacity;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Inventory store cannot grow beyond 2 GB.");
+        }
+        byte[] strings = new byte[stringBytes];
+        buffer.get(stringTableStart(recordCapacity), strings);
+
+        MappedByteBuffer grown = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        grown.put(stringTableStart(newRecordCapacity), strings);
+        grown.putInt(CAPACITY_OFFSET, newRecordCapacity);
+        buffer = grown;
+        recordCapacity = newRecordCapacity;
+        stringCapacity = (int) newStringCapacity;
+    }
+
+    /**
+     * Returns the file offset of the record with the given number.
+     * @param slot the record number
+     * @return the offset of the record
+     */
+    private static int recordOffset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    /**
+     * Returns the file offset of the string table for the given record capacity.
+     * @param recordCapacity the record capacity
+     * @return the offset of the string table
+     */
+    private static int stringTableStart(int recordCapacity) {
+        return HEADER_SIZE + recordCapacity * RECORD_SIZE;
+    }
+
+    /**
+     * Receives the books of a store as it is {@link #load(RecordConsumer) loaded}.
+     */
+    @FunctionalInterface
+    public interface RecordConsumer {
+        /**
+         * Receives a stored book.
+         * @param book       the book
+         * @param quantity   the number of copies in stock
+         * @param registered the number of copies registered
+         */
+        void accept(Book book, int quantity, int registered);
+    }
+}
@@ -0,0 +1,316 @@
+package persistence;
+
+import book.Book;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Reads a snapshot written by a {@link SnapshotWriter}, one book at a time.
+ * <p>
+ * A snapshot file is mapped into memory in windows of {@value #WINDOW_SIZE} bytes and
+ * decoded straight from the mapping, without copying it into a buffer first. Snapshots
+ * from other channels, such as sockets, are read through a direct buffer. Either way,
+ * only the current window and the dictionary of shared strings are held in memory, so
+ * snapshots of any size can be streamed into the library.
+ * </p>
+ * <p>
+ * The checksum and the book count of the trailer are verified once the last book has
+ * been read; books passed on before are not taken back if the verification fails.
+ * </p>
+ * <p>
+ * Example Usage:
+ * <pre>
+ * try (SnapshotReader reader = SnapshotReader.open(Path.of("catalog.snapshot"))) {
+ *     reader.read(library::registerNewBook);
+ * }
+ * </pre>
+ * </p>
+ */
+public class SnapshotReader implements Closeable {
+
+    /** Size of the mapped windows of a snapshot file in bytes. */
+    private static final int WINDOW_SIZE = 16 * 1024 * 1024;
+
+    /** Size of the buffer of other channels in bytes. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** The channel the snapshot is read from. */
+    private final ReadableByteChannel channel;
+
+    /** The channel as a file channel if it is one, to map windows of it; otherwise {@code null}. */
+    private final FileChannel file;
+
+    /** Checksum of the bytes decoded so far. */
+    private final CRC32 crc = new CRC32();
+
+    /** The strings of the dictionary, by entry number. */
+    private final List<String> dictionary = new ArrayList<>();
+
+    /** The current window or buffer. */
+    private ByteBuffer in;
+
+    /** Position in {@link #in} up to which the bytes are in the checksum. */
+    private int checked;
+
+    /** Position of the start of {@link #in} in the file; used with a file channel only. */
+    private long windowStart;
+
+    /** Whether the channel has no more bytes. */
+    private boolean endOfInput;
+
+    /** Reused buffer for decoding strings. */
+    private byte[] text = new byte[256];
+
+    /**
+     * Creates a reader. The header is read with the first book.
+     * @param channel the channel to read from; closed with the reader
+     */
+    public SnapshotReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.file = channel instanceof FileChannel fileChannel ? fileChannel : null;
+        this.in = file != null ? ByteBuffer.allocate(0) : ByteBuffer.allocateDirect(BUFFER_SIZE).flip();
+    }
+
+    /**
+     * Opens a snapshot file.
+     * @param path the path of the file
+     * @return the reader
+     * @throws IOException if the file cannot be opened
+     */
+    public static SnapshotReader open(Path path) throws IOException {
+        return new SnapshotReader(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    /**
+     * Reads the whole snapshot and passes every book and its quantity to the consumer, in
+     * the order they were written.
+     * @param consumer receives each book and its quantity
+     * @return the number of books read
+     * @throws IOException if reading fails, or the snapshot is truncated, corrupt or of an
+     *                     unsupported version
+     */
+    public long read(BiConsumer<Book, Integer> consumer) throws IOException {
+        return read((book, quantity, registered) -> consumer.accept(book, quantity));
+    }
+
+    /**
+     * Reads the whole snapshot and passes every book, its quantity and its number of
+     * copies registered to the consumer, in the order they were written. Snapshots written
+     * before copies on loan were stored have none: every copy is in stock.
+     * <p>
+     * A record is checked before it is passed on, since the checksum is only verified at
+     * the end: a negative or overflowing count fails the read.
+     * </p>
+     * @param consumer receives each book, its quantity and its registered copies
+     * @return the number of books read
+     * @throws IOException if reading fails, or the snapshot is truncated, corrupt or of an
+     *                     unsupported version
+     */
+    public long read(RecordConsumer consumer) throws IOException {
+        ensure(Integer.BYTES + 1);
+        if (in.getInt() != SnapshotWriter.MAGIC) {
+            throw new IOException("Not a book library snapshot.");
+        }
+        byte version = in.get();
+        if (version != SnapshotWriter.VERSION && version != SnapshotWriter.VERSION_WITHOUT_LOANS
+                && version != SnapshotWriter.VERSION_WITHOUT_PRICES) {
+            throw new IOException("Unsupported snapshot version " + version + ".");
+        }
+
+        long books = 0;
+        while (true) {
+            ensure(1);
+            int tag = in.get() & 0xFF;
+            if (tag == SnapshotWriter.TAG_END) {
+                break;
+            }
+            if ((tag & SnapshotWriter.TAG_BOOK) == 0) {
+                throw new IOException("Corrupt snapshot: unknown tag " + tag + ".");
+            }
+            String title = getTitle();
+            String author = getString();
+            String genre = getString();
+            String language = getString();
+            int pages = (int) getVarLong();
+            double value;
+            if ((tag & SnapshotWriter.TAG_VALUE_CENTS) != 0) {
+                value = getVarLong() / 100.0;
+            } else {
+                ensure(Double.BYTES);
+                value = in.getDouble();
+            }
+            boolean priced = (tag & SnapshotWriter.TAG_PRICE) != 0;
+            double price = 0;
+            if (priced) {
+                ensure(Double.BYTES);
+                price = in.getDouble();
+            }
+            long quantity = getVarLong();
+            long onLoan = version == SnapshotWriter.VERSION ? getVarLong() : 0;
+            if (quantity < 0 || onLoan < 0 || quantity + onLoan > Integer.MAX_VALUE) {
+                throw new IOException("Corrupt snapshot: invalid quantity " + quantity + " with "
+                        + onLoan + " copies on loan.");
+            }
+            int type = tag >> SnapshotWriter.TYPE_SHIFT & 0x03;
+            int flags = tag & SnapshotWriter.FLAGS_MASK;
+            Book book;
+            try {
+                book = priced
+                        ? BookCodec.newBook(type, flags, title, author, genre, language, pages, value, price)
+                        : BookCodec.newBook(type, flags, title, author, genre, language, pages, value);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Corrupt snapshot: " + e.getMessage(), e);
+            }
+            consumer.accept(book, (int) quantity, (int) (quantity + onLoan));
+            books++;
+        }
+
+        crc.update(in.duplicate().position(checked).limit(in.position()));
+        long expectedBooks = getVarLong();
+        ensure(Integer.BYTES);
+        int expectedCrc = in.getInt();
+        if (expectedBooks != books || expectedCrc != (int) crc.getValue()) {
+            throw new IOException("Corrupt snapshot: checksum or book count does not match.");
+        }
+        return books;
+    }
+
+    /**
+     * Closes the channel.
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads a length-prefixed title.
+     * @return the title, may be null
+     * @throws IOException if reading fails
+     */
+    private String getTitle() throws IOException {
+        long length = getVarLong();
+        return length == 0 ? null : getUtf8(length - 1);
+    }
+
+    /**
+     * Reads a dictionary reference and resolves it.
+     * @return the string, may be null
+     * @throws IOException if reading fails or the reference is invalid
+     */
+    private String getString() throws IOException {
+        long ref = getVarLong();
+        if (ref == SnapshotWriter.REF_NULL) {
+            return null;
+        }
+        if (ref == SnapshotWriter.REF_INLINE) {
+            String value = getUtf8(getVarLong());
+            if (dictionary.size() < SnapshotWriter.MAX_DICTIONARY) {
+                dictionary.add(value);
+            }
+            return value;
+        }
+        long entry = ref - SnapshotWriter.REF_BASE;
+        if (entry >= dictionary.size()) {
+            throw new IOException("Corrupt snapshot: unknown string " + entry + ".");
+        }
+        return dictionary.get((int) entry);
+    }
+
+    /**
+     * Reads a UTF-8 string of the given length.
+     * @param length the length in bytes
+     * @return the string
+     * @throws IOException if reading fails
+     */
+    private String getUtf8(long length) throws IOException {
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IOException("Corrupt snapshot: string of " + length + " bytes.");
+        }
+        int size = (int) length;
+        ensure(size);
+        if (text.length < size) {
+            text = new byte[Math.max(size, text.length * 2)];
+        }
+        in.get(text, 0, size);
+        return new String(text, 0, size, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads an unsigned LEB128 varint.
+     * @return the value
+     * @throws IOException if reading fails or the varint is too long
+     */
+    private long getVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            ensure(1);
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt snapshot: varint too long.");
+    }
+
+    /**
+     * Makes sure the given number of bytes can be read from {@link #in}, mapping the next
+     * window of the file or reading more from the channel.
+     * @param size the number of bytes
+     * @throws IOException if reading fails or the snapshot ends first
+     */
+    private void ensure(int size) throws IOException {
+        if (in.remaining() >= size) {
+            return;
+        }
+        crc.update(in.duplicate().position(checked).limit(in.position()));
+        if (file != null) {
+            windowStart += in.position();
+            long length = Math.min(Math.max(WINDOW_SIZE, size), file.size() - windowStart);
+            if (length < size) {
+                throw new IOException("Truncated snapshot.");
+            }
+            in = file.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+        } else {
+            in.compact();
+            if (in.capacity() < size) {
+                in = ByteBuffer.allocateDirect(Math.max(size, in.capacity() * 2)).put(in.flip());
+            }
+            while (in.position() < size && !endOfInput) {
+                endOfInput = channel.read(in) < 0;
+            }
+            in.flip();
+            if (in.remaining() < size) {
+                throw new IOException("Truncated snapshot.");
+            }
+        }
+        checked = 0;
+    }
+
+    /**
+     * Receives the books of a snapshot as it is {@link #read(RecordConsumer) read}.
+     */
+    @FunctionalInterface
+    public interface RecordConsumer {
+        /**
+         * Receives a book.
+         * @param book       the book
+         * @param quantity   the number of copies in stock
+         * @param registered the number of copies registered, in stock or on loan
+         */
+        void accept(Book book, int quantity, int registered);
+    }
+}
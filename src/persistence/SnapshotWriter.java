@@ -0,0 +1,317 @@
+package persistence;
+
+import book.Book;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Writes a snapshot of books, their quantities and their registered copies in a compact,
+ * versioned binary format.
+ * <p>
+ * A snapshot starts with the magic number "BLSN" and a version byte, followed by one
+ * record per book and a trailer:
+ * <ul>
+ *     <li>a book record starts with a tag byte holding the book type, the
+ *     signed/rare/illustration flags, whether the base value is stored in cents and
+ *     whether a price follows. The title follows as a length-prefixed UTF-8 string, then
+ *     the author, genre and language as dictionary references, the page count, the base
+ *     value, either as a varint number of cents or as an 8 byte double, the price, the
+ *     quantity in stock and the number of copies on loan, the registered copies not in
+ *     stock. The price, the value after the pricing rules, is stored as an 8 byte
+ *     double for books priced otherwise than by {@link book.PricingRules#DEFAULT}; the
+ *     reader prices the other books with the default rules again,</li>
+ *     <li>the trailer is a zero tag byte, the number of books and the CRC-32 of everything
+ *     before the book count.</li>
+ * </ul>
+ * All integers are unsigned LEB128 varints. A dictionary reference is 0 for a missing
+ * string, 1 for a string written in place, which becomes the next dictionary entry while
+ * the dictionary has fewer than {@value #MAX_DICTIONARY} entries, or the entry number
+ * plus 2. Authors, genres and languages repeat across books, so most of them take one or
+ * two bytes, and the dictionary bound keeps the memory of the writer and the reader
+ * small however large the catalog is.
+ * </p>
+ * <p>
+ * Records are encoded into a direct buffer, which the channel writes without copying it
+ * again. Books are written as they are passed in, so a catalog never has to be in
+ * memory as a whole. Use a {@link SnapshotReader} to read the snapshot back.
+ * </p>
+ * <p>
+ * Example Usage:
+ * <pre>
+ * try (SnapshotWriter writer = SnapshotWriter.create(Path.of("catalog.snapshot"))) {
+ *     writer.write(book, 3, 5);
+ * }
+ * </pre>
+ * </p>
+ */
+public class SnapshotWriter implements Closeable {
+
+    /** Magic number at the start of every snapshot ("BLSN"). */
+    static final int MAGIC = 0x424C534E;
+
+    /** Version of the snapshot format. */
+    static final byte VERSION = 3;
+
+    /** Version of the snapshot format before copies on loan were stored; still read. */
+    static final byte VERSION_WITHOUT_LOANS = 2;
+
+    /** Version of the snapshot format before prices were stored; still read. */
+    static final byte VERSION_WITHOUT_PRICES = 1;
+
+    /** Tag byte ending the records. */
+    static final int TAG_END = 0;
+
+    /** Tag bit marking a book record. */
+    static final int TAG_BOOK = 0x80;
+
+    /** Tag bit of a book whose price follows its base value. */
+    static final int TAG_PRICE = 0x40;
+
+    /** Tag bit of a value stored as a number of cents. */
+    static final int TAG_VALUE_CENTS = 0x08;
+
+    /** Shift of the book type in the tag byte. */
+    static final int TYPE_SHIFT = 4;
+
+    /** Mask of the flag bits in the tag byte. */
+    static final int FLAGS_MASK = 0x07;
+
+    /** Dictionary reference of a missing string. */
+    static final int REF_NULL = 0;
+
+    /** Dictionary reference of a string written in place. */
+    static final int REF_INLINE = 1;
+
+    /** Number of dictionary references that are not entries. */
+    static final int REF_BASE = 2;
+
+    /** Largest number of dictionary entries. */
+    static final int MAX_DICTIONARY = 1 << 16;
+
+    /** Size of the encoding buffer in bytes. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Largest number of cents stored as a varint; larger values are stored as doubles. */
+    private static final long MAX_CENTS = 1L << 53;
+
+    /** The channel the snapshot is written to. */
+    private final WritableByteChannel channel;
+
+    /** Checksum of the snapshot. */
+    private final CRC32 crc = new CRC32();
+
+    /** Dictionary entry numbers of the strings written so far. */
+    private final Map<String, Integer> dictionary = new HashMap<>();
+
+    /** Buffer the records are encoded into. */
+    private ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    /** Number of books written. */
+    private long books;
+
+    /** Number of bytes handed to the channel. */
+    private long bytes;
+
+    /** Whether the trailer has been written. */
+    private boolean closed;
+
+    /**
+     * Creates a writer and writes the header.
+     * @param channel the channel to write to; closed with the writer
+     * @throws IOException if writing fails
+     */
+    public SnapshotWriter(WritableByteChannel channel) throws IOException {
+        this.channel = channel;
+        out.putInt(MAGIC).put(VERSION);
+    }
+
+    /**
+     * Creates or replaces a snapshot file.
+     * @param path the path of the file
+     * @return the writer
+     * @throws IOException if the file cannot be created
+     */
+    public static SnapshotWriter create(Path path) throws IOException {
+        return new SnapshotWriter(FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+    }
+
+    /**
+     * Appends a book and its quantity, with no copies on loan.
+     * @param book     the book
+     * @param quantity the quantity; must not be negative
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if {@code quantity < 0}
+     * @throws IllegalStateException if the writer is closed
+     */
+    public void write(Book book, int quantity) throws IOException {
+        write(book, quantity, quantity);
+    }
+
+    /**
+     * Appends a book, its quantity in stock and its number of copies registered.
+     * @param book       the book
+     * @param quantity   the quantity in stock; must not be negative
+     * @param registered the number of copies registered; must not be less than {@code quantity}
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if {@code quantity < 0} or {@code registered < quantity}
+     * @throws IllegalStateException if the writer is closed
+     */
+    public void write(Book book, int quantity, int registered) throws IOException {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity cannot be negative.");
+        }
+        if (registered < quantity) {
+            throw new IllegalArgumentException("Registered copies cannot be fewer than the quantity.");
+        }
+        if (closed) {
+            throw new IllegalStateException("The snapshot is closed.");
+        }
+        byte[] title = book.getTitle() == null ? null : book.getTitle().getBytes(StandardCharsets.UTF_8);
+        ensure(1 + 5 + (title == null ? 0 : title.length));
+
+        double value = book.getBaseValue();
+        long cents = Math.round(value * 100);
+        boolean inCents = cents >= 0 && cents < MAX_CENTS && cents / 100.0 == value;
+        boolean priced = !BookCodec.hasDefaultPrice(book);
+        out.put((byte) (TAG_BOOK | BookCodec.typeOf(book) << TYPE_SHIFT | (priced ? TAG_PRICE : 0)
+                | (inCents ? TAG_VALUE_CENTS : 0) | BookCodec.flagsOf(book)));
+        if (title == null) {
+            putVarLong(REF_NULL);
+        } else {
+            putVarLong(title.length + 1);
+            out.put(title);
+        }
+        putString(book.getAuthor());
+        putString(book.getGenre());
+        putString(book.getLanguage());
+        ensure(5 + 10 + 8 + 5 + 5);
+        putVarLong(book.getPageNumbers());
+        if (inCents) {
+            putVarLong(cents);
+        } else {
+            out.putDouble(value);
+        }
+        if (priced) {
+            out.putDouble(book.getValue());
+        }
+        putVarLong(quantity);
+        putVarLong(registered - quantity);
+        books++;
+    }
+
+    /**
+     * Returns the number of books written.
+     * @return the number of books
+     */
+    public long getBooks() {
+        return books;
+    }
+
+    /**
+     * Returns the size of the snapshot written so far.
+     * @return the number of bytes, including those still buffered
+     */
+    public long getBytes() {
+        return bytes + out.position();
+    }
+
+    /**
+     * Writes the trailer, flushes the buffer and closes the channel.
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            ensure(1 + 10 + Integer.BYTES);
+            out.put((byte) TAG_END);
+            crc.update(out.duplicate().flip());
+            putVarLong(books);
+            out.putInt((int) crc.getValue());
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Appends a dictionary reference, writing the string in place the first time.
+     * @param value the string, may be null
+     * @throws IOException if writing fails
+     */
+    private void putString(String value) throws IOException {
+        ensure(5);
+        if (value == null) {
+            putVarLong(REF_NULL);
+            return;
+        }
+        Integer entry = dictionary.get(value);
+        if (entry != null) {
+            putVarLong(entry + REF_BASE);
+            return;
+        }
+        if (dictionary.size() < MAX_DICTIONARY) {
+            dictionary.put(value, dictionary.size());
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        ensure(5 + 5 + utf8.length);
+        putVarLong(REF_INLINE);
+        putVarLong(utf8.length);
+        out.put(utf8);
+    }
+
+    /**
+     * Appends an unsigned LEB128 varint; the buffer must have room for it.
+     * @param value the non-negative value
+     */
+    private void putVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * Makes room for the given number of bytes, writing out the buffer and growing it if
+     * needed.
+     * @param size the number of bytes
+     * @throws IOException if writing fails
+     */
+    private void ensure(int size) throws IOException {
+        if (out.remaining() >= size) {
+            return;
+        }
+        crc.update(out.duplicate().flip());
+        drain();
+        if (out.capacity() < size) {
+            out = ByteBuffer.allocateDirect(Math.max(size, out.capacity() * 2));
+        }
+    }
+
+    /**
+     * Writes the buffer to the channel and clears it.
+     * @throws IOException if writing fails
+     */
+    private void drain() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            bytes += channel.write(out);
+        }
+        out.clear();
+    }
+}
@@ -0,0 +1,214 @@
+package recommend;
+
+import java.util.Arrays;
+
+/**
+ * A map of non-negative int keys to int counts, with open addressing over two int arrays.
+ * <p>
+ * Unlike a {@code HashMap<Integer, Integer>}, an entry costs eight bytes of the arrays
+ * and no objects. Keys are stored plus one, so 0 marks an empty slot. Entries are never
+ * removed one by one; {@link #retainTop(int)} and {@link #removeZeros()} rebuild the map
+ * without the entries dropped. Not thread-safe.
+ * </p>
+ */
+final class IntIntMap {
+
+    /** Keys plus one; 0 for an empty slot. */
+    private int[] keys;
+
+    /** Counts of the keys in the same slots. */
+    private int[] counts;
+
+    /** Number of entries. */
+    private int size;
+
+    /**
+     * Creates an empty map.
+     * @param expected the number of entries the map holds without growing
+     */
+    IntIntMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        keys = new int[capacity];
+        counts = new int[capacity];
+    }
+
+    /**
+     * Adds to the count of a key, adding the key if needed.
+     * @param key   the key; must not be negative
+     * @param delta the amount added
+     * @return {@code true} if the key was added
+     */
+    boolean add(int key, int delta) {
+        int slot = slot(keys, key);
+        if (keys[slot] != 0) {
+            counts[slot] += delta;
+            return false;
+        }
+        keys[slot] = key + 1;
+        counts[slot] = delta;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the count of a key.
+     * @param key the key
+     * @return the count, or 0 if the key is absent
+     */
+    int get(int key) {
+        int slot = slot(keys, key);
+        return keys[slot] == 0 ? 0 : counts[slot];
+    }
+
+    /**
+     * Returns the number of entries.
+     * @return the number of entries
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of slots, for iterating with {@link #keyAt(int)}.
+     * @return the number of slots
+     */
+    int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the key in a slot.
+     * @param slot the slot
+     * @return the key, or -1 if the slot is empty
+     */
+    int keyAt(int slot) {
+        return keys[slot] - 1;
+    }
+
+    /**
+     * Returns the count in a slot.
+     * @param slot the slot
+     * @return the count; meaningless if the slot is empty
+     */
+    int countAt(int slot) {
+        return counts[slot];
+    }
+
+    /**
+     * Keeps the entries with the largest counts; ties at the smallest kept count are
+     * broken by slot order.
+     * @param limit the number of entries kept
+     * @return the number of entries removed
+     */
+    int retainTop(int limit) {
+        if (size <= limit) {
+            return 0;
+        }
+        int[] sorted = new int[size];
+        int n = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                sorted[n++] = counts[slot];
+            }
+        }
+        Arrays.sort(sorted);
+        int threshold = sorted[size - limit];
+        int above = 0;
+        for (int count : sorted) {
+            above += count > threshold ? 1 : 0;
+        }
+        return rebuild(threshold, limit - above);
+    }
+
+    /**
+     * Removes the entries with a count of 0.
+     * @return the number of entries removed
+     */
+    int removeZeros() {
+        return rebuild(0, 0);
+    }
+
+    /**
+     * Halves every count, rounding down.
+     */
+    void halve() {
+        for (int slot = 0; slot < keys.length; slot++) {
+            counts[slot] >>>= 1;
+        }
+    }
+
+    /**
+     * Rebuilds the map with the entries above a threshold and some of those at it.
+     * @param threshold the count above which entries are kept
+     * @param ties      the number of entries with exactly the threshold count kept
+     * @return the number of entries removed
+     */
+    private int rebuild(int threshold, int ties) {
+        int above = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            above += keys[slot] != 0 && counts[slot] > threshold ? 1 : 0;
+        }
+        int kept = Math.min(size, above + ties);
+        if (kept == size) {
+            return 0;
+        }
+        IntIntMap rebuilt = new IntIntMap(kept);
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] == 0) {
+                continue;
+            }
+            if (counts[slot] > threshold || counts[slot] == threshold && ties-- > 0) {
+                rebuilt.add(keys[slot] - 1, counts[slot]);
+            }
+        }
+        int removed = size - rebuilt.size;
+        keys = rebuilt.keys;
+        counts = rebuilt.counts;
+        size = rebuilt.size;
+        return removed;
+    }
+
+    /**
+     * Returns the number of bytes held by the arrays.
+     * @return the number of bytes
+     */
+    long bytes() {
+        return 2L * Integer.BYTES * keys.length;
+    }
+
+    /**
+     * Moves the entries to arrays of another capacity.
+     * @param capacity the new capacity, a power of two
+     */
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new int[capacity];
+        counts = new int[capacity];
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != 0) {
+                int target = slot(keys, oldKeys[slot] - 1);
+                keys[target] = oldKeys[slot];
+                counts[target] = oldCounts[slot];
+            }
+        }
+    }
+
+    /**
+     * Finds the slot of a key, or the empty slot where it belongs.
+     * @param keys the key array
+     * @param key  the key
+     * @return the slot
+     */
+    private static int slot(int[] keys, int key) {
+        int mask = keys.length - 1;
+        int h = key * 0x9E3779B9;
+        int slot = (h ^ h >>> 16) & mask;
+        while (keys[slot] != 0 && keys[slot] != key + 1) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
@@ -0,0 +1,510 @@
+package recommend;
+
+import book.Book;
+import catalog.BookIndexes;
+import catalog.BookQuery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recommends the titles that patrons borrowed together, from a sparse co-occurrence
+ * matrix updated on every borrow.
+ * <p>
+ * Every book borrowed gets a number, and the row of the matrix for that number is an
+ * {@link IntIntMap} from the numbers of other books to the number of times a patron
+ * borrowed both within a few borrows of each other. {@link #recordBorrow(String, Book)}
+ * adds one to the pair of the book and each of the last books of the same patron, in
+ * both rows, and locks only the rows it updates. {@link #related(Book, int)} picks the
+ * largest counts of one row, which takes microseconds whatever the size of the catalog.
+ * </p>
+ * <p>
+ * Memory is bounded in three ways:
+ * <ul>
+ *     <li>a row keeps the neighbors with the largest counts: once it holds twice the
+ *     configured number of neighbors it is pruned back to that number,</li>
+ *     <li>once the whole matrix holds more entries than its budget, every count is
+ *     halved and the pairs falling to 0 are dropped, so old borrowing patterns fade
+ *     and recent ones stay,</li>
+ *     <li>only the last borrows of the most recently active patrons are remembered.</li>
+ * </ul>
+ * A book never borrowed costs nothing, so a catalog of millions of titles only pays for
+ * the titles in circulation.
+ * </p>
+ * <p>
+ * Titles with few co-borrowed neighbors, typically new ones, are completed from the
+ * {@link BookIndexes}: books of the same author, then of the same genre and language,
+ * then of the same genre.
+ * </p>
+ * <p>
+ * Example Usage:
+ * <pre>
+ * Recommender recommender = BookLibrary.BookLibrary().getRecommender();
+ * recommender.recordBorrow("patron-42", book);
+ * List&lt;Book&gt; alsoBorrowed = recommender.related(book, 5);
+ * </pre>
+ * </p>
+ */
+public class Recommender {
+
+    /** Initial length of the arrays by book number. */
+    private static final int INITIAL_BOOKS = 1024;
+
+    /** Initial capacity of a row. */
+    private static final int INITIAL_ROW = 4;
+
+    /** Approximate bytes of a row besides its arrays: the object and the array headers. */
+    private static final int ROW_BYTES = 56;
+
+    /** The row of the books never paired with another. */
+    private static final IntIntMap EMPTY = new IntIntMap(0);
+
+    /** Approximate bytes per book number: the map entry, the boxed number and the array slots. */
+    private static final int BYTES_PER_BOOK = 96;
+
+    /** Approximate bytes per remembered patron: the map entry, the id and the history. */
+    private static final int BYTES_PER_PATRON = 120;
+
+    /** The indexes completing the recommendations, or {@code null}. */
+    private final BookIndexes indexes;
+
+    /** Number of neighbors kept per book. */
+    private final int neighbors;
+
+    /** Number of entries of the matrix above which the counts decay. */
+    private final long maxEntries;
+
+    /** Number of previous borrows of a patron paired with a new one. */
+    private final int window;
+
+    /** Number of patrons whose borrows are remembered. */
+    private final int maxPatrons;
+
+    /** Numbers of the books borrowed so far. */
+    private final Map<Book, Integer> ids = new ConcurrentHashMap<>();
+
+    /**
+     * Books by number.
+     * <p>
+     * Written under the lock of this recommender before the number is published in
+     * {@link #ids}, and replaced by a larger copy when full, so a reader that got a number
+     * from {@link #ids} finds the book.
+     * </p>
+     */
+    private volatile Book[] books = new Book[INITIAL_BOOKS];
+
+    /**
+     * Rows of the matrix by book number, published like {@link #books}; {@code null} until
+     * the book is paired with another, so that books borrowed alone cost no row.
+     */
+    private volatile IntIntMap[] rows = new IntIntMap[INITIAL_BOOKS];
+
+    /** Number of books numbered. */
+    private int size;
+
+    /** Number of entries in all rows. */
+    private final AtomicLong entries = new AtomicLong();
+
+    /** Set while a thread halves the counts. */
+    private final AtomicBoolean decaying = new AtomicBoolean();
+
+    /**
+     * The last borrows of each patron, least recently active first.
+     * <p>
+     * A history holds the number of borrows recorded in slot 0 and the numbers of the
+     * last {@link #window} books in the following slots, used as a ring. Guarded by the
+     * map itself.
+     * </p>
+     */
+    private final LinkedHashMap<String, int[]> patrons;
+
+    /**
+     * Private constructor used by the {@link Builder}.
+     * @param builder the builder containing the settings
+     */
+    private Recommender(Builder builder) {
+        this.indexes = builder.indexes;
+        this.neighbors = builder.neighbors;
+        this.maxEntries = builder.maxEntries;
+        this.window = builder.window;
+        this.maxPatrons = builder.maxPatrons;
+        this.patrons = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+                return size() > maxPatrons;
+            }
+        };
+    }
+
+    /**
+     * Records that a patron borrowed a book.
+     * <p>
+     * The book is paired with each of the last books borrowed by the patron. A book the
+     * patron borrowed again within that window is not paired again.
+     * </p>
+     *
+     * @param patronId identifies the patron
+     * @param book     the book borrowed
+     */
+    public void recordBorrow(String patronId, Book book) {
+        int id = id(book);
+        int[] previous;
+        synchronized (patrons) {
+            int[] history = patrons.computeIfAbsent(patronId, patron -> new int[window + 1]);
+            int recorded = history[0];
+            int count = Math.min(recorded, window);
+            previous = new int[count];
+            for (int i = 0; i < count; i++) {
+                previous[i] = history[1 + i];
+                if (previous[i] == id) {
+                    return;
+                }
+            }
+            history[1 + recorded % window] = id;
+            history[0] = recorded + 1;
+        }
+        for (int other : previous) {
+            increment(id, other);
+            increment(other, id);
+        }
+    }
+
+    /**
+     * Returns the books most often borrowed together with a book.
+     * <p>
+     * The co-borrowed books come first, most often co-borrowed first. If there are fewer
+     * than {@code k}, the list is completed with similar books from the indexes, in
+     * registration order. The book itself is never returned.
+     * </p>
+     *
+     * @param book the book
+     * @param k    the maximum number of books returned
+     * @return the related books, at most {@code k}
+     */
+    public List<Book> related(Book book, int k) {
+        List<Book> related = new ArrayList<>(k);
+        if (k <= 0) {
+            return related;
+        }
+        Integer id = ids.get(book);
+        if (id != null) {
+            int[] topIds = new int[k];
+            int[] topCounts = new int[k];
+            int found = 0;
+            IntIntMap row = rows[id];
+            if (row == null) {
+                row = EMPTY;
+            }
+            synchronized (row) {
+                for (int slot = 0; slot < row.capacity(); slot++) {
+                    int other = row.keyAt(slot);
+                    int count = row.countAt(slot);
+                    if (other < 0 || count == 0 || found == k && count <= topCounts[k - 1]) {
+                        continue;
+                    }
+                    int i = found < k ? found++ : k - 1;
+                    for (; i > 0 && topCounts[i - 1] < count; i--) {
+                        topIds[i] = topIds[i - 1];
+                        topCounts[i] = topCounts[i - 1];
+                    }
+                    topIds[i] = other;
+                    topCounts[i] = count;
+                }
+            }
+            Book[] all = books;
+            for (int i = 0; i < found; i++) {
+                related.add(all[topIds[i]]);
+            }
+        }
+        if (related.size() < k && indexes != null) {
+            addSimilar(book, k, related);
+        }
+        return related;
+    }
+
+    /**
+     * Returns the number of books that were borrowed at least once.
+     * @return the number of books
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * Returns the number of pairs of books in the matrix.
+     * @return the number of pairs, counting each pair once per book
+     */
+    public long getEntries() {
+        return entries.get();
+    }
+
+    /**
+     * Estimates the memory used by the matrix, the book numbers and the patron histories.
+     * @return the approximate number of bytes
+     */
+    public long footprintBytes() {
+        IntIntMap[] all = rows;
+        int count;
+        synchronized (this) {
+            count = size;
+        }
+        long bytes = (long) all.length * 2 * Integer.BYTES + (long) count * BYTES_PER_BOOK;
+        for (int i = 0; i < count; i++) {
+            IntIntMap row = all[i];
+            if (row != null) {
+                synchronized (row) {
+                    bytes += row.bytes() + ROW_BYTES;
+                }
+            }
+        }
+        synchronized (patrons) {
+            bytes += (long) patrons.size() * (BYTES_PER_PATRON + (window + 1L) * Integer.BYTES);
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the number of a book, numbering it if it was never borrowed.
+     * @param book the book
+     * @return its number
+     */
+    private int id(Book book) {
+        Integer id = ids.get(book);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(book);
+            if (id != null) {
+                return id;
+            }
+            id = size;
+            Book[] currentBooks = books;
+            IntIntMap[] currentRows = rows;
+            if (id == currentBooks.length) {
+                currentBooks = Arrays.copyOf(currentBooks, id * 2);
+                currentRows = Arrays.copyOf(currentRows, id * 2);
+            }
+            currentBooks[id] = book;
+            books = currentBooks;
+            rows = currentRows;
+            size++;
+            ids.put(book, id);
+            return id;
+        }
+    }
+
+    /**
+     * Returns the row of a book, creating it if needed.
+     * @param id the number of the book
+     * @return its row
+     */
+    private synchronized IntIntMap row(int id) {
+        IntIntMap[] current = rows;
+        if (current[id] == null) {
+            IntIntMap created = new IntIntMap(INITIAL_ROW);
+            // rows are used under their own lock, which then sees the arrays of the new row
+            synchronized (created) {
+                current[id] = created;
+            }
+        }
+        return current[id];
+    }
+
+    /**
+     * Adds one to the count of a pair in the row of its first book, pruning the row and
+     * decaying the matrix when they grow past their limits.
+     * @param from the number of the book whose row is updated
+     * @param to   the number of the other book
+     */
+    private void increment(int from, int to) {
+        IntIntMap row = rows[from];
+        if (row == null) {
+            row = row(from);
+        }
+        int added = 0;
+        synchronized (row) {
+            if (row.add(to, 1)) {
+                added = 1;
+                if (row.size() >= 2 * neighbors) {
+                    added -= row.retainTop(neighbors);
+                }
+            }
+        }
+        if (added != 0 && entries.addAndGet(added) > maxEntries) {
+            decay();
+        }
+    }
+
+    /**
+     * Halves every count and drops the pairs falling to 0, unless another thread does.
+     */
+    private void decay() {
+        if (!decaying.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            IntIntMap[] all = rows;
+            int count;
+            synchronized (this) {
+                count = size;
+            }
+            for (int i = 0; i < count; i++) {
+                IntIntMap row = all[i];
+                if (row == null) {
+                    continue;
+                }
+                int removed;
+                synchronized (row) {
+                    row.halve();
+                    removed = row.removeZeros();
+                }
+                entries.addAndGet(-removed);
+            }
+        } finally {
+            decaying.set(false);
+        }
+    }
+
+    /**
+     * Completes a list with the books of the same author, then of the same genre and
+     * language, then of the same genre.
+     * @param book    the book
+     * @param k       the length the list is completed to
+     * @param related the list, completed in place
+     */
+    private void addSimilar(Book book, int k, List<Book> related) {
+        if (book.getAuthor() != null) {
+            addFound(new BookQuery.Builder().author(book.getAuthor()).build(), book, k, related);
+        }
+        if (book.getGenre() != null) {
+            if (book.getLanguage() != null) {
+                addFound(new BookQuery.Builder().genre(book.getGenre()).language(book.getLanguage()).build(),
+                        book, k, related);
+            }
+            addFound(new BookQuery.Builder().genre(book.getGenre()).build(), book, k, related);
+        }
+    }
+
+    /**
+     * Adds the books found by a query that are not yet in a list, up to a length.
+     * @param query   the query
+     * @param book    the book the list relates to, never added
+     * @param k       the length the list is completed to
+     * @param related the list, completed in place
+     */
+    private void addFound(BookQuery query, Book book, int k, List<Book> related) {
+        if (related.size() >= k) {
+            return;
+        }
+        // the book itself and the books already listed may be among the first found
+        for (Book found : indexes.find(query, k + related.size() + 1, candidate -> true)) {
+            if (related.size() >= k) {
+                return;
+            }
+            if (!found.equals(book) && !related.contains(found)) {
+                related.add(found);
+            }
+        }
+    }
+
+    /**
+     * Builder for creating a {@link Recommender}.
+     */
+    public static class Builder {
+        /** The indexes completing the recommendations (required, may be null). */
+        private final BookIndexes indexes;
+
+        /** Number of neighbors kept per book (optional, default is 32). */
+        private int neighbors = 32;
+
+        /** Number of entries above which the counts decay (optional, default is 4 million). */
+        private long maxEntries = 4_000_000;
+
+        /** Number of previous borrows paired with a new one (optional, default is 8). */
+        private int window = 8;
+
+        /** Number of patrons remembered (optional, default is 100000). */
+        private int maxPatrons = 100_000;
+
+        /**
+         * Creates a new builder for a recommender completing its recommendations from
+         * the given indexes.
+         * @param indexes the indexes of the library, or {@code null} to recommend only
+         *                co-borrowed books
+         */
+        public Builder(BookIndexes indexes) {
+            this.indexes = indexes;
+        }
+
+        /**
+         * Sets the number of neighbors kept per book.
+         * @param neighbors the number of neighbors; must be greater than 0
+         * @return this builder instance
+         * @throws IllegalArgumentException if {@code neighbors <= 0}
+         */
+        public Builder neighbors(int neighbors) {
+            if (neighbors <= 0) {
+                throw new IllegalArgumentException("Number of neighbors must be greater than 0.");
+            }
+            this.neighbors = neighbors;
+            return this;
+        }
+
+        /**
+         * Sets the number of entries of the matrix above which every count is halved.
+         * @param maxEntries the number of entries; must be greater than 0
+         * @return this builder instance
+         * @throws IllegalArgumentException if {@code maxEntries <= 0}
+         */
+        public Builder maxEntries(long maxEntries) {
+            if (maxEntries <= 0) {
+                throw new IllegalArgumentException("Maximum number of entries must be greater than 0.");
+            }
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * Sets the number of previous borrows of a patron paired with a new borrow.
+         * @param window the number of borrows; must be greater than 0
+         * @return this builder instance
+         * @throws IllegalArgumentException if {@code window <= 0}
+         */
+        public Builder window(int window) {
+            if (window <= 0) {
+                throw new IllegalArgumentException("Window must be greater than 0.");
+            }
+            this.window = window;
+            return this;
+        }
+
+        /**
+         * Sets the number of patrons whose last borrows are remembered.
+         * @param maxPatrons the number of patrons; must be greater than 0
+         * @return this builder instance
+         * @throws IllegalArgumentException if {@code maxPatrons <= 0}
+         */
+        public Builder maxPatrons(int maxPatrons) {
+            if (maxPatrons <= 0) {
+                throw new IllegalArgumentException("Maximum number of patrons must be greater than 0.");
+            }
+            this.maxPatrons = maxPatrons;
+            return this;
+        }
+
+        /**
+         * Builds the recommender.
+         * @return the new recommender
+         */
+        public Recommender build() {
+            return new Recommender(this);
+        }
+    }
+}
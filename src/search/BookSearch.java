@@ -0,0 +1,172 @@
+package search;
+
+import book.Book;
+import bookLibrary.InventoryListener;
+import bookLibrary.TitleNormalizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Search over the titles and authors of the books in the library.
+ * <p>
+ * The search is attached to the {@link bookLibrary.BookLibrary} as an
+ * {@link InventoryListener} and indexes every book when it is registered. Titles and
+ * authors are normalized with {@link TitleNormalizer}, so queries ignore case and
+ * accents, and each is indexed twice:
+ * <ul>
+ *     <li>in a {@link PrefixTrie}, which completes a prefix to the shortest matching
+ *     titles and authors, for autocomplete,</li>
+ *     <li>in a {@link TrigramIndex}, which finds titles and authors similar to a
+ *     misspelled query.</li>
+ * </ul>
+ * Results are lists of books ranked best first; a book matching by both its title and
+ * its author is listed once.
+ * </p>
+ * <p>
+ * The search is thread-safe. Queries run in parallel; registrations take a write lock.
+ * </p>
+ * <p>
+ * Example Usage:
+ * <pre>
+ * List&lt;Book&gt; books = BookLibrary.BookLibrary().getSearch().search("oko za", 5);
+ * </pre>
+ * </p>
+ */
+public class BookSearch implements InventoryListener {
+
+    /** Guards the books and both indexes. */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Indexed books by their number. */
+    private Book[] books = new Book[64];
+
+    /**
+     * Normalized keys by document number.
+     * <p>
+     * Document {@code 2 * n} is the title and {@code 2 * n + 1} the author of book {@code n};
+     * a book without an author has no author document.
+     * </p>
+     */
+    private String[] keys = new String[128];
+
+    /** Number of indexed books. */
+    private int bookCount;
+
+    /** Prefix index of the keys. */
+    private final PrefixTrie prefixes = new PrefixTrie(doc -> keys[doc]);
+
+    /** Trigram index of the keys. */
+    private final TrigramIndex trigrams = new TrigramIndex(doc -> keys[doc]);
+
+    @Override
+    public void bookRegistered(Book book, int quantity) {
+        lock.writeLock().lock();
+        try {
+            if (bookCount == books.length) {
+                books = Arrays.copyOf(books, bookCount * 2);
+                keys = Arrays.copyOf(keys, bookCount * 4);
+            }
+            int id = bookCount++;
+            books[id] = book;
+            index(2 * id, book.getTitle());
+            index(2 * id + 1, book.getAuthor());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void quantityChanged(Book book, int delta, int quantity) {
+        // the indexes do not depend on the quantity
+    }
+
+    /**
+     * Completes a prefix of a title or an author.
+     * <p>
+     * Books whose title or author starts with the prefix are ranked by the length of the
+     * matching title or author, shortest first.
+     * </p>
+     *
+     * @param prefix the beginning of a title or an author (case- and accent-insensitive)
+     * @param limit  the maximum number of books returned
+     * @return the matching books, best first
+     */
+    public List<Book> complete(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            return toBooks(prefixes.complete(TitleNormalizer.normalize(prefix), 2 * limit), limit, new LinkedHashSet<>());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds books whose title or author is similar to a possibly misspelled query.
+     *
+     * @param query the title or author to look for (case- and accent-insensitive)
+     * @param limit the maximum number of books returned
+     * @return the matching books, most similar first
+     */
+    public List<Book> findSimilar(String query, int limit) {
+        lock.readLock().lock();
+        try {
+            return toBooks(trigrams.search(TitleNormalizer.normalize(query), 2 * limit), limit, new LinkedHashSet<>());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches for books, listing completions of the query before similar books.
+     *
+     * @param query the beginning of, or a possibly misspelled, title or author
+     * @param limit the maximum number of books returned
+     * @return the matching books, best first
+     */
+    public List<Book> search(String query, int limit) {
+        String key = TitleNormalizer.normalize(query);
+        lock.readLock().lock();
+        try {
+            Set<Book> found = new LinkedHashSet<>();
+            toBooks(prefixes.complete(key, 2 * limit), limit, found);
+            return toBooks(trigrams.search(key, 2 * limit), limit, found);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a title or an author to both indexes.
+     * @param doc   the document number
+     * @param value the title or author, may be null
+     */
+    private void index(int doc, String value) {
+        if (value == null) {
+            return;
+        }
+        String key = TitleNormalizer.normalize(value);
+        keys[doc] = key;
+        prefixes.insert(doc, key);
+        trigrams.add(doc, key);
+    }
+
+    /**
+     * Adds the books of the documents to a set until it holds enough books.
+     * @param docs  the documents, best first
+     * @param limit the maximum number of books
+     * @param found the books found so far
+     * @return the books, best first
+     */
+    private List<Book> toBooks(int[] docs, int limit, Set<Book> found) {
+        for (int i = 0; i < docs.length && found.size() < limit; i++) {
+            found.add(books[docs[i] / 2]);
+        }
+        return new ArrayList<>(found);
+    }
+}
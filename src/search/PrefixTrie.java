@@ -0,0 +1,275 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Burst trie over normalized keys, answering ranked prefix queries.
+ * <p>
+ * Documents are small integers whose keys are looked up through a function given to
+ * the constructor. A node starts as a leaf holding a bucket of up to {@value #BURST_SIZE}
+ * documents; when the bucket overflows, the node bursts into one child per next
+ * character. This keeps the number of nodes a fraction of the number of characters
+ * indexed. Every inner node also caches the {@value #TOP_SIZE} best ranked documents
+ * below it, so a query for a short prefix reads the cache instead of walking the subtree;
+ * a query ending in a leaf filters its small bucket.
+ * </p>
+ * <p>
+ * Documents are ranked by the length of their key, shortest first, so the closest
+ * completion of a prefix comes first; equal lengths are ranked by document number.
+ * The trie is not thread-safe; {@link BookSearch} guards it with a read-write lock.
+ * </p>
+ */
+final class PrefixTrie {
+
+    /** Number of documents a leaf holds before it bursts. */
+    private static final int BURST_SIZE = 32;
+
+    /** Number of best documents cached at every node. */
+    static final int TOP_SIZE = 32;
+
+    /** Label of the child holding documents whose key ends at the parent. */
+    private static final char END = '\0';
+
+    /** Looks up the key of a document. */
+    private final IntFunction<String> keys;
+
+    /** The root node. */
+    private final Node root = new Node(0, false);
+
+    /**
+     * Creates an empty trie.
+     * @param keys the function returning the normalized key of a document
+     */
+    PrefixTrie(IntFunction<String> keys) {
+        this.keys = keys;
+    }
+
+    /**
+     * Adds a document.
+     * @param doc the document number
+     * @param key the normalized key of the document
+     */
+    void insert(int doc, String key) {
+        Node node = root;
+        while (true) {
+            node.offerTop(doc, key.length());
+            if (node.bucket != null) {
+                node.addToBucket(doc);
+                if (node.bucketSize > BURST_SIZE && !node.terminal) {
+                    burst(node);
+                }
+                return;
+            }
+            node = node.childFor(charAt(key, node.depth));
+        }
+    }
+
+    /**
+     * Returns the best ranked documents whose key starts with the prefix.
+     * @param prefix the normalized prefix
+     * @param limit  the maximum number of documents
+     * @return the documents, best first
+     */
+    int[] complete(String prefix, int limit) {
+        Node node = root;
+        while (node.bucket == null && node.depth < prefix.length()) {
+            node = node.child(prefix.charAt(node.depth));
+            if (node == null) {
+                return new int[0];
+            }
+        }
+        if (node.bucket == null && limit <= TOP_SIZE) {
+            return Arrays.copyOf(node.top, Math.min(limit, node.topSize));
+        }
+
+        List<Integer> found = new ArrayList<>();
+        collect(node, prefix, found);
+        found.sort(Comparator.comparingInt((Integer doc) -> keys.apply(doc).length()).thenComparingInt(doc -> doc));
+        return found.stream().limit(limit).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Adds all documents below a node whose key starts with the prefix.
+     * @param node   the node
+     * @param prefix the normalized prefix
+     * @param found  the list to add the documents to
+     */
+    private void collect(Node node, String prefix, List<Integer> found) {
+        if (node.bucket != null) {
+            for (int i = 0; i < node.bucketSize; i++) {
+                if (keys.apply(node.bucket[i]).startsWith(prefix)) {
+                    found.add(node.bucket[i]);
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < node.childCount; i++) {
+            collect(node.children[i], prefix, found);
+        }
+    }
+
+    /**
+     * Turns a leaf into an inner node, moving its documents into new children.
+     * @param node the overflowing leaf
+     */
+    private void burst(Node node) {
+        int[] docs = node.bucket;
+        int size = node.bucketSize;
+        node.bucket = null;
+        node.bucketSize = 0;
+        node.top = new int[TOP_SIZE];
+        node.topLengths = new int[TOP_SIZE];
+        for (int i = 0; i < size; i++) {
+            String key = keys.apply(docs[i]);
+            node.offerTop(docs[i], key.length());
+            node.childFor(charAt(key, node.depth)).addToBucket(docs[i]);
+        }
+        for (int i = 0; i < node.childCount; i++) {
+            Node child = node.children[i];
+            if (child.bucketSize > BURST_SIZE && !child.terminal) {
+                burst(child);
+            }
+        }
+    }
+
+    /**
+     * Returns the character of a key at a depth, or {@link #END} past its end.
+     * @param key   the key
+     * @param depth the depth
+     * @return the character
+     */
+    private static char charAt(String key, int depth) {
+        return depth < key.length() ? key.charAt(depth) : END;
+    }
+
+    /**
+     * Node of the trie: a leaf with a bucket of documents, or an inner node with children.
+     */
+    private static final class Node {
+        /** Number of characters consumed on the path to this node. */
+        final int depth;
+
+        /** Whether all keys in this node end before its depth; such a leaf never bursts. */
+        final boolean terminal;
+
+        /** Documents of a leaf, {@code null} for an inner node. */
+        int[] bucket = new int[4];
+
+        /** Number of documents in the bucket. */
+        int bucketSize;
+
+        /** Labels of the children, sorted. */
+        char[] labels = new char[0];
+
+        /** Children, in the order of their labels. */
+        Node[] children = new Node[0];
+
+        /** Number of children. */
+        int childCount;
+
+        /** Best ranked documents below an inner node, {@code null} for a leaf. */
+        int[] top;
+
+        /** Key lengths of the documents in {@link #top}. */
+        int[] topLengths;
+
+        /** Number of documents in {@link #top}. */
+        int topSize;
+
+        /**
+         * Creates a leaf.
+         * @param depth    the depth of the node
+         * @param terminal whether the keys of the node end before its depth
+         */
+        Node(int depth, boolean terminal) {
+            this.depth = depth;
+            this.terminal = terminal;
+        }
+
+        /**
+         * Appends a document to the bucket.
+         * @param doc the document
+         */
+        void addToBucket(int doc) {
+            if (bucketSize == bucket.length) {
+                bucket = Arrays.copyOf(bucket, bucketSize * 2);
+            }
+            bucket[bucketSize++] = doc;
+        }
+
+        /**
+         * Puts a document into the cached best documents of an inner node if it ranks
+         * high enough.
+         * @param doc       the document
+         * @param keyLength the length of its key
+         */
+        void offerTop(int doc, int keyLength) {
+            if (top == null) {
+                return;
+            }
+            int position = topSize;
+            while (position > 0 && ranksBefore(keyLength, doc, topLengths[position - 1], top[position - 1])) {
+                position--;
+            }
+            if (position == TOP_SIZE) {
+                return;
+            }
+            int moved = Math.min(topSize, TOP_SIZE - 1) - position;
+            System.arraycopy(top, position, top, position + 1, moved);
+            System.arraycopy(topLengths, position, topLengths, position + 1, moved);
+            top[position] = doc;
+            topLengths[position] = keyLength;
+            topSize = Math.min(topSize + 1, TOP_SIZE);
+        }
+
+        /**
+         * Returns the child with the given label.
+         * @param label the label
+         * @return the child, or {@code null} if there is none
+         */
+        Node child(char label) {
+            int index = Arrays.binarySearch(labels, 0, childCount, label);
+            return index < 0 ? null : children[index];
+        }
+
+        /**
+         * Returns the child with the given label, creating a leaf if there is none.
+         * @param label the label
+         * @return the child
+         */
+        Node childFor(char label) {
+            int index = Arrays.binarySearch(labels, 0, childCount, label);
+            if (index >= 0) {
+                return children[index];
+            }
+            index = -index - 1;
+            if (childCount == labels.length) {
+                labels = Arrays.copyOf(labels, Math.max(2, childCount * 2));
+                children = Arrays.copyOf(children, labels.length);
+            }
+            System.arraycopy(labels, index, labels, index + 1, childCount - index);
+            System.arraycopy(children, index, children, index + 1, childCount - index);
+            Node child = new Node(depth + 1, label == END);
+            labels[index] = label;
+            children[index] = child;
+            childCount++;
+            return child;
+        }
+
+        /**
+         * Compares the rank of two documents.
+         * @param length      the key length of the first document
+         * @param doc         the first document
+         * @param otherLength the key length of the second document
+         * @param otherDoc    the second document
+         * @return {@code true} if the first document ranks before the second
+         */
+        private static boolean ranksBefore(int length, int doc, int otherLength, int otherDoc) {
+            return length < otherLength || (length == otherLength && doc < otherDoc);
+        }
+    }
+}
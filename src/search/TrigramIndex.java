@@ -0,0 +1,333 @@
+package search;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Inverted index of character trigrams, answering typo-tolerant queries.
+ * <p>
+ * A key is padded with two spaces in front and one behind, and every distinct run of
+ * three characters is a trigram, so {@code "holly"} yields {@code "  h"}, {@code " ho"},
+ * {@code "hol"}, {@code "oll"}, {@code "lly"} and {@code "ly "}. A misspelled query still
+ * shares most trigrams with the intended key. The similarity of a query and a key is the
+ * Jaccard index of their trigram sets.
+ * </p>
+ * <p>
+ * Only keys with a similarity of at least {@value #MIN_SIMILARITY} are results. A query
+ * counts, for every document, how many of its trigrams the document shares, reading the
+ * posting lists from the rarest trigram up. A document reaching the minimum similarity
+ * must appear in one of the few rarest lists, so the common trigrams are never read; the
+ * lists read are further capped at about {@value #POSTINGS_BUDGET} postings, at the price
+ * of possibly missing a match in a catalog of very uniform titles. The
+ * {@value #VERIFY_LIMIT} documents with the highest counts are then scored exactly.
+ * </p>
+ * <p>
+ * The index is not thread-safe; {@link BookSearch} guards it with a read-write lock.
+ * </p>
+ */
+final class TrigramIndex {
+
+    /** Number of postings a query reads at most, unless its rarest trigram alone has more. */
+    private static final int POSTINGS_BUDGET = 30_000;
+
+    /** Number of candidates a query scores exactly. */
+    private static final int VERIFY_LIMIT = 100;
+
+    /** Lowest similarity of a result. */
+    private static final double MIN_SIMILARITY = 0.5;
+
+    /** Looks up the key of a document. */
+    private final IntFunction<String> keys;
+
+    /** Posting lists by trigram. */
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    /** Number of distinct trigrams of every document. */
+    private int[] trigramCounts = new int[64];
+
+    /**
+     * Creates an empty index.
+     * @param keys the function returning the normalized key of a document
+     */
+    TrigramIndex(IntFunction<String> keys) {
+        this.keys = keys;
+    }
+
+    /**
+     * Adds a document.
+     * @param doc the document number, greater than any added before
+     * @param key the normalized key of the document
+     */
+    void add(int doc, String key) {
+        long[] trigrams = trigrams(key);
+        if (doc >= trigramCounts.length) {
+            trigramCounts = Arrays.copyOf(trigramCounts, Math.max(doc + 1, trigramCounts.length * 2));
+        }
+        trigramCounts[doc] = trigrams.length;
+        for (long trigram : trigrams) {
+            postings.computeIfAbsent(mix(trigram), t -> new Postings()).add(doc);
+        }
+    }
+
+    /**
+     * Returns the documents most similar to the query.
+     * @param query the normalized query
+     * @param limit the maximum number of documents
+     * @return the documents, most similar first
+     */
+    int[] search(String query, int limit) {
+        long[] queryTrigrams = trigrams(query);
+        Postings[] lists = new Postings[queryTrigrams.length];
+        int listCount = 0;
+        for (long trigram : queryTrigrams) {
+            Postings list = postings.get(mix(trigram));
+            if (list != null) {
+                lists[listCount++] = list;
+            }
+        }
+        Arrays.sort(lists, 0, listCount, (a, b) -> Integer.compare(a.size, b.size));
+
+        int needed = listCount - (int) Math.ceil(MIN_SIMILARITY * queryTrigrams.length) + 1;
+        int used = 0;
+        int read = 0;
+        while (used < needed && (used == 0 || read + lists[used].size <= POSTINGS_BUDGET)) {
+            read += lists[used++].size;
+        }
+        DocCounter counter = new DocCounter(read);
+        for (int i = 0; i < used; i++) {
+            for (int j = 0; j < lists[i].size; j++) {
+                counter.increment(lists[i].docs[j]);
+            }
+        }
+
+        int[] candidates = counter.mostFrequent(VERIFY_LIMIT);
+        double[] scores = new double[candidates.length];
+        Integer[] order = new Integer[candidates.length];
+        boolean[] shared = new boolean[queryTrigrams.length];
+        int matches = 0;
+        for (int candidate : candidates) {
+            double score = similarity(queryTrigrams, keys.apply(candidate), trigramCounts[candidate], shared);
+            if (score >= MIN_SIMILARITY) {
+                scores[matches] = score;
+                candidates[matches] = candidate;
+                order[matches] = matches;
+                matches++;
+            }
+        }
+        Arrays.sort(order, 0, matches, (a, b) -> scores[a] != scores[b]
+                ? Double.compare(scores[b], scores[a])
+                : Integer.compare(candidates[a], candidates[b]));
+
+        int[] result = new int[Math.min(limit, matches)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = candidates[order[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the distinct trigrams of a key, sorted.
+     * @param key the normalized key
+     * @return the trigrams, each packed into a long
+     */
+    static long[] trigrams(String key) {
+        long[] trigrams = new long[key.length() + 1];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = trigramAt(key, i);
+        }
+        Arrays.sort(trigrams);
+        int distinct = 0;
+        for (int i = 0; i < trigrams.length; i++) {
+            if (i == 0 || trigrams[i] != trigrams[i - 1]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    /**
+     * Returns the trigram of the padded key starting at a position.
+     * @param key      the normalized key, without padding
+     * @param position the position in the padded key, from 0 to the length of the key
+     * @return the trigram packed into a long
+     */
+    private static long trigramAt(String key, int position) {
+        return ((long) paddedCharAt(key, position) << 32) | ((long) paddedCharAt(key, position + 1) << 16)
+                | paddedCharAt(key, position + 2);
+    }
+
+    /**
+     * Returns a character of the key padded with two spaces in front and one behind.
+     * @param key      the normalized key, without padding
+     * @param position the position in the padded key
+     * @return the character
+     */
+    private static char paddedCharAt(String key, int position) {
+        return position < 2 || position - 2 >= key.length() ? ' ' : key.charAt(position - 2);
+    }
+
+    /**
+     * Scrambles a packed trigram, whose {@link Long#hashCode()} would otherwise collide
+     * for trigrams differing only in their first and last character.
+     * @param trigram the packed trigram
+     * @return the key of the trigram in the posting map
+     */
+    private static long mix(long trigram) {
+        return trigram * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * Computes the Jaccard index of the trigram sets of a query and a key.
+     * <p>
+     * The trigrams of the key are looked up in the sorted query trigrams one by one,
+     * so no trigram array is built for the key.
+     * </p>
+     * @param query    the sorted, distinct trigrams of the query
+     * @param key      the normalized key
+     * @param keyCount the number of distinct trigrams of the key
+     * @param shared   scratch space as long as {@code query}
+     * @return the size of the intersection divided by the size of the union
+     */
+    private static double similarity(long[] query, String key, int keyCount, boolean[] shared) {
+        Arrays.fill(shared, false);
+        int common = 0;
+        for (int i = 0; i <= key.length(); i++) {
+            int index = Arrays.binarySearch(query, trigramAt(key, i));
+            if (index >= 0 && !shared[index]) {
+                shared[index] = true;
+                common++;
+            }
+        }
+        return (double) common / (query.length + keyCount - common);
+    }
+
+    /**
+     * Growable list of document numbers containing one trigram.
+     */
+    private static final class Postings {
+        /** The documents, in ascending order. */
+        int[] docs = new int[2];
+
+        /** Number of documents. */
+        int size;
+
+        /**
+         * Appends a document.
+         * @param doc the document
+         */
+        void add(int doc) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+    }
+
+    /**
+     * Open-addressing map from document number to a count, without boxing.
+     */
+    private static final class DocCounter {
+        /** Document numbers plus one, 0 for an empty slot. */
+        private int[] docs;
+
+        /** Counts of the documents. */
+        private int[] counts;
+
+        /** Slots of the counted documents, in the order they were first counted. */
+        private int[] used;
+
+        /** Number of documents counted. */
+        private int size;
+
+        /**
+         * Creates a counter with room for the given number of documents.
+         * @param expected the largest number of documents expected
+         */
+        DocCounter(int expected) {
+            int length = Integer.highestOneBit(Math.max(64, expected) * 2 - 1) * 2;
+            docs = new int[length];
+            counts = new int[length];
+            used = new int[length / 2];
+        }
+
+        /**
+         * Adds one to the count of a document.
+         * @param doc the document
+         */
+        void increment(int doc) {
+            if ((size + 1) * 2 > docs.length) {
+                resize();
+            }
+            int mask = docs.length - 1;
+            int slot = (doc * 0x9E3779B9) >>> 7 & mask;
+            while (docs[slot] != 0 && docs[slot] != doc + 1) {
+                slot = (slot + 1) & mask;
+            }
+            if (docs[slot] == 0) {
+                docs[slot] = doc + 1;
+                used[size++] = slot;
+            }
+            counts[slot]++;
+        }
+
+        /**
+         * Returns the documents with the highest counts; among documents with the lowest
+         * count taken, the first counted are preferred.
+         * @param limit the maximum number of documents
+         * @return the documents, in no particular order
+         */
+        int[] mostFrequent(int limit) {
+            int largest = 0;
+            for (int i = 0; i < size; i++) {
+                largest = Math.max(largest, counts[used[i]]);
+            }
+            // one bucket per count, so fewer than limit documents count more than the threshold
+            int[] histogram = new int[largest + 1];
+            for (int i = 0; i < size; i++) {
+                histogram[counts[used[i]]]++;
+            }
+            int threshold = largest;
+            for (int taken = histogram[threshold]; threshold > 1 && taken < limit; ) {
+                threshold--;
+                taken += histogram[threshold];
+            }
+            int[] result = new int[Math.min(size, limit)];
+            int found = 0;
+            for (int i = 0; i < size; i++) {
+                if (counts[used[i]] > threshold) {
+                    result[found++] = docs[used[i]] - 1;
+                }
+            }
+            for (int i = 0; i < size && found < result.length; i++) {
+                if (counts[used[i]] == threshold) {
+                    result[found++] = docs[used[i]] - 1;
+                }
+            }
+            return Arrays.copyOf(result, found);
+        }
+
+        /**
+         * Doubles the table.
+         */
+        private void resize() {
+            int[] oldDocs = docs;
+            int[] oldCounts = counts;
+            docs = new int[oldDocs.length * 2];
+            counts = new int[oldDocs.length * 2];
+            used = Arrays.copyOf(used, oldDocs.length);
+            int mask = docs.length - 1;
+            for (int i = 0; i < size; i++) {
+                int doc = oldDocs[used[i]];
+                int slot = ((doc - 1) * 0x9E3779B9) >>> 7 & mask;
+                while (docs[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                docs[slot] = doc;
+                counts[slot] = oldCounts[used[i]];
+                used[i] = slot;
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * One client connection of the {@link LibraryServer}, owned by a single selector thread.
+ * <p>
+ * Received bytes collect in an input buffer. Every read answers all complete requests
+ * in the buffer, so a client may pipeline requests without waiting for the responses;
+ * the responses are queued in order in an output buffer and written as far as the socket
+ * accepts. While more than {@value #MAX_PENDING_OUTPUT} bytes of responses wait, the
+ * connection stops reading, so a client that does not read cannot grow the buffer
+ * without bound.
+ * </p>
+ */
+final class Connection {
+
+    /** Initial size of the buffers in bytes. */
+    private static final int INITIAL_BUFFER = 4096;
+
+    /** Largest number of response bytes queued before reading pauses. */
+    private static final int MAX_PENDING_OUTPUT = 256 * 1024;
+
+    /** The socket. */
+    private final SocketChannel channel;
+
+    /** Answers the requests. */
+    private final LibraryHandler handler;
+
+    /** Received bytes not yet parsed, in write mode. */
+    private ByteBuffer in = ByteBuffer.allocate(INITIAL_BUFFER);
+
+    /** Responses not yet written, in write mode. */
+    private ByteBuffer out = ByteBuffer.allocate(INITIAL_BUFFER);
+
+    /** Whether the connection closes once the queued responses are written. */
+    private boolean closing;
+
+    /**
+     * Creates a connection.
+     * @param channel the non-blocking socket
+     * @param handler answers the requests
+     */
+    Connection(SocketChannel channel, LibraryHandler handler) {
+        this.channel = channel;
+        this.handler = handler;
+    }
+
+    /**
+     * Reads from the socket, answers the complete requests and writes the responses.
+     * A request the handler fails on is answered with 500.
+     * @param key the selection key of the connection
+     * @throws IOException if the socket fails
+     */
+    void onReadable(SelectionKey key) throws IOException {
+        if (channel.read(in) < 0) {
+            close(key);
+            return;
+        }
+        in.flip();
+        while (!closing) {
+            HttpRequest request;
+            try {
+                request = HttpRequest.parse(in);
+            } catch (HttpException e) {
+                queue(HttpResponse.error(e.getStatus(), e.getMessage()).encode(false));
+                closing = true;
+                break;
+            }
+            if (request == null) {
+                break;
+            }
+            HttpResponse response;
+            try {
+                response = handler.handle(request);
+            } catch (RuntimeException e) {
+                // e.g. a failed circulation log; the other connections of the loop go on
+                response = HttpResponse.error(500, "The library failed: " + e.getMessage());
+            }
+            queue(response.encode(request.isKeepAlive()));
+            closing = !request.isKeepAlive();
+        }
+        in.compact();
+        if (!in.hasRemaining()) {
+            in = grow(in, in.capacity() * 2);
+        }
+        onWritable(key);
+    }
+
+    /**
+     * Writes as much of the queued responses as the socket accepts.
+     * @param key the selection key of the connection
+     * @throws IOException if the socket fails
+     */
+    void onWritable(SelectionKey key) throws IOException {
+        out.flip();
+        channel.write(out);
+        out.compact();
+        if (out.position() == 0) {
+            if (closing) {
+                close(key);
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        } else {
+            key.interestOps(out.position() > MAX_PENDING_OUTPUT || closing
+                    ? SelectionKey.OP_WRITE
+                    : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Closes the connection.
+     * @param key the selection key of the connection
+     */
+    void close(SelectionKey key) {
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // the connection is gone either way
+        }
+    }
+
+    /**
+     * Appends a response to the output buffer.
+     * @param response the encoded response
+     */
+    private void queue(byte[] response) {
+        if (out.remaining() < response.length) {
+            out = grow(out, Math.max(out.capacity() * 2, out.position() + response.length));
+        }
+        out.put(response);
+    }
+
+    /**
+     * Copies a buffer in write mode into a larger one.
+     * @param buffer   the buffer
+     * @param capacity the new capacity
+     * @return the larger buffer, in write mode
+     */
+    private static ByteBuffer grow(ByteBuffer buffer, int capacity) {
+        ByteBuffer larger = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        return larger.put(buffer);
+    }
+}
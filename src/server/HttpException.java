@@ -0,0 +1,29 @@
+package server;
+
+/**
+ * A request the server rejects, with the HTTP status code of the rejection.
+ */
+final class HttpException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    /** The HTTP status code. */
+    private final int status;
+
+    /**
+     * Creates an exception.
+     * @param status  the HTTP status code
+     * @param message the message sent to the client
+     */
+    HttpException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    /**
+     * Returns the HTTP status code.
+     * @return the status code
+     */
+    int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,221 @@
+package server;
+
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A parsed HTTP/1.1 request.
+ * <p>
+ * {@link #parse(ByteBuffer)} takes one request off the front of the bytes received on a
+ * connection and leaves any following pipelined requests in the buffer. Only what the
+ * library endpoints need is kept: the method, the path, the decoded query parameters,
+ * the body and whether the connection stays open.
+ * </p>
+ */
+final class HttpRequest {
+
+    /** Largest accepted size of the request line and headers in bytes. */
+    static final int MAX_HEADER_BYTES = 8 * 1024;
+
+    /** Largest accepted body in bytes. */
+    static final int MAX_BODY_BYTES = 64 * 1024;
+
+    /** The request method, e.g. {@code GET}. */
+    private final String method;
+
+    /** The path, without the query. */
+    private final String path;
+
+    /** Decoded query parameters. */
+    private final Map<String, String> parameters;
+
+    /** The body, decoded as UTF-8. */
+    private final String body;
+
+    /** Whether the connection stays open after the response. */
+    private final boolean keepAlive;
+
+    /**
+     * Creates a request.
+     * @param method     the method
+     * @param path       the path
+     * @param parameters the query parameters
+     * @param body       the body
+     * @param keepAlive  whether the connection stays open
+     */
+    private HttpRequest(String method, String path, Map<String, String> parameters, String body, boolean keepAlive) {
+        this.method = method;
+        this.path = path;
+        this.parameters = parameters;
+        this.body = body;
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Parses the request at the position of the buffer.
+     * <p>
+     * If the buffer holds a complete request, its position is moved past it. Otherwise
+     * the buffer is left unchanged and {@code null} is returned, so the caller reads more.
+     * </p>
+     *
+     * @param buffer a heap buffer holding the received bytes between its position and limit
+     * @return the request, or {@code null} if the request is not complete yet
+     * @throws HttpException if the request is malformed or too large
+     */
+    static HttpRequest parse(ByteBuffer buffer) throws HttpException {
+        byte[] bytes = buffer.array();
+        int start = buffer.arrayOffset() + buffer.position();
+        int end = buffer.arrayOffset() + buffer.limit();
+        int headerEnd = indexOfBlankLine(bytes, start, end);
+        if (headerEnd < 0) {
+            if (end - start > MAX_HEADER_BYTES) {
+                throw new HttpException(431, "Request headers are too large.");
+            }
+            return null;
+        }
+
+        String[] lines = new String(bytes, start, headerEnd - start, StandardCharsets.ISO_8859_1).split("\r\n");
+        String[] requestLine = lines[0].split(" ");
+        if (requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1.")) {
+            throw new HttpException(400, "Malformed request line.");
+        }
+        int contentLength = 0;
+        String connection = null;
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon <= 0) {
+                throw new HttpException(400, "Malformed header.");
+            }
+            String name = lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = lines[i].substring(colon + 1).trim();
+            if (name.equals("content-length")) {
+                contentLength = parseLength(value);
+            } else if (name.equals("connection")) {
+                connection = value.toLowerCase(Locale.ROOT);
+            } else if (name.equals("transfer-encoding")) {
+                throw new HttpException(501, "Chunked bodies are not supported.");
+            }
+        }
+        int bodyStart = headerEnd + 4;
+        if (end - bodyStart < contentLength) {
+            return null;
+        }
+
+        String body = new String(bytes, bodyStart, contentLength, StandardCharsets.UTF_8);
+        buffer.position(bodyStart + contentLength - buffer.arrayOffset());
+        boolean keepAlive = requestLine[2].equals("HTTP/1.1")
+                ? !"close".equals(connection)
+                : "keep-alive".equals(connection);
+        String target = requestLine[1];
+        int query = target.indexOf('?');
+        return new HttpRequest(requestLine[0], query < 0 ? target : target.substring(0, query),
+                query < 0 ? Map.of() : parseQuery(target.substring(query + 1)), body, keepAlive);
+    }
+
+    /**
+     * Finds the blank line ending the headers.
+     * @param bytes the bytes
+     * @param start the first byte to search
+     * @param end   the end of the bytes to search
+     * @return the index of the {@code \r\n\r\n}, or -1 if there is none
+     */
+    private static int indexOfBlankLine(byte[] bytes, int start, int end) {
+        for (int i = start; i + 3 < end; i++) {
+            if (bytes[i] == '\r' && bytes[i + 1] == '\n' && bytes[i + 2] == '\r' && bytes[i + 3] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a Content-Length header.
+     * @param value the header value
+     * @return the body length
+     * @throws HttpException if the value is not a length or the body is too large
+     */
+    private static int parseLength(String value) throws HttpException {
+        int length;
+        try {
+            length = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new HttpException(400, "Invalid Content-Length.");
+        }
+        if (length < 0) {
+            throw new HttpException(400, "Invalid Content-Length.");
+        }
+        if (length > MAX_BODY_BYTES) {
+            throw new HttpException(413, "Request body is too large.");
+        }
+        return length;
+    }
+
+    /**
+     * Decodes the query of a request target.
+     * @param query the query, without the {@code ?}
+     * @return the parameters; of repeated names the last wins
+     * @throws HttpException if the query is not properly encoded
+     */
+    private static Map<String, String> parseQuery(String query) throws HttpException {
+        Map<String, String> parameters = new HashMap<>();
+        try {
+            for (String pair : query.split("&")) {
+                if (pair.isEmpty()) {
+                    continue;
+                }
+                int equals = pair.indexOf('=');
+                String name = equals < 0 ? pair : pair.substring(0, equals);
+                String value = equals < 0 ? "" : pair.substring(equals + 1);
+                parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+            }
+        } catch (IllegalArgumentException e) {
+            throw new HttpException(400, "Malformed query.");
+        }
+        return parameters;
+    }
+
+    /**
+     * Returns the request method.
+     * @return the method
+     */
+    String getMethod() {
+        return method;
+    }
+
+    /**
+     * Returns the path, without the query.
+     * @return the path
+     */
+    String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns a query parameter.
+     * @param name the name of the parameter
+     * @return the decoded value, or {@code null} if the parameter is missing
+     */
+    String getParameter(String name) {
+        return parameters.get(name);
+    }
+
+    /**
+     * Returns the body.
+     * @return the body, empty if there is none
+     */
+    String getBody() {
+        return body;
+    }
+
+    /**
+     * Checks whether the connection stays open after the response.
+     * @return {@code false} if the client asked to close the connection
+     */
+    boolean isKeepAlive() {
+        return keepAlive;
+    }
+}
@@ -0,0 +1,111 @@
+package server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * An HTTP response, with a JSON body unless created with {@link #text(int, String, String)}.
+ */
+final class HttpResponse {
+
+    /** The HTTP status code. */
+    private final int status;
+
+    /** The body. */
+    private final String body;
+
+    /** The media type of the body. */
+    private final String contentType;
+
+    /**
+     * Creates a response.
+     * @param status the HTTP status code
+     * @param json   the JSON body
+     */
+    HttpResponse(int status, String json) {
+        this(status, json, "application/json; charset=utf-8");
+    }
+
+    /**
+     * Creates a response with another body type.
+     * @param status      the HTTP status code
+     * @param body        the body
+     * @param contentType the media type of the body
+     */
+    private HttpResponse(int status, String body, String contentType) {
+        this.status = status;
+        this.body = body;
+        this.contentType = contentType;
+    }
+
+    /**
+     * Creates a response with a text body.
+     * @param status      the HTTP status code
+     * @param text        the body
+     * @param contentType the media type of the body
+     * @return the response
+     */
+    static HttpResponse text(int status, String text, String contentType) {
+        return new HttpResponse(status, text, contentType);
+    }
+
+    /**
+     * Creates an error response.
+     * @param status  the HTTP status code
+     * @param message the error message
+     * @return the response, with the message in an {@code error} field
+     */
+    static HttpResponse error(int status, String message) {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        Json.appendString(json, message);
+        return new HttpResponse(status, json.append('}').toString());
+    }
+
+    /**
+     * Returns the HTTP status code.
+     * @return the status code
+     */
+    int getStatus() {
+        return status;
+    }
+
+    /**
+     * Encodes the response.
+     * @param keepAlive whether the connection stays open
+     * @return the status line, headers and body
+     */
+    byte[] encode(boolean keepAlive) {
+        byte[] content = body.getBytes(StandardCharsets.UTF_8);
+        String head = "HTTP/1.1 " + status + " " + reason(status) + "\r\n"
+                + "Content-Type: " + contentType + "\r\n"
+                + "Content-Length: " + content.length + "\r\n"
+                + (keepAlive ? "" : "Connection: close\r\n")
+                + "\r\n";
+        byte[] headBytes = head.getBytes(StandardCharsets.US_ASCII);
+        byte[] bytes = Arrays.copyOf(headBytes, headBytes.length + content.length);
+        System.arraycopy(content, 0, bytes, headBytes.length, content.length);
+        return bytes;
+    }
+
+    /**
+     * Returns the reason phrase of a status code.
+     * @param status the status code
+     * @return the reason phrase
+     */
+    private static String reason(int status) {
+        return switch (status) {
+            case 200 -> "OK";
+            case 201 -> "Created";
+            case 400 -> "Bad Request";
+            case 404 -> "Not Found";
+            case 405 -> "Method Not Allowed";
+            case 409 -> "Conflict";
+            case 413 -> "Payload Too Large";
+            case 431 -> "Request Header Fields Too Large";
+            case 500 -> "Internal Server Error";
+            case 501 -> "Not Implemented";
+            case 503 -> "Service Unavailable";
+            default -> "Error";
+        };
+    }
+}
@@ -0,0 +1,66 @@
+package server;
+
+import java.util.Map;
+
+/**
+ * Helpers for writing JSON.
+ */
+public final class Json {
+
+    /** Hexadecimal digits for escapes. */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** Utility class, not meant to be instantiated. */
+    private Json() {
+    }
+
+    /**
+     * Appends a string as a JSON string literal.
+     * @param json  the JSON being written
+     * @param value the string, or {@code null}
+     */
+    public static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Writes a flat JSON object with string values, the form read by
+     * {@link importer.JsonRowReader}.
+     * @param row the names and values
+     * @return the JSON object
+     */
+    public static String object(Map<String, String> row) {
+        StringBuilder json = new StringBuilder("{");
+        for (Map.Entry<String, String> entry : row.entrySet()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            appendString(json, entry.getKey());
+            json.append(':');
+            appendString(json, entry.getValue());
+        }
+        return json.append('}').toString();
+    }
+}
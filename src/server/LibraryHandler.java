@@ -0,0 +1,411 @@
+package server;
+
+import analytics.Demand;
+import book.Book;
+import book.Encyclopedia;
+import book.SpecialBook;
+import bookLibrary.BatchMode;
+import bookLibrary.BatchResult;
+import bookLibrary.BookFilter;
+import bookLibrary.BookLibrary;
+import bookLibrary.CirculationStatus;
+import bookLibrary.LibraryServices;
+import importer.CatalogImporter;
+import importer.JsonRowReader;
+import metrics.InstrumentedLibrary;
+import metrics.LibraryMetrics;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Maps the HTTP endpoints of the {@link LibraryServer} to the {@link BookLibrary}.
+ * <p>
+ * The handler is called on the selector threads. Borrowing and returning are lock-free
+ * in the library, so they are answered inline; only registering takes the short
+ * registration lock of the library.
+ * </p>
+ * <p>
+ * A POST may carry a {@code request} parameter naming it uniquely, like the requests of
+ * a {@link branch.RemoteBranch}. The handler remembers the answers of the last
+ * {@value #REMEMBERED_REQUESTS} named requests and answers a repeated one, sent again
+ * after a broken connection, with the first answer instead of applying it twice. A
+ * repeat arriving while the first is still being answered on another selector thread is
+ * answered with 503, so the client sends it again, rather than waited for.
+ * </p>
+ */
+final class LibraryHandler {
+
+    /** Number of books listed per page unless a limit is given. */
+    private static final int DEFAULT_LIMIT = 100;
+
+    /** Largest number of books listed per page. */
+    private static final int MAX_LIMIT = 1000;
+
+    /** Number of titles reported by {@code /demand} unless a limit is given. */
+    private static final int DEFAULT_DEMAND_LIMIT = 10;
+
+    /** Media type of the Prometheus text format. */
+    private static final String PROMETHEUS_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /** Number of named requests whose answers are remembered. */
+    private static final int REMEMBERED_REQUESTS = 4096;
+
+    /** The library served. */
+    private final BookLibrary library;
+
+    /** Borrows and returns books: the library, or an instrumented view of it. */
+    private final LibraryServices circulation;
+
+    /** The metrics exported on {@code /metrics}, or {@code null} without metrics. */
+    private final LibraryMetrics metrics;
+
+    /**
+     * The answers of the last named requests, by name, oldest first. An answer is
+     * remembered before it is computed, so a repeat arriving meanwhile finds it not done.
+     * Guarded by the map itself.
+     */
+    private final LinkedHashMap<String, FutureTask<HttpResponse>> answers = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FutureTask<HttpResponse>> eldest) {
+            return size() > REMEMBERED_REQUESTS;
+        }
+    };
+
+    /**
+     * Creates a handler.
+     * @param library the library served
+     * @param metrics the metrics of the library, or {@code null} to serve no metrics
+     */
+    LibraryHandler(BookLibrary library, LibraryMetrics metrics) {
+        this.library = library;
+        this.metrics = metrics;
+        this.circulation = metrics == null ? library : new InstrumentedLibrary(library, metrics);
+    }
+
+    /**
+     * Answers a request, or repeats the answer of a named request already answered.
+     * @param request the request
+     * @return the response; 503 for a named request whose first answer is not done yet
+     */
+    HttpResponse handle(HttpRequest request) {
+        String name = request.getParameter("request");
+        if (name == null || !request.getMethod().equals("POST")) {
+            return answer(request);
+        }
+        FutureTask<HttpResponse> answer = new FutureTask<>(() -> answer(request));
+        FutureTask<HttpResponse> first;
+        synchronized (answers) {
+            first = answers.putIfAbsent(name, answer);
+        }
+        if (first == null) {
+            answer.run();
+            first = answer;
+        } else if (!first.isDone()) {
+            // never block the selector thread on another one: the client sends it again
+            return HttpResponse.error(503, "Request " + name + " is still being answered.");
+        }
+        try {
+            return first.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw (RuntimeException) e.getCause();
+        } catch (InterruptedException e) {
+            // the task is done, so get() does not wait
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Answers a request.
+     * @param request the request
+     * @return the response
+     */
+    private HttpResponse answer(HttpRequest request) {
+        try {
+            return switch (request.getPath()) {
+                case "/borrow" -> circulate(request, true);
+                case "/return" -> circulate(request, false);
+                case "/books" -> request.getMethod().equals("POST") ? register(request) : list(request);
+                case "/stock" -> stock(request);
+                case "/metrics" -> metrics(request);
+                case "/demand" -> demand(request);
+                default -> HttpResponse.error(404, "Unknown path " + request.getPath() + ".");
+            };
+        } catch (HttpException e) {
+            return HttpResponse.error(e.getStatus(), e.getMessage());
+        }
+    }
+
+    /**
+     * Borrows or returns the book named by the {@code title} parameter.
+     * <p>
+     * A borrow may ask for several copies with the {@code copies} parameter; they are
+     * borrowed all or nothing, and the status is {@link CirculationStatus#BORROWED} or the
+     * reason none were borrowed.
+     * </p>
+     * @param request the request
+     * @param borrow  {@code true} to borrow, {@code false} to return
+     * @return the response holding the {@link CirculationStatus}
+     * @throws HttpException if the method is not POST, the title is missing or the copies invalid
+     */
+    private HttpResponse circulate(HttpRequest request, boolean borrow) throws HttpException {
+        requireMethod(request, "POST");
+        String title = requireTitle(request);
+        int copies = borrow ? intParameter(request, "copies", 1) : 1;
+        if (copies == 0 || copies > MAX_LIMIT) {
+            throw new HttpException(400, "Copies must be between 1 and " + MAX_LIMIT + ".");
+        }
+        CirculationStatus status;
+        if (copies == 1) {
+            status = borrow ? circulation.borrowBook(title) : circulation.returnBook(title);
+        } else {
+            BatchResult result = circulation.borrowAll(Collections.nCopies(copies, title), BatchMode.ALL_OR_NOTHING);
+            status = result.getStatus(0);
+            for (int i = 0; i < copies && status == CirculationStatus.ABORTED; i++) {
+                status = result.getStatus(i);
+            }
+        }
+        int code = switch (status) {
+            case BORROWED, RETURNED -> 200;
+            case OUT_OF_STOCK, NOT_ON_LOAN -> 409;
+            default -> 404;
+        };
+        return new HttpResponse(code, "{\"status\":\"" + status + "\"}");
+    }
+
+    /**
+     * Reports the stock of the book named by the {@code title} parameter.
+     * @param request the request
+     * @return the response holding the book as a {@link CatalogImporter} row with its
+     *         quantity, or 404 if the library does not carry the title
+     * @throws HttpException if the method is not GET or the title is missing
+     */
+    private HttpResponse stock(HttpRequest request) throws HttpException {
+        requireMethod(request, "GET");
+        Book book = library.findByTitle(requireTitle(request));
+        if (book == null) {
+            throw new HttpException(404, "Unknown title.");
+        }
+        Map<String, String> row = CatalogImporter.toRow(book);
+        row.put("quantity", Integer.toString(library.getQuantity(book)));
+        return new HttpResponse(200, Json.object(row));
+    }
+
+    /**
+     * Registers the book described by the JSON object in the body.
+     * <p>
+     * The object has the columns of a {@link CatalogImporter} feed, {@code pages} among
+     * them, e.g. {@code {"title": "Program Joshua", "author": "M.J. Arlidge", "pages": 420,
+     * "value": 19.9, "signed": true, "quantity": 2}}.
+     * A book equal to one the library already has is the same book, so registering it
+     * again adds the copies to it.
+     * </p>
+     * @param request the request
+     * @return the response
+     * @throws HttpException if the body is not a valid book
+     */
+    private HttpResponse register(HttpRequest request) throws HttpException {
+        Map<String, String> row;
+        try (JsonRowReader reader = new JsonRowReader(new StringReader(request.getBody()))) {
+            row = reader.nextRow();
+        } catch (IOException e) {
+            throw new HttpException(400, e.getMessage());
+        }
+        if (row == null) {
+            throw new HttpException(400, "Missing book.");
+        }
+        Book book;
+        int quantity;
+        try {
+            book = CatalogImporter.toBook(row);
+            String copies = row.get("quantity");
+            quantity = copies == null ? 1 : Integer.parseInt(copies.strip());
+        } catch (NumberFormatException e) {
+            throw new HttpException(400, "Invalid quantity.");
+        } catch (IllegalArgumentException e) {
+            throw new HttpException(400, e.getMessage());
+        }
+        if (quantity <= 0) {
+            throw new HttpException(400, "Quantity must be greater than 0.");
+        }
+        library.registerNewBook(book, quantity);
+        return new HttpResponse(201, "{\"status\":\"REGISTERED\",\"quantity\":" + library.getQuantity(book) + "}");
+    }
+
+    /**
+     * Lists a page of the books in registration order.
+     * <p>
+     * The page starts at the {@code cursor} parameter, 0 by default, and holds at most
+     * {@code limit} books. The optional {@code genre}, {@code language} and
+     * {@code inStock=true} parameters filter the books. The response holds the cursor of
+     * the next page in {@code next}, which is {@code null} after the last page.
+     * </p>
+     * @param request the request
+     * @return the response holding the books and their quantities
+     * @throws HttpException if the method is not GET or a parameter is invalid
+     */
+    private HttpResponse list(HttpRequest request) throws HttpException {
+        requireMethod(request, "GET");
+        int cursor = intParameter(request, "cursor", 0);
+        int limit = Math.min(intParameter(request, "limit", DEFAULT_LIMIT), MAX_LIMIT);
+        if (limit == 0) {
+            throw new HttpException(400, "Limit must be greater than 0.");
+        }
+        BookFilter filter = new BookFilter.Builder()
+                .genre(request.getParameter("genre"))
+                .language(request.getParameter("language"))
+                .inStockOnly("true".equals(request.getParameter("inStock")))
+                .build();
+        StringBuilder json = new StringBuilder("{\"books\":[");
+        long next = library.listBooks(filter, cursor, limit, (book, quantity) -> {
+            if (json.charAt(json.length() - 1) != '[') {
+                json.append(',');
+            }
+            appendBook(json, book, quantity);
+        });
+        json.append("],\"next\":").append(next == BookLibrary.END_OF_CATALOG ? "null" : String.valueOf(next));
+        return new HttpResponse(200, json.append('}').toString());
+    }
+
+    /**
+     * Reports the titles with the most unmet borrow attempts of the week and the demand
+     * for every genre.
+     * <p>
+     * The {@code limit} parameter, 10 by default, caps the number of titles.
+     * </p>
+     * @param request the request
+     * @return the response holding the titles and the genres
+     * @throws HttpException if the method is not GET or the limit is invalid
+     */
+    private HttpResponse demand(HttpRequest request) throws HttpException {
+        requireMethod(request, "GET");
+        int limit = Math.min(intParameter(request, "limit", DEFAULT_DEMAND_LIMIT), MAX_LIMIT);
+        if (limit == 0) {
+            throw new HttpException(400, "Limit must be greater than 0.");
+        }
+        StringBuilder json = new StringBuilder("{\"titles\":");
+        appendDemand(json, "title", library.getDemand().getTopUnmet(limit));
+        json.append(",\"genres\":");
+        appendDemand(json, "genre", library.getDemand().getGenreDemand());
+        return new HttpResponse(200, json.append('}').toString());
+    }
+
+    /**
+     * Appends demands as a JSON array of objects.
+     * @param json    the JSON being written
+     * @param name    the key of the title or genre
+     * @param demands the demands
+     */
+    private static void appendDemand(StringBuilder json, String name, List<Demand> demands) {
+        json.append('[');
+        for (Demand demand : demands) {
+            if (json.charAt(json.length() - 1) != '[') {
+                json.append(',');
+            }
+            json.append("{\"").append(name).append("\":");
+            Json.appendString(json, demand.getName());
+            json.append(",\"requests\":").append(demand.getRequests())
+                    .append(",\"unmet\":").append(demand.getUnmet()).append('}');
+        }
+        json.append(']');
+    }
+
+    /**
+     * Exports the metrics in the Prometheus text format.
+     * @param request the request
+     * @return the response holding the metrics
+     * @throws HttpException if the method is not GET or the server has no metrics
+     */
+    private HttpResponse metrics(HttpRequest request) throws HttpException {
+        requireMethod(request, "GET");
+        if (metrics == null) {
+            throw new HttpException(404, "The server collects no metrics.");
+        }
+        return HttpResponse.text(200, metrics.toPrometheusText(), PROMETHEUS_TYPE);
+    }
+
+    /**
+     * Appends a book as a JSON object.
+     * @param json     the JSON being written
+     * @param book     the book
+     * @param quantity its quantity in stock
+     */
+    private static void appendBook(StringBuilder json, Book book, int quantity) {
+        json.append("{\"title\":");
+        Json.appendString(json, book.getTitle());
+        json.append(",\"author\":");
+        Json.appendString(json, book.getAuthor());
+        json.append(",\"genre\":");
+        Json.appendString(json, book.getGenre());
+        json.append(",\"language\":");
+        Json.appendString(json, book.getLanguage());
+        json.append(",\"pages\":").append(book.getPageNumbers())
+                .append(",\"value\":").append(book.getValue());
+        if (book instanceof SpecialBook specialBook) {
+            json.append(",\"signed\":").append(specialBook.isSigned()).append(",\"rare\":").append(specialBook.isRare());
+        } else if (book instanceof Encyclopedia encyclopedia) {
+            json.append(",\"illustration\":").append(encyclopedia.isIllustration());
+        }
+        json.append(",\"quantity\":").append(quantity).append('}');
+    }
+
+    /**
+     * Rejects a request with another method.
+     * @param request the request
+     * @param method  the allowed method
+     * @throws HttpException if the request has another method
+     */
+    private static void requireMethod(HttpRequest request, String method) throws HttpException {
+        if (!request.getMethod().equals(method)) {
+            throw new HttpException(405, request.getPath() + " requires " + method + ".");
+        }
+    }
+
+    /**
+     * Reads the {@code title} parameter.
+     * @param request the request
+     * @return the title
+     * @throws HttpException if the title is missing
+     */
+    private static String requireTitle(HttpRequest request) throws HttpException {
+        String title = request.getParameter("title");
+        if (title == null || title.isEmpty()) {
+            throw new HttpException(400, "Missing title.");
+        }
+        return title;
+    }
+
+    /**
+     * Reads a non-negative integer parameter.
+     * @param request      the request
+     * @param name         the name of the parameter
+     * @param defaultValue the value used when the parameter is missing
+     * @return the value
+     * @throws HttpException if the value is not a non-negative integer
+     */
+    private static int intParameter(HttpRequest request, String name, int defaultValue) throws HttpException {
+        String value = request.getParameter(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed >= 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new HttpException(400, "Invalid " + name + " \"" + value + "\".");
+    }
+}
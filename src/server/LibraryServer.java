@@ -0,0 +1,253 @@
+package server;
+
+import bookLibrary.BookLibrary;
+import metrics.LibraryMetrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Non-blocking HTTP/JSON front end of the {@link BookLibrary}.
+ * <p>
+ * One acceptor thread accepts connections and hands them round-robin to a few selector
+ * threads, by default one per processor. Each selector thread serves thousands of
+ * connections without blocking: requests are parsed as their bytes arrive, pipelined
+ * requests on one connection are answered in order, and the library operations run
+ * inline because borrowing and returning never block. Connections are kept alive
+ * unless the client asks otherwise.
+ * </p>
+ * <p>
+ * Endpoints, all answering with a JSON object:
+ * <ul>
+ *     <li>{@code POST /borrow?title=...} borrows a book: 200, 404 or 409 when out of stock,
+ *     with the {@link bookLibrary.CirculationStatus} in {@code status}; {@code copies=n}
+ *     borrows several copies, all or nothing,</li>
+ *     <li>{@code POST /return?title=...} returns a book: 200 or 404,</li>
+ *     <li>{@code POST /books} registers the book described by the JSON object in the body,
+ *     with the columns of an {@link importer.CatalogImporter} feed, {@code title},
+ *     {@code author} and {@code pages} required: 201 or 400,</li>
+ *     <li>{@code GET /stock?title=...} reports a book as such a row with its quantity
+ *     in stock: 200 or 404,</li>
+ *     <li>{@code GET /books?cursor=0&amp;limit=100} lists a page of the books and their
+ *     quantities in registration order, at most 1000 per page, optionally filtered with
+ *     {@code genre}, {@code language} and {@code inStock=true}; {@code next} in the
+ *     response is the cursor of the following page,</li>
+ *     <li>{@code GET /demand?limit=10} reports the titles with the most unmet borrow
+ *     attempts of the week and the demand for every genre, from the
+ *     {@link analytics.DemandAnalytics} of the library,</li>
+ *     <li>{@code GET /metrics} exports the {@link LibraryMetrics} in the Prometheus text
+ *     format, if the server was built with metrics.</li>
+ * </ul>
+ * Errors are answered with an {@code error} message and a 4xx status.
+ * </p>
+ * <p>
+ * Example Usage:
+ * <pre>
+ * LibraryServer server = new LibraryServer.Builder(BookLibrary.BookLibrary())
+ *         .port(8080)
+ *         .build();
+ * server.start();
+ * </pre>
+ * or from the command line, {@code java server.LibraryServer 8080}, which collects metrics.
+ * </p>
+ */
+public class LibraryServer implements Closeable {
+
+    /** Port used when none is given on the command line. */
+    private static final int DEFAULT_PORT = 8080;
+
+    /** Number of connections waiting to be accepted before the system refuses more. */
+    private static final int BACKLOG = 4096;
+
+    /** The port to listen on, 0 for any free port. */
+    private final int port;
+
+    /** The selector threads. */
+    private final SelectorLoop[] loops;
+
+    /** The threads running the selector loops. */
+    private final Thread[] loopThreads;
+
+    /** The listening socket, {@code null} until started. */
+    private ServerSocketChannel serverChannel;
+
+    /** The thread accepting connections. */
+    private Thread acceptor;
+
+    /**
+     * Private constructor to enforce the use of the {@link Builder}.
+     * @param builder the builder holding the settings
+     * @throws IOException if a selector cannot be opened
+     */
+    private LibraryServer(Builder builder) throws IOException {
+        this.port = builder.port;
+        LibraryHandler handler = new LibraryHandler(builder.library, builder.metrics);
+        this.loops = new SelectorLoop[builder.selectorThreads];
+        this.loopThreads = new Thread[builder.selectorThreads];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new SelectorLoop(handler);
+            loopThreads[i] = new Thread(loops[i], "library-server-selector-" + i);
+        }
+    }
+
+    /**
+     * Starts the server of the library on the port given as the first argument.
+     *
+     * @param args the port, default {@value #DEFAULT_PORT}
+     * @throws IOException if the port cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        BookLibrary library = BookLibrary.BookLibrary();
+        LibraryServer server = new Builder(library).port(port).metrics(LibraryMetrics.attach(library)).build();
+        server.start();
+        System.out.println("Library server listening on port " + server.getPort());
+    }
+
+    /**
+     * Binds the port and starts the acceptor and selector threads.
+     *
+     * @throws IOException if the port cannot be bound
+     * @throws IllegalStateException if the server was already started
+     */
+    public synchronized void start() throws IOException {
+        if (serverChannel != null) {
+            throw new IllegalStateException("The server was already started.");
+        }
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), BACKLOG);
+        for (Thread thread : loopThreads) {
+            thread.start();
+        }
+        acceptor = new Thread(this::accept, "library-server-acceptor");
+        acceptor.start();
+    }
+
+    /**
+     * Body of the acceptor thread: accepts connections until the server is closed.
+     */
+    private void accept() {
+        int next = 0;
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                loops[next].add(channel);
+                next = (next + 1) % loops.length;
+            } catch (IOException e) {
+                if (serverChannel.isOpen()) {
+                    System.err.println("Library server cannot accept a connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the port the server listens on.
+     * @return the bound port, or the configured port before the server is started
+     */
+    public synchronized int getPort() {
+        return serverChannel == null ? port : serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Stops accepting connections, closes all connections and waits for the threads to end.
+     * @throws IOException if closing the listening socket fails
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (serverChannel == null) {
+            return;
+        }
+        serverChannel.close();
+        for (SelectorLoop loop : loops) {
+            loop.stop();
+        }
+        try {
+            acceptor.join();
+            for (Thread thread : loopThreads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Builder for creating a {@link LibraryServer}.
+     */
+    public static class Builder {
+        /** The library served (required). */
+        private final BookLibrary library;
+
+        /** The port to listen on (optional, default is {@value LibraryServer#DEFAULT_PORT}). */
+        private int port = DEFAULT_PORT;
+
+        /** Number of selector threads (optional, default is the number of processors). */
+        private int selectorThreads = Runtime.getRuntime().availableProcessors();
+
+        /** The metrics recorded and exported (optional, default is none). */
+        private LibraryMetrics metrics;
+
+        /**
+         * Creates a new builder for a server of the given library.
+         * @param library the library served; must not be null
+         */
+        public Builder(BookLibrary library) {
+            this.library = library;
+        }
+
+        /**
+         * Sets the port to listen on.
+         * @param port the port, or 0 for any free port
+         * @return this builder instance
+         * @throws IllegalArgumentException if {@code port} is not between 0 and 65535
+         */
+        public Builder port(int port) {
+            if (port < 0 || port > 65535) {
+                throw new IllegalArgumentException("Port must be between 0 and 65535.");
+            }
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * Sets the number of selector threads serving the connections.
+         * @param threads the number of threads; must be greater than 0
+         * @return this builder instance
+         * @throws IllegalArgumentException if {@code threads <= 0}
+         */
+        public Builder selectorThreads(int threads) {
+            if (threads <= 0) {
+                throw new IllegalArgumentException("Number of selector threads must be greater than 0.");
+            }
+            this.selectorThreads = threads;
+            return this;
+        }
+
+        /**
+         * Records the borrows and returns in metrics and exports them on {@code /metrics}.
+         * @param metrics the metrics, attached to the served library
+         * @return this builder instance
+         */
+        public Builder metrics(LibraryMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new {@code LibraryServer} instance; it is started with
+         * {@link LibraryServer#start()}.
+         * @return a new {@code LibraryServer} object
+         * @throws IOException if a selector cannot be opened
+         */
+        public LibraryServer build() throws IOException {
+            return new LibraryServer(this);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package server;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A selector thread of the {@link LibraryServer}, serving the connections handed to it.
+ * <p>
+ * New connections arrive through a queue and are registered by the loop itself, since
+ * registering with a selector blocked in {@link Selector#select()} from another thread
+ * would wait for the select to return.
+ * </p>
+ */
+final class SelectorLoop implements Runnable {
+
+    /** The selector of the connections. */
+    private final Selector selector;
+
+    /** Answers the requests. */
+    private final LibraryHandler handler;
+
+    /** Accepted connections waiting to be registered. */
+    private final Queue<SocketChannel> accepted = new ConcurrentLinkedQueue<>();
+
+    /** Cleared to stop the loop. */
+    private volatile boolean running = true;
+
+    /**
+     * Creates a loop.
+     * @param handler answers the requests
+     * @throws IOException if the selector cannot be opened
+     */
+    SelectorLoop(LibraryHandler handler) throws IOException {
+        this.selector = Selector.open();
+        this.handler = handler;
+    }
+
+    /**
+     * Hands an accepted connection to the loop.
+     * @param channel the non-blocking socket
+     */
+    void add(SocketChannel channel) {
+        accepted.add(channel);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                for (SocketChannel channel = accepted.poll(); channel != null; channel = accepted.poll()) {
+                    try {
+                        channel.register(selector, SelectionKey.OP_READ, new Connection(channel, handler));
+                    } catch (ClosedChannelException e) {
+                        // the client left before the connection was registered
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    serve(key);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Library server selector failed: " + e.getMessage());
+        } finally {
+            closeAll();
+        }
+    }
+
+    /**
+     * Serves a ready connection, closing it if its socket fails or serving it fails
+     * unexpectedly; the loop keeps serving its other connections either way.
+     * @param key the selection key of the connection
+     */
+    private void serve(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                connection.onReadable(key);
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.onWritable(key);
+            }
+        } catch (IOException e) {
+            connection.close(key);
+        } catch (RuntimeException e) {
+            System.err.println("Library server dropped a connection: " + e);
+            connection.close(key);
+        }
+    }
+
+    /**
+     * Stops the loop, which then closes the selector and all its connections.
+     */
+    void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Closes the selector and all connections of the loop; called by the loop thread.
+     */
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            ((Connection) key.attachment()).close(key);
+        }
+        for (SocketChannel channel = accepted.poll(); channel != null; channel = accepted.poll()) {
+            closeQuietly(channel);
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+    }
+
+    /**
+     * Closes a channel, ignoring failures.
+     * @param channel the channel
+     */
+    static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // the connection is gone either way
+        }
+    }
+}